@@ -15,6 +15,8 @@
  */
 package com.thruzero.auth.hibernate.dao;
 
+import java.util.Collection;
+
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -23,8 +25,8 @@ import com.thruzero.auth.dao.UserDAO;
 import com.thruzero.auth.model.User;
 import com.thruzero.auth.model.UserPermission;
 import com.thruzero.common.core.locator.ConfigLocator;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.hibernate.dao.HibernateGenericDAO;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of UserDAO that uses Hibernate as storage.
@@ -33,6 +35,7 @@ import com.thruzero.domain.hibernate.dao.HibernateGenericDAO;
  */
 public final class HibernateUserDAO extends HibernateGenericDAO<User> implements UserDAO {
   private String userClass;
+  private QueryDefinition<User> getUserByLoginIdQuery; // generated once, for the configured User subclass
 
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
@@ -46,17 +49,13 @@ public final class HibernateUserDAO extends HibernateGenericDAO<User> implements
       throw new DAOException("* ERROR: USER_CLASS for " + HibernateUserDAO.class.getSimpleName() + " is empty.\nThe section named '" + UserDAOConfigKeys.SECTION_NAME +
           " ' did not contain the key: " + UserDAOConfigKeys.USER_CLASS + "' (the fully qualified name of the User subclass representing the user).");
     }
+
+    getUserByLoginIdQuery = QueryDefinition.from(userClass, User.class, "a").whereEquals("loginId").build("User.getUserByLoginId");
   }
 
   @Override
   public User getUserByLoginId(String loginId) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM " + userClass + " a ");
-    hql.append("  WHERE a.loginId = :loginId ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(getUserByLoginIdQuery);
     hqlQuery.setString("loginId", loginId);
 
     User result = (User)hqlQuery.uniqueResult();
@@ -103,4 +102,38 @@ public final class HibernateUserDAO extends HibernateGenericDAO<User> implements
     super.save(domainObject);
   }
 
+  @Override
+  public void saveAll(Collection<? extends User> domainObjects) {
+    if (domainObjects != null) {
+      Session session = getCurrentSession();
+      for (User domainObject : domainObjects) {
+        session.save(domainObject.getDetails());
+        if (domainObject.getPermissions() != null) {
+          for (UserPermission permission : domainObject.getPermissions()) {
+            session.save(permission);
+          }
+        }
+      }
+    }
+
+    super.saveAll(domainObjects);
+  }
+
+  @Override
+  public void updateAll(Collection<? extends User> domainObjects) {
+    if (domainObjects != null) {
+      Session session = getCurrentSession();
+      for (User domainObject : domainObjects) {
+        session.saveOrUpdate(domainObject.getDetails());
+        if (domainObject.getPermissions() != null) {
+          for (UserPermission permission : domainObject.getPermissions()) {
+            session.saveOrUpdate(permission);
+          }
+        }
+      }
+    }
+
+    super.updateAll(domainObjects);
+  }
+
 }
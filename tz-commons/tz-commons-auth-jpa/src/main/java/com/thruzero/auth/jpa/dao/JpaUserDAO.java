@@ -15,6 +15,8 @@
  */
 package com.thruzero.auth.jpa.dao;
 
+import java.util.Collection;
+
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
@@ -24,9 +26,9 @@ import com.thruzero.auth.dao.UserDAO;
 import com.thruzero.auth.model.User;
 import com.thruzero.auth.model.UserPermission;
 import com.thruzero.common.core.locator.ConfigLocator;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.jpa.dao.JpaGenericDAO;
 import com.thruzero.domain.jpa.utils.JpaUtils;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of UserDAO that uses JPA for storage.
@@ -35,6 +37,7 @@ import com.thruzero.domain.jpa.utils.JpaUtils;
  */
 public final class JpaUserDAO extends JpaGenericDAO<User> implements UserDAO {
   private String userClass;
+  private QueryDefinition<User> getUserByLoginIdQuery; // generated once, for the configured User subclass
 
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
@@ -48,17 +51,13 @@ public final class JpaUserDAO extends JpaGenericDAO<User> implements UserDAO {
       throw new DAOException("* ERROR: USER_CLASS for " + JpaUserDAO.class.getSimpleName() + " is empty.\nThe section named '" + UserDAOConfigKeys.SECTION_NAME +
           " ' did not contain the key: " + UserDAOConfigKeys.USER_CLASS + "' (the fully qualified name of the User subclass representing the user).");
     }
+
+    getUserByLoginIdQuery = QueryDefinition.from(userClass, User.class, "a").whereEquals("loginId").build("User.getUserByLoginId");
   }
 
   @Override
   public User getUserByLoginId(String loginId) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM " + userClass + " a ");
-    hql.append("  WHERE a.loginId = :loginId ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(getUserByLoginIdQuery);
     hqlQuery.setParameter("loginId", loginId);
 
     User result = JpaUtils.getSingleResultHack(hqlQuery);
@@ -80,4 +79,21 @@ public final class JpaUserDAO extends JpaGenericDAO<User> implements UserDAO {
 
     super.save(domainObject);
   }
+
+  @Override
+  public void saveAll(Collection<? extends User> domainObjects) {
+    if (domainObjects != null) {
+      EntityManager persistenceManager = getCurrentPersistenceManager( );
+      for (User domainObject : domainObjects) {
+        persistenceManager.persist(domainObject.getDetails());
+        if (domainObject.getPermissions() != null) {
+          for (UserPermission permission : domainObject.getPermissions()) {
+            persistenceManager.persist(permission);
+          }
+        }
+      }
+    }
+
+    super.saveAll(domainObjects);
+  }
 }
@@ -0,0 +1,219 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The score and allocation rate of each benchmark in a run, which can be saved as a baseline and later compared with
+ * another run, to find regressions. A benchmark is a regression if its score is worse than the baseline by more than
+ * the threshold, or if it allocates more bytes per operation than the baseline by more than the threshold.
+ *
+ * @author George Norman
+ */
+public class BaselineReport {
+  private static final String SCORE_SUFFIX = ".score";
+  private static final String UNIT_SUFFIX = ".unit";
+  private static final String HIGHER_IS_BETTER_SUFFIX = ".higherIsBetter";
+  private static final String ALLOC_SUFFIX = ".allocBytesPerOp";
+
+  private final Map<String, Measurement> measurements = new TreeMap<String, Measurement>();
+
+  // ------------------------------------------------
+  // Measurement
+  // ------------------------------------------------
+
+  /** The result of a single benchmark (identified by its name and parameters). */
+  public static class Measurement {
+    private final String label;
+    private final double score;
+    private final String unit;
+    private final boolean higherIsBetter;
+    private final double allocBytesPerOp;
+
+    /**
+     * @param higherIsBetter true for throughput, false for time per operation.
+     * @param allocBytesPerOp the normalized allocation rate reported by the GC profiler (NaN if not available).
+     */
+    public Measurement(String label, double score, String unit, boolean higherIsBetter, double allocBytesPerOp) {
+      this.label = label;
+      this.score = score;
+      this.unit = unit;
+      this.higherIsBetter = higherIsBetter;
+      this.allocBytesPerOp = allocBytesPerOp;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    public String getUnit() {
+      return unit;
+    }
+
+    public boolean isHigherIsBetter() {
+      return higherIsBetter;
+    }
+
+    public double getAllocBytesPerOp() {
+      return allocBytesPerOp;
+    }
+  }
+
+  // ------------------------------------------------
+  // Comparison
+  // ------------------------------------------------
+
+  /** The comparison of a run with a baseline, formatted as a table (one row per benchmark). */
+  public static class Comparison {
+    private final StringBuilder report = new StringBuilder();
+    private final List<String> regressions = new ArrayList<String>();
+
+    public List<String> getRegressions() {
+      return regressions;
+    }
+
+    @Override
+    public String toString() {
+      return report.toString();
+    }
+  }
+
+  // ============================================================
+  // BaselineReport
+  // ============================================================
+
+  public void addMeasurement(Measurement measurement) {
+    measurements.put(measurement.getLabel(), measurement);
+  }
+
+  public Collection<Measurement> getMeasurements() {
+    return measurements.values();
+  }
+
+  public Measurement getMeasurement(String label) {
+    return measurements.get(label);
+  }
+
+  /**
+   * Compare this run with the given baseline. Benchmarks that are not in the baseline are listed as new (they are never
+   * regressions).
+   *
+   * @param thresholdPercent the percentage a score or allocation rate may worsen before it's reported as a regression.
+   */
+  public Comparison compareWith(BaselineReport baseline, double thresholdPercent) {
+    Comparison result = new Comparison();
+
+    result.report.append(String.format("%-70s %14s %14s %9s %12s %12s %9s%n", "Benchmark", "Baseline", "Current", "Change", "B/op (base)", "B/op (curr)", "Change"));
+    for (Measurement current : measurements.values()) {
+      Measurement base = baseline.getMeasurement(current.getLabel());
+
+      if (base == null) {
+        result.report.append(String.format("%-70s %14s %14.3f %9s %12s %12s %9s%n", current.getLabel(), "-", current.getScore(), "new", "-", formatAlloc(current.getAllocBytesPerOp()), ""));
+      } else {
+        // a positive change is always worse (e.g., slower or more allocations)
+        double scoreChange = percentChange(base.getScore(), current.getScore()) * (current.isHigherIsBetter() ? -1 : 1);
+        double allocChange = percentChange(base.getAllocBytesPerOp(), current.getAllocBytesPerOp());
+        boolean scoreRegression = scoreChange > thresholdPercent;
+        boolean allocRegression = allocChange > thresholdPercent;
+
+        result.report.append(String.format("%-70s %14.3f %14.3f %8.1f%% %12s %12s %8.1f%%%s%n", current.getLabel(), base.getScore(), current.getScore(), scoreChange,
+            formatAlloc(base.getAllocBytesPerOp()), formatAlloc(current.getAllocBytesPerOp()), allocChange, scoreRegression || allocRegression ? "  *** REGRESSION" : ""));
+        if (scoreRegression) {
+          result.regressions.add(String.format("%s is %.1f%% worse (%.3f -> %.3f %s)", current.getLabel(), scoreChange, base.getScore(), current.getScore(), current.getUnit()));
+        }
+        if (allocRegression) {
+          result.regressions.add(String.format("%s allocates %.1f%% more (%.1f -> %.1f B/op)", current.getLabel(), allocChange, base.getAllocBytesPerOp(), current.getAllocBytesPerOp()));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /** Save this report, so it can be used as the baseline of a later run. */
+  public void store(File file) throws IOException {
+    Properties properties = new Properties();
+
+    for (Measurement measurement : measurements.values()) {
+      properties.setProperty(measurement.getLabel() + SCORE_SUFFIX, Double.toString(measurement.getScore()));
+      properties.setProperty(measurement.getLabel() + UNIT_SUFFIX, measurement.getUnit());
+      properties.setProperty(measurement.getLabel() + HIGHER_IS_BETTER_SUFFIX, Boolean.toString(measurement.isHigherIsBetter()));
+      properties.setProperty(measurement.getLabel() + ALLOC_SUFFIX, Double.toString(measurement.getAllocBytesPerOp()));
+    }
+
+    OutputStream os = new FileOutputStream(file);
+    try {
+      properties.store(os, "tz-commons benchmark baseline");
+    } finally {
+      IOUtils.closeQuietly(os);
+    }
+  }
+
+  /** Load a report previously saved using {@link #store(File)}. */
+  public static BaselineReport load(File file) throws IOException {
+    BaselineReport result = new BaselineReport();
+    Properties properties = new Properties();
+
+    InputStream is = new FileInputStream(file);
+    try {
+      properties.load(is);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+
+    for (String key : properties.stringPropertyNames()) {
+      if (key.endsWith(SCORE_SUFFIX)) {
+        String label = key.substring(0, key.length() - SCORE_SUFFIX.length());
+
+        result.addMeasurement(new Measurement(label, Double.parseDouble(properties.getProperty(key)), properties.getProperty(label + UNIT_SUFFIX),
+            Boolean.parseBoolean(properties.getProperty(label + HIGHER_IS_BETTER_SUFFIX)), Double.parseDouble(properties.getProperty(label + ALLOC_SUFFIX, "NaN"))));
+      }
+    }
+
+    return result;
+  }
+
+  /** Return the change from base to current, as a percentage of base (0 if either is unknown). */
+  private static double percentChange(double base, double current) {
+    if (Double.isNaN(base) || Double.isNaN(current) || base == 0) {
+      return 0;
+    }
+
+    return (current - base) * 100 / base;
+  }
+
+  private static String formatAlloc(double allocBytesPerOp) {
+    return Double.isNaN(allocBytesPerOp) ? "-" : String.format("%.1f", allocBytesPerOp);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.thruzero.benchmarks.BaselineReport.Comparison;
+import com.thruzero.benchmarks.BaselineReport.Measurement;
+
+/**
+ * Runs the tz-commons benchmarks, each with the GC profiler (so the allocation rate is measured along with the score),
+ * and optionally saves the results as a baseline or compares them with a previously saved baseline. Usage:
+ *
+ * <pre>
+ * java -jar tz-commons-benchmarks.jar [-include regex] [-saveBaseline file] [-baseline file] [-threshold percent]
+ * </pre>
+ *
+ * The exit code is 1 if a regression was found when comparing with a baseline.
+ *
+ * @author George Norman
+ */
+public class BenchmarkRunner {
+  public static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+  /** Key of the normalized allocation rate (bytes per operation) reported by the GC profiler (older JMH versions prefix it with a dot). */
+  private static final String ALLOC_RATE_NORM_KEY = "gc.alloc.rate.norm";
+
+  public static void main(String[] args) throws Exception {
+    String include = "com\\.thruzero\\.benchmarks\\..*";
+    File saveBaselineFile = null;
+    File baselineFile = null;
+    double thresholdPercent = DEFAULT_THRESHOLD_PERCENT;
+
+    for (int i = 0; i < args.length; i++) {
+      if ("-include".equals(args[i]) && i + 1 < args.length) {
+        include = args[++i];
+      } else if ("-saveBaseline".equals(args[i]) && i + 1 < args.length) {
+        saveBaselineFile = new File(args[++i]);
+      } else if ("-baseline".equals(args[i]) && i + 1 < args.length) {
+        baselineFile = new File(args[++i]);
+      } else if ("-threshold".equals(args[i]) && i + 1 < args.length) {
+        thresholdPercent = Double.parseDouble(args[++i]);
+      } else {
+        System.err.println("Usage: BenchmarkRunner [-include regex] [-saveBaseline file] [-baseline file] [-threshold percent]");
+        System.exit(2);
+      }
+    }
+
+    Options options = new OptionsBuilder()
+        .include(include)
+        .addProfiler(GCProfiler.class)
+        .forks(1)
+        .warmupIterations(3)
+        .warmupTime(TimeValue.seconds(1))
+        .measurementIterations(5)
+        .measurementTime(TimeValue.seconds(1))
+        .build();
+    BaselineReport report = createReport(new Runner(options).run());
+
+    if (saveBaselineFile != null) {
+      report.store(saveBaselineFile);
+      System.out.println("Saved baseline: " + saveBaselineFile.getAbsolutePath());
+    }
+
+    if (baselineFile != null) {
+      Comparison comparison = report.compareWith(BaselineReport.load(baselineFile), thresholdPercent);
+
+      System.out.println();
+      System.out.println("Comparison with baseline: " + baselineFile.getAbsolutePath() + " (threshold " + thresholdPercent + "%)");
+      System.out.println(comparison);
+      if (!comparison.getRegressions().isEmpty()) {
+        System.out.println(comparison.getRegressions().size() + " regression(s):");
+        for (String regression : comparison.getRegressions()) {
+          System.out.println("  " + regression);
+        }
+        System.exit(1);
+      }
+    }
+  }
+
+  /** Create a report from the given JMH results (one measurement per benchmark and parameter combination). */
+  public static BaselineReport createReport(Collection<RunResult> runResults) {
+    BaselineReport result = new BaselineReport();
+
+    for (RunResult runResult : runResults) {
+      BenchmarkParams params = runResult.getParams();
+      Result<?> primaryResult = runResult.getPrimaryResult();
+      double allocBytesPerOp = Double.NaN;
+
+      for (Map.Entry<String, Result> entry : runResult.getSecondaryResults().entrySet()) {
+        if (entry.getKey().endsWith(ALLOC_RATE_NORM_KEY)) {
+          allocBytesPerOp = entry.getValue().getScore();
+        }
+      }
+
+      result.addMeasurement(new Measurement(createLabel(params), primaryResult.getScore(), primaryResult.getScoreUnit(), params.getMode() == Mode.Throughput, allocBytesPerOp));
+    }
+
+    return result;
+  }
+
+  /** Return the benchmark name plus its parameters and thread count (e.g., "...EntityPathBenchmark.parse[path=/a/b.txt,threads=1]"). */
+  protected static String createLabel(BenchmarkParams params) {
+    StringBuilder result = new StringBuilder(params.getBenchmark());
+
+    result.append('[');
+    for (String key : params.getParamsKeys()) {
+      result.append(key).append('=').append(params.getParam(key)).append(',');
+    }
+    result.append("threads=").append(params.getThreads()).append(']');
+
+    return result.toString();
+  }
+}
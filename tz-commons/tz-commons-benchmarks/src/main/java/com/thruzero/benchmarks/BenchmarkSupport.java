@@ -0,0 +1,82 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+
+import com.thruzero.common.core.locator.ConfigLocator;
+
+/**
+ * Setup and sample data shared by the benchmarks.
+ *
+ * @author George Norman
+ */
+public class BenchmarkSupport {
+  public static final String CONFIG_FILE_PATH = "config/config.benchmarks.xml";
+
+  /** Setup the ConfigLocator (many components read their config keys when first loaded). */
+  public static void setUpConfig() {
+    ConfigLocator.reset();
+    ConfigLocator.setup(CONFIG_FILE_PATH, null);
+  }
+
+  public static void tearDownConfig() {
+    ConfigLocator.reset();
+  }
+
+  /**
+   * Create an XML document with the given number of item elements, each with attributes, text and a child element:
+   *
+   * <pre>
+   * {@code
+   * <root>
+   *   <item id="i0" type="type0">Item value 0<child name="c0">Child value 0</child></item>
+   *   ...
+   * </root>
+   * }
+   * </pre>
+   */
+  public static String createSampleXml(int itemCount) {
+    StringBuilder result = new StringBuilder("<root>");
+
+    for (int i = 0; i < itemCount; i++) {
+      result.append("<item id=\"i").append(i).append("\" type=\"type").append(i % 10).append("\">Item value ").append(i);
+      result.append("<child name=\"c").append(i).append("\">Child value ").append(i).append("</child></item>");
+    }
+    result.append("</root>");
+
+    return result.toString();
+  }
+
+  /** Create a new, empty temp directory for a benchmark data store. */
+  public static File createTempDir(String prefix) throws Exception {
+    File result = File.createTempFile(prefix, "");
+
+    if (!result.delete() || !result.mkdirs()) {
+      throw new IllegalStateException("Could not create temp directory: " + result);
+    }
+
+    return result;
+  }
+
+  public static void deleteTempDir(File dir) throws Exception {
+    if (dir != null) {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+}
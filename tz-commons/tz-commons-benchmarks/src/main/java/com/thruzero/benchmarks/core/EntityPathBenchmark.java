@@ -0,0 +1,74 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+
+/**
+ * Benchmark of {@code EntityPath} parsing (every DSC key is parsed from a string), plus the reverse conversion.
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityPathBenchmark {
+  @Param({"/name.txt", "/owner1@thruzero.com/context1a/name-one_1.txt", "/a/b/c/d/e/f/g/h/i/j/entity.xml"})
+  private String entityPathString;
+
+  private EntityPath entityPath;
+  private ContainerPath containerPath;
+  private String entityName;
+
+  @Setup
+  public void setUp() {
+    entityPath = new EntityPath(entityPathString);
+    containerPath = entityPath.getContainerPath();
+    entityName = entityPath.getEntityName();
+  }
+
+  @Benchmark
+  public EntityPath parse() {
+    return new EntityPath(entityPathString);
+  }
+
+  @Benchmark
+  public EntityPath createFromString() {
+    return EntityPath.createFromString(entityPathString);
+  }
+
+  @Benchmark
+  public EntityPath createFromContainerPath() {
+    return new EntityPath(containerPath, entityName);
+  }
+
+  @Benchmark
+  public String format() {
+    return entityPath.toString();
+  }
+}
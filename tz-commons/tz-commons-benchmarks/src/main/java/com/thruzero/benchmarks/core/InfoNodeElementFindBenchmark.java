@@ -0,0 +1,69 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.thruzero.benchmarks.BenchmarkSupport;
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
+
+/**
+ * Benchmark of the XPath queries {@code InfoNodeElement.find} and {@code findAll}, using simple child paths,
+ * predicates and descendant searches against a document of 100 items.
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InfoNodeElementFindBenchmark {
+  @Param({"item/child", "item[@id='i50']/child", ".//child[@name='c99']"})
+  private String xpathExpr;
+
+  private InfoNodeElement rootNode;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkSupport.setUpConfig();
+    rootNode = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(BenchmarkSupport.createSampleXml(100), null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkSupport.tearDownConfig();
+  }
+
+  @Benchmark
+  public Object find() throws Exception {
+    return rootNode.find(xpathExpr);
+  }
+
+  @Benchmark
+  public Object findAll() throws Exception {
+    return rootNode.findAll(xpathExpr);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.thruzero.benchmarks.BenchmarkSupport;
+import com.thruzero.common.core.locator.RegistryLocatorStrategy;
+import com.thruzero.common.core.service.Service;
+
+/**
+ * Benchmark of {@code RegistryLocatorStrategy.locate} for an instance that's already been created (i.e., the path taken
+ * by every locate call after startup), on a single thread and contended by 8 threads.
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegistryLocatorStrategyBenchmark {
+  private RegistryLocatorStrategy<Service> strategy;
+
+  // ---------------------------------------------------------
+  // Benchmark Service
+  // ---------------------------------------------------------
+
+  public static interface BenchmarkService extends Service {
+  }
+
+  public static final class BenchmarkServiceImpl implements BenchmarkService {
+  }
+
+  // ============================================================
+  // RegistryLocatorStrategyBenchmark
+  // ============================================================
+
+  @Setup
+  public void setUp() {
+    BenchmarkSupport.setUpConfig();
+    strategy = new RegistryLocatorStrategy<Service>(Service.class);
+    strategy.getRegistry().registerInterface(BenchmarkService.class, BenchmarkServiceImpl.class);
+    strategy.locate(BenchmarkService.class); // create the instance
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkSupport.tearDownConfig();
+  }
+
+  @Benchmark
+  public Service locate() {
+    return strategy.locate(BenchmarkService.class);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Service locateContended() {
+    return strategy.locate(BenchmarkService.class);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.strategy.MapSubstitutionStrategy;
+import com.thruzero.common.core.strategy.StrMatcherSubstitutionStrategy;
+import com.thruzero.common.core.strategy.SubstitutionStrategy;
+
+/**
+ * Benchmark of {@code replaceAll} for the {@code MapSubstitutionStrategy} and {@code StrMatcherSubstitutionStrategy},
+ * using the same variables and source text (each variable is referenced twice).
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubstitutionStrategyBenchmark {
+  @Param({"5", "50"})
+  private int variableCount;
+
+  private String source;
+  private SubstitutionStrategy mapStrategy;
+  private SubstitutionStrategy strMatcherStrategy;
+
+  @Setup
+  public void setUp() {
+    StringMap substitutionSpecs = new StringMap();
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < variableCount; i++) {
+      substitutionSpecs.put("var" + i, "value-" + i);
+    }
+    for (int i = 0; i < variableCount * 2; i++) {
+      text.append("Some text before the variable ${var").append(i % variableCount).append("} and some after. ");
+    }
+
+    source = text.toString();
+    mapStrategy = new MapSubstitutionStrategy(substitutionSpecs);
+    strMatcherStrategy = new StrMatcherSubstitutionStrategy(substitutionSpecs, "${", "}", '$');
+  }
+
+  @Benchmark
+  public String mapReplaceAll() {
+    return mapStrategy.replaceAll(source);
+  }
+
+  @Benchmark
+  public String strMatcherReplaceAll() {
+    return strMatcherStrategy.replaceAll(source);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dsc.dao.AbstractDataStoreDAO.DomainObjectTransformer;
+import com.thruzero.domain.dsc.dao.BinaryDomainObjectTransformer;
+import com.thruzero.domain.dsc.dao.GenericDscDAO.XStreamDomainObjectTransformer;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
+import com.thruzero.domain.model.Setting;
+
+/**
+ * Benchmark of {@code flatten} and {@code resurrect} of the {@code XStreamDomainObjectTransformer}, compared with the
+ * {@code BinaryDomainObjectTransformer}, using a Setting.
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DomainObjectTransformerBenchmark {
+  private static final EntityPath PRIMARY_KEY = new EntityPath("/settings/context1/name-1.txt");
+
+  @Param({"xstream", "binary"})
+  private String transformerType;
+
+  private DomainObjectTransformer<Setting> transformer;
+  private Setting setting;
+  private byte[] flattenedData;
+
+  @Setup
+  public void setUp() throws Exception {
+    if ("binary".equals(transformerType)) {
+      transformer = new BinaryDomainObjectTransformer<Setting>(Setting.class);
+    } else {
+      transformer = new XStreamDomainObjectTransformer<Setting>(Setting.class);
+    }
+
+    setting = new Setting();
+    setting.setId(PRIMARY_KEY);
+    setting.setContext("context1");
+    setting.setName("name-1");
+    setting.setValue("value-1");
+    setting.setDescription("A benchmark setting.");
+    setting.setEditable(true);
+
+    flattenedData = toBytes(transformer.flatten(setting));
+  }
+
+  /** Flatten, including reading the resulting stream (as a container does when writing the entity). */
+  @Benchmark
+  public byte[] flatten() throws Exception {
+    return toBytes(transformer.flatten(setting));
+  }
+
+  @Benchmark
+  public Setting resurrect() {
+    return transformer.resurrect(PRIMARY_KEY, new SimpleDataStoreEntity(new ByteArrayInputStream(flattenedData), PRIMARY_KEY));
+  }
+
+  private static byte[] toBytes(DataStoreEntity entity) throws Exception {
+    InputStream is = entity.getData();
+
+    try {
+      return IOUtils.toByteArray(is);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.thruzero.benchmarks.BenchmarkSupport;
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dsc.fs.FileDataStoreContainer;
+import com.thruzero.domain.dsc.fs.FileDataStoreContainerFactory.FileBaseStorePath;
+import com.thruzero.domain.dsc.fs.FileEntityIndex;
+import com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainer;
+import com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainerFactory;
+import com.thruzero.domain.dsc.store.DataStoreContainer;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
+import com.thruzero.domain.store.BaseStorePath;
+
+/**
+ * Benchmark of the CRUD operations of the {@code FileDataStoreContainer}, compared with the
+ * {@code IndexedFileDataStoreContainer}, using a container of 500 entities. As with the DAOs, a new container is created
+ * for each operation.
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileDataStoreContainerBenchmark {
+  private static final int ENTITY_COUNT = 500;
+  private static final ContainerPath CONTAINER_PATH = new ContainerPath("/benchmark/");
+  private static final byte[] DATA = BenchmarkSupport.createSampleXml(5).getBytes();
+
+  @Param({"file", "indexed"})
+  private String containerType;
+
+  private File rootDir;
+  private BaseStorePath baseStorePath;
+  private FileEntityIndex index;
+  private int counter;
+
+  @Setup
+  public void setUp() throws Exception {
+    rootDir = BenchmarkSupport.createTempDir("tz-dsc-benchmark");
+    baseStorePath = new FileBaseStorePath(rootDir.getAbsolutePath(), "FileDataStoreContainerBenchmark", null);
+    index = new FileEntityIndex();
+
+    DataStoreContainer container = createContainer();
+    for (int i = 0; i < ENTITY_COUNT; i++) {
+      container.saveOrUpdateEntity(entityName(i), createEntity(i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkSupport.deleteTempDir(rootDir);
+  }
+
+  @Benchmark
+  public int read() throws Exception {
+    DataStoreEntity entity = createContainer().readEntity(entityName(nextIndex()));
+    InputStream is = entity.getData();
+
+    try {
+      return IOUtils.toByteArray(is).length;
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  @Benchmark
+  public void update() {
+    int i = nextIndex();
+
+    createContainer().saveOrUpdateEntity(entityName(i), createEntity(i));
+  }
+
+  @Benchmark
+  public boolean createAndDelete() {
+    String name = "new-" + entityName(nextIndex());
+    DataStoreContainer container = createContainer();
+
+    container.saveOrUpdateEntity(name, new SimpleDataStoreEntity(new ByteArrayInputStream(DATA), new EntityPath(CONTAINER_PATH, name)));
+    container.deleteEntity(name);
+
+    return container.isExistingEntity(name);
+  }
+
+  @Benchmark
+  public boolean exists() {
+    return createContainer().isExistingEntity(entityName(nextIndex()));
+  }
+
+  @Benchmark
+  public List<EntityPath> list() {
+    return createContainer().getAllEntityPaths(false);
+  }
+
+  // support methods /////////////////////////////////////////////////////////
+
+  private DataStoreContainer createContainer() {
+    if ("indexed".equals(containerType)) {
+      return new IndexedFileDataStoreContainer(index, baseStorePath, CONTAINER_PATH, true, IndexedFileDataStoreContainerFactory.DEFAULT_STREAM_THRESHOLD);
+    } else {
+      return new FileDataStoreContainer(baseStorePath, CONTAINER_PATH, true);
+    }
+  }
+
+  private DataStoreEntity createEntity(int i) {
+    return new SimpleDataStoreEntity(new ByteArrayInputStream(DATA), new EntityPath(CONTAINER_PATH, entityName(i)));
+  }
+
+  private int nextIndex() {
+    counter = (counter + 1) % ENTITY_COUNT;
+
+    return counter;
+  }
+
+  private static String entityName(int i) {
+    return "entity" + i + ".xml";
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.benchmarks.web;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.thruzero.benchmarks.BenchmarkSupport;
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
+import com.thruzero.common.web.model.container.PanelSet;
+import com.thruzero.common.web.model.container.builder.xml.XmlPanelSetBuilder;
+import com.thruzero.common.web.model.container.builder.xml.XmlPanelSetBuilder.StandardXmlPanelBuilderTypeRegistry;
+import com.thruzero.common.web.model.container.builder.xml.XmlPanelSetBuilder.XmlPanelBuilderTypeRegistry;
+
+/**
+ * Benchmark of {@code XmlPanelSetBuilder.build}, for a panel set of list and HTML panels, built sequentially
+ * (timeOutInSeconds=0) and concurrently (timeOutInSeconds=5).
+ *
+ * @author George Norman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XmlPanelSetBuilderBenchmark {
+  @Param({"4", "16"})
+  private int panelCount;
+
+  @Param({"0", "5"})
+  private int timeOutInSeconds;
+
+  private InfoNodeElement panelSetNode;
+  private XmlPanelBuilderTypeRegistry registry;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkSupport.setUpConfig();
+
+    StringBuilder xml = new StringBuilder("<panelSet id=\"col1\" timeOutInSeconds=\"" + timeOutInSeconds + "\">");
+    for (int i = 0; i < panelCount; i++) {
+      if (i % 2 == 0) {
+        xml.append("<listPanel title=\"Panel-").append(i).append("\" id=\"col1_panel").append(i).append("\"><dataList>");
+        for (int j = 0; j < 5; j++) {
+          xml.append("<a href=\"item").append(i).append(j).append(".html\" title=\"Item-").append(i).append(j).append("\"/>");
+        }
+        xml.append("</dataList></listPanel>");
+      } else {
+        xml.append("<htmlPanel title=\"Panel-").append(i).append("\" id=\"col1_panel").append(i).append("\"><html>Some &lt;b&gt;HTML&lt;/b&gt; content.</html></htmlPanel>");
+      }
+    }
+    xml.append("</panelSet>");
+
+    panelSetNode = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(xml.toString(), null);
+    registry = new StandardXmlPanelBuilderTypeRegistry();
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkSupport.tearDownConfig();
+  }
+
+  @Benchmark
+  public PanelSet build() throws Exception {
+    return new XmlPanelSetBuilder(panelSetNode, registry).build();
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.thruzero.common.core.infonode;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 
 import org.apache.commons.lang3.StringUtils;
@@ -24,7 +26,6 @@ import org.jdom.JDOMException;
 import org.jdom.Namespace;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
-import org.jdom.xpath.XPath;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 
@@ -111,11 +112,10 @@ public class InfoNodeElement extends Element {
    * <pre>
    * "ChildElement1/TestOneElement[@TestOneAttributeOne='attrone2']"
    * </pre>
+   * The compiled expression is cached (see {@link InfoNodeXPathCache}).
    */
   public Object find(final String xpathExpr) throws JDOMException {
-    XPath xpath = XPath.newInstance(xpathExpr);
-
-    return xpath.selectSingleNode(this);
+    return InfoNodeXPathCache.DEFAULT.selectFirst(this, xpathExpr);
   }
 
   /**
@@ -137,9 +137,7 @@ public class InfoNodeElement extends Element {
   }
 
   public Object findAll(final String xpathExpr) throws JDOMException {
-    XPath xpath = XPath.newInstance(xpathExpr);
-
-    return xpath.selectNodes(this);
+    return InfoNodeXPathCache.DEFAULT.selectAll(this, xpathExpr);
   }
 
   public InfoNodeElement addChildNode(final InfoNodeElement child) {
@@ -164,6 +162,16 @@ public class InfoNodeElement extends Element {
     return xmlOutputter.outputString(this);
   }
 
+  /**
+   * Write this node, pretty-printed and UTF-8 encoded (like {@link #toStringFormatted()}), directly to the given stream,
+   * so the formatted document is never held in memory as a String. The stream is flushed, but not closed.
+   */
+  public void writeFormatted(final OutputStream out) throws IOException {
+    XMLOutputter xmlOutputter = new XMLOutputter(Format.getPrettyFormat());
+
+    xmlOutputter.output(this, out);
+  }
+
   public String toStringUnformatted() {
     XMLOutputter xmlOutputter = new XMLOutputter();
 
@@ -0,0 +1,451 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.infonode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jaxen.JaxenException;
+import org.jaxen.jdom.JDOMXPath;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.xpath.XPath;
+
+/**
+ * A bounded, thread-safe cache of compiled XPath expressions, used by {@link InfoNodeElement#find(String)} and
+ * {@link InfoNodeElement#findAll(String)}, so each expression is parsed once rather than on every query.
+ * <p>
+ * Simple paths (child steps, each with optional attribute equality predicates) are evaluated by a navigator that walks
+ * the child elements directly, without using the XPath engine. Examples:
+ *
+ * <pre>
+ * "dataList"
+ * "ChildElement1/TestOneElement[@TestOneAttributeOne='attrone2']"
+ * "*&#47;item[@type='rss'][@enabled='true']"
+ * </pre>
+ *
+ * All other expressions are compiled by Jaxen, whose compiled XPath objects are safe to share between threads.
+ * Expressions that contain a colon (e.g., namespace prefixes or axes) are not cached, since JDOM resolves namespace
+ * prefixes using the context node of each query.
+ * <p>
+ * Lookups don't lock: the compiled expressions are held by a {@code ConcurrentHashMap}. The cache is bounded by
+ * insertion, rather than by eviction; once it holds maxSize expressions, any other expression is compiled on each query
+ * (an application typically uses a small, fixed set of expressions, so the cache rarely fills).
+ *
+ * @author George Norman
+ */
+public class InfoNodeXPathCache {
+  /** The default maximum number of compiled expressions held by the cache. */
+  public static final int DEFAULT_MAX_SIZE = 512;
+
+  /** The cache used by InfoNodeElement. */
+  public static final InfoNodeXPathCache DEFAULT = new InfoNodeXPathCache(DEFAULT_MAX_SIZE);
+
+  private final int maxSize;
+  private final ConcurrentMap<String, CompiledPath> compiledPaths = new ConcurrentHashMap<String, CompiledPath>();
+  private final AtomicInteger reservedSize = new AtomicInteger();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong simplePathCount = new AtomicLong();
+  private final AtomicLong xpathEngineCount = new AtomicLong();
+  private final AtomicLong uncachedCount = new AtomicLong();
+
+  // ------------------------------------------------
+  // CompiledPath
+  // ------------------------------------------------
+
+  /** A compiled XPath expression that can be evaluated concurrently against any context node. */
+  public static interface CompiledPath {
+    /** Return the first node selected by this path (in document order), or null if none. */
+    Object selectFirst(Element context) throws JDOMException;
+
+    /** Return all nodes selected by this path (in document order). */
+    List<?> selectAll(Element context) throws JDOMException;
+  }
+
+  // ------------------------------------------------
+  // SimplePath
+  // ------------------------------------------------
+
+  /**
+   * A path of child steps, where each step is an element name (or "*") with optional attribute equality predicates,
+   * evaluated by walking the child elements of the context node.
+   */
+  public static class SimplePath implements CompiledPath {
+    private final Step[] steps;
+
+    private static class Step {
+      private final String name; // null matches any element
+      private final String[] attributeNames;
+      private final String[] attributeValues;
+
+      Step(String name, List<String> attributeNames, List<String> attributeValues) {
+        this.name = name;
+        this.attributeNames = attributeNames.toArray(new String[attributeNames.size()]);
+        this.attributeValues = attributeValues.toArray(new String[attributeValues.size()]);
+      }
+
+      boolean matches(Element element) {
+        if (name != null && !(name.equals(element.getName()) && element.getNamespaceURI().length() == 0)) {
+          return false;
+        }
+        for (int i = 0; i < attributeNames.length; i++) {
+          if (!attributeValues[i].equals(element.getAttributeValue(attributeNames[i]))) {
+            return false;
+          }
+        }
+
+        return true;
+      }
+    }
+
+    private SimplePath(List<Step> steps) {
+      this.steps = steps.toArray(new Step[steps.size()]);
+    }
+
+    /** Return the SimplePath for the given expression, or null if it's not a simple path. */
+    public static SimplePath parse(final String xpathExpr) {
+      List<Step> steps = new ArrayList<Step>();
+      int length = xpathExpr.length();
+      int pos = 0;
+
+      while (true) {
+        // name test
+        String name;
+        if (pos < length && xpathExpr.charAt(pos) == '*') {
+          name = null;
+          pos++;
+        } else {
+          int end = scanName(xpathExpr, pos);
+          if (end == pos) {
+            return null;
+          }
+          name = xpathExpr.substring(pos, end);
+          pos = end;
+        }
+
+        // predicates: [@name='value'] or [@name="value"]
+        List<String> attributeNames = new ArrayList<String>();
+        List<String> attributeValues = new ArrayList<String>();
+        while (pos < length && xpathExpr.charAt(pos) == '[') {
+          if (pos + 1 >= length || xpathExpr.charAt(pos + 1) != '@') {
+            return null;
+          }
+          int nameEnd = scanName(xpathExpr, pos + 2);
+          if (nameEnd == pos + 2 || nameEnd + 1 >= length || xpathExpr.charAt(nameEnd) != '=') {
+            return null;
+          }
+          char quote = xpathExpr.charAt(nameEnd + 1);
+          if (quote != '\'' && quote != '"') {
+            return null;
+          }
+          int valueEnd = xpathExpr.indexOf(quote, nameEnd + 2);
+          if (valueEnd < 0 || valueEnd + 1 >= length || xpathExpr.charAt(valueEnd + 1) != ']') {
+            return null;
+          }
+          attributeNames.add(xpathExpr.substring(pos + 2, nameEnd));
+          attributeValues.add(xpathExpr.substring(nameEnd + 2, valueEnd));
+          pos = valueEnd + 2;
+        }
+        steps.add(new Step(name, attributeNames, attributeValues));
+
+        if (pos == length) {
+          return new SimplePath(steps);
+        } else if (xpathExpr.charAt(pos) == '/') {
+          pos++;
+        } else {
+          return null;
+        }
+      }
+    }
+
+    @Override
+    public Object selectFirst(final Element context) {
+      return selectFirst(context, 0);
+    }
+
+    @Override
+    public List<?> selectAll(final Element context) {
+      List<Element> result = new ArrayList<Element>();
+
+      selectAll(context, 0, result);
+
+      return result;
+    }
+
+    /**
+     * Return true if the elements of the given path, starting at fromIndex, match the steps of this path (i.e., if the
+     * last element of the path would be selected by this path, relative to the element preceding fromIndex). This is
+     * used to match elements as they're streamed, where only the current element and its ancestors are known.
+     */
+    public boolean matchesPath(final List<? extends Element> path, final int fromIndex) {
+      if (fromIndex < 0 || path.size() - fromIndex != steps.length) {
+        return false;
+      }
+      for (int i = 0; i < steps.length; i++) {
+        if (!steps[i].matches(path.get(fromIndex + i))) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    /** Return the number of steps in this path. */
+    public int getStepCount() {
+      return steps.length;
+    }
+
+    /** Depth-first, so the first match found is the first in document order. */
+    private Element selectFirst(final Element parent, final int stepIndex) {
+      for (Object child : parent.getChildren()) {
+        Element element = (Element)child;
+
+        if (steps[stepIndex].matches(element)) {
+          Element result = stepIndex == steps.length - 1 ? element : selectFirst(element, stepIndex + 1);
+
+          if (result != null) {
+            return result;
+          }
+        }
+      }
+
+      return null;
+    }
+
+    private void selectAll(final Element parent, final int stepIndex, final List<Element> result) {
+      for (Object child : parent.getChildren()) {
+        Element element = (Element)child;
+
+        if (steps[stepIndex].matches(element)) {
+          if (stepIndex == steps.length - 1) {
+            result.add(element);
+          } else {
+            selectAll(element, stepIndex + 1, result);
+          }
+        }
+      }
+    }
+
+    /** Return the end of the XML name starting at pos (or pos, if there isn't one). */
+    private static int scanName(final String xpathExpr, final int pos) {
+      int result = pos;
+
+      if (result < xpathExpr.length() && (Character.isLetter(xpathExpr.charAt(result)) || xpathExpr.charAt(result) == '_')) {
+        result++;
+        while (result < xpathExpr.length()) {
+          char c = xpathExpr.charAt(result);
+
+          if (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.') {
+            result++;
+          } else {
+            break;
+          }
+        }
+      }
+
+      return result;
+    }
+  }
+
+  // ------------------------------------------------
+  // JaxenPath
+  // ------------------------------------------------
+
+  /** An expression compiled by Jaxen (used for expressions that aren't simple paths). */
+  public static class JaxenPath implements CompiledPath {
+    private final JDOMXPath xpath;
+
+    public JaxenPath(final String xpathExpr) throws JDOMException {
+      try {
+        xpath = new JDOMXPath(xpathExpr);
+      } catch (JaxenException e) {
+        throw new JDOMException("Invalid XPath expression: \"" + xpathExpr + "\"", e);
+      }
+    }
+
+    @Override
+    public Object selectFirst(final Element context) throws JDOMException {
+      try {
+        return xpath.selectSingleNode(context);
+      } catch (JaxenException e) {
+        throw new JDOMException("XPath error while evaluating \"" + xpath + "\": " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public List<?> selectAll(final Element context) throws JDOMException {
+      try {
+        return xpath.selectNodes(context);
+      } catch (JaxenException e) {
+        throw new JDOMException("XPath error while evaluating \"" + xpath + "\": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  // ------------------------------------------------
+  // UncachedPath
+  // ------------------------------------------------
+
+  /** Uses JDOM to parse the expression on each query (so namespace prefixes are resolved using the context node). */
+  private static class UncachedPath implements CompiledPath {
+    private final String xpathExpr;
+
+    UncachedPath(final String xpathExpr) {
+      this.xpathExpr = xpathExpr;
+    }
+
+    @Override
+    public Object selectFirst(final Element context) throws JDOMException {
+      return XPath.newInstance(xpathExpr).selectSingleNode(context);
+    }
+
+    @Override
+    public List<?> selectAll(final Element context) throws JDOMException {
+      return XPath.newInstance(xpathExpr).selectNodes(context);
+    }
+  }
+
+  // ============================================================
+  // InfoNodeXPathCache
+  // ============================================================
+
+  public InfoNodeXPathCache(final int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /** Return the compiled form of the given expression, compiling and caching it if necessary. */
+  public CompiledPath getCompiledPath(final String xpathExpr) throws JDOMException {
+    CompiledPath result;
+
+    if (xpathExpr.indexOf(':') >= 0) {
+      uncachedCount.incrementAndGet();
+      result = new UncachedPath(xpathExpr);
+    } else {
+      result = compiledPaths.get(xpathExpr);
+
+      if (result == null) {
+        missCount.incrementAndGet();
+        result = SimplePath.parse(xpathExpr);
+        if (result == null) {
+          result = new JaxenPath(xpathExpr);
+        }
+        result = putIfNotFull(xpathExpr, result);
+      } else {
+        hitCount.incrementAndGet();
+      }
+
+      if (result instanceof SimplePath) {
+        simplePathCount.incrementAndGet();
+      } else {
+        xpathEngineCount.incrementAndGet();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Cache the given compiled path, unless the cache is full, and return the cached path (another thread may have cached
+   * the same expression first). A slot is reserved before inserting, so concurrent inserts can't exceed maxSize.
+   */
+  protected CompiledPath putIfNotFull(final String xpathExpr, final CompiledPath compiledPath) {
+    CompiledPath result = compiledPath;
+
+    if (reservedSize.incrementAndGet() <= maxSize) {
+      CompiledPath existing = compiledPaths.putIfAbsent(xpathExpr, compiledPath);
+
+      if (existing != null) {
+        reservedSize.decrementAndGet();
+        result = existing;
+      }
+    } else {
+      reservedSize.decrementAndGet();
+      rejectedCount.incrementAndGet();
+    }
+
+    return result;
+  }
+
+  /** Return the first node selected by the given expression, relative to the given context node. */
+  public Object selectFirst(final Element context, final String xpathExpr) throws JDOMException {
+    return getCompiledPath(xpathExpr).selectFirst(context);
+  }
+
+  /** Return all nodes selected by the given expression, relative to the given context node. */
+  public List<?> selectAll(final Element context, final String xpathExpr) throws JDOMException {
+    List<?> result = getCompiledPath(xpathExpr).selectAll(context);
+
+    return result == null ? Collections.emptyList() : result;
+  }
+
+  public void clear() {
+    compiledPaths.clear();
+    reservedSize.set(0);
+  }
+
+  public int size() {
+    return compiledPaths.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Return the number of compiled expressions that were not cached, because the cache was full. */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /** Return the ratio of cache hits to cacheable lookups (0 if no lookups have been made). */
+  public float getHitRatio() {
+    long hits = hitCount.get();
+    long lookups = hits + missCount.get();
+
+    return lookups == 0 ? 0 : (float)hits / lookups;
+  }
+
+  /** Return the number of queries evaluated by the simple path navigator. */
+  public long getSimplePathCount() {
+    return simplePathCount.get();
+  }
+
+  /** Return the number of queries evaluated by the (cached) XPath engine. */
+  public long getXPathEngineCount() {
+    return xpathEngineCount.get();
+  }
+
+  /** Return the number of queries that were not cached (i.e., expressions with namespace prefixes or axes). */
+  public long getUncachedCount() {
+    return uncachedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "InfoNodeXPathCache[size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", rejected="
+        + getRejectedCount() + "], simplePaths=" + getSimplePathCount() + ", xpathEngine=" + getXPathEngineCount() + ", uncached=" + getUncachedCount();
+  }
+}
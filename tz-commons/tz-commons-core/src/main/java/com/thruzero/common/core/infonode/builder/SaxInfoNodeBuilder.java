@@ -15,11 +15,18 @@
  */
 package com.thruzero.common.core.infonode.builder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
-import org.apache.commons.collections.ArrayStack;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom.Attribute;
 import org.xml.sax.Attributes;
@@ -30,10 +37,13 @@ import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
 import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.InfoNodeXPathCache.SimplePath;
 import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilterChain;
 
 /**
- * A builder that uses a SAX parser to create a {@code InfoNodeElement} from an xml string.
+ * A builder that uses a SAX parser to create a {@code InfoNodeElement} from an xml string, {@code Reader} or
+ * {@code InputStream}. When building from a stream, the document is parsed directly from the stream (through the
+ * parser's bounded buffer), so it's never held in memory as a String or byte array.
  *
  * <p>
  * <b>Example:</b>
@@ -58,6 +68,23 @@ import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilterChain;
  * }
  * </pre>
  *
+ * <p>
+ * The pre-configured builders reuse a SAX parser and handler per thread (see {@link ParserOption#PER_THREAD_PARSER}),
+ * so the parser isn't looked up and created for each build. Use {@link #NEW_PARSER} if a new parser is required for
+ * each build.
+ *
+ * <p>
+ * <b>Streaming:</b> {@link #streamInfoNodes(String, InfoNodeMatcher, InfoNodeFilterChain, InfoNodeHandler)} builds only
+ * the elements accepted by an {@link InfoNodeMatcher} (along with their descendants); the rest of the document is
+ * skipped. Each matching subtree is passed to an {@link InfoNodeHandler} as soon as its end tag is parsed, and the
+ * handler can stop the parse early. For example, to build only the panel with id "news":
+ *
+ * <pre>
+ * {@code
+ * InfoNodeElement panel = SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("panel[@id='news']"), null);
+ * }
+ * </pre>
+ *
  * @author George Norman
  */
 public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
@@ -74,6 +101,57 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
   /** Builder providing parent document (full xpath support) and a primary key. */
   public static final SaxInfoNodeBuilder WITH_PRIMARY_KEY_AND_ROOT_NODE = new SaxInfoNodeBuilder(PrimaryKeyOption.GENERATE_PRIMARY_KEY, RootNodeOption.GENERATE_ROOT_NODE);
 
+  /** Same as DEFAULT, except a new SAX parser and handler are created for each build. */
+  public static final SaxInfoNodeBuilder NEW_PARSER = new SaxInfoNodeBuilder(PrimaryKeyOption.NO_PRIMARY_KEY, RootNodeOption.NO_ROOT_NODE, ParserOption.NEW_PARSER);
+
+  /** The capacity above which the per-thread value buffer is released after a build (so one large document isn't retained). */
+  private static final int MAX_RETAINED_VALUE_CAPACITY = 16 * 1024;
+
+  /** Set on a reused parser between builds, so it doesn't retain the handler (and the nodes) of the previous build. */
+  private static final DefaultHandler EMPTY_HANDLER = new DefaultHandler();
+
+  public enum ParserOption {NEW_PARSER, PER_THREAD_PARSER}
+
+  /** Matches each child of the root element (i.e., streams the top-level children of a document). */
+  public static final InfoNodeMatcher CHILD_NODE_MATCHER = new InfoNodeMatcher() {
+    @Override
+    public boolean matches(final List<InfoNodeElement> path) {
+      return path.size() == 2;
+    }
+  };
+
+  private final ParserOption parserOption;
+
+  private final ThreadLocal<ParserContext> parserContexts = new ThreadLocal<ParserContext>();
+
+  // ------------------------------------------------
+  // InfoNodeMatcher
+  // ------------------------------------------------
+
+  /**
+   * Selects the elements to build when streaming a document.
+   */
+  public static interface InfoNodeMatcher {
+    /**
+     * Return true if the last element of the given path should be built (along with its descendants). The path starts
+     * with the root element of the document and ends with the element that was just started. The elements of the path
+     * contain their name and attributes only (content and children are not available while streaming).
+     */
+    boolean matches(List<InfoNodeElement> path);
+  }
+
+  // ------------------------------------------------
+  // InfoNodeHandler
+  // ------------------------------------------------
+
+  /**
+   * Receives each matching subtree as it's built, while streaming a document.
+   */
+  public static interface InfoNodeHandler {
+    /** Handle the given subtree. Return false to stop parsing the remainder of the document. */
+    boolean handleInfoNode(InfoNodeElement infoNode);
+  }
+
   // ------------------------------------------------
   // NullInfoNodeElement
   // ------------------------------------------------
@@ -104,18 +182,30 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
   // ------------------------------------------------
 
   /**
-   * SAX2 event handler for building info nodes.
+   * SAX2 event handler for building info nodes. A handler can be reused for another build, after calling
+   * {@link #reset(InfoNodeElement, InfoNodeFilterChain)}.
    */
   public class InfoNodeSaxHandler extends DefaultHandler {
-    private final InfoNodeElement rootNode;
-    private final ArrayStack nodeStack = new ArrayStack();
-    private final StringBuffer elementValue = new StringBuffer();
+    private InfoNodeElement rootNode;
+    private final Deque<InfoNodeElement> nodeStack = new ArrayDeque<InfoNodeElement>();
+    private StringBuilder elementValue = new StringBuilder();
 
-    private final InfoNodeFilterChain infoNodeFilterChain;
+    private InfoNodeFilterChain infoNodeFilterChain;
 
     protected InfoNodeSaxHandler(final InfoNodeElement targetNode, final InfoNodeFilterChain infoNodeFilterChain) {
+      reset(targetNode, infoNodeFilterChain);
+    }
+
+    /** Prepare this handler to build the given target node (or release the previous build's nodes, if targetNode is null). */
+    protected void reset(final InfoNodeElement targetNode, final InfoNodeFilterChain infoNodeFilterChain) {
       this.rootNode = targetNode;
       this.infoNodeFilterChain = infoNodeFilterChain;
+      nodeStack.clear();
+      if (elementValue.capacity() > MAX_RETAINED_VALUE_CAPACITY) {
+        elementValue = new StringBuilder();
+      } else {
+        elementValue.setLength(0);
+      }
     }
 
     @Override
@@ -136,15 +226,6 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
     public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
       super.startElement(uri, localName, qName, attributes);
 
-      List<Attribute> infoNodeAttributeList = new ArrayList<Attribute>();
-      int len = attributes.getLength();
-      for (int i = 0; i < len; i++) {
-        String name = attributes.getLocalName(i);
-        String value = attributes.getValue(i);
-
-        infoNodeAttributeList.add(new Attribute(name, value));
-      }
-
       // reset filter before starting a new element.
       if (infoNodeFilterChain != null) {
         infoNodeFilterChain.reset();
@@ -152,10 +233,10 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
 
       // start the element
       InfoNodeElement infoNode;
-      if (nodeStack.empty()) {
+      if (nodeStack.isEmpty()) {
         infoNode = rootNode;
         infoNode.setName(localName);
-        infoNode.setAttributes(infoNodeAttributeList);
+        setAttributes(infoNode, attributes);
         infoNode = handleFilters(infoNode, infoNodeFilterChain);
 
         if (infoNode == null) {
@@ -171,13 +252,13 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
           infoNode = new InfoNodeElement();
           handlePrimaryKey(infoNode);
           infoNode.setName(localName);
-          infoNode.setAttributes(infoNodeAttributeList);
+          setAttributes(infoNode, attributes);
           infoNode = handleFilters(infoNode, infoNodeFilterChain);
 
           if (infoNode == null) {
             nodeStack.push(new NullInfoNodeElement());
           } else {
-            InfoNodeElement parentNode = (InfoNodeElement)nodeStack.get();
+            InfoNodeElement parentNode = nodeStack.peek();
             parentNode.addChildNode(infoNode);
             addValueTo(parentNode);
             nodeStack.push(infoNode);
@@ -197,7 +278,7 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
     public void endElement(final String uri, final String localName, final String qName) throws SAXException {
       super.endElement(uri, localName, qName);
 
-      InfoNodeElement currentNode = (InfoNodeElement)nodeStack.get();
+      InfoNodeElement currentNode = nodeStack.peek();
       addValueTo(currentNode);
       if (isNullElement()) {
         if (getNullElement().decrementDepth() <= 0) {
@@ -208,6 +289,11 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
       }
     }
 
+    /** Replace the attributes of the given node with the given SAX attributes. */
+    protected void setAttributes(final InfoNodeElement infoNode, final Attributes attributes) {
+      copyAttributes(infoNode, attributes);
+    }
+
     protected void addValueTo(final InfoNodeElement dn) {
       if (elementValue.length() != 0) {
         dn.addContent(elementValue.toString());
@@ -224,6 +310,133 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
     }
   }
 
+  // ------------------------------------------------
+  // StreamingSaxHandler
+  // ------------------------------------------------
+
+  /**
+   * SAX2 event handler that tracks the path to the current element and builds only the subtrees accepted by an
+   * InfoNodeMatcher (using an InfoNodeSaxHandler for each subtree).
+   */
+  private class StreamingSaxHandler extends DefaultHandler {
+    private final InfoNodeMatcher matcher;
+    private final InfoNodeFilterChain infoNodeFilterChain;
+    private final InfoNodeHandler infoNodeHandler;
+    private final List<InfoNodeElement> path = new ArrayList<InfoNodeElement>();
+    private final List<InfoNodeElement> readOnlyPath = Collections.unmodifiableList(path);
+
+    private InfoNodeSaxHandler subtreeHandler;
+    private InfoNodeElement subtreeNode;
+    private int subtreeDepth;
+
+    StreamingSaxHandler(final InfoNodeMatcher matcher, final InfoNodeFilterChain infoNodeFilterChain, final InfoNodeHandler infoNodeHandler) {
+      this.matcher = matcher;
+      this.infoNodeFilterChain = infoNodeFilterChain;
+      this.infoNodeHandler = infoNodeHandler;
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
+      if (subtreeHandler != null) {
+        subtreeDepth++;
+        subtreeHandler.startElement(uri, localName, qName, attributes);
+      } else {
+        InfoNodeElement pathElement = new InfoNodeElement();
+        pathElement.setName(localName);
+        copyAttributes(pathElement, attributes);
+        path.add(pathElement);
+
+        if (matcher.matches(readOnlyPath)) {
+          subtreeNode = new InfoNodeElement();
+          handlePrimaryKey(subtreeNode);
+          subtreeHandler = new InfoNodeSaxHandler(subtreeNode, infoNodeFilterChain);
+          subtreeDepth = 1;
+          subtreeHandler.startElement(uri, localName, qName, attributes);
+        }
+      }
+    }
+
+    @Override
+    public void characters(final char[] buffer, final int start, final int length) {
+      if (subtreeHandler != null) {
+        subtreeHandler.characters(buffer, start, length);
+      }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+      if (subtreeHandler != null) {
+        subtreeHandler.endElement(uri, localName, qName);
+        if (--subtreeDepth > 0) {
+          return;
+        }
+
+        InfoNodeElement infoNode = subtreeNode;
+        subtreeHandler = null;
+        subtreeNode = null;
+        path.remove(path.size() - 1);
+        handleRootNode(infoNode);
+        if (!infoNodeHandler.handleInfoNode(infoNode)) {
+          throw new StopParsingException();
+        }
+      } else {
+        path.remove(path.size() - 1);
+      }
+    }
+  }
+
+  // ------------------------------------------------
+  // StopParsingException
+  // ------------------------------------------------
+
+  /** Thrown by the StreamingSaxHandler to stop the parse, when an InfoNodeHandler requests it. */
+  private static class StopParsingException extends SAXException {
+    private static final long serialVersionUID = 1L;
+
+    StopParsingException() {
+      super("Parsing stopped by InfoNodeHandler.");
+    }
+  }
+
+  // ------------------------------------------------
+  // SimplePathMatcher
+  // ------------------------------------------------
+
+  /** Matches elements using a simple path (see {@link SaxInfoNodeBuilder#createPathMatcher(String)}). */
+  private static class SimplePathMatcher implements InfoNodeMatcher {
+    private final SimplePath simplePath;
+    private final boolean anyDepth;
+
+    SimplePathMatcher(final SimplePath simplePath, final boolean anyDepth) {
+      this.simplePath = simplePath;
+      this.anyDepth = anyDepth;
+    }
+
+    @Override
+    public boolean matches(final List<InfoNodeElement> path) {
+      return simplePath.matchesPath(path, anyDepth ? path.size() - simplePath.getStepCount() : 1);
+    }
+  }
+
+  // ------------------------------------------------
+  // ParserContext
+  // ------------------------------------------------
+
+  /**
+   * A SAX parser and handler that are reused by one thread. The context is marked as in-use during a build, so a nested
+   * build on the same thread (e.g., from a filter) uses a new parser instead.
+   */
+  private static class ParserContext {
+    private final XMLReader parser;
+    private final InfoNodeSaxHandler handler;
+    private boolean inUse;
+
+    ParserContext(final XMLReader parser, final InfoNodeSaxHandler handler) {
+      this.parser = parser;
+      this.handler = handler;
+    }
+  }
+
   // =============================================================
   // SaxInfoNodeBuilder
   // =============================================================
@@ -232,7 +445,13 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
    * Instead of creating a new builder, use one of the pre-configured builders (e.g., DEFAULT)
    */
   private SaxInfoNodeBuilder(final PrimaryKeyOption primaryKeyOption, final RootNodeOption rootNodeOption) {
+    this(primaryKeyOption, rootNodeOption, ParserOption.PER_THREAD_PARSER);
+  }
+
+  private SaxInfoNodeBuilder(final PrimaryKeyOption primaryKeyOption, final RootNodeOption rootNodeOption, final ParserOption parserOption) {
     super(primaryKeyOption, rootNodeOption);
+
+    this.parserOption = parserOption;
   }
 
   /** Build a complete {@code InfoNodeElement} from xml. */
@@ -245,24 +464,227 @@ public final class SaxInfoNodeBuilder extends AbstractInfoNodeBuilder {
     return doBuildInfoNode(xml, targetNode, infoNodeFilterChain);
   }
 
+  /**
+   * Build a complete {@code InfoNodeElement} from the xml read from the given stream (the encoding is detected by the
+   * parser, e.g., from the xml declaration; the default is UTF-8). The stream is not closed.
+   */
+  public InfoNodeElement buildInfoNode(final InputStream xml, final InfoNodeFilterChain infoNodeFilterChain) throws Exception {
+    return doBuildInfoNode(createInputSource(xml), new InfoNodeElement(), infoNodeFilterChain);
+  }
+
+  /** Build a complete {@code InfoNodeElement} from the xml read from the given reader. The reader is not closed. */
+  public InfoNodeElement buildInfoNode(final Reader xml, final InfoNodeFilterChain infoNodeFilterChain) throws Exception {
+    return doBuildInfoNode(createInputSource(xml), new InfoNodeElement(), infoNodeFilterChain);
+  }
+
+  /**
+   * Parse the given xml and build only the elements accepted by the given matcher (along with their descendants),
+   * passing each one to the given handler as soon as it's complete. Once an element is matched, its descendants are not
+   * matched (they're part of the matched element). The given filter chain is applied to the built elements only.
+   */
+  public void streamInfoNodes(final String xml, final InfoNodeMatcher matcher, final InfoNodeFilterChain infoNodeFilterChain, final InfoNodeHandler infoNodeHandler) throws Exception {
+    doStreamInfoNodes(createInputSource(xml), matcher, infoNodeFilterChain, infoNodeHandler);
+  }
+
+  /**
+   * Same as {@link #streamInfoNodes(String, InfoNodeMatcher, InfoNodeFilterChain, InfoNodeHandler)}, except the xml is
+   * parsed directly from the given stream (which is not closed).
+   */
+  public void streamInfoNodes(final InputStream xml, final InfoNodeMatcher matcher, final InfoNodeFilterChain infoNodeFilterChain, final InfoNodeHandler infoNodeHandler) throws Exception {
+    doStreamInfoNodes(createInputSource(xml), matcher, infoNodeFilterChain, infoNodeHandler);
+  }
+
+  /**
+   * Return the first element (in document order) accepted by the given matcher, or null if none. Parsing stops as soon
+   * as the first matching element is built.
+   */
+  public InfoNodeElement buildFirstInfoNode(final String xml, final InfoNodeMatcher matcher, final InfoNodeFilterChain infoNodeFilterChain) throws Exception {
+    final InfoNodeElement[] result = new InfoNodeElement[1];
+
+    streamInfoNodes(xml, matcher, infoNodeFilterChain, new InfoNodeHandler() {
+      @Override
+      public boolean handleInfoNode(final InfoNodeElement infoNode) {
+        result[0] = infoNode;
+        return false;
+      }
+    });
+
+    return result[0];
+  }
+
+  /**
+   * Return a matcher for the given xpath expression, if it can be evaluated while streaming; otherwise, return null.
+   * Supported expressions are simple paths relative to the root element (child steps with optional attribute equality
+   * predicates, e.g., "panel[@id='news']/item"), optionally preceded by "//" to match at any depth (e.g., "//item").
+   */
+  public static InfoNodeMatcher createPathMatcher(final String xpathExpr) {
+    boolean anyDepth = StringUtils.startsWith(xpathExpr, "//");
+    SimplePath simplePath = SimplePath.parse(anyDepth ? xpathExpr.substring(2) : xpathExpr);
+
+    return simplePath == null ? null : new SimplePathMatcher(simplePath, anyDepth);
+  }
+
   // IMPLEMENTATION //////////////////////////////////////////////////////////////////////////////////////////////////////
 
   /** construct complete {@code InfoNodeElement} from dom. */
   protected InfoNodeElement doBuildInfoNode(final String xml, final InfoNodeElement targetNode, final InfoNodeFilterChain infoNodeFilterChain) throws Exception {
+    return doBuildInfoNode(createInputSource(xml), targetNode, infoNodeFilterChain);
+  }
+
+  /** construct complete {@code InfoNodeElement} from the given input (or an empty one, if the input is null). */
+  protected InfoNodeElement doBuildInfoNode(final InputSource input, final InfoNodeElement targetNode, final InfoNodeFilterChain infoNodeFilterChain) throws Exception {
     handlePrimaryKey(targetNode);
-    if (StringUtils.isNotEmpty(xml)) {
-      XMLReader parser = XMLReaderFactory.createXMLReader();
-      InfoNodeSaxHandler dnHandler = new InfoNodeSaxHandler(targetNode, infoNodeFilterChain); // state for this build is kept in this InfoNode Handler instance
+    if (input != null) {
+      ParserContext context = acquireParserContext();
+      InfoNodeSaxHandler dnHandler; // state for this build is kept in this InfoNode Handler instance
 
-      parser.setContentHandler(dnHandler);
-      parser.setErrorHandler(dnHandler);
-      parser.setFeature("http://xml.org/sax/features/validation", false);
+      if (context == null) {
+        dnHandler = new InfoNodeSaxHandler(targetNode, infoNodeFilterChain);
+      } else {
+        dnHandler = context.handler;
+        dnHandler.reset(targetNode, infoNodeFilterChain);
+      }
 
-      InputSource input = new InputSource(new StringReader(xml));
-      parser.parse(input);
+      try {
+        parse(context, input, dnHandler);
+      } finally {
+        if (context != null) {
+          dnHandler.reset(null, null); // don't retain the nodes of this build
+        }
+      }
     }
     handleRootNode(targetNode);
 
     return targetNode;
   }
+
+  /** Stream the elements accepted by the given matcher from the given input (nothing is streamed, if the input is null). */
+  protected void doStreamInfoNodes(final InputSource input, final InfoNodeMatcher matcher, final InfoNodeFilterChain infoNodeFilterChain, final InfoNodeHandler infoNodeHandler) throws Exception {
+    if (input != null) {
+      try {
+        parse(acquireParserContext(), input, new StreamingSaxHandler(matcher, infoNodeFilterChain, infoNodeHandler));
+      } catch (StopParsingException e) {
+        // the handler has all it needs
+      }
+    }
+  }
+
+  /** Return an InputSource for the given xml, or null if it's empty. */
+  private static InputSource createInputSource(final String xml) {
+    return StringUtils.isEmpty(xml) ? null : new InputSource(new StringReader(xml));
+  }
+
+  /** Return an InputSource for the given stream, or null if it's null or empty (only the first byte is read ahead). */
+  private static InputSource createInputSource(final InputStream xml) throws IOException {
+    InputSource result = null;
+
+    if (xml != null) {
+      PushbackInputStream in = new PushbackInputStream(xml, 1);
+      int first = in.read();
+
+      if (first >= 0) {
+        in.unread(first);
+        result = new InputSource(in);
+      }
+    }
+
+    return result;
+  }
+
+  /** Return an InputSource for the given reader, or null if it's null or empty (only the first char is read ahead). */
+  private static InputSource createInputSource(final Reader xml) throws IOException {
+    InputSource result = null;
+
+    if (xml != null) {
+      PushbackReader in = new PushbackReader(xml, 1);
+      int first = in.read();
+
+      if (first >= 0) {
+        in.unread(first);
+        result = new InputSource(in);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Return this thread's parser context, marked as in-use, or null if a new parser must be used (i.e., the parser
+   * option is NEW_PARSER or this is a nested build).
+   */
+  private ParserContext acquireParserContext() throws SAXException {
+    ParserContext result = null;
+
+    if (parserOption == ParserOption.PER_THREAD_PARSER) {
+      result = parserContexts.get();
+      if (result == null) {
+        result = new ParserContext(createParser(), new InfoNodeSaxHandler(null, null));
+        parserContexts.set(result);
+      }
+
+      if (result.inUse) {
+        result = null;
+      } else {
+        result.inUse = true;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Parse the input using the given context's parser (or a new parser, if context is null) and release the context.
+   * If the parse fails, the context is discarded (the parser's state is unknown); a parse stopped by a handler is not
+   * a failure.
+   */
+  private void parse(final ParserContext context, final InputSource input, final DefaultHandler handler) throws Exception {
+    XMLReader parser = context == null ? createParser() : context.parser;
+    boolean success = false;
+
+    try {
+      parser.setContentHandler(handler);
+      parser.setErrorHandler(handler);
+      parser.parse(input);
+      success = true;
+    } catch (StopParsingException e) {
+      success = true;
+      throw e;
+    } finally {
+      if (context != null) {
+        parser.setContentHandler(EMPTY_HANDLER);
+        parser.setErrorHandler(EMPTY_HANDLER);
+        context.inUse = false;
+        if (!success) {
+          parserContexts.remove();
+        }
+      }
+    }
+  }
+
+  /** Return this thread's reused parser, or null if it doesn't have one (used by the unit tests). */
+  XMLReader getPerThreadParser() {
+    ParserContext context = parserContexts.get();
+
+    return context == null ? null : context.parser;
+  }
+
+  private XMLReader createParser() throws SAXException {
+    XMLReader result = XMLReaderFactory.createXMLReader();
+
+    result.setFeature("http://xml.org/sax/features/validation", false);
+
+    return result;
+  }
+
+  /** Replace the attributes of the given node with the given SAX attributes (without building an intermediate list). */
+  private static void copyAttributes(final InfoNodeElement infoNode, final Attributes attributes) {
+    if (!infoNode.getAttributes().isEmpty()) {
+      infoNode.getAttributes().clear();
+    }
+
+    int len = attributes.getLength();
+    for (int i = 0; i < len; i++) {
+      infoNode.setAttribute(new Attribute(attributes.getLocalName(i), attributes.getValue(i)));
+    }
+  }
 }
@@ -33,6 +33,10 @@ public abstract class AbstractInfoNodeFilter implements InfoNodeFilter {
     public FilterException(final String message) {
       super(message);
     }
+
+    public FilterException(final String message, final Throwable cause) {
+      super(message, cause);
+    }
   }
 
   // ===========================================================================
@@ -0,0 +1,106 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.thruzero.common.core.infonode.builder.filter;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import com.thruzero.common.core.utils.ClassUtils;
+import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+
+/**
+ * An immutable, thread-safe factory of InfoNodeFilterChain instances, created once from a list of filter class names
+ * (e.g., when a service is initialized). The filter classes are resolved when the factory is created; each
+ * {@link StatelessInfoNodeFilter} is instantiated only once and shared by every chain, while each of the other filters
+ * is instantiated (using its cached default constructor) for each chain.
+ * <p>
+ * Each chain returned by {@link #createFilterChain()} is a cheap cursor over the filters, to be used by a single parse
+ * (on a single thread); {@link InfoNodeFilterChain#reset()} still rewinds it to the first filter for each element.
+ *
+ * @author George Norman
+ */
+public final class InfoNodeFilterChainFactory {
+  private final InfoNodeFilter[] sharedFilters; // stateless filters, or null for each filter that's created per chain
+  private final Constructor<? extends InfoNodeFilter>[] filterConstructors; // null for each stateless filter
+  private final boolean stateless;
+
+  @SuppressWarnings("unchecked") // generic array creation
+  public InfoNodeFilterChainFactory(final List<String> filterClassNames) throws ClassUtilsException {
+    int size = filterClassNames.size();
+    boolean allStateless = true;
+
+    sharedFilters = new InfoNodeFilter[size];
+    filterConstructors = new Constructor[size];
+
+    for (int i = 0; i < size; i++) {
+      Class<? extends InfoNodeFilter> filterClass = ClassUtils.classFrom(filterClassNames.get(i));
+
+      if (StatelessInfoNodeFilter.class.isAssignableFrom(filterClass)) {
+        sharedFilters[i] = ClassUtils.instanceFrom(filterClass);
+      } else {
+        filterConstructors[i] = findDefaultConstructor(filterClass);
+        allStateless = false;
+      }
+    }
+
+    stateless = allStateless;
+  }
+
+  /** Return true if every filter is a StatelessInfoNodeFilter (i.e., creating a chain doesn't create any filters). */
+  public boolean isStateless() {
+    return stateless;
+  }
+
+  /**
+   * Return a new chain (cursor) over the filters, for use by a single parse.
+   *
+   * @throws AbstractInfoNodeFilter.FilterException
+   *           if a stateful filter couldn't be instantiated.
+   */
+  public InfoNodeFilterChain createFilterChain() {
+    InfoNodeFilter[] filters = sharedFilters;
+
+    if (!stateless) {
+      filters = sharedFilters.clone();
+
+      for (int i = 0; i < filters.length; i++) {
+        if (filters[i] == null) {
+          try {
+            filters[i] = filterConstructors[i].newInstance();
+          } catch (Exception e) {
+            throw new AbstractInfoNodeFilter.FilterException("ERROR: Couldn't create filter of type: " + filterConstructors[i].getDeclaringClass().getName() + ".", e);
+          }
+        }
+      }
+    }
+
+    return new SimpleInfoNodeFilterChain(filters);
+  }
+
+  private static Constructor<? extends InfoNodeFilter> findDefaultConstructor(final Class<? extends InfoNodeFilter> filterClass) throws ClassUtilsException {
+    try {
+      Constructor<? extends InfoNodeFilter> result = filterClass.getDeclaredConstructor();
+
+      result.setAccessible(true);
+
+      return result;
+    } catch (Exception e) {
+      throw new ClassUtilsException("ERROR: Default constructor was not found for: '" + filterClass.getName() + "'.", e);
+    }
+  }
+
+}
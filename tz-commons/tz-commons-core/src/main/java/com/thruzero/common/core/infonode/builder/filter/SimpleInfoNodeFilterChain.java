@@ -16,23 +16,28 @@
 
 package com.thruzero.common.core.infonode.builder.filter;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import com.thruzero.common.core.infonode.InfoNodeElement;
 
 /**
- * Simple implementation of InfoNodeFilterChain.
+ * Simple implementation of InfoNodeFilterChain. The chain is a cursor over an array of filters; it's cheap to create,
+ * but it's not thread-safe, so a new chain is used for each parse (see {@link InfoNodeFilterChainFactory}).
  *
  * @author George Norman
  */
 public class SimpleInfoNodeFilterChain implements InfoNodeFilterChain {
-  private final List<InfoNodeFilter> filterList;
+  private final InfoNodeFilter[] filters;
 
   private int filterIndex;
 
   public SimpleInfoNodeFilterChain(List<InfoNodeFilter> filterList) {
-    this.filterList = new ArrayList<InfoNodeFilter>(filterList); // shallow-copy the list
+    this.filters = filterList.toArray(new InfoNodeFilter[filterList.size()]); // shallow-copy the list
+  }
+
+  /** Create a chain that uses the given filters as is (the array is shared and must not be modified). */
+  SimpleInfoNodeFilterChain(InfoNodeFilter[] filters) {
+    this.filters = filters;
   }
 
   @Override
@@ -44,9 +49,9 @@ public class SimpleInfoNodeFilterChain implements InfoNodeFilterChain {
   public InfoNodeElement applyFilter(InfoNodeElement infoNode) {
     InfoNodeElement result;
 
-    if (filterIndex < filterList.size()) {
+    if (filterIndex < filters.length) {
       // apply next filter
-      result = filterList.get(filterIndex++).applyFilter(infoNode, this);
+      result = filters[filterIndex++].applyFilter(infoNode, this);
     } else {
       result = infoNode;
     }
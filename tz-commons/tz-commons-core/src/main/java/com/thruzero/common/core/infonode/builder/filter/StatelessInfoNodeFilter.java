@@ -0,0 +1,28 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.thruzero.common.core.infonode.builder.filter;
+
+/**
+ * A marker interface used by an InfoNodeFilter to declare that it holds no per-parse state (i.e., it's thread-safe), so
+ * a single shared instance may be used by every InfoNodeFilterChain, across threads (see
+ * {@link InfoNodeFilterChainFactory}). A filter that doesn't implement this interface is instantiated for each chain.
+ *
+ * @author George Norman
+ */
+public interface StatelessInfoNodeFilter extends InfoNodeFilter {
+
+}
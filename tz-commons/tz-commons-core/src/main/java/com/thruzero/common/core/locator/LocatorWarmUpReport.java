@@ -0,0 +1,151 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.locator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A thread-safe startup report, listing the time taken to create and initialize each binding warmed up by
+ * {@link RegistryLocatorStrategy#warmUp(java.util.concurrent.ExecutorService, LocatorWarmUpReport)}, along with any
+ * failures.
+ *
+ * @author George Norman
+ */
+public class LocatorWarmUpReport {
+  private final List<BindingTiming> bindingTimings = new ArrayList<BindingTiming>();
+  private volatile long totalElapsedMillis;
+
+  // ------------------------------------------------
+  // BindingTiming
+  // ------------------------------------------------
+
+  /** The time taken to warm up a single binding. */
+  public static class BindingTiming {
+    private final String targetInterfaceTypeName;
+    private final String interfaceName;
+    private final String instanceClassName;
+    private final long elapsedMillis;
+    private final Throwable failure;
+
+    public BindingTiming(final String targetInterfaceTypeName, final String interfaceName, final String instanceClassName, final long elapsedMillis,
+        final Throwable failure) {
+      this.targetInterfaceTypeName = targetInterfaceTypeName;
+      this.interfaceName = interfaceName;
+      this.instanceClassName = instanceClassName;
+      this.elapsedMillis = elapsedMillis;
+      this.failure = failure;
+    }
+
+    /** Return the type of interface managed by the locator that owns the binding (e.g., "com.thruzero.common.core.service.Service"). */
+    public String getTargetInterfaceTypeName() {
+      return targetInterfaceTypeName;
+    }
+
+    public String getInterfaceName() {
+      return interfaceName;
+    }
+
+    public String getInstanceClassName() {
+      return instanceClassName;
+    }
+
+    /** Return the time taken to create and initialize the instance (including any dependencies it located along the way). */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    /** Return the cause of the failure, or null if the instance was created successfully. */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    public boolean isFailed() {
+      return failure != null;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%6d ms  %s -> %s%s", elapsedMillis, interfaceName, instanceClassName, failure == null ? "" : "  FAILED: " + failure.getMessage());
+    }
+  }
+
+  // ============================================================================
+  // LocatorWarmUpReport
+  // ============================================================================
+
+  public void addBindingTiming(final String targetInterfaceTypeName, final String interfaceName, final String instanceClassName, final long elapsedMillis,
+      final Throwable failure) {
+    synchronized (bindingTimings) {
+      bindingTimings.add(new BindingTiming(targetInterfaceTypeName, interfaceName, instanceClassName, elapsedMillis, failure));
+    }
+  }
+
+  /** Return a snapshot of the binding timings, in the order they completed. */
+  public List<BindingTiming> getBindingTimings() {
+    synchronized (bindingTimings) {
+      return new ArrayList<BindingTiming>(bindingTimings);
+    }
+  }
+
+  public int getFailureCount() {
+    int result = 0;
+
+    for (BindingTiming bindingTiming : getBindingTimings()) {
+      if (bindingTiming.isFailed()) {
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+  /** Return the wall-clock time of the entire warm-up (set by the client that ran it). */
+  public long getTotalElapsedMillis() {
+    return totalElapsedMillis;
+  }
+
+  public void setTotalElapsedMillis(final long totalElapsedMillis) {
+    this.totalElapsedMillis = totalElapsedMillis;
+  }
+
+  /** Return a multi-line report, grouped by locator interface type. */
+  @Override
+  public String toString() {
+    List<BindingTiming> timings = getBindingTimings();
+    List<String> targetInterfaceTypeNames = new ArrayList<String>();
+    StringBuilder result = new StringBuilder();
+
+    for (BindingTiming bindingTiming : timings) {
+      if (!targetInterfaceTypeNames.contains(bindingTiming.getTargetInterfaceTypeName())) {
+        targetInterfaceTypeNames.add(bindingTiming.getTargetInterfaceTypeName());
+      }
+    }
+
+    result.append("Locator warm-up: ").append(timings.size()).append(" bindings in ").append(totalElapsedMillis).append(" ms (").append(getFailureCount())
+        .append(" failed)");
+    for (String targetInterfaceTypeName : targetInterfaceTypeNames) {
+      result.append("\n  ").append(targetInterfaceTypeName).append(':');
+      for (BindingTiming bindingTiming : timings) {
+        if (targetInterfaceTypeName.equals(bindingTiming.getTargetInterfaceTypeName())) {
+          result.append("\n    ").append(bindingTiming);
+        }
+      }
+    }
+
+    return result.toString();
+  }
+}
@@ -15,10 +15,16 @@
  */
 package com.thruzero.common.core.locator;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -87,6 +93,12 @@ import com.thruzero.common.core.utils.ExceptionUtilsExt;
  * When creating an application, you can choose to use the {@code config.domain.service.impl.xml} config file or create your
  * own custom configuration, perhaps mapping the interfaces to different implementations.
  * <p>
+ * Once an instance has been created and cached, {@link #locate(Class)} returns it without acquiring a lock (the instance
+ * cache is a {@code ConcurrentHashMap} and an instance is only cached after it has been fully initialized). Creation and
+ * initialization is serialized per binding, so each instance is created exactly once, while independent bindings may be
+ * created in parallel (see {@link #warmUp(ExecutorService, LocatorWarmUpReport)}). An instance whose creation overlaps
+ * a {@link #reset()} is returned to its caller, but not cached (it was created from a binding that no longer exists).
+ * <p>
  * Note: TODO-p1(george) Investigate replacing this with Guice: http://code.google.com/p/google-guice/
  *
  * @author George Norman
@@ -99,6 +111,8 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
   private final InstanceCache<T> instanceCache = new InstanceCache<T>();
   private final ReadWriteLock rwl = new ReentrantReadWriteLock();
   private final InterfaceBindingRegistry<T> interfaceBindingRegistry = new InterfaceBindingRegistry<T>(rwl);
+  private final ConcurrentMap<String, Object> creationLocks = new ConcurrentHashMap<String, Object>();
+  private volatile long generation; // incremented by reset (while write locked), so a creation that overlaps a reset isn't cached
 
   // -----------------------------------------------------------
   // LocatorException
@@ -221,8 +235,12 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
   // InstanceCache
   // -----------------------------------------------------------
 
+  /**
+   * The collection of created instances. Reads are lock-free; writes are made while holding the creation lock of the
+   * binding (or the write lock of the owning RegistryLocatorStrategy, on reset).
+   */
   public static class InstanceCache<T> {
-    private final Map<String, T> instances = new HashMap<String, T>();
+    private final Map<String, T> instances = new ConcurrentHashMap<String, T>();
 
     public void cacheInstance(final String interfaceName, final T instance) {
       // first, verify that there isn't an instance of this type already registered (these are Singletons)
@@ -250,11 +268,12 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
   // -----------------------------------------------------------
 
   /**
-   * The collection of registered interface-to-implementation bindings.
+   * The collection of registered interface-to-implementation bindings. Lookups are lock-free; registration and reset
+   * are write locked.
    */
   public static class InterfaceBindingRegistry<T> {
     private final ReadWriteLock rwl; // TODO-p1(george) revisit need to pass this in; should be able to easily make this a non-static class and access rwl from outer.
-    private Map<String, InterfaceToClassBinding<T>> bindingMap;
+    private volatile Map<String, InterfaceToClassBinding<T>> bindingMap;
 
     public InterfaceBindingRegistry(ReadWriteLock rwl) {
       this.rwl = rwl;
@@ -282,17 +301,19 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
     public void registerInterface(final InterfaceToClassBinding<T> binding) {
       rwl.writeLock().lock();
       try {
-        if (bindingMap == null) {
-          bindingMap = new HashMap<String, InterfaceToClassBinding<T>>();
+        Map<String, InterfaceToClassBinding<T>> map = bindingMap;
+        if (map == null) {
+          map = new ConcurrentHashMap<String, InterfaceToClassBinding<T>>();
+          bindingMap = map;
         }
 
         // error if attempting to register the same binding twice.
-        if (bindingMap.containsKey(binding.getInterfaceName())) {
+        if (map.containsKey(binding.getInterfaceName())) {
           throw ExceptionUtilsExt.logAndCreateLocatorException(logHelper.getLogger(),
                 "InterfaceBindingRegistry ERROR - Binding already exists for given interface: " + binding.getInterfaceName());
         }
 
-        bindingMap.put(binding.getInterfaceName(), binding);
+        map.put(binding.getInterfaceName(), binding);
         logHelper.logRegisteredInterface(binding);
       } finally {
         rwl.writeLock().unlock();
@@ -301,14 +322,22 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
 
     public InterfaceToClassBinding<T> getBindingFor(String interfaceName) {
       InterfaceToClassBinding<T> result = null;
+      Map<String, InterfaceToClassBinding<T>> map = bindingMap;
 
-      rwl.readLock().lock();
-      try {
-        if (bindingMap != null) {
-          result = bindingMap.get(interfaceName);
-        }
-      } finally {
-        rwl.readLock().unlock();
+      if (map != null) {
+        result = map.get(interfaceName);
+      }
+
+      return result;
+    }
+
+    /** Return a snapshot of the registered bindings (empty if none have been registered). */
+    public List<InterfaceToClassBinding<T>> getBindings() {
+      List<InterfaceToClassBinding<T>> result = new ArrayList<InterfaceToClassBinding<T>>();
+      Map<String, InterfaceToClassBinding<T>> map = bindingMap;
+
+      if (map != null) {
+        result.addAll(map.values());
       }
 
       return result;
@@ -355,6 +384,7 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
       }
       instanceCache.instances.clear();
       interfaceBindingRegistry.reset();
+      generation++;
     } finally {
       rwl.writeLock().unlock();
     }
@@ -367,26 +397,21 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
    */
   @Override
   public T locate(final Class<? extends T> type) {
-    T result;
     String typeName = type.getName();
 
-    rwl.readLock().lock();
-    try {
-      result = instanceCache.getInstance(typeName);
-    } finally {
-      rwl.readLock().unlock();
-    }
+    // fast path: lock-free read of a fully initialized instance (instances are cached only after initialization completes).
+    T result = instanceCache.getInstance(typeName);
 
-    // lazy-init the cache for each interface/instance as they are requested.
-    // TODO-p1(george) As an alternative, could create all instances and cache at the time the registry is created (see registerDefaultBindings)
+    // lazy-init the cache for each interface/instance as they are requested (or eagerly, via warmUp).
     if (result == null) {
-      // write protect entire initialization process, plus check that it's still not initialized (TODO-p1(george) probably not a safe solution 'Double-checked locking')
-      rwl.writeLock().lock();
-      try {
+      // serialize initialization of this binding, plus check that it's still not initialized (safe, since the cache is a ConcurrentHashMap).
+      // Other bindings are not blocked, so independent instances may be created in parallel.
+      synchronized (getCreationLock(typeName)) {
         result = instanceCache.getInstance(typeName);
         if (result == null) {
           // instance was not cached, so create one from the registered binding and cache it
-          InterfaceToClassBinding<T> binding = getRegisteredBinding(type); // this will acquire the lock again for read and possibly write
+          long expectedGeneration = generation;
+          InterfaceToClassBinding<T> binding = getRegisteredBinding(type); // this may acquire the write lock, to register the default bindings
 
           if (binding == null) {
             throw ExceptionUtilsExt.logAndCreateLocatorException(logHelper.getLogger(), "Error, interface is not registered: " + type);
@@ -394,11 +419,97 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
             // create the target instance
             result = doCreateTargetInstance(binding);
 
-            instanceCache.cacheInstance(typeName, result);
+            cacheInstanceIfNotReset(typeName, result, expectedGeneration);
           }
         }
-      } finally {
-        rwl.writeLock().unlock();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Eagerly create and initialize the instance of every registered binding (first registering the default bindings, if
+   * necessary), so the cost isn't paid by the first request to locate each one. Each binding is submitted to the given
+   * executor, so independent bindings are initialized in parallel; dependencies on other bindings are resolved on demand,
+   * via the normal locate path. Blocks until every binding has been attempted.
+   * <p>
+   * The time taken by each binding, and any failure, is added to the given report. A binding that fails is not cached,
+   * so it will be attempted again (and fail in the usual way) the next time it's located.
+   */
+  public void warmUp(final ExecutorService executor, final LocatorWarmUpReport report) {
+    if (interfaceBindingRegistry.bindingMap == null) {
+      registerDefaultBindings();
+    }
+
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (final InterfaceToClassBinding<T> binding : interfaceBindingRegistry.getBindings()) {
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          warmUpBinding(binding, report);
+        }
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LocatorException("Warm-up of interface types '" + targetInterfaceTypeName + "' was interrupted.", e);
+      } catch (ExecutionException e) {
+        // warmUpBinding handles its own failures, so this is unexpected
+        throw new LocatorException("Warm-up of interface types '" + targetInterfaceTypeName + "' failed.", e.getCause());
+      }
+    }
+  }
+
+  /** Locate the instance for the given binding, adding the time it took (or the failure) to the given report. */
+  protected void warmUpBinding(final InterfaceToClassBinding<T> binding, final LocatorWarmUpReport report) {
+    long start = System.nanoTime();
+    Throwable failure = null;
+
+    try {
+      Class<T> type = ClassUtils.classFrom(binding.getInterfaceName());
+
+      locate(type);
+    } catch (ClassUtilsException e) {
+      failure = e;
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+
+    report.addBindingTiming(targetInterfaceTypeName, binding.getInterfaceName(), binding.getInstanceClassName(), (System.nanoTime() - start) / 1000000, failure);
+  }
+
+  /**
+   * Cache the given instance, unless the registry was reset since expectedGeneration was read (the read lock excludes a
+   * concurrent reset, which holds the write lock).
+   */
+  private void cacheInstanceIfNotReset(final String interfaceName, final T instance, final long expectedGeneration) {
+    rwl.readLock().lock();
+    try {
+      if (generation == expectedGeneration) {
+        instanceCache.cacheInstance(interfaceName, instance);
+      } else {
+        logHelper.getLogger().debug("Registry was reset while creating the instance for: " + interfaceName + " (the instance is not cached).");
+      }
+    } finally {
+      rwl.readLock().unlock();
+    }
+  }
+
+  /** Return the lock used to serialize creation of the instance bound to the given interface name. */
+  private Object getCreationLock(final String interfaceName) {
+    Object result = creationLocks.get(interfaceName);
+
+    if (result == null) {
+      Object newLock = new Object();
+
+      result = creationLocks.putIfAbsent(interfaceName, newLock);
+      if (result == null) {
+        result = newLock;
       }
     }
 
@@ -555,8 +666,7 @@ public class RegistryLocatorStrategy<T extends Singleton> implements LocatorStra
       logHelper.logBindingsDiscovered(targetInterfaceTypeName);
       logHelper.logBeginRegisterInterfaces(targetInterfaceTypeName, config.getClass());
 
-      // write protect entire initialization process (caller should have already write locked this), plus check that it's still not initialized (TODO-p1(george)
-      // probably not a safe solution 'Double-checked locking')
+      // write protect entire initialization process (caller should have already write locked this), plus check that it's still not initialized.
       rwl.writeLock().lock();
       try {
         if (interfaceBindingRegistry.bindingMap == null) {
@@ -15,6 +15,8 @@
  */
 package com.thruzero.common.core.locator;
 
+import java.util.concurrent.ExecutorService;
+
 import com.thruzero.common.core.bookmarks.LocatorBookmark;
 import com.thruzero.common.core.locator.RegistryLocatorStrategy.InterfaceBindingRegistry;
 import com.thruzero.common.core.service.Service;
@@ -114,6 +116,14 @@ public class ServiceLocator {
     return type.cast(locatorStrategy.locate(type)); // use dynamic cast to avoid @SuppressWarnings("unchecked")
   }
 
+  /**
+   * Eagerly create and initialize every registered {@code Service}, using the given executor to initialize independent
+   * bindings in parallel. See {@link RegistryLocatorStrategy#warmUp(ExecutorService, LocatorWarmUpReport)}.
+   */
+  public static void warmUp(final ExecutorService executor, final LocatorWarmUpReport report) {
+    locatorStrategy.warmUp(executor, report);
+  }
+
   /** Clears the locator registry and bindings. */
   public static void reset() {
     locatorStrategy.reset();
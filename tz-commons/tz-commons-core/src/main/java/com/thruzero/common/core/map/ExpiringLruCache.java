@@ -0,0 +1,235 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.map;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache, bounded by size, that evicts the least-recently-used entry when full. Optionally, each entry
+ * expires after a fixed time-to-live (measured from the time it was put in the cache). Hit, miss and eviction counts
+ * are tracked so clients can measure the effectiveness of the cache.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {@code
+ * ExpiringLruCache<String, PanelSet> cache = new ExpiringLruCache<String, PanelSet>(500, TimeUnit.MINUTES.toMillis(30));
+ * PanelSet panelSet = cache.get(key);
+ *
+ * if (panelSet == null) {
+ *   panelSet = builder.build();
+ *   cache.put(key, panelSet);
+ * }
+ * }
+ * </pre>
+ *
+ * @author George Norman
+ * @param <K> type of key used to look up cached values.
+ * @param <V> type of the cached values.
+ */
+public class ExpiringLruCache<K, V> {
+  private final int maxSize;
+  private final long timeToLiveMillis;
+  private final Map<K, CacheEntry<V>> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  // ------------------------------------------------
+  // CacheEntry
+  // ------------------------------------------------
+
+  private static final class CacheEntry<V> {
+    private final V value;
+    private final long expirationTime;
+
+    CacheEntry(final V value, final long expirationTime) {
+      this.value = value;
+      this.expirationTime = expirationTime;
+    }
+
+    boolean isExpired(final long now) {
+      return expirationTime > 0 && now >= expirationTime;
+    }
+  }
+
+  // ------------------------------------------------
+  // EntryFilter
+  // ------------------------------------------------
+
+  /** Selects the entries removed by {@link ExpiringLruCache#removeIf(EntryFilter)}. */
+  public static interface EntryFilter<K, V> {
+    /** Return true if the entry with the given key and value should be removed. */
+    boolean accept(K key, V value);
+  }
+
+  // ============================================================================
+  // ExpiringLruCache
+  // ============================================================================
+
+  /**
+   * @param maxSize the maximum number of entries held by the cache, before the least-recently-used entry is evicted.
+   * @param timeToLiveMillis the time each entry remains valid after it was put in the cache (zero or less means entries never expire).
+   */
+  public ExpiringLruCache(final int maxSize, final long timeToLiveMillis) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be greater than zero: " + maxSize);
+    }
+
+    this.maxSize = maxSize;
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+        boolean result = size() > ExpiringLruCache.this.maxSize;
+
+        if (result) {
+          evictionCount.incrementAndGet();
+        }
+
+        return result;
+      }
+    };
+  }
+
+  /** Return the cached value for the given key, or null if absent or expired (expired entries are removed). */
+  public V get(final K key) {
+    V result = null;
+
+    synchronized (entries) {
+      CacheEntry<V> entry = entries.get(key);
+
+      if (entry != null) {
+        if (entry.isExpired(System.currentTimeMillis())) {
+          entries.remove(key);
+          evictionCount.incrementAndGet();
+        } else {
+          result = entry.value;
+        }
+      }
+    }
+
+    if (result == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+
+    return result;
+  }
+
+  /** Cache the given value, replacing any previous value for the given key. */
+  public void put(final K key, final V value) {
+    long expirationTime = timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : 0;
+
+    synchronized (entries) {
+      entries.put(key, new CacheEntry<V>(value, expirationTime));
+    }
+  }
+
+  /** Remove the value for the given key, returning the removed value (or null if it was absent). */
+  public V remove(final K key) {
+    CacheEntry<V> result;
+
+    synchronized (entries) {
+      result = entries.remove(key);
+    }
+
+    return result == null ? null : result.value;
+  }
+
+  /**
+   * Remove each entry accepted by the given filter (e.g., every entry derived from a changed entity), returning the
+   * number of entries removed. Unlike {@link #get(Object)}, the entries are inspected without counting hits or misses and
+   * without changing the least-recently-used order of the entries that remain.
+   */
+  public int removeIf(final EntryFilter<K, V> filter) {
+    int result = 0;
+
+    synchronized (entries) {
+      for (Iterator<Map.Entry<K, CacheEntry<V>>> iter = entries.entrySet().iterator(); iter.hasNext();) {
+        Map.Entry<K, CacheEntry<V>> entry = iter.next();
+
+        if (filter.accept(entry.getKey(), entry.getValue().value)) {
+          iter.remove();
+          result++;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /** Return a snapshot of the keys currently held by the cache (e.g., to find and remove a group of related entries). */
+  public List<K> getKeys() {
+    synchronized (entries) {
+      return new ArrayList<K>(entries.keySet());
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getTimeToLiveMillis() {
+    return timeToLiveMillis;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Return the ratio of hits to total lookups (0 if no lookups have been made). */
+  public float getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+
+    return total == 0 ? 0 : (float)hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return "size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount();
+  }
+}
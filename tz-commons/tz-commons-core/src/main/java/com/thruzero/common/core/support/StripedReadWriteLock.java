@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.support;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read/write locks, where each key is mapped to one of the locks by its hash code. Operations on the
+ * same key always use the same lock, while operations on different keys usually use different locks, so they don't
+ * block each other (e.g., to lock individual entities, identified by {@code EntityPath}, without keeping a lock per
+ * entity).
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {@code
+ * Lock lock = stripedLock.getLock(entityPath).writeLock();
+ * lock.lock();
+ * try {
+ *   ...
+ * } finally {
+ *   lock.unlock();
+ * }
+ * }
+ * </pre>
+ *
+ * Note: Two keys may share a lock, so a thread must not hold the lock of one key while acquiring the lock of another
+ * (unless the keys are always acquired in the same order).
+ *
+ * @author George Norman
+ */
+public class StripedReadWriteLock {
+  public static final int DEFAULT_STRIPE_COUNT = 64;
+
+  private final ReadWriteLock[] stripes;
+  private final int mask;
+
+  /** Create a striped lock with the default number of stripes. */
+  public StripedReadWriteLock() {
+    this(DEFAULT_STRIPE_COUNT);
+  }
+
+  /**
+   * @param stripeCount the minimum number of locks (rounded up to the next power of two).
+   */
+  public StripedReadWriteLock(final int stripeCount) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("stripeCount must be greater than zero: " + stripeCount);
+    }
+
+    int size = 1;
+    while (size < stripeCount) {
+      size <<= 1;
+    }
+
+    this.stripes = new ReadWriteLock[size];
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  /** Return the lock for the given key (a null key maps to the first lock). */
+  public ReadWriteLock getLock(final Object key) {
+    return stripes[key == null ? 0 : spread(key.hashCode()) & mask];
+  }
+
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
+  /** Spread the bits of the hash code, so keys that differ only in the high bits don't share a lock (same as HashMap). */
+  private static int spread(int hashCode) {
+    hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
+
+    return hashCode ^ (hashCode >>> 7) ^ (hashCode >>> 4);
+  }
+}
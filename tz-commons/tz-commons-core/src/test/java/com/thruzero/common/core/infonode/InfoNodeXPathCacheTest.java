@@ -0,0 +1,198 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.infonode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom.Attribute;
+import org.jdom.JDOMException;
+import org.jdom.xpath.XPath;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thruzero.common.core.infonode.InfoNodeXPathCache.CompiledPath;
+import com.thruzero.common.core.infonode.InfoNodeXPathCache.JaxenPath;
+import com.thruzero.common.core.infonode.InfoNodeXPathCache.SimplePath;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for InfoNodeXPathCache.
+ *
+ * @author George Norman
+ */
+public class InfoNodeXPathCacheTest extends AbstractCoreTestCase {
+  private static final String SAMPLE_XML = "<root>" +
+      "<item id=\"i1\" type=\"rss\"><child name=\"a\">A1</child><child name=\"b\">B1</child></item>" +
+      "<item id=\"i2\" type=\"html\"><child name=\"a\">A2</child></item>" +
+      "<item id=\"i3\" type=\"rss\"><child name=\"c\">C3</child><other>O3</other></item>" +
+      "<section><item id=\"i4\" type=\"rss\"><child name=\"a\">A4</child></item></section>" +
+      "</root>";
+
+  private static final String[] SIMPLE_PATHS = {
+      "item",
+      "item/child",
+      "item[@id='i3']/child",
+      "item[@type=\"rss\"]/child[@name='a']",
+      "item[@type='rss'][@id='i3']/other",
+      "*/child",
+      "*/item/child",
+      "section/item",
+      "item[@id='missing']",
+      "missing/child"
+  };
+
+  private InfoNodeElement rootNode;
+
+  @Before
+  public void setUpRootNode() throws Exception {
+    rootNode = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+  }
+
+  @Test
+  public void testSimplePathParsing() {
+    for (String path : SIMPLE_PATHS) {
+      assertNotNull("Should be a simple path: " + path, SimplePath.parse(path));
+    }
+
+    String[] notSimple = {"", "/root/item", "//child", ".//child", "item[1]", "item[@id]", "item/@id", "item/text()", "item[@id='i1' and @type='rss']", "item [@id='i1']", "item[@id='i1'",
+        "count(item)", ".", "../item", "item//child"};
+    for (String path : notSimple) {
+      assertNull("Should not be a simple path: " + path, SimplePath.parse(path));
+    }
+  }
+
+  @Test
+  public void testSimplePathMatchesXPath() throws Exception {
+    InfoNodeXPathCache cache = new InfoNodeXPathCache(InfoNodeXPathCache.DEFAULT_MAX_SIZE);
+
+    for (String path : SIMPLE_PATHS) {
+      XPath xpath = XPath.newInstance(path);
+
+      assertSame("find mismatch for: " + path, xpath.selectSingleNode(rootNode), cache.selectFirst(rootNode, path));
+      assertEquals("findAll mismatch for: " + path, xpath.selectNodes(rootNode), cache.selectAll(rootNode, path));
+    }
+    assertEquals(SIMPLE_PATHS.length * 2, cache.getSimplePathCount());
+    assertEquals(0, cache.getXPathEngineCount());
+  }
+
+  @Test
+  public void testXPathEngineFallback() throws Exception {
+    InfoNodeXPathCache cache = new InfoNodeXPathCache(InfoNodeXPathCache.DEFAULT_MAX_SIZE);
+    CompiledPath compiledPath = cache.getCompiledPath(".//child[@name='a']");
+
+    assertTrue(compiledPath instanceof JaxenPath);
+    assertEquals(3, compiledPath.selectAll(rootNode).size());
+    assertEquals("A1", ((InfoNodeElement)compiledPath.selectFirst(rootNode)).getText());
+    assertEquals("i2", ((Attribute)cache.selectFirst(rootNode, "item[2]/@id")).getValue());
+    assertEquals(2, cache.getXPathEngineCount());
+
+    // expressions with a colon aren't cached
+    assertEquals(3, cache.selectAll(rootNode, "descendant::child[@name='a']").size());
+    assertEquals(1, cache.getUncachedCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test(expected = JDOMException.class)
+  public void testInvalidExpression() throws Exception {
+    new InfoNodeXPathCache(InfoNodeXPathCache.DEFAULT_MAX_SIZE).selectFirst(rootNode, "item[");
+  }
+
+  @Test
+  public void testHitCountsAndBoundedSize() throws Exception {
+    InfoNodeXPathCache cache = new InfoNodeXPathCache(2);
+
+    cache.selectFirst(rootNode, "item");
+    cache.selectFirst(rootNode, "item");
+    cache.selectFirst(rootNode, "item/child");
+    cache.selectFirst(rootNode, "item");
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0.5f, cache.getHitRatio(), 0.001f);
+
+    // the cache is full, so "section/item" is compiled, but not cached
+    assertEquals("i4", ((InfoNodeElement)cache.selectFirst(rootNode, "section/item")).getAttributeValue("id"));
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getRejectedCount());
+    assertEquals(3, cache.getMissCount());
+
+    cache.selectFirst(rootNode, "item/child");
+    assertEquals(3, cache.getHitCount());
+  }
+
+  @Test
+  public void testInfoNodeElementFindUsesCache() throws Exception {
+    long simplePathCount = InfoNodeXPathCache.DEFAULT.getSimplePathCount();
+
+    assertEquals("B1", rootNode.findElement("item[@id='i1']/child[@name='b']").getText());
+    assertEquals(4, ((List<?>)rootNode.findAll("item/child")).size());
+    assertEquals(simplePathCount + 2, InfoNodeXPathCache.DEFAULT.getSimplePathCount());
+  }
+
+  @Test
+  public void testConcurrentLookups() throws Exception {
+    final int maxSize = 4;
+    final InfoNodeXPathCache cache = new InfoNodeXPathCache(maxSize);
+    final List<?>[] expected = new List<?>[SIMPLE_PATHS.length];
+    final AtomicInteger mismatchCount = new AtomicInteger();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    Thread[] threads = new Thread[8];
+
+    for (int i = 0; i < SIMPLE_PATHS.length; i++) {
+      expected[i] = XPath.newInstance(SIMPLE_PATHS[i]).selectNodes(rootNode);
+    }
+
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int i = 0; i < 500; i++) {
+              int pathIndex = (offset + i) % SIMPLE_PATHS.length;
+
+              if (!expected[pathIndex].equals(cache.selectAll(rootNode, SIMPLE_PATHS[pathIndex]))) {
+                mismatchCount.incrementAndGet();
+              }
+            }
+          } catch (Exception e) {
+            mismatchCount.incrementAndGet();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(0, mismatchCount.get());
+    assertEquals(maxSize, cache.size());
+    assertEquals(threads.length * 500, cache.getHitCount() + cache.getMissCount());
+    assertTrue(cache.getRejectedCount() > 0);
+  }
+}
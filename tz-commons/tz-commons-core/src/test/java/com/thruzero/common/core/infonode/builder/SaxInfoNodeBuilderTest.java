@@ -16,11 +16,33 @@
 package com.thruzero.common.core.infonode.builder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.thruzero.common.core.infonode.InfoNodeElement;
 import com.thruzero.common.core.infonode.builder.AbstractInfoNodeBuilder.RootNodeOption;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder.InfoNodeHandler;
+import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilter;
+import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilterChain;
+import com.thruzero.common.core.infonode.builder.filter.SimpleInfoNodeFilterChain;
 import com.thruzero.common.core.infonode.builder.utils.SampleInfoNodeBuilderUtils;
 import com.thruzero.common.core.infonode.builder.utils.SampleNodeBuilderUtils;
 import com.thruzero.test.support.AbstractCoreTestCase;
@@ -31,6 +53,7 @@ import com.thruzero.test.support.AbstractCoreTestCase;
  * @author George Norman
  */
 public class SaxInfoNodeBuilderTest extends AbstractCoreTestCase {
+  private static final String SAMPLE_XML = "<list a=\"A\"><item id=\"1\">One</item><item id=\"2\">Two<sub>S</sub></item></list>";
 
   @Test
   public void testSaxInfoNodeBuilder() throws Exception {
@@ -86,4 +109,201 @@ public class SaxInfoNodeBuilderTest extends AbstractCoreTestCase {
     SampleNodeBuilderUtils.assertEqualNormalizedChildValues(rootInfoNodeElement, "TestElementTwo", "TestElementTwoValue");
   }
 
+  @Test
+  public void testParserReuse() throws Exception {
+    InfoNodeElement first = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+    InfoNodeElement second = SaxInfoNodeBuilder.DEFAULT.buildInfoNode("<other b=\"B\">Other</other>", null);
+    InfoNodeElement third = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+
+    assertEquals(SaxInfoNodeBuilder.NEW_PARSER.buildInfoNode(SAMPLE_XML, null).toString(), first.toString());
+    assertEquals(first.toString(), third.toString());
+    assertEquals("other", second.getName());
+    assertEquals("B", second.getAttributeValue("b"));
+    assertEquals(null, second.getAttributeValue("a"));
+    assertEquals("Other", second.getText());
+  }
+
+  @Test
+  public void testParserReuseAfterParseError() throws Exception {
+    try {
+      SaxInfoNodeBuilder.DEFAULT.buildInfoNode("<list><item>One</list>", null);
+      fail("Expected a parse error");
+    } catch (SAXException e) {
+      // expected
+    }
+
+    InfoNodeElement result = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+    assertEquals("list", result.getName());
+    assertEquals(2, result.getChildren().size());
+  }
+
+  @Test
+  public void testStreamedBuild() throws Exception {
+    InfoNodeElement expected = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    expected.writeFormatted(out);
+    assertEquals(expected.toStringFormatted(), out.toString("UTF-8"));
+
+    InfoNodeElement fromStream = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(new ByteArrayInputStream(out.toByteArray()), null);
+    InfoNodeElement fromReader = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(new StringReader(SAMPLE_XML), null);
+    assertEquals(expected.toString(), fromStream.toString());
+    assertEquals(expected.toString(), fromReader.toString());
+
+    // an empty stream builds an empty node (like an empty string)
+    InfoNodeElement empty = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(new ByteArrayInputStream(new byte[0]), null);
+    assertEquals(0, empty.getChildren().size());
+  }
+
+  @Test
+  public void testNestedBuild() throws Exception {
+    // a filter that builds another node (on the same thread) while the outer build is in progress
+    InfoNodeFilter nestedBuildFilter = new InfoNodeFilter() {
+      @Override
+      public InfoNodeElement applyFilter(InfoNodeElement infoNode, InfoNodeFilterChain chain) {
+        if ("sub".equals(infoNode.getName())) {
+          try {
+            infoNode.addChildNode(SaxInfoNodeBuilder.DEFAULT.buildInfoNode("<nested n=\"N\">Nested</nested>", null));
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+
+        return chain.applyFilter(infoNode);
+      }
+
+      @Override
+      public void init() {
+      }
+
+      @Override
+      public void destroy() {
+      }
+    };
+    List<InfoNodeFilter> filterList = new ArrayList<InfoNodeFilter>();
+    filterList.add(nestedBuildFilter);
+
+    InfoNodeElement result = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, new SimpleInfoNodeFilterChain(filterList));
+
+    assertEquals("N", result.findElement("item[@id='2']/sub/nested").getAttributeValue("n"));
+    assertEquals("One", result.findElement("item[@id='1']").getText());
+  }
+
+  @Test
+  public void testConcurrentBuilds() throws Exception {
+    final String expected = SaxInfoNodeBuilder.NEW_PARSER.buildInfoNode(SAMPLE_XML, null).toString();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < 8; i++) {
+        tasks.add(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int j = 0; j < 500; j++) {
+              if (!expected.equals(SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null).toString())) {
+                return false;
+              }
+            }
+            return true;
+          }
+        });
+      }
+
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPerThreadParserIsKeptAndReleased() throws Exception {
+    SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null);
+    XMLReader parser = SaxInfoNodeBuilder.DEFAULT.getPerThreadParser();
+    assertNotNull(parser);
+
+    // the handlers of the last build are released
+    assertEquals(DefaultHandler.class, parser.getContentHandler().getClass());
+    assertEquals(DefaultHandler.class, parser.getErrorHandler().getClass());
+
+    // a parse stopped by the InfoNodeHandler is not a failure, so the parser is kept
+    SaxInfoNodeBuilder.DEFAULT.streamInfoNodes(SAMPLE_XML, SaxInfoNodeBuilder.CHILD_NODE_MATCHER, null, new InfoNodeHandler() {
+      @Override
+      public boolean handleInfoNode(InfoNodeElement infoNode) {
+        return false;
+      }
+    });
+    assertSame(parser, SaxInfoNodeBuilder.DEFAULT.getPerThreadParser());
+    assertEquals(DefaultHandler.class, parser.getContentHandler().getClass());
+  }
+
+  @Test
+  public void testBuildFirstInfoNode() throws Exception {
+    String xml = "<list><item id=\"1\">One</item><group><item id=\"2\">Two<sub>S</sub></item></group><item id=\"3\">Three</item></list>";
+
+    assertEquals("One", SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("item"), null).getText());
+    assertEquals("Three", SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("item[@id='3']"), null).getText());
+    assertNull(SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("item[@id='2']"), null));
+
+    InfoNodeElement item2 = SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("//item[@id='2']"), null);
+    assertEquals("Two", item2.getText());
+    assertEquals("S", item2.getChildText("sub"));
+    assertNull(item2.getParent());
+    assertEquals("list", SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml, SaxInfoNodeBuilder.createPathMatcher("//list"), null).getName());
+
+    // xpath expressions that can't be streamed
+    assertNull(SaxInfoNodeBuilder.createPathMatcher("item[2]"));
+    assertNull(SaxInfoNodeBuilder.createPathMatcher("/list/item"));
+  }
+
+  @Test
+  public void testStreamChildNodes() throws Exception {
+    final List<String> ids = new ArrayList<String>();
+
+    SaxInfoNodeBuilder.DEFAULT.streamInfoNodes(SAMPLE_XML, SaxInfoNodeBuilder.CHILD_NODE_MATCHER, null, new InfoNodeHandler() {
+      @Override
+      public boolean handleInfoNode(InfoNodeElement infoNode) {
+        ids.add(infoNode.getAttributeValue("id"));
+        return true;
+      }
+    });
+    assertEquals("[1, 2]", ids.toString());
+
+    // stop after the first child
+    ids.clear();
+    SaxInfoNodeBuilder.DEFAULT.streamInfoNodes(SAMPLE_XML, SaxInfoNodeBuilder.CHILD_NODE_MATCHER, null, new InfoNodeHandler() {
+      @Override
+      public boolean handleInfoNode(InfoNodeElement infoNode) {
+        ids.add(infoNode.getAttributeValue("id"));
+        return false;
+      }
+    });
+    assertEquals("[1]", ids.toString());
+
+    // the per-thread parser is still usable after a stopped parse
+    assertEquals(SaxInfoNodeBuilder.NEW_PARSER.buildInfoNode(SAMPLE_XML, null).toString(), SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, null).toString());
+  }
+
+  @Test
+  public void testStreamingMatchesFullTree() throws Exception {
+    StringBuilder xml = new StringBuilder("<panels>");
+    for (int i = 0; i < 2000; i++) {
+      xml.append("<panel id=\"p").append(i).append("\"><title>Panel ").append(i).append("</title><item>Item A</item><item>Item B</item></panel>");
+    }
+    xml.append("</panels>");
+    InfoNodeElement fullTree = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(xml.toString(), null);
+
+    for (String path : new String[] {"panel[@id='p0']", "panel[@id='p1000']", "panel[@id='p1999']"}) {
+      InfoNodeElement expected = fullTree.findElement(path);
+      InfoNodeElement streamed = SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml.toString(), SaxInfoNodeBuilder.createPathMatcher(path), null);
+
+      assertNotNull(streamed);
+      assertNull(streamed.getParent());
+      assertEquals(expected.toString(), streamed.toString());
+    }
+    assertNull(SaxInfoNodeBuilder.DEFAULT.buildFirstInfoNode(xml.toString(), SaxInfoNodeBuilder.createPathMatcher("panel[@id='p2000']"), null));
+  }
+
 }
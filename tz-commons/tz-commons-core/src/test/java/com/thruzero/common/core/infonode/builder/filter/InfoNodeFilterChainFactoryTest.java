@@ -0,0 +1,138 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.infonode.builder.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
+import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+import com.thruzero.test.support.AbstractContentionBenchmarkHelper;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for InfoNodeFilterChainFactory.
+ *
+ * @author George Norman
+ */
+public class InfoNodeFilterChainFactoryTest extends AbstractCoreTestCase {
+  private static final String SAMPLE_XML = "<list><item id=\"1\">One</item><item id=\"2\" private=\"true\">Two</item><item id=\"3\">Three</item></list>";
+
+  private static final List<InfoNodeFilter> createdFilters = Collections.synchronizedList(new ArrayList<InfoNodeFilter>());
+
+  // ------------------------------------------------
+  // RemovePrivateFilter
+  // ------------------------------------------------
+
+  /** A stateless filter that removes private nodes. */
+  public static class RemovePrivateFilter extends AbstractInfoNodeFilter implements StatelessInfoNodeFilter {
+    public RemovePrivateFilter() {
+      createdFilters.add(this);
+    }
+
+    @Override
+    public InfoNodeElement applyFilter(InfoNodeElement infoNode, InfoNodeFilterChain chain) {
+      return "true".equals(infoNode.getAttributeValue("private")) ? null : chain.applyFilter(infoNode);
+    }
+  }
+
+  // ------------------------------------------------
+  // CountingFilter
+  // ------------------------------------------------
+
+  /** A stateful filter that numbers each node it sees (so it must not be shared by concurrent parses). */
+  public static class CountingFilter extends AbstractInfoNodeFilter {
+    private int count;
+
+    public CountingFilter() {
+      createdFilters.add(this);
+    }
+
+    @Override
+    public InfoNodeElement applyFilter(InfoNodeElement infoNode, InfoNodeFilterChain chain) {
+      infoNode.setAttribute("n", Integer.toString(count++));
+
+      return chain.applyFilter(infoNode);
+    }
+  }
+
+  // ============================================================
+  // InfoNodeFilterChainFactoryTest
+  // ============================================================
+
+  @Test
+  public void testStatelessFiltersAreShared() throws Exception {
+    createdFilters.clear();
+    InfoNodeFilterChainFactory factory = new InfoNodeFilterChainFactory(Arrays.asList(RemovePrivateFilter.class.getName()));
+
+    assertTrue(factory.isStateless());
+    for (int i = 0; i < 10; i++) {
+      InfoNodeElement result = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, factory.createFilterChain());
+
+      assertEquals(2, result.getChildren().size());
+      assertNull(result.findElement("item[@id='2']"));
+    }
+    assertEquals("a stateless filter must be created only once", 1, createdFilters.size());
+  }
+
+  @Test
+  public void testStatefulFiltersArePerChain() throws Exception {
+    createdFilters.clear();
+    InfoNodeFilterChainFactory factory = new InfoNodeFilterChainFactory(Arrays.asList(RemovePrivateFilter.class.getName(), CountingFilter.class.getName()));
+
+    assertFalse(factory.isStateless());
+    assertEquals(1, createdFilters.size());
+
+    for (int i = 0; i < 3; i++) {
+      InfoNodeElement result = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, factory.createFilterChain());
+
+      // the chain is reset for each element, so every (non-private) element reaches the counting filter; each parse starts at 0
+      assertEquals("0", result.getAttributeValue("n"));
+      assertEquals("1", result.findElement("item[@id='1']").getAttributeValue("n"));
+      assertEquals("2", result.findElement("item[@id='3']").getAttributeValue("n"));
+    }
+    assertEquals("a stateful filter must be created for each chain", 4, createdFilters.size());
+  }
+
+  @Test
+  public void testConcurrentChains() throws Exception {
+    final InfoNodeFilterChainFactory factory = new InfoNodeFilterChainFactory(Arrays.asList(RemovePrivateFilter.class.getName(), CountingFilter.class.getName()));
+    final String expected = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, factory.createFilterChain()).toString();
+
+    new AbstractContentionBenchmarkHelper() {
+      @Override
+      protected void doExecute(int threadIndex, int iteration) throws Exception {
+        assertEquals(expected, SaxInfoNodeBuilder.DEFAULT.buildInfoNode(SAMPLE_XML, factory.createFilterChain()).toString());
+      }
+    }.execute(16, 200);
+  }
+
+  @Test(expected = ClassUtilsException.class)
+  public void testInvalidFilterClassName() throws Exception {
+    new InfoNodeFilterChainFactory(Arrays.asList("com.thruzero.InvalidFilter"));
+  }
+
+}
@@ -0,0 +1,243 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.locator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import com.thruzero.common.core.locator.LocatorWarmUpReport.BindingTiming;
+import com.thruzero.common.core.service.Service;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for RegistryLocatorStrategy (the throughput of locate is measured by the RegistryLocatorStrategyBenchmark, in
+ * the tz-commons-benchmarks module).
+ *
+ * @author George Norman
+ */
+public class RegistryLocatorStrategyTest extends AbstractCoreTestCase {
+  private static final Logger logger = Logger.getLogger(RegistryLocatorStrategyTest.class);
+
+  private static final int LOOKUPS_PER_THREAD = 20000;
+  private static final int LOOKUP_THREAD_COUNT = 8;
+
+  private static final AtomicInteger creationCount = new AtomicInteger();
+
+  /** Both slow services must be constructed at the same time to pass this barrier (i.e., only if they're warmed up in parallel). */
+  private static CyclicBarrier slowServiceBarrier;
+
+  /** Counted down once a BlockingService is being constructed, which then waits for the release gate. */
+  private static CountDownLatch blockingServiceStarted;
+  private static CountDownLatch blockingServiceRelease;
+
+  // ---------------------------------------------------------
+  // Test Service
+  // ---------------------------------------------------------
+
+  public static interface SampleService extends Service {
+  }
+
+  public static final class SampleServiceImpl implements SampleService {
+    private SampleServiceImpl() {
+      creationCount.incrementAndGet();
+    }
+  }
+
+  public static interface SlowServiceA extends Service {
+  }
+
+  public static interface SlowServiceB extends Service {
+  }
+
+  public static final class SlowServiceAImpl implements SlowServiceA {
+    private SlowServiceAImpl() throws Exception {
+      slowServiceBarrier.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  public static final class SlowServiceBImpl implements SlowServiceB {
+    private SlowServiceBImpl() throws Exception {
+      slowServiceBarrier.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  public static interface MissingService extends Service {
+  }
+
+  public static interface BlockingService extends Service {
+  }
+
+  public static final class BlockingServiceImpl implements BlockingService {
+    private BlockingServiceImpl() throws Exception {
+      blockingServiceStarted.countDown();
+      blockingServiceRelease.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  // ============================================================================
+  // RegistryLocatorStrategyTest
+  // ============================================================================
+
+  @Test
+  public void testConcurrentFirstLocateCreatesOneInstance() throws Exception {
+    final RegistryLocatorStrategy<Service> strategy = createStrategy();
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final Object[] located = new Object[8];
+    Thread[] threads = new Thread[located.length];
+
+    creationCount.set(0);
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            startGate.await();
+            located[index] = strategy.locate(SampleService.class);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    startGate.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1, creationCount.get());
+    for (Object instance : located) {
+      assertSame(located[0], instance);
+    }
+  }
+
+  @Test
+  public void testWarmUpInitializesIndependentBindingsInParallel() throws Exception {
+    RegistryLocatorStrategy<Service> strategy = new RegistryLocatorStrategy<Service>(Service.class);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    LocatorWarmUpReport report = new LocatorWarmUpReport();
+
+    slowServiceBarrier = new CyclicBarrier(2);
+    strategy.getRegistry().registerInterface(SlowServiceA.class, SlowServiceAImpl.class);
+    strategy.getRegistry().registerInterface(SlowServiceB.class, SlowServiceBImpl.class);
+    strategy.getRegistry().registerInterface(new InterfaceToClassBinding<Service>(MissingService.class.getName(), "com.thruzero.MissingServiceImpl"));
+    try {
+      strategy.warmUp(executor, report);
+    } finally {
+      executor.shutdown();
+    }
+    logger.debug("##### " + report);
+
+    assertEquals(3, report.getBindingTimings().size());
+    assertEquals(1, report.getFailureCount());
+    for (BindingTiming bindingTiming : report.getBindingTimings()) {
+      assertEquals(MissingService.class.getName().equals(bindingTiming.getInterfaceName()), bindingTiming.isFailed());
+    }
+
+    // the slow services were cached, so locate returns the warmed-up instances.
+    assertNotNull(strategy.locate(SlowServiceA.class));
+    assertNotNull(strategy.locate(SlowServiceB.class));
+    assertTrue(report.toString().contains(SlowServiceBImpl.class.getName()));
+  }
+
+  @Test
+  public void testInstanceCreatedDuringResetIsNotCached() throws Exception {
+    final RegistryLocatorStrategy<Service> strategy = new RegistryLocatorStrategy<Service>(Service.class);
+    final Object[] located = new Object[1];
+
+    blockingServiceStarted = new CountDownLatch(1);
+    blockingServiceRelease = new CountDownLatch(1);
+    strategy.getRegistry().registerInterface(BlockingService.class, BlockingServiceImpl.class);
+
+    Thread creator = new Thread() {
+      @Override
+      public void run() {
+        located[0] = strategy.locate(BlockingService.class);
+      }
+    };
+    creator.start();
+    assertTrue(blockingServiceStarted.await(5, TimeUnit.SECONDS));
+
+    strategy.reset();
+    blockingServiceRelease.countDown();
+    creator.join();
+    assertNotNull(located[0]);
+
+    // the instance created from the binding that was reset wasn't cached, so the new binding creates a new instance
+    strategy.getRegistry().registerInterface(BlockingService.class, BlockingServiceImpl.class);
+    Service instance = strategy.locate(BlockingService.class);
+    assertNotSame(located[0], instance);
+    assertSame(instance, strategy.locate(BlockingService.class));
+  }
+
+  @Test
+  public void testConcurrentLocateReturnsCachedInstance() throws Exception {
+    final RegistryLocatorStrategy<Service> strategy = createStrategy();
+    final Service instance = strategy.locate(SampleService.class);
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final CountDownLatch endGate = new CountDownLatch(LOOKUP_THREAD_COUNT);
+    final AtomicInteger mismatchCount = new AtomicInteger();
+
+    for (int i = 0; i < LOOKUP_THREAD_COUNT; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            startGate.await();
+            for (int j = 0; j < LOOKUPS_PER_THREAD; j++) {
+              if (strategy.locate(SampleService.class) != instance) {
+                mismatchCount.incrementAndGet();
+              }
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            endGate.countDown();
+          }
+        }
+      }.start();
+    }
+    startGate.countDown();
+    assertTrue(endGate.await(30, TimeUnit.SECONDS));
+
+    assertEquals(0, mismatchCount.get());
+    assertEquals(1, strategy.getRegistry().getBindings().size());
+  }
+
+  // Support methods /////////////////////////////////////////////////////////
+
+  private RegistryLocatorStrategy<Service> createStrategy() {
+    RegistryLocatorStrategy<Service> result = new RegistryLocatorStrategy<Service>(Service.class);
+
+    result.getRegistry().registerInterface(SampleService.class, SampleServiceImpl.class);
+
+    return result;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.core.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.thruzero.common.core.map.ExpiringLruCache.EntryFilter;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for ExpiringLruCache.
+ *
+ * @author George Norman
+ */
+public class ExpiringLruCacheTest extends AbstractCoreTestCase {
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(2, 0);
+
+    cache.put("a", "A");
+    cache.put("b", "B");
+    assertEquals("A", cache.get("a")); // "b" is now the least-recently used entry
+    cache.put("c", "C");
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testTimeToLive() throws Exception {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(10, 20);
+
+    cache.put("a", "A");
+    assertEquals("A", cache.get("a"));
+    Thread.sleep(40);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testHitAndMissCounts() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(10, 0);
+
+    cache.put("a", "A");
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+    cache.remove("a");
+    cache.get("a");
+
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0.5f, cache.getHitRatio(), 0.001f);
+  }
+
+  @Test
+  public void testRemoveIf() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(3, 0);
+
+    cache.put("a", "A");
+    cache.put("b", "B");
+    cache.put("c", "C");
+    int removedCount = cache.removeIf(new EntryFilter<String, String>() {
+      @Override
+      public boolean accept(String key, String value) {
+        return "b".equals(key) || "C".equals(value);
+      }
+    });
+
+    assertEquals(2, removedCount);
+    assertEquals(1, cache.size());
+
+    // the filter doesn't count as a lookup or make "a" the most-recently used entry
+    assertEquals(0, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+    cache.put("d", "D");
+    cache.put("e", "E");
+    cache.put("f", "F");
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+}
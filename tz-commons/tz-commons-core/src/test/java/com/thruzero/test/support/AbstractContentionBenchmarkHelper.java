@@ -0,0 +1,94 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.test.support;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.log4j.Logger;
+
+/**
+ * An abstract base class that runs a function concurrently from many threads, all released at the same instant, in
+ * order to measure (and expose errors caused by) contention on shared state.
+ *
+ * @author George Norman
+ */
+public abstract class AbstractContentionBenchmarkHelper {
+  private static final Logger logger = Logger.getLogger(AbstractContentionBenchmarkHelper.class);
+
+  /**
+   * Run doExecute numIterations times on each of numThreads threads and return the elapsed time (in ms). The first
+   * exception thrown by any thread is re-thrown, after all threads have finished.
+   */
+  public long execute(final int numThreads, final int numIterations) throws Exception {
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    final CountDownLatch doneSignal = new CountDownLatch(numThreads);
+    final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+
+    for (int i = 0; i < numThreads; i++) {
+      final int threadIndex = i;
+      Thread thread = new Thread(getClass().getSimpleName() + "-" + threadIndex) {
+        @Override
+        public void run() {
+          try {
+            startSignal.await();
+
+            for (int j = 0; j < numIterations; j++) {
+              doExecute(threadIndex, j);
+            }
+          } catch (Throwable e) {
+            firstError.compareAndSet(null, e);
+          } finally {
+            try {
+              doThreadTeardown(threadIndex);
+            } catch (Throwable e) {
+              firstError.compareAndSet(null, e);
+            }
+            doneSignal.countDown();
+          }
+        }
+      };
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    // release all threads at once, so they contend for the same state
+    StopWatch timer = new StopWatch();
+    timer.start();
+    startSignal.countDown();
+    doneSignal.await();
+    timer.stop();
+
+    if (firstError.get() != null) {
+      throw new Exception("Contention benchmark failed: " + firstError.get(), firstError.get());
+    }
+
+    long numCalls = (long)numThreads * numIterations;
+    logger.debug(String.format("##### %s: %d threads x %d iterations in %dms (%.0f calls/sec)", getClass().getSimpleName(), numThreads, numIterations, timer.getTime(),
+        numCalls * 1000.0 / Math.max(1, timer.getTime())));
+
+    return timer.getTime();
+  }
+
+  /** Execute the contended function once, from the given thread. */
+  protected abstract void doExecute(int threadIndex, int iteration) throws Exception;
+
+  /** Optional per-thread cleanup (e.g., release a thread-bound transaction), called from each thread when it's done. */
+  protected void doThreadTeardown(int threadIndex) throws Exception {
+  }
+
+}
@@ -15,9 +15,33 @@
  */
 package com.thruzero.domain.dsc.dao;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 
 import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
 import com.thruzero.common.core.locator.Initializable;
@@ -30,17 +54,28 @@ import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.support.KeyGen;
 import com.thruzero.common.core.support.SimpleIdGenerator;
 import com.thruzero.common.core.support.SimpleInfo;
+import com.thruzero.common.core.support.StripedReadWriteLock;
 import com.thruzero.common.core.utils.ClassUtils;
 import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+import com.thruzero.domain.dao.EntityChangeSource;
 import com.thruzero.domain.dao.GenericDAO;
+import com.thruzero.domain.dao.TransactionalDAO;
+import com.thruzero.domain.dsc.fs.DscTransactionMgr;
+import com.thruzero.domain.dsc.fs.DscTransactionMgr.DscTransaction;
+import com.thruzero.domain.dsc.fs.DscTransactionMgr.WriteType;
+import com.thruzero.domain.dsc.fs.FileChangeWatcher;
+import com.thruzero.domain.dsc.fs.FileDataStoreContainerFactory;
+import com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainerFactory;
 import com.thruzero.domain.dsc.store.DataStoreContainer;
 import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntityWriter;
 import com.thruzero.domain.dsc.store.DataStoreContainerFactory;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
 import com.thruzero.domain.store.BaseStorePath;
 import com.thruzero.domain.store.Persistent;
 
 /**
- * An abstract base class for a DAO that handles CRUD operations for a transactionless data store.
+ * An abstract base class for a DAO that handles CRUD operations for a data store that isn't transactional by itself.
  *
  * <p>
  * A {@link com.thruzero.domain.dsc.store.DataStoreContainerFactory DataStoreContainerFactory} is used to create
@@ -88,16 +123,32 @@ import com.thruzero.domain.store.Persistent;
  * referenced by the absolute <i>data store</i> path of "/owner1@thruzero.com/context1a/name123.txt", but in the file
  * system, it's represented by the absolute <i>file system</i> path of
  * "/home/foo/bar/data-store/DscPreferenceDAO/owner1@thruzero.com/context1a/name123.txt".
+ * <p>
+ * If the calling thread has begun a transaction of the {@link DscTransactionMgr} and the data store is file-based, then
+ * saves, updates and deletes are buffered by the transaction (and written to the data store when it's committed). The
+ * single-entity reads (e.g., {@code getByKey} and {@code isExistingEntity}) of that thread see its buffered writes, but
+ * listings don't include the entities it has buffered but not yet committed. The actions passed to
+ * {@link #runAfterCommit(Runnable)} (e.g., cache invalidations) are run when the transaction is committed.
  *
  *
  * @author George Norman
  * @param <T> the type of Domain Object to be persisted.
  */
-public abstract class AbstractDataStoreDAO<T extends Persistent> implements GenericDAO<T>, Initializable {
+public abstract class AbstractDataStoreDAO<T extends Persistent> implements GenericDAO<T>, Initializable, EntityChangeSource, TransactionalDAO {
+  private static final Logger logger = Logger.getLogger(AbstractDataStoreDAO.class);
+
+  public static final int DEFAULT_IO_THREADS = 4;
+  public static final int DEFAULT_IO_BATCH_SIZE = 16;
+
   private DataStoreContainerFactory dscFactory;
 
   private DomainObjectTransformer<T> domainObjectTransformer;
-  private DataStoreKeyGen<T> keyGen;
+  private volatile DataStoreKeyGen<T> keyGen;
+  private StripedReadWriteLock entityLocks = new StripedReadWriteLock();
+  private volatile ExecutorService ioExecutor; // null if entities are read and written by the calling thread only
+  private int ioBatchSize = DEFAULT_IO_BATCH_SIZE;
+  private volatile FileChangeWatcher changeWatcher; // null if changes made outside of this DAO aren't watched
+  private final List<EntityChangeListener> changeListeners = new CopyOnWriteArrayList<EntityChangeListener>();
 
   // ------------------------------------------------
   // DataStoreDAOInitParamKeys
@@ -120,6 +171,110 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
      * MockDscDataStoreContainerFactory).
      */
     String STORE_CONTAINER_FACTORY = DataStoreContainerFactory.class.getName();
+
+    /**
+     * The optional parameter key that defines the number of locks used to guard the entities managed by this DAO: "lockStripes" (default is 64).
+     * Operations on the same EntityPath are serialized (reads share the lock); operations on different entities rarely contend.
+     */
+    String LOCK_STRIPES = "lockStripes";
+
+    /**
+     * The optional parameter key that defines the maximum number of threads used to read the entities of a container in parallel (e.g., by
+     * {@code DscSettingDAO.getSettings}) and to write the entities given to saveAll, updateAll and deleteAll: "ioThreads" (default is 4).
+     * A value of 1 reads and writes all of the entities on the calling thread.
+     */
+    String IO_THREADS = "ioThreads";
+
+    /** The optional parameter key that defines the number of entities read or written by each I/O thread, per task: "ioBatchSize" (default is 16). */
+    String IO_BATCH_SIZE = "ioBatchSize";
+
+    /**
+     * The optional parameter key that defines how often a file-based data store is polled for entities created, modified or deleted outside of this
+     * DAO (e.g., edited directly on disk), which are then published to each EntityChangeListener: "changePollIntervalInSeconds" (default is 0, which
+     * doesn't watch the data store).
+     */
+    String CHANGE_POLL_INTERVAL_IN_SECONDS = "changePollIntervalInSeconds";
+  }
+
+  // ------------------------------------------------
+  // DataStoreIoThreadFactory
+  // ------------------------------------------------
+
+  private static final class DataStoreIoThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public DataStoreIoThreadFactory(String namePrefix) {
+      this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, namePrefix + "-io-" + threadCount.incrementAndGet());
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ------------------------------------------------
+  // BatchTask
+  // ------------------------------------------------
+
+  /** A unit of work performed on the items in the range [start, end) of a list of entities (see runInBatches). */
+  private static interface BatchTask {
+    void run(int start, int end);
+  }
+
+  // ------------------------------------------------
+  // EntityRead
+  // ------------------------------------------------
+
+  /** A pending read of a single entity, listed in the given container, whose Domain Object is added to the given result list. */
+  private static final class EntityRead<T> {
+    private final DataStoreContainer dataStoreContainer;
+    private final EntityPath entityPath;
+    private final List<T> result;
+
+    public EntityRead(DataStoreContainer dataStoreContainer, EntityPath entityPath, List<T> result) {
+      this.dataStoreContainer = dataStoreContainer;
+      this.entityPath = entityPath;
+      this.result = result;
+    }
+  }
+
+  // ------------------------------------------------
+  // IndexInvalidation
+  // ------------------------------------------------
+
+  /**
+   * Removes a directory, and its parent directories, from the index of an indexed store after a transaction is applied
+   * (the transaction writes the files directly). Equal invalidations are run once per transaction.
+   */
+  private static final class IndexInvalidation implements Runnable {
+    private final IndexedFileDataStoreContainerFactory factory;
+    private final ContainerPath containerPath;
+
+    public IndexInvalidation(IndexedFileDataStoreContainerFactory factory, ContainerPath containerPath) {
+      this.factory = factory;
+      this.containerPath = containerPath;
+    }
+
+    @Override
+    public void run() {
+      factory.invalidate(containerPath, true);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof IndexInvalidation && ((IndexInvalidation)obj).factory == factory && ((IndexInvalidation)obj).containerPath.equals(containerPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return containerPath.hashCode();
+    }
   }
 
   // ------------------------------------------------
@@ -202,14 +357,86 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
       throw new InitializationException("ERROR: Could not create the DataStoreContainerFactory of type: '" + dataStoreContainerFactoryClassName + "' for DAO of type: " + this.getClass().getName() + ".", e, daoInitStrategy);
     }
 
+    // create the entity locks
+    entityLocks = new StripedReadWriteLock(daoParams.getValueTransformer(DataStoreDAOInitParamKeys.LOCK_STRIPES).getIntValue(StripedReadWriteLock.DEFAULT_STRIPE_COUNT));
+
+    // create the pool used to read and write entities in parallel (bounded; when it's saturated, the calling thread does the I/O)
+    int ioThreads = daoParams.getValueTransformer(DataStoreDAOInitParamKeys.IO_THREADS).getIntValue(DEFAULT_IO_THREADS);
+    ioBatchSize = Math.max(1, daoParams.getValueTransformer(DataStoreDAOInitParamKeys.IO_BATCH_SIZE).getIntValue(DEFAULT_IO_BATCH_SIZE));
+    shutdownIoExecutor();
+    if (ioThreads > 1) {
+      ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(ioThreads * 4),
+          new DataStoreIoThreadFactory(getClass().getSimpleName()), new ThreadPoolExecutor.CallerRunsPolicy());
+
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      ioExecutor = threadPoolExecutor;
+    }
+
     // validate the container
     DataStoreContainer dataStoreContainer = createDataStoreContainer(new ContainerPath(), false); // TODO-p0(george) shouldn't this use the path from the dscFactory?
     dataStoreContainer.validate();
+
+    // watch the file-based data store for changes made outside of this DAO
+    long changePollInterval = daoParams.getValueTransformer(DataStoreDAOInitParamKeys.CHANGE_POLL_INTERVAL_IN_SECONDS).getLongValue(0);
+    stopChangeWatcher();
+    if (changePollInterval > 0 && dscFactory instanceof FileDataStoreContainerFactory) {
+      FileChangeWatcher watcher = new FileChangeWatcher(new File(getBaseStorePath().toString()), TimeUnit.SECONDS.toMillis(changePollInterval));
+
+      watcher.addEntityChangeListener(new EntityChangeListener() {
+        @Override
+        public void entityChanged(EntityPath entityPath, ChangeType changeType) {
+          handleEntityChanged(entityPath, changeType);
+        }
+      });
+      watcher.start();
+      changeWatcher = watcher;
+    }
   }
 
   @Override
   public void reset() {
+    shutdownIoExecutor();
+    stopChangeWatcher();
+  }
+
+  /** The listener is notified only if the data store is watched (see {@link DataStoreDAOInitParamKeys#CHANGE_POLL_INTERVAL_IN_SECONDS}). */
+  @Override
+  public void addEntityChangeListener(EntityChangeListener listener) {
+    changeListeners.add(listener);
+  }
 
+  @Override
+  public void removeEntityChangeListener(EntityChangeListener listener) {
+    changeListeners.remove(listener);
+  }
+
+  /**
+   * If the calling thread has an active transaction (see {@link DscTransactionMgr}), then the given action is run after it's committed;
+   * otherwise, the writes were made directly to the data store, so the action is run immediately.
+   */
+  @Override
+  public void runAfterCommit(Runnable action) {
+    DscTransaction transaction = getActiveTransaction();
+
+    if (transaction == null) {
+      action.run();
+    } else {
+      transaction.addAfterCommitAction(action);
+    }
+  }
+
+  /** Return the watcher of the data store, or null if it isn't watched. */
+  public FileChangeWatcher getChangeWatcher() {
+    return changeWatcher;
+  }
+
+  protected DomainObjectTransformer<T> getDomainObjectTransformer() {
+    return domainObjectTransformer;
+  }
+
+  /** Replace the transformer used to flatten and resurrect Domain Objects (e.g., as configured by an init param). Must be called during init. */
+  protected void setDomainObjectTransformer(DomainObjectTransformer<T> domainObjectTransformer) {
+    this.domainObjectTransformer = domainObjectTransformer;
   }
 
   /**
@@ -218,25 +445,15 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
    * @throws DAOException if id is not null or Node already exists in the data store.
    */
   @Override
-  public synchronized void save(T domainObject) { // TODO-p0(george) See EJ Item 67
+  public void save(T domainObject) {
     if (domainObject != null) {
       if (domainObject.getId() != null) {
         throw new DAOException("ERROR: Can't save a Domain Object that already has an ID. Use update function instead. ID is: '" + domainObject.getId().toString() + "'.");
       }
 
       // create a primary key, using the given Domain Object, and assert that it's unique within the data store
-      EntityPath primaryKey = getKeyGen().createKey(domainObject);
-      domainObject.setId(primaryKey);
-      DataStoreContainer dataStoreContainer = createDataStoreContainer(domainObject, true);
-
-      if (dataStoreContainer.isExistingEntity(primaryKey.getEntityName())) {
-        throw new DAOException("ERROR: ID already exists in the data store. Path is: '" + dataStoreContainer.getDebugPathInfo(primaryKey.getEntityName()) + "'.");
-      }
-
-      // flatten the given object to an InputStream, so it can be persisted to the data store
-      DataStoreEntity dataStoreEntity = domainObjectTransformer.flatten(domainObject);
-
-      dataStoreContainer.saveOrUpdateEntity(primaryKey.getEntityName(), dataStoreEntity);
+      domainObject.setId(getKeyGen().createKey(domainObject));
+      saveEntity(createDataStoreContainer(domainObject, true), domainObject);
     }
   }
 
@@ -260,24 +477,13 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
    * @throws DAOException if id is null or Node does not exist in the data store.
    */
   @Override
-  public synchronized void update(T domainObject) { // TODO-p0(george) See EJ Item 67
+  public void update(T domainObject) {
     if (domainObject != null) {
       if (domainObject.getId() == null) {
         throw new DAOException("ERROR: Can't update a Domain Object that doesn't have an ID.");
       }
 
-      // get the primary key from the given Domain Object, and assert that it currently exists within the data store
-      EntityPath primaryKey = (EntityPath)domainObject.getId();
-      DataStoreContainer dataStoreContainer = createDataStoreContainer(domainObject, false); // don't create the parent dir if it doesn't exist (can't update non-existent file)
-
-      if (!dataStoreContainer.isExistingEntity(primaryKey.getEntityName())) {
-        throw new DAOException("ERROR: Node does not exist in the data store. Path is: : '" + dataStoreContainer.getDebugPathInfo(primaryKey.getEntityName()) + "'.");
-      }
-
-      // flatten the given object to an InputStream, so it can be persisted to the data store
-      DataStoreEntity dataStoreEntity = domainObjectTransformer.flatten(domainObject);
-
-      dataStoreContainer.saveOrUpdateEntity(primaryKey.getEntityName(), dataStoreEntity);
+      updateEntity(createDataStoreContainer(domainObject, false), domainObject); // don't create the parent dir if it doesn't exist (can't update non-existent file)
     }
   }
 
@@ -287,75 +493,589 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
    * @throws DAOException if id is null.
    */
   @Override
-  public synchronized void delete(T domainObject) { // TODO-p0(george) See EJ Item 67
+  public void delete(T domainObject) {
     if (domainObject != null) {
       if (domainObject.getId() == null) {
         throw new DAOException("ERROR: Can't delete a Domain Object with an empty ID.");
       }
 
-      DataStoreContainer dataStoreContainer = createDataStoreContainer(domainObject, false); // don't create the parent directory if it doesn't exist
-      EntityPath entityPath = (EntityPath)domainObject.getId();
+      deleteEntity(createDataStoreContainer(domainObject, false), domainObject); // don't create the parent directory if it doesn't exist
+    }
+  }
+
+  /**
+   * Save each of the given domainObjects in the data store. All of the objects are validated and assigned a primary key
+   * before any are written; then the container of each distinct parent path is created once, and the entities are
+   * written in batches of "ioBatchSize", using up to "ioThreads" threads (each entity is written while holding its own
+   * write lock). Unless a transaction is active (see {@link DscTransactionMgr}), if a write fails, the entities written by other batches remain.
+   *
+   * @throws DAOException if an id is not null or a Node already exists in the data store.
+   */
+  @Override
+  public void saveAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      final List<T> entities = new ArrayList<T>(domainObjects);
+
+      for (T domainObject : entities) {
+        if (domainObject.getId() != null) {
+          throw new DAOException("ERROR: Can't save a Domain Object that already has an ID. Use update function instead. ID is: '" + domainObject.getId().toString() + "'.");
+        }
+      }
+      for (T domainObject : entities) {
+        domainObject.setId(getKeyGen().createKey(domainObject));
+      }
 
-      dataStoreContainer.deleteEntity(entityPath.getEntityName());
+      final List<DataStoreContainer> containers = createDataStoreContainers(entities, true);
+      runInBatches(entities.size(), "save", new BatchTask() {
+        @Override
+        public void run(int start, int end) {
+          for (int i = start; i < end; i++) {
+            saveEntity(containers.get(i), entities.get(i));
+          }
+        }
+      });
     }
   }
 
+  /**
+   * Update the data store from each of the given domainObjects, using the same batching strategy as
+   * {@link #saveAll(Collection)}.
+   *
+   * @throws DAOException if an id is null or a Node does not exist in the data store.
+   */
   @Override
-  public synchronized T getByKey(Serializable id) { // TODO-p0(george) See EJ Item 67
+  public void updateAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      final List<T> entities = new ArrayList<T>(domainObjects);
+
+      for (T domainObject : entities) {
+        if (domainObject.getId() == null) {
+          throw new DAOException("ERROR: Can't update a Domain Object that doesn't have an ID.");
+        }
+      }
+
+      final List<DataStoreContainer> containers = createDataStoreContainers(entities, false);
+      runInBatches(entities.size(), "update", new BatchTask() {
+        @Override
+        public void run(int start, int end) {
+          for (int i = start; i < end; i++) {
+            updateEntity(containers.get(i), entities.get(i));
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Delete each of the given domainObjects from the data store, using the same batching strategy as
+   * {@link #saveAll(Collection)}.
+   *
+   * @throws DAOException if an id is null.
+   */
+  @Override
+  public void deleteAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      final List<T> entities = new ArrayList<T>(domainObjects);
+
+      for (T domainObject : entities) {
+        if (domainObject.getId() == null) {
+          throw new DAOException("ERROR: Can't delete a Domain Object with an empty ID.");
+        }
+      }
+
+      final List<DataStoreContainer> containers = createDataStoreContainers(entities, false);
+      runInBatches(entities.size(), "delete", new BatchTask() {
+        @Override
+        public void run(int start, int end) {
+          for (int i = start; i < end; i++) {
+            deleteEntity(containers.get(i), entities.get(i));
+          }
+        }
+      });
+    }
+  }
+
+  @Override
+  public T getByKey(Serializable id) {
     T result = null;
 
     if (id != null) {
       EntityPath primaryKey = (EntityPath)id;
-
       DataStoreContainer dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), true); // create the parent directory if it doesn't exist
+
+      result = readDomainObject(dataStoreContainer, primaryKey);
+    }
+
+    return result;
+  }
+
+  /**
+   * Return all of the Domain Objects in the root container of the base store (not including sub-containers). Each Domain
+   * Object is identified (and locked while read) by its store-relative EntityPath, as by {@link #readContainers(Collection)}.
+   * No DAO-wide lock is held, so writers of other entities are never blocked (and an entity saved or deleted during the
+   * listing may or may not be included).
+   */
+  @Override
+  public List<? extends T> getAll() {
+    List<T> result = readContainers(Collections.singletonList(new ContainerPath())).get(new ContainerPath());
+
+    return result == null ? new ArrayList<T>() : result;
+  }
+
+  @Override
+  public boolean isExistingEntity(Serializable id) {
+    boolean result = false;
+
+    if (id != null) {
+      EntityPath primaryKey = (EntityPath)id;
+      Lock lock = getReadLock(primaryKey);
+
+      lock.lock();
+      try {
+        DataStoreContainer dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), true); // create the parent directory if it doesn't exist
+
+        result = isExistingEntity(dataStoreContainer, primaryKey, getActiveTransaction());
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    return result;
+  }
+
+  // Support functions ////////////////////////////////////////////////////////////////////
+
+  /**
+   * Return the Domain Objects in each of the given containers (sub-containers are not included), keyed by container path in the iteration order
+   * of the given containerPaths, with each list ordered by entity name. A container that doesn't exist maps to an empty list; a container
+   * that the data store can't list (e.g., WsDataStoreContainer) maps to null.
+   * <p>
+   * Each container is listed once and then all of the listed entities are read in batches of "ioBatchSize", using up to "ioThreads"
+   * threads (the calling thread reads the first batch). No DAO-wide lock is held: each entity is read while holding only its own read lock,
+   * so an entity saved or deleted during the read may or may not be included.
+   */
+  protected Map<ContainerPath, List<T>> readContainers(Collection<ContainerPath> containerPaths) {
+    Map<ContainerPath, List<T>> result = new LinkedHashMap<ContainerPath, List<T>>();
+    List<EntityRead<T>> entityReads = new ArrayList<EntityRead<T>>();
+
+    for (ContainerPath containerPath : containerPaths) {
+      if (result.containsKey(containerPath)) {
+        continue;
+      }
+
+      DataStoreContainer dataStoreContainer = createDataStoreContainer(containerPath, false); // don't create a container just to list it
+      List<EntityPath> entityPaths = dataStoreContainer.getAllEntityPaths(false);
+
+      if (entityPaths == null) {
+        result.put(containerPath, null);
+      } else {
+        List<String> entityNames = new ArrayList<String>(entityPaths.size());
+        List<T> containerResult = new ArrayList<T>(entityPaths.size());
+
+        for (EntityPath entityPath : entityPaths) {
+          entityNames.add(entityPath.getEntityName());
+        }
+        Collections.sort(entityNames);
+
+        for (String entityName : entityNames) {
+          entityReads.add(new EntityRead<T>(dataStoreContainer, new EntityPath(containerPath, entityName), containerResult));
+        }
+        result.put(containerPath, containerResult);
+      }
+    }
+
+    // read all of the entities (in parallel), then add each Domain Object to its container's list, in listing order
+    AtomicReferenceArray<T> domainObjects = readEntities(entityReads);
+
+    for (int i = 0; i < entityReads.size(); i++) {
+      T domainObject = domainObjects.get(i);
+
+      if (domainObject != null) { // deleted after the container was listed
+        entityReads.get(i).result.add(domainObject);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the Domain Objects at the given primaryKeys, in the order of the given list (an entity that doesn't exist is skipped). The entities
+   * are read in batches of "ioBatchSize", using up to "ioThreads" threads, each while holding only its own read lock (see readContainers).
+   */
+  protected List<T> readDomainObjects(List<EntityPath> primaryKeys) {
+    Map<ContainerPath, DataStoreContainer> dataStoreContainers = new HashMap<ContainerPath, DataStoreContainer>();
+    List<EntityRead<T>> entityReads = new ArrayList<EntityRead<T>>(primaryKeys.size());
+    List<T> result = new ArrayList<T>(primaryKeys.size());
+
+    for (EntityPath primaryKey : primaryKeys) {
+      DataStoreContainer dataStoreContainer = dataStoreContainers.get(primaryKey.getContainerPath());
+
+      if (dataStoreContainer == null) {
+        dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), false); // the entities were listed, so their containers exist
+        dataStoreContainers.put(primaryKey.getContainerPath(), dataStoreContainer);
+      }
+      entityReads.add(new EntityRead<T>(dataStoreContainer, primaryKey, result));
+    }
+
+    AtomicReferenceArray<T> domainObjects = readEntities(entityReads);
+
+    for (int i = 0; i < entityReads.size(); i++) {
+      T domainObject = domainObjects.get(i);
+
+      if (domainObject != null) { // deleted after it was listed
+        result.add(domainObject);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the Domain Object at the given primaryKey from the given container (the container of the entity), while holding the entity's read
+   * lock. Returns null if the entity doesn't exist.
+   */
+  protected T readDomainObject(DataStoreContainer dataStoreContainer, EntityPath primaryKey) {
+    T result = null;
+    Lock lock = getReadLock(primaryKey);
+
+    lock.lock();
+    try {
       DataStoreEntity nodeData = null;
+      DscTransaction transaction = getActiveTransaction();
+
+      if (transaction != null && transaction.isPending(getEntityFile(primaryKey))) {
+        byte[] pendingData = transaction.getPendingData(getEntityFile(primaryKey));
 
-      if (dataStoreContainer.isExistingEntity(primaryKey.getEntityName())) {
+        if (pendingData != null) {
+          nodeData = new SimpleDataStoreEntity(new ByteArrayInputStream(pendingData), primaryKey);
+        }
+      } else if (dataStoreContainer.isExistingEntity(primaryKey.getEntityName())) {
         nodeData = dataStoreContainer.readEntity(primaryKey.getEntityName());
       }
 
       if (nodeData != null) {
         result = domainObjectTransformer.resurrect(primaryKey, nodeData);
+      }
+    } finally {
+      lock.unlock();
+    }
 
-        result.setId(getKeyGen().createKey(result));
+    if (result != null) {
+      result.setId(getKeyGen().createKey(result));
+    }
+
+    return result;
+  }
+
+  /**
+   * Return a stream of the raw (flattened) data of the entity at the given primaryKey, or null if the entity doesn't
+   * exist. The stream is opened while holding the entity's read lock and is returned unbuffered, so the data is never
+   * loaded into memory as a whole. Since the containers replace an entity by writing a temp file and renaming it, the
+   * open stream remains a consistent snapshot even after the lock is released. Data written by the active transaction,
+   * but not yet committed, is returned from memory. The caller must close the stream.
+   */
+  protected InputStream readEntityData(EntityPath primaryKey) {
+    InputStream result = null;
+    Lock lock = getReadLock(primaryKey);
+
+    lock.lock();
+    try {
+      DataStoreContainer dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), true); // create the parent directory if it doesn't exist
+      DscTransaction transaction = getActiveTransaction();
+
+      if (transaction != null && transaction.isPending(getEntityFile(primaryKey))) {
+        byte[] pendingData = transaction.getPendingData(getEntityFile(primaryKey));
+
+        if (pendingData != null) {
+          result = new ByteArrayInputStream(pendingData);
+        }
+      } else if (dataStoreContainer.isExistingEntity(primaryKey.getEntityName())) {
+        DataStoreEntity nodeData = dataStoreContainer.readEntity(primaryKey.getEntityName());
+
+        if (nodeData != null) {
+          result = nodeData.getData();
+        }
       }
+    } finally {
+      lock.unlock();
     }
 
     return result;
   }
 
-  @Override
-  public synchronized List<? extends T> getAll() { // TODO-p0(george) See EJ Item 67
-    List<T> result = new ArrayList<T>();
-    DataStoreContainer dataStoreContainer = createDataStoreContainer(new ContainerPath(getBaseStorePath().toString() + ContainerPath.CONTAINER_PATH_SEPARATOR), true); // TODO-p0(george) HACK! What are the rules for the base path? Is '/' required or optional?
-    List<? extends DataStoreEntity> allEntities = dataStoreContainer.getAllEntities(false);
+  /**
+   * Stream the raw data, written by the given entityWriter, to the entity at the given primaryKey (creating it if it
+   * doesn't exist), while holding the entity's write lock. The Domain Object transformer isn't used.
+   */
+  protected void saveOrUpdateEntityData(EntityPath primaryKey, DataStoreEntityWriter entityWriter) {
+    Lock lock = getWriteLock(primaryKey);
 
-    for (DataStoreEntity entity : allEntities) {
-      T model = domainObjectTransformer.resurrect(entity.getEntityPath(), entity);
+    lock.lock();
+    try {
+      DscTransaction transaction = getActiveTransaction();
 
-      model.setId(entity.getEntityPath());
+      if (transaction == null) {
+        DataStoreContainer dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), true);
 
-      result.add(model);
+        dataStoreContainer.saveOrUpdateEntity(primaryKey.getEntityName(), entityWriter);
+      } else {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        try {
+          entityWriter.writeTo(buffer);
+        } catch (IOException e) {
+          throw new DAOException("ERROR: Can't write the data of: " + primaryKey, e);
+        }
+        bufferWrite(transaction, primaryKey, buffer.toByteArray(), WriteType.SAVE_OR_UPDATE);
+      }
+    } finally {
+      lock.unlock();
     }
+  }
+
+  private AtomicReferenceArray<T> readEntities(final List<EntityRead<T>> entityReads) {
+    final AtomicReferenceArray<T> result = new AtomicReferenceArray<T>(entityReads.size());
+
+    runInBatches(entityReads.size(), "read", new BatchTask() {
+      @Override
+      public void run(int start, int end) {
+        readBatch(entityReads, result, start, end);
+      }
+    });
 
     return result;
   }
 
-  @Override
-  public boolean isExistingEntity(Serializable id) {
-    boolean result = false;
+  private void readBatch(List<EntityRead<T>> entityReads, AtomicReferenceArray<T> result, int start, int end) {
+    for (int i = start; i < end; i++) {
+      EntityRead<T> entityRead = entityReads.get(i);
 
-    if (id != null) {
-      EntityPath primaryKey = (EntityPath)id;
-      DataStoreContainer dataStoreContainer = createDataStoreContainer(primaryKey.getContainerPath(), true); // create the parent directory if it doesn't exist
+      result.set(i, readDomainObject(entityRead.dataStoreContainer, entityRead.entityPath));
+    }
+  }
+
+  /** Write the new domainObject (which has been assigned its primary key) to the given container, while holding the entity's write lock. */
+  private void saveEntity(DataStoreContainer dataStoreContainer, T domainObject) {
+    EntityPath primaryKey = (EntityPath)domainObject.getId();
+    Lock lock = getWriteLock(primaryKey);
+
+    lock.lock();
+    try {
+      DscTransaction transaction = getActiveTransaction();
+
+      if (isExistingEntity(dataStoreContainer, primaryKey, transaction)) {
+        throw new DAOException("ERROR: ID already exists in the data store. Path is: '" + dataStoreContainer.getDebugPathInfo(primaryKey.getEntityName()) + "'.");
+      }
+
+      // flatten the given object to an InputStream, so it can be persisted to the data store
+      DataStoreEntity dataStoreEntity = domainObjectTransformer.flatten(domainObject);
+
+      writeEntity(dataStoreContainer, primaryKey, dataStoreEntity, transaction, WriteType.CREATE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Write the existing domainObject to the given container, while holding the entity's write lock. */
+  private void updateEntity(DataStoreContainer dataStoreContainer, T domainObject) {
+    // get the primary key from the given Domain Object, and assert that it currently exists within the data store
+    EntityPath primaryKey = (EntityPath)domainObject.getId();
+    Lock lock = getWriteLock(primaryKey);
+
+    lock.lock();
+    try {
+      DscTransaction transaction = getActiveTransaction();
+
+      if (!isExistingEntity(dataStoreContainer, primaryKey, transaction)) {
+        throw new DAOException("ERROR: Node does not exist in the data store. Path is: : '" + dataStoreContainer.getDebugPathInfo(primaryKey.getEntityName()) + "'.");
+      }
+
+      // flatten the given object to an InputStream, so it can be persisted to the data store
+      DataStoreEntity dataStoreEntity = domainObjectTransformer.flatten(domainObject);
+
+      writeEntity(dataStoreContainer, primaryKey, dataStoreEntity, transaction, WriteType.UPDATE);
+    } finally {
+      lock.unlock();
+    }
+  }
 
+  /** Delete the domainObject from the given container, while holding the entity's write lock. */
+  private void deleteEntity(DataStoreContainer dataStoreContainer, T domainObject) {
+    EntityPath entityPath = (EntityPath)domainObject.getId();
+    Lock lock = getWriteLock(entityPath);
+
+    lock.lock();
+    try {
+      DscTransaction transaction = getActiveTransaction();
+
+      if (transaction == null) {
+        dataStoreContainer.deleteEntity(entityPath.getEntityName());
+      } else {
+        transaction.delete(getEntityFile(entityPath), lock);
+        addIndexInvalidation(transaction, entityPath);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Write the flattened entity to the given container, or if a transaction is active, buffer it (as the given type of write). */
+  private void writeEntity(DataStoreContainer dataStoreContainer, EntityPath primaryKey, DataStoreEntity dataStoreEntity, DscTransaction transaction, WriteType writeType) {
+    if (transaction == null) {
+      dataStoreContainer.saveOrUpdateEntity(primaryKey.getEntityName(), dataStoreEntity);
+    } else {
+      InputStream in = dataStoreEntity.getData();
+
+      try {
+        bufferWrite(transaction, primaryKey, IOUtils.toByteArray(in), writeType);
+      } catch (IOException e) {
+        throw new DAOException("ERROR: Can't flatten the entity: " + primaryKey, e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+  }
+
+  private void bufferWrite(DscTransaction transaction, EntityPath primaryKey, byte[] data, WriteType writeType) {
+    transaction.write(getEntityFile(primaryKey), data, writeType, getWriteLock(primaryKey));
+    transaction.setCommitRequested(true);
+    addIndexInvalidation(transaction, primaryKey);
+  }
+
+  private void addIndexInvalidation(DscTransaction transaction, EntityPath entityPath) {
+    if (dscFactory instanceof IndexedFileDataStoreContainerFactory) {
+      transaction.addAfterCommitAction(new IndexInvalidation((IndexedFileDataStoreContainerFactory)dscFactory, entityPath.getContainerPath()));
+    }
+  }
+
+  /** Return true if the entity exists in the given container, taking the writes buffered by the given transaction (if not null) into account. */
+  private boolean isExistingEntity(DataStoreContainer dataStoreContainer, EntityPath primaryKey, DscTransaction transaction) {
+    boolean result;
+
+    if (transaction != null && transaction.isPending(getEntityFile(primaryKey))) {
+      result = transaction.getPendingData(getEntityFile(primaryKey)) != null;
+    } else {
       result = dataStoreContainer.isExistingEntity(primaryKey.getEntityName());
     }
 
     return result;
   }
 
-  // Support functions ////////////////////////////////////////////////////////////////////
+  /**
+   * Return the transaction of the calling thread, if it's active and the data store is file-based; otherwise, return null
+   * (i.e., other data stores are always written directly).
+   */
+  private DscTransaction getActiveTransaction() {
+    return dscFactory instanceof FileDataStoreContainerFactory ? DscTransactionMgr.getActiveTransaction() : null;
+  }
+
+  /** Return the file of the entity at the given path (file-based data stores only). */
+  private File getEntityFile(EntityPath entityPath) {
+    return new File(new File(getBaseStorePath().toString(), entityPath.getContainerPath().getPath()), entityPath.getEntityName());
+  }
+
+  /** Return the container of each of the given domainObjects (by index), creating only one container per distinct container path. */
+  private List<DataStoreContainer> createDataStoreContainers(List<T> domainObjects, boolean createParentContainersIfNonExistent) {
+    List<DataStoreContainer> result = new ArrayList<DataStoreContainer>(domainObjects.size());
+    Map<ContainerPath, DataStoreContainer> containers = new HashMap<ContainerPath, DataStoreContainer>();
+
+    for (T domainObject : domainObjects) {
+      ContainerPath containerPath = ((EntityPath)domainObject.getId()).getContainerPath();
+      DataStoreContainer dataStoreContainer = containers.get(containerPath);
+
+      if (dataStoreContainer == null) {
+        dataStoreContainer = createDataStoreContainer(containerPath, createParentContainersIfNonExistent);
+        containers.put(containerPath, dataStoreContainer);
+      }
+      result.add(dataStoreContainer);
+    }
+
+    return result;
+  }
+
+  /**
+   * Run the given task over the range [0, size) in batches of "ioBatchSize", using up to "ioThreads" threads. The calling thread runs the
+   * first batch (and any batch the saturated pool rejects), and waits until all of the batches are done. The first failure is rethrown.
+   * While a transaction is active, all of the batches are run by the calling thread, since they read and write its buffered writes.
+   */
+  private void runInBatches(int size, String operation, final BatchTask task) {
+    ExecutorService executor = ioExecutor;
+    int firstBatchEnd = Math.min(ioBatchSize, size);
+
+    if (executor == null || firstBatchEnd == size || getActiveTransaction() != null) {
+      task.run(0, size);
+    } else {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+
+      try {
+        for (int batchStart = firstBatchEnd; batchStart < size; batchStart += ioBatchSize) {
+          final int start = batchStart;
+          final int end = Math.min(batchStart + ioBatchSize, size);
+
+          futures.add(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+              task.run(start, end);
+            }
+          }));
+        }
+
+        task.run(0, firstBatchEnd);
+
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DAOException("ERROR: Interrupted while trying to " + operation + " the entities of " + getClass().getSimpleName() + ".", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException)e.getCause();
+        }
+        throw new DAOException("ERROR: Failed to " + operation + " the entities of " + getClass().getSimpleName() + ".", e.getCause());
+      } finally {
+        for (Future<?> future : futures) {
+          future.cancel(false); // no-op for the completed batches
+        }
+      }
+    }
+  }
+
+  /**
+   * Called when the watcher detects an entity changed outside of this DAO: the changed directory (and, if the entity was created or deleted, its
+   * parent directories) are removed from the index of an indexed store, so they're listed again, and then the change is published.
+   */
+  private void handleEntityChanged(EntityPath entityPath, ChangeType changeType) {
+    if (dscFactory instanceof IndexedFileDataStoreContainerFactory) {
+      ((IndexedFileDataStoreContainerFactory)dscFactory).invalidate(entityPath.getContainerPath(), changeType != ChangeType.MODIFIED);
+    }
+
+    for (EntityChangeListener listener : changeListeners) {
+      try {
+        listener.entityChanged(entityPath, changeType);
+      } catch (RuntimeException e) {
+        logger.error("EntityChangeListener failed for entity path: " + entityPath, e);
+      }
+    }
+  }
+
+  private void stopChangeWatcher() {
+    FileChangeWatcher watcher = changeWatcher;
+
+    changeWatcher = null;
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  private void shutdownIoExecutor() {
+    ExecutorService executor = ioExecutor;
+
+    ioExecutor = null;
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
 
   /**
    * Using the EntityPath, from the given Domain Object ID, create and return a new DataStoreContainer.
@@ -374,6 +1094,16 @@ public abstract class AbstractDataStoreDAO<T extends Persistent> implements Gene
     return dscFactory.createDataStoreContainer(containerPath, createParentContainersIfNonExistent);
   }
 
+  /** Return the lock that must be held while reading the entity at the given path. */
+  protected Lock getReadLock(EntityPath entityPath) {
+    return entityLocks.getLock(entityPath).readLock();
+  }
+
+  /** Return the lock that must be held while writing (or deleting) the entity at the given path. */
+  protected Lock getWriteLock(EntityPath entityPath) {
+    return entityLocks.getLock(entityPath).writeLock();
+  }
+
   /** Return the key generator used to create primary keys for all Domain Objects saved by this DAO. */
   protected DataStoreKeyGen<T> getKeyGen() {
     if (keyGen == null) {
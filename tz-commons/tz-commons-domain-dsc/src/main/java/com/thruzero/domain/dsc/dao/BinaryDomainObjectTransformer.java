@@ -0,0 +1,858 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.mapper.CannotResolveClassException;
+import com.thoughtworks.xstream.mapper.Mapper;
+import com.thoughtworks.xstream.mapper.MapperWrapper;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.dao.AbstractDataStoreDAO.DomainObjectTransformer;
+import com.thruzero.domain.dsc.dao.GenericDscDAO.XStreamDomainObjectTransformer;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
+import com.thruzero.domain.store.AbstractPersistent;
+import com.thruzero.domain.store.Persistent;
+
+/**
+ * A {@code DomainObjectTransformer} that marshals a Domain Object to a compact, tagged binary format, as an alternative to
+ * the {@link GenericDscDAO.XStreamDomainObjectTransformer XStreamDomainObjectTransformer}. The persistent fields of each
+ * class are discovered once and cached, so reading and writing an object doesn't require any further introspection. Each
+ * field is written as its name, a type tag and its value, so fields added to or removed from a class are tolerated (unknown
+ * fields are skipped on read).
+ * <p>
+ * The following values are written natively: primitives and their wrappers, {@code String}, {@code Date}, enums, byte
+ * arrays, collections and maps (with a no-arg constructor) and any other object with a no-arg constructor (written
+ * field-by-field). Other {@code Serializable} values fall back to Java serialization. Object graphs must be trees (shared
+ * references are written once per reference and cycles are not supported).
+ * <p>
+ * Security: Since the class of each value is read from the data, only the following classes are ever loaded or
+ * instantiated while reading: the domain type, its superclasses and the declared types of its persistent fields
+ * (including their type arguments, recursively), any additional types given to the constructor, and the JDK value types
+ * accepted by {@link #isAllowedJdkClass(Class)}. The same restriction applies to values read using Java serialization
+ * and to legacy entities read using XStream (see Migration). A value of any other class is rejected when it's written.
+ * Every length and count read from the data is checked against the number of bytes remaining in the entity, so a
+ * corrupt or malicious entity can't cause a huge allocation.
+ * <p>
+ * Migration: Each binary entity begins with a magic number. If an entity doesn't (e.g., it was written by XStream), then
+ * it's read using XStream, so an existing data store can be switched to the binary format and each entity is converted
+ * the next time it's saved. The XStream mapper used for these entities resolves only the allowed classes (plus the
+ * primitives and XStream's null marker); any other class named by the XML is rejected before it's loaded.
+ *
+ * @author George Norman
+ * @param <T> Type of Domain Object managed by this transformer.
+ */
+public class BinaryDomainObjectTransformer<T extends Persistent> implements DomainObjectTransformer<T> {
+  private static final Logger logger = Logger.getLogger(BinaryDomainObjectTransformer.class);
+
+  /** The first bytes of every entity written by this transformer. */
+  private static final byte[] MAGIC = {(byte)0xD5, (byte)0xC0, 'B', 'N'};
+  private static final int FORMAT_VERSION = 1;
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_BOOLEAN = 1;
+  private static final byte TAG_BYTE = 2;
+  private static final byte TAG_SHORT = 3;
+  private static final byte TAG_CHAR = 4;
+  private static final byte TAG_INT = 5;
+  private static final byte TAG_LONG = 6;
+  private static final byte TAG_FLOAT = 7;
+  private static final byte TAG_DOUBLE = 8;
+  private static final byte TAG_STRING = 9;
+  private static final byte TAG_DATE = 10;
+  private static final byte TAG_ENUM = 11;
+  private static final byte TAG_BYTES = 12;
+  private static final byte TAG_COLLECTION = 13;
+  private static final byte TAG_MAP = 14;
+  private static final byte TAG_OBJECT = 15;
+  private static final byte TAG_SERIALIZED = 16;
+
+  private final Class<T> domainType;
+  private final XStreamDomainObjectTransformer<T> legacyTransformer;
+  /** The classes that may be read, by name (the allowed domain classes, plus each allowed JDK class once it's read). */
+  private final ConcurrentMap<String, Class<?>> classCache = new ConcurrentHashMap<String, Class<?>>();
+  private final ConcurrentMap<Class<?>, ClassAccessor> accessorCache = new ConcurrentHashMap<Class<?>, ClassAccessor>();
+
+  // ------------------------------------------------
+  // ClassAccessor
+  // ------------------------------------------------
+
+  /**
+   * The no-arg constructor and persistent fields (non-static and non-transient, including inherited fields) of a class,
+   * made accessible once. The ID of a Domain Object is not persistent, since it's stored by the DataStoreEntity.
+   */
+  protected static class ClassAccessor {
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+    private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+
+    public ClassAccessor(final Class<?> clazz) throws NoSuchMethodException {
+      List<Field> persistentFields = new ArrayList<Field>();
+
+      constructor = clazz.getDeclaredConstructor();
+      constructor.setAccessible(true);
+
+      for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+
+          if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !isIdField(field) && !fieldsByName.containsKey(field.getName())) {
+            field.setAccessible(true);
+            persistentFields.add(field);
+            fieldsByName.put(field.getName(), field);
+          }
+        }
+      }
+      fields = persistentFields.toArray(new Field[persistentFields.size()]);
+    }
+
+    public Object newInstance() throws Exception {
+      return constructor.newInstance();
+    }
+
+    public Field[] getFields() {
+      return fields;
+    }
+
+    public Field getField(final String name) {
+      return fieldsByName.get(name);
+    }
+
+    private static boolean isIdField(final Field field) {
+      return field.getDeclaringClass() == AbstractPersistent.class && "id".equals(field.getName());
+    }
+  }
+
+  // ------------------------------------------------
+  // AllowedClassObjectInputStream
+  // ------------------------------------------------
+
+  /** An ObjectInputStream that refuses to resolve (i.e., load or instantiate) any class that's not allowed by this transformer. */
+  protected class AllowedClassObjectInputStream extends ObjectInputStream {
+    public AllowedClassObjectInputStream(final InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (!isAllowedClassName(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Class is not allowed by the BinaryDomainObjectTransformer for: " + domainType.getName());
+      }
+
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException {
+      throw new InvalidClassException("Proxy classes are not allowed by the BinaryDomainObjectTransformer for: " + domainType.getName());
+    }
+  }
+
+  // ------------------------------------------------
+  // DirectByteArrayOutputStream
+  // ------------------------------------------------
+
+  /** A ByteArrayOutputStream that can be read back without copying its buffer. */
+  private static class DirectByteArrayOutputStream extends ByteArrayOutputStream {
+    DirectByteArrayOutputStream() {
+      super(256);
+    }
+
+    InputStream toInputStream() {
+      return new ByteArrayInputStream(buf, 0, count);
+    }
+  }
+
+  // ------------------------------------------------
+  // BinaryOutput
+  // ------------------------------------------------
+
+  /**
+   * A DataOutputStream that writes lengths as variable-length integers and writes each symbol (class or field name) once
+   * per entity; subsequent occurrences are written as a reference to the first.
+   */
+  protected static class BinaryOutput extends DataOutputStream {
+    private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+    public BinaryOutput(final OutputStream out) {
+      super(out);
+    }
+
+    /** Write the given non-negative int using 7 bits per byte (i.e., small values use a single byte). */
+    public void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte(value);
+    }
+
+    /** Write the given string as its UTF-8 length and bytes (unlike writeUTF, not limited to 64K). */
+    public void writeText(final String value) throws IOException {
+      byte[] bytes = value.getBytes("UTF-8");
+
+      writeVarInt(bytes.length);
+      write(bytes);
+    }
+
+    public void writeSymbol(final String symbol) throws IOException {
+      Integer index = symbols.get(symbol);
+
+      if (index == null) {
+        symbols.put(symbol, symbols.size());
+        writeVarInt(0);
+        writeText(symbol);
+      } else {
+        writeVarInt(index + 1);
+      }
+    }
+  }
+
+  // ------------------------------------------------
+  // BinaryInput
+  // ------------------------------------------------
+
+  /**
+   * Reads the data written by a {@link BinaryOutput}, from an entity that's been read into memory, so each length and
+   * count can be checked against the number of bytes remaining.
+   */
+  protected static class BinaryInput extends DataInputStream {
+    private final List<String> symbols = new ArrayList<String>();
+
+    public BinaryInput(final ByteArrayInputStream in) {
+      super(in);
+    }
+
+    /**
+     * Read a length or count, where each unit occupies at least minBytesPerUnit bytes of the remaining data.
+     *
+     * @throws DAOException if the value is negative or larger than the remaining data allows.
+     */
+    public int readSize(final int minBytesPerUnit) throws IOException {
+      int result = readVarInt();
+
+      if (result < 0 || (long)result * minBytesPerUnit > available()) {
+        throw new DAOException("ERROR: Invalid size " + result + " (only " + available() + " bytes remain in the entity).");
+      }
+
+      return result;
+    }
+
+    public int readVarInt() throws IOException {
+      int result = 0;
+
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readUnsignedByte();
+
+        result |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+
+      throw new IOException("Malformed variable-length integer.");
+    }
+
+    public String readText() throws IOException {
+      byte[] bytes = new byte[readSize(1)];
+
+      readFully(bytes);
+
+      return new String(bytes, "UTF-8");
+    }
+
+    public String readSymbol() throws IOException {
+      int index = readVarInt();
+      String result;
+
+      if (index == 0) {
+        result = readText();
+        symbols.add(result);
+      } else if (index > 0 && index <= symbols.size()) {
+        result = symbols.get(index - 1);
+      } else {
+        throw new DAOException("ERROR: Invalid symbol reference: " + index);
+      }
+
+      return result;
+    }
+  }
+
+  // ============================================================
+  // BinaryDomainObjectTransformer
+  // ============================================================
+
+  public BinaryDomainObjectTransformer(final Class<T> domainType) {
+    this(domainType, new Class<?>[0]);
+  }
+
+  /**
+   * Create a transformer that may also read the given types (e.g., a subclass of a field's declared type or a
+   * {@code Serializable} JDK class), in addition to the domain type and the declared types of its fields.
+   */
+  public BinaryDomainObjectTransformer(final Class<T> domainType, final Class<?>... allowedTypes) {
+    this.domainType = domainType;
+    this.legacyTransformer = new XStreamDomainObjectTransformer<T>(domainType, createLegacyXStream());
+
+    addAllowedType(domainType);
+    for (Class<?> c = domainType.getSuperclass(); c != null && c != Object.class; c = c.getSuperclass()) {
+      classCache.putIfAbsent(c.getName(), c); // XStream may name the declaring class of a field (i.e., "defined-in")
+    }
+    for (Class<?> allowedType : allowedTypes) {
+      if (isJdkClass(allowedType)) {
+        classCache.putIfAbsent(allowedType.getName(), allowedType);
+      } else {
+        addAllowedType(allowedType);
+      }
+    }
+  }
+
+  /**
+   * Create and return a {@code DataStoreEntity} whose {@code InputStream} contains the encoded Domain Object (without
+   * its ID). The object is encoded directly to a byte buffer, which is then streamed without being copied.
+   */
+  @Override
+  public DataStoreEntity flatten(final T domainObject) {
+    DirectByteArrayOutputStream buffer = new DirectByteArrayOutputStream();
+    BinaryOutput out = new BinaryOutput(buffer);
+
+    try {
+      out.write(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      writeObject(out, domainObject);
+      out.flush();
+    } catch (IOException e) {
+      throw new DAOException("ERROR: Could not encode Domain Object: " + domainObject.getIdAsString(), e);
+    }
+
+    // get the primaryKey (ID) and save with the DataStoreEntity
+    EntityPath primaryKey;
+    if (domainObject.getId() instanceof EntityPath) {
+      primaryKey = (EntityPath)domainObject.getId();
+    } else {
+      primaryKey = EntityPath.createFromString(domainObject.getIdAsString());
+    }
+
+    return new SimpleDataStoreEntity(buffer.toInputStream(), primaryKey);
+  }
+
+  /**
+   * Decode the Domain Object from the {@code InputStream} of the given {@code dataStoreEntity}. The binary data is read
+   * into memory first (as when it's written), so each length can be checked against the remaining data. If the data was
+   * not written by this transformer, then it's streamed to XStream.
+   *
+   * @throws DAOException if can't read the data from the given DataStoreEntity.
+   */
+  @Override
+  public T resurrect(final EntityPath primaryKey, final DataStoreEntity dataStoreEntity) {
+    InputStream is = new BufferedInputStream(dataStoreEntity.getData());
+
+    try {
+      if (isBinaryFormat(is)) {
+        BinaryInput in = new BinaryInput(new ByteArrayInputStream(IOUtils.toByteArray(is)));
+        int version = in.readUnsignedByte();
+
+        if (version != FORMAT_VERSION) {
+          throw new DAOException("ERROR: Unsupported binary format version " + version + " for: " + primaryKey);
+        }
+
+        T result = domainType.cast(readValue(in));
+        result.setId(primaryKey);
+
+        return result;
+      } else {
+        return legacyTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(is, primaryKey));
+      }
+    } catch (DAOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new DAOException("ERROR: Could not read the data from the given DataStoreEntity.", e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Create the XStream instance used to read legacy entities, whose mapper refuses to resolve any class that's not
+   * allowed by this transformer. A class name is checked before the class is loaded; an alias (e.g., "string") is
+   * checked once it's resolved.
+   */
+  protected XStream createLegacyXStream() {
+    return new XStream() {
+      @Override
+      protected MapperWrapper wrapMapper(final MapperWrapper next) {
+        return new MapperWrapper(next) {
+          @Override
+          @SuppressWarnings("rawtypes")
+          public Class realClass(final String elementName) {
+            if (elementName.indexOf('.') >= 0 && !isAllowedClassName(elementName)) {
+              throw new CannotResolveClassException(elementName + " (not allowed by the BinaryDomainObjectTransformer for " + domainType.getName() + ")");
+            }
+
+            Class result = super.realClass(elementName);
+
+            if (!result.isPrimitive() && result != Mapper.Null.class && !isAllowedClassName(result.getName())) {
+              throw new CannotResolveClassException(result.getName() + " (not allowed by the BinaryDomainObjectTransformer for " + domainType.getName() + ")");
+            }
+
+            return result;
+          }
+        };
+      }
+    };
+  }
+
+  /** Return true if the given stream begins with the magic number (the stream is reset, if not). */
+  protected boolean isBinaryFormat(final InputStream is) throws IOException {
+    boolean result = true;
+
+    is.mark(MAGIC.length);
+    for (int i = 0; i < MAGIC.length && result; i++) {
+      result = is.read() == (MAGIC[i] & 0xFF);
+    }
+    if (!result) {
+      is.reset();
+    }
+
+    return result;
+  }
+
+  // encoding ///////////////////////////////////////////////////////////////
+
+  protected void writeValue(final BinaryOutput out, final Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(TAG_NULL);
+    } else if (value instanceof String) {
+      out.writeByte(TAG_STRING);
+      out.writeText((String)value);
+    } else if (value instanceof Integer) {
+      out.writeByte(TAG_INT);
+      out.writeInt((Integer)value);
+    } else if (value instanceof Long) {
+      out.writeByte(TAG_LONG);
+      out.writeLong((Long)value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(TAG_BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if (value instanceof Double) {
+      out.writeByte(TAG_DOUBLE);
+      out.writeDouble((Double)value);
+    } else if (value instanceof Float) {
+      out.writeByte(TAG_FLOAT);
+      out.writeFloat((Float)value);
+    } else if (value instanceof Short) {
+      out.writeByte(TAG_SHORT);
+      out.writeShort((Short)value);
+    } else if (value instanceof Byte) {
+      out.writeByte(TAG_BYTE);
+      out.writeByte((Byte)value);
+    } else if (value instanceof Character) {
+      out.writeByte(TAG_CHAR);
+      out.writeChar((Character)value);
+    } else if (value.getClass() == Date.class) {
+      out.writeByte(TAG_DATE);
+      out.writeLong(((Date)value).getTime());
+    } else if (value instanceof Enum<?>) {
+      checkAllowedClass(((Enum<?>)value).getDeclaringClass());
+      out.writeByte(TAG_ENUM);
+      out.writeSymbol(((Enum<?>)value).getDeclaringClass().getName());
+      out.writeSymbol(((Enum<?>)value).name());
+    } else if (value instanceof byte[]) {
+      out.writeByte(TAG_BYTES);
+      out.writeVarInt(((byte[])value).length);
+      out.write((byte[])value);
+    } else if (value instanceof Collection<?> && hasNoArgConstructor(value.getClass())) {
+      Collection<?> collection = (Collection<?>)value;
+
+      checkAllowedClass(value.getClass());
+      out.writeByte(TAG_COLLECTION);
+      out.writeSymbol(value.getClass().getName());
+      out.writeVarInt(collection.size());
+      for (Object element : collection) {
+        writeValue(out, element);
+      }
+    } else if (value instanceof Map<?, ?> && hasNoArgConstructor(value.getClass())) {
+      Map<?, ?> map = (Map<?, ?>)value;
+
+      checkAllowedClass(value.getClass());
+      out.writeByte(TAG_MAP);
+      out.writeSymbol(value.getClass().getName());
+      out.writeVarInt(map.size());
+      for (Entry<?, ?> entry : map.entrySet()) {
+        writeValue(out, entry.getKey());
+        writeValue(out, entry.getValue());
+      }
+    } else if (!value.getClass().isArray() && getClassAccessor(value.getClass()) != null) {
+      writeObject(out, value);
+    } else if (value instanceof Serializable) {
+      DirectByteArrayOutputStream buffer = new DirectByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(buffer);
+
+      checkAllowedClass(value.getClass());
+      oos.writeObject(value);
+      oos.close();
+      out.writeByte(TAG_SERIALIZED);
+      out.writeVarInt(buffer.size());
+      buffer.writeTo(out);
+    } else {
+      throw new DAOException("ERROR: Can't encode value of type: " + value.getClass().getName());
+    }
+  }
+
+  /** Write the given object, field-by-field (the class name is omitted if it's the domain type). */
+  protected void writeObject(final BinaryOutput out, final Object value) throws IOException {
+    ClassAccessor accessor = getClassAccessor(value.getClass());
+
+    if (accessor == null) {
+      throw new DAOException("ERROR: Can't encode an object without a no-arg constructor: " + value.getClass().getName());
+    }
+    checkAllowedClass(value.getClass());
+
+    out.writeByte(TAG_OBJECT);
+    out.writeSymbol(value.getClass() == domainType ? "" : value.getClass().getName());
+    out.writeVarInt(accessor.getFields().length);
+    for (Field field : accessor.getFields()) {
+      out.writeSymbol(field.getName());
+      try {
+        writeValue(out, field.get(value));
+      } catch (IllegalAccessException e) {
+        throw new DAOException("ERROR: Can't read field: " + field, e);
+      }
+    }
+  }
+
+  // decoding ///////////////////////////////////////////////////////////////
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected Object readValue(final BinaryInput in) throws Exception {
+    Object result;
+    byte tag = in.readByte();
+
+    switch (tag) {
+      case TAG_NULL:
+        result = null;
+        break;
+      case TAG_BOOLEAN:
+        result = in.readBoolean();
+        break;
+      case TAG_BYTE:
+        result = in.readByte();
+        break;
+      case TAG_SHORT:
+        result = in.readShort();
+        break;
+      case TAG_CHAR:
+        result = in.readChar();
+        break;
+      case TAG_INT:
+        result = in.readInt();
+        break;
+      case TAG_LONG:
+        result = in.readLong();
+        break;
+      case TAG_FLOAT:
+        result = in.readFloat();
+        break;
+      case TAG_DOUBLE:
+        result = in.readDouble();
+        break;
+      case TAG_STRING:
+        result = in.readText();
+        break;
+      case TAG_DATE:
+        result = new Date(in.readLong());
+        break;
+      case TAG_ENUM: {
+        Class enumClass = getAllowedClass(in.readSymbol(), Enum.class);
+        result = Enum.valueOf(enumClass, in.readSymbol());
+      }
+        break;
+      case TAG_BYTES: {
+        byte[] bytes = new byte[in.readSize(1)];
+        in.readFully(bytes);
+        result = bytes;
+      }
+        break;
+      case TAG_COLLECTION: {
+        Collection<Object> collection = (Collection<Object>)newInstance(getAllowedClass(in.readSymbol(), Collection.class));
+        int size = in.readSize(1); // each element has at least a tag
+        for (int i = 0; i < size; i++) {
+          collection.add(readValue(in));
+        }
+        result = collection;
+      }
+        break;
+      case TAG_MAP: {
+        Map<Object, Object> map = (Map<Object, Object>)newInstance(getAllowedClass(in.readSymbol(), Map.class));
+        int size = in.readSize(2); // each entry has at least a key tag and a value tag
+        for (int i = 0; i < size; i++) {
+          map.put(readValue(in), readValue(in));
+        }
+        result = map;
+      }
+        break;
+      case TAG_OBJECT:
+        result = readObjectFields(in);
+        break;
+      case TAG_SERIALIZED: {
+        byte[] bytes = new byte[in.readSize(1)];
+        in.readFully(bytes);
+        ObjectInputStream ois = new AllowedClassObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+          result = ois.readObject();
+        } finally {
+          ois.close();
+        }
+      }
+        break;
+      default:
+        throw new DAOException("ERROR: Unknown binary type tag: " + tag);
+    }
+
+    return result;
+  }
+
+  /** Read the class name and fields of an object (the TAG_OBJECT tag has already been read). */
+  protected Object readObjectFields(final BinaryInput in) throws Exception {
+    String className = in.readSymbol();
+    ClassAccessor accessor = getClassAccessor(className.length() == 0 ? domainType : getAllowedClass(className, Object.class));
+
+    if (accessor == null) {
+      throw new DAOException("ERROR: Can't decode an object without a no-arg constructor: " + className);
+    }
+
+    Object result = accessor.newInstance();
+    int fieldCount = in.readSize(2); // each field has at least a symbol and a tag
+
+    for (int i = 0; i < fieldCount; i++) {
+      String fieldName = in.readSymbol();
+      Object value = readValue(in); // always read the value, even if the field no longer exists
+      Field field = accessor.getField(fieldName);
+
+      if (field == null) {
+        logger.debug("Skipping unknown field '" + fieldName + "' of class: " + className);
+      } else if (value != null || !field.getType().isPrimitive()) {
+        try {
+          field.set(result, value);
+        } catch (IllegalArgumentException e) {
+          logger.debug("Skipping field '" + fieldName + "' of class: " + className + " (its type has changed).");
+        }
+      }
+    }
+
+    return result;
+  }
+
+  // support ////////////////////////////////////////////////////////////////
+
+  /** Return the cached accessor for the given class, or null if the class doesn't have a no-arg constructor. */
+  protected ClassAccessor getClassAccessor(final Class<?> clazz) {
+    ClassAccessor result = accessorCache.get(clazz);
+
+    if (result == null && !isJdkClass(clazz)) {
+      try {
+        result = new ClassAccessor(clazz);
+        accessorCache.putIfAbsent(clazz, result);
+      } catch (NoSuchMethodException e) {
+        result = null;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Allow the given type to be read, along with the declared types of its persistent fields and their type arguments
+   * (recursively). JDK types are not added, since they're allowed by {@link #isAllowedJdkClass(Class)} instead.
+   */
+  protected void addAllowedType(final Type type) {
+    if (type instanceof Class<?>) {
+      Class<?> clazz = (Class<?>)type;
+
+      if (clazz.isArray()) {
+        addAllowedType(clazz.getComponentType());
+      } else if (!clazz.isPrimitive() && !isJdkClass(clazz) && classCache.putIfAbsent(clazz.getName(), clazz) == null) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !ClassAccessor.isIdField(field)) {
+              addAllowedType(field.getGenericType());
+            }
+          }
+        }
+      }
+    } else if (type instanceof ParameterizedType) {
+      addAllowedType(((ParameterizedType)type).getRawType());
+      for (Type typeArgument : ((ParameterizedType)type).getActualTypeArguments()) {
+        addAllowedType(typeArgument);
+      }
+    } else if (type instanceof WildcardType) {
+      for (Type bound : ((WildcardType)type).getUpperBounds()) {
+        addAllowedType(bound);
+      }
+    } else if (type instanceof TypeVariable<?>) {
+      for (Type bound : ((TypeVariable<?>)type).getBounds()) {
+        addAllowedType(bound);
+      }
+    }
+  }
+
+  /**
+   * Return true if the class with the given name (or the element class, if it's an array) may be read. A JDK class is
+   * loaded without being initialized, to check it; any other class must already have been allowed.
+   */
+  protected boolean isAllowedClassName(final String className) {
+    String name = className;
+    int dimensions = 0;
+
+    while (name.charAt(dimensions) == '[') {
+      dimensions++;
+    }
+    if (dimensions > 0) {
+      if (name.length() == dimensions + 1) {
+        return true; // array of primitives
+      }
+      name = name.substring(dimensions + 1, name.length() - 1); // e.g., "[[Ljava.lang.String;" -> "java.lang.String"
+    }
+
+    if (classCache.containsKey(name)) {
+      return true;
+    }
+    if (!name.startsWith("java.")) {
+      return false;
+    }
+
+    try {
+      Class<?> clazz = Class.forName(name, false, getClass().getClassLoader());
+
+      if (isAllowedJdkClass(clazz)) {
+        classCache.putIfAbsent(name, clazz);
+        return true;
+      }
+    } catch (ClassNotFoundException e) {
+      // not allowed
+    }
+
+    return false;
+  }
+
+  /**
+   * Return true if the given JDK class may be read: {@code String}, the primitive wrappers and other numbers (e.g.,
+   * BigDecimal), dates and the collections and maps of java.util.
+   */
+  protected boolean isAllowedJdkClass(final Class<?> clazz) {
+    String name = clazz.getName();
+
+    if (name.startsWith("java.lang.")) {
+      return clazz == String.class || clazz == Boolean.class || clazz == Character.class || clazz == Enum.class || Number.class.isAssignableFrom(clazz);
+    } else if (name.startsWith("java.math.")) {
+      return Number.class.isAssignableFrom(clazz);
+    } else if (name.startsWith("java.util.")) {
+      return Date.class.isAssignableFrom(clazz) || Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz);
+    }
+
+    return false;
+  }
+
+  /**
+   * Return the allowed class with the given name, which must be assignable to the given expectedType.
+   *
+   * @throws DAOException if the class is not allowed (it's not loaded, in that case).
+   */
+  protected Class<?> getAllowedClass(final String className, final Class<?> expectedType) {
+    Class<?> result = isAllowedClassName(className) ? classCache.get(className) : null;
+
+    if (result == null || !expectedType.isAssignableFrom(result)) {
+      throw new DAOException("ERROR: Class is not allowed by the BinaryDomainObjectTransformer for " + domainType.getName() + ": " + className);
+    }
+
+    return result;
+  }
+
+  /**
+   * Verify that a value of the given class can be read back, before it's written.
+   *
+   * @throws DAOException if the class is not allowed.
+   */
+  protected void checkAllowedClass(final Class<?> clazz) {
+    Class<?> elementClass = clazz;
+
+    while (elementClass.isArray()) {
+      elementClass = elementClass.getComponentType();
+    }
+    if (!elementClass.isPrimitive() && (!isAllowedClassName(elementClass.getName()) || classCache.get(elementClass.getName()) != elementClass)) {
+      throw new DAOException("ERROR: Can't encode value of type " + clazz.getName() + " (it's not allowed by the BinaryDomainObjectTransformer for "
+          + domainType.getName() + ").");
+    }
+  }
+
+  protected Object newInstance(final Class<?> clazz) throws Exception {
+    Constructor<?> constructor = clazz.getDeclaredConstructor();
+
+    constructor.setAccessible(true);
+
+    return constructor.newInstance();
+  }
+
+  /** Return true if the given class has a no-arg constructor that can be used to re-create it (e.g., HashSet, but not Collections.UnmodifiableSet). */
+  protected boolean hasNoArgConstructor(final Class<?> clazz) {
+    try {
+      return Modifier.isPublic(clazz.getModifiers()) && Modifier.isPublic(clazz.getConstructor().getModifiers());
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /** JDK classes are not written field-by-field (their internals aren't part of their public contract). */
+  protected boolean isJdkClass(final Class<?> clazz) {
+    String name = clazz.getName();
+
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.thruzero.domain.dsc.dao;
 
+import java.util.Collections;
 import java.util.List;
 
 import com.thruzero.common.core.support.ContainerPath;
@@ -61,12 +62,16 @@ public final class DscPreferenceDAO extends GenericDscDAO<Preference> implements
 
     /** Synthesize a primary key from the Preference owner, context and name. */
     public EntityPath createKey(String owner, String context, String name) {
-      // TODO-p1(george) Need to escape context, owner and name, because they can include '/'
-      ContainerPath parentPath = new ContainerPath(createParentPath(Preference.class), owner + ContainerPath.CONTAINER_PATH_SEPARATOR + context + ContainerPath.CONTAINER_PATH_SEPARATOR);
-      EntityPath result = new EntityPath(parentPath, name);
+      EntityPath result = new EntityPath(createContainerPath(owner, context), name);
 
       return result;
     }
+
+    /** Return the path of the container that holds the Preferences of the given owner and context. */
+    public ContainerPath createContainerPath(String owner, String context) {
+      // TODO-p1(george) Need to escape context, owner and name, because they can include '/'
+      return new ContainerPath(createParentPath(Preference.class), owner + ContainerPath.CONTAINER_PATH_SEPARATOR + context + ContainerPath.CONTAINER_PATH_SEPARATOR);
+    }
   }
 
   // ============================================================================
@@ -110,10 +115,16 @@ public final class DscPreferenceDAO extends GenericDscDAO<Preference> implements
     return result;
   }
 
+  /**
+   * Return the Preferences of the given owner and context, by listing their container and then reading all of the listed Preferences in a
+   * batched, parallel read (see {@link AbstractDataStoreDAO#readContainers(java.util.Collection)}). Returns null if the data store can't list a
+   * container.
+   */
   @Override
   public List<? extends Preference> getPreferences(String owner, String context) {
-    // TODO-p2(george) Auto-generated method stub
-    return null;
+    ContainerPath containerPath = ((DscPreferenceKeyGen)getKeyGen()).createContainerPath(owner, context);
+
+    return readContainers(Collections.singleton(containerPath)).get(containerPath);
   }
 
   @Override
@@ -15,7 +15,11 @@
  */
 package com.thruzero.domain.dsc.dao;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
@@ -61,11 +65,16 @@ public final class DscSettingDAO extends GenericDscDAO<Setting> implements Setti
 
     /** Synthesize a primary key from the user's loginId. */
     public EntityPath createKey(String context, String name) {
-      // TODO-p1(george) need to escape context and name, because they can include '/'
-      EntityPath result = new EntityPath(createParentPath(Setting.class) + context + ContainerPath.CONTAINER_PATH_SEPARATOR, name);
+      EntityPath result = new EntityPath(createContainerPath(context), name);
 
       return result;
     }
+
+    /** Return the path of the container that holds the Settings of the given context. */
+    public ContainerPath createContainerPath(String context) {
+      // TODO-p1(george) need to escape context and name, because they can include '/'
+      return new ContainerPath(createParentPath(Setting.class) + context + ContainerPath.CONTAINER_PATH_SEPARATOR);
+    }
   }
 
   // ============================================================================
@@ -114,8 +123,29 @@ public final class DscSettingDAO extends GenericDscDAO<Setting> implements Setti
 
   @Override
   public List<? extends Setting> getSettings(String context) {
-    // TODO-p2(george) Auto-generated method stub
-    return null;
+    return getSettings(Collections.singleton(context)).get(context);
+  }
+
+  /**
+   * Return the Settings of each of the given contexts, by listing the container of each context and then reading all of the listed Settings
+   * in one batched, parallel read (see {@link AbstractDataStoreDAO#readContainers(Collection)}). Maps a context to null if the data store can't
+   * list a container.
+   */
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+    Map<String, ContainerPath> containerPaths = new LinkedHashMap<String, ContainerPath>();
+
+    for (String context : contexts) {
+      containerPaths.put(context, ((DscSettingKeyGen)getKeyGen()).createContainerPath(context));
+    }
+
+    Map<ContainerPath, List<Setting>> settings = readContainers(containerPaths.values());
+    for (Map.Entry<String, ContainerPath> entry : containerPaths.entrySet()) {
+      result.put(entry.getKey(), settings.get(entry.getValue()));
+    }
+
+    return result;
   }
 
   @Override
@@ -17,6 +17,7 @@ package com.thruzero.domain.dsc.dao;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,8 +27,10 @@ import org.apache.commons.lang3.CharEncoding;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
 import com.thruzero.domain.dsc.store.DataStoreContainer;
 import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntityWriter;
 import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
 import com.thruzero.domain.model.TextEnvelope;
 
@@ -77,18 +80,18 @@ public final class DscTextEnvelopeDAO extends AbstractDataStoreDAO<TextEnvelope>
     super(new DomainObjectTransformer<TextEnvelope>() {
       @Override
       public TextEnvelope resurrect(EntityPath primaryKey, DataStoreEntity data) {
-        byte[] dataAsBytes;
+        String dataAsString;
         InputStream is = data.getData();
 
         try {
-          dataAsBytes = IOUtils.toByteArray(is);
+          dataAsString = IOUtils.toString(is, CharEncoding.UTF_8); // decoded directly from the stream (no intermediate byte array)
         } catch (IOException e) {
-          throw new DAOException("ERROR: Can't read input stream (to byte array).");
+          throw new DAOException("ERROR: Can't read input stream (to String).");
         } finally {
           IOUtils.closeQuietly(is);
         }
 
-        TextEnvelope result = new TextEnvelope(primaryKey, new String(dataAsBytes));
+        TextEnvelope result = new TextEnvelope(primaryKey, dataAsString);
 
         return result;
       }
@@ -111,25 +114,40 @@ public final class DscTextEnvelopeDAO extends AbstractDataStoreDAO<TextEnvelope>
     return isExistingEntity(entityPath);
   }
 
+  /**
+   * Lists the container (recursively, if requested) and then reads the listed entities in parallel (see
+   * {@link AbstractDataStoreDAO.DataStoreDAOInitParamKeys#IO_THREADS}); the result is in listing order. Returns {@code null} if the
+   * container can't list its entities (e.g., a web service container).
+   */
   @Override
   public List<? extends TextEnvelope> getTextEnvelopes(ContainerPath containerPath, boolean recursive) {
-    List<TextEnvelope> result = new ArrayList<TextEnvelope>();
-    DataStoreContainer dsc = createDataStoreContainer(containerPath, true);
-    List<? extends DataStoreEntity> entities = dsc.getAllEntities(recursive);
+    List<EntityPath> entityPaths = getTextEnvelopePaths(containerPath, recursive);
 
-    for (DataStoreEntity entity : entities) {
-      EntityPath id = new EntityPath(containerPath, entity.getEntityPath());
-
-      result.add(getByKey(id));
+    if (entityPaths == null) {
+      return null;
     }
 
-    return result;
+    return readDomainObjects(entityPaths);
   }
 
+  /**
+   * Returns the absolute path of each TextEnvelope (the container lists the paths relative to the given containerPath), or {@code null} if
+   * the container can't list its entities (e.g., a web service container).
+   */
   @Override
   public List<EntityPath> getTextEnvelopePaths(ContainerPath containerPath, boolean recursive) {
     DataStoreContainer dsc = createDataStoreContainer(containerPath, true);
-    List<EntityPath> result = dsc.getAllEntityPaths(recursive);
+    List<EntityPath> entityPaths = dsc.getAllEntityPaths(recursive);
+
+    if (entityPaths == null) {
+      return null;
+    }
+
+    List<EntityPath> result = new ArrayList<EntityPath>(entityPaths.size());
+
+    for (EntityPath entityPath : entityPaths) {
+      result.add(new EntityPath(containerPath, entityPath));
+    }
 
     return result;
   }
@@ -139,6 +157,23 @@ public final class DscTextEnvelopeDAO extends AbstractDataStoreDAO<TextEnvelope>
     return getByKey(entityPath);
   }
 
+  /** Returns a stream of the data store itself (e.g., the file), so the data is never loaded into memory as a whole. */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return readEntityData(entityPath);
+  }
+
+  /** Streams the data directly to the data store (e.g., the file) through a bounded buffer. */
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, final TextEnvelopeDataWriter dataWriter) {
+    saveOrUpdateEntityData(entityPath, new DataStoreEntityWriter() {
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        dataWriter.writeData(out);
+      }
+    });
+  }
+
   @Override
   protected DataStoreKeyGen<TextEnvelope> createKeyGen() {
     return new DscTextEnvelopeKeyGen();
@@ -21,9 +21,18 @@ import java.io.Serializable;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
+import org.apache.commons.lang3.StringUtils;
 
 import com.thoughtworks.xstream.XStream;
+import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
+import com.thruzero.common.core.locator.InitializationException;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.locator.LocatorUtils;
+import com.thruzero.common.core.map.StringMap;
 import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.core.utils.ClassUtils;
+import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+import com.thruzero.domain.dao.GenericDAO;
 import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
 import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
 import com.thruzero.domain.store.Persistent;
@@ -44,6 +53,17 @@ import com.thruzero.domain.store.Persistent;
  * The base store path is considered the ROOT, so all paths represented by this key are considered absolute data store paths - not to be confused with an
  * absolute file system path. The identifier MUST always begin with a forward slash and never end with one. See {@link com.thruzero.domain.store.EntityPath
  * EntityPath} for examples of valid paths.
+ * <p/>
+ * The format used to store the Domain Objects can be changed per DAO, using the "domainObjectTransformer" init param. For example, the following stores
+ * Settings using the compact {@link BinaryDomainObjectTransformer} (which also reads entities previously stored as XML):
+ * 
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.domain.dsc.dao.DscSettingDAO">
+ *     <entry key="domainObjectTransformer" value="com.thruzero.domain.dsc.dao.BinaryDomainObjectTransformer" />
+ *   </section>
+ * }
+ * </pre>
  * 
  * @author George Norman
  * @param <T>
@@ -51,6 +71,23 @@ import com.thruzero.domain.store.Persistent;
  */
 public abstract class GenericDscDAO<T extends Persistent> extends AbstractDataStoreDAO<T> { // TODO-p1(george) Should this be GenericDscDAO or DscGenericDAO (it
                                                                                             // indirectly implements GenericDAO)?
+  private final Class<T> domainType;
+
+  // ------------------------------------------------
+  // GenericDscDAOInitParamKeys
+  // ------------------------------------------------
+
+  /**
+   * Initialization parameter keys defined for {@code GenericDscDAO}.
+   */
+  @InitializationParameterKeysBookmark
+  public interface GenericDscDAOInitParamKeys extends DataStoreDAOInitParamKeys {
+    /**
+     * The optional parameter key that defines the fully qualified class name of the DomainObjectTransformer used by a particular DAO:
+     * "domainObjectTransformer" (default is XStreamDomainObjectTransformer). The class must have a public constructor that takes the domain type (Class).
+     */
+    String DOMAIN_OBJECT_TRANSFORMER = "domainObjectTransformer";
+  }
 
   // ------------------------------------------------------
   // XStreamDomainObjectTransformer
@@ -64,10 +101,18 @@ public abstract class GenericDscDAO<T extends Persistent> extends AbstractDataSt
     private XStream xstream;
 
     public XStreamDomainObjectTransformer(Class<T> domainType) {
+      // xstream = new XStream(new StaxDriver()); // does not require XPP3 library. Note: XStream is thread safe.
+      this(domainType, new XStream());
+    }
+
+    /**
+     * Use the given, preconfigured {@code XStream} instance (e.g., one whose mapper restricts the classes that may be
+     * read); the aliases for the domain type and EntityPath are added to it.
+     */
+    public XStreamDomainObjectTransformer(Class<T> domainType, XStream xstream) {
       this.domainType = domainType;
+      this.xstream = xstream;
 
-      // xstream = new XStream(new StaxDriver()); // does not require XPP3 library. Note: XStream is thread safe.
-      xstream = new XStream();
       xstream.alias(domainType.getSimpleName(), domainType);
       xstream.alias(EntityPath.class.getSimpleName(), EntityPath.class);
     }
@@ -138,6 +183,32 @@ public abstract class GenericDscDAO<T extends Persistent> extends AbstractDataSt
    */
   protected GenericDscDAO(final Class<T> domainType) {
     super(new XStreamDomainObjectTransformer<T>(domainType));
+
+    this.domainType = domainType;
+  }
+
+  /**
+   * In addition to the parameters read by {@code AbstractDataStoreDAO}, the optional "domainObjectTransformer" parameter is read from the given StringMap.
+   *
+   * @throws InitializationException if the configured DomainObjectTransformer can't be created.
+   */
+  @Override
+  public void init(InitializationStrategy daoInitStrategy) {
+    StringMap daoParams = LocatorUtils.getInheritedParameters(daoInitStrategy, this.getClass(), GenericDAO.class);
+    String transformerClassName = daoParams.get(GenericDscDAOInitParamKeys.DOMAIN_OBJECT_TRANSFORMER);
+
+    if (StringUtils.isNotEmpty(transformerClassName)) {
+      try {
+        DomainObjectTransformer<T> transformer = ClassUtils.instanceFrom(transformerClassName.trim(), new Class<?>[] {Class.class}, new Object[] {domainType});
+
+        setDomainObjectTransformer(transformer);
+      } catch (ClassUtilsException e) {
+        throw new InitializationException("ERROR: Could not create the DomainObjectTransformer of type: '" + transformerClassName + "' for DAO of type: "
+            + this.getClass().getName() + ".", e, daoInitStrategy);
+      }
+    }
+
+    super.init(daoInitStrategy);
   }
 
 }
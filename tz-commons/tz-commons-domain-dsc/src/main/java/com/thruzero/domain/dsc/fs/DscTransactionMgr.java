@@ -1,5 +1,5 @@
 /*
- *   Copyright 2012 George Norman
+ *   Copyright 2013 George Norman
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -15,15 +15,289 @@
  */
 package com.thruzero.domain.dsc.fs;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
+import com.thruzero.common.core.locator.Initializable;
+import com.thruzero.common.core.locator.InitializationException;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.locator.LocatorUtils;
+import com.thruzero.common.core.map.StringMap;
 import com.thruzero.common.core.transaction.TransactionMgr;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.fs.FileDataStoreContainerFactory.FileDataStoreContainerFactoryInitParamKeys;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntityWriter;
 
 /**
+ * A TransactionMgr for the file-based data stores (see {@link FileDataStoreContainerFactory}). While a transaction is
+ * active, the file-based DAOs don't write to the data store; instead, each save, update and delete is buffered by the
+ * {@link DscTransaction} of the calling thread (and read back by that thread). On commit, the buffered writes are:
+ * <ol>
+ * <li>checked again: each save must still create its entity and each update must still find it (see the isolation
+ * level, below);
+ * <li>written to a write-ahead log (WAL) file, in the WAL directory, which is forced to disk and then renamed from its
+ * temp name to its final name - the rename is the commit point;
+ * <li>applied to the data store, each file by writing a temp file in the same directory, forcing it to disk and
+ * renaming it to the entity file (so readers never see a partially written entity);
+ * <li>and then, once every applied file is on disk, the WAL file is deleted.
+ * </ol>
+ * If the process dies after the commit point, the remaining WAL files are re-applied by {@code init()}, so a transaction
+ * is applied completely or not at all. A rollback simply discards the buffered writes. The actions registered by
+ * {@link DscTransaction#addAfterCommitAction(Runnable)} (e.g., cache invalidations and change notifications) are run
+ * once the transaction is committed (i.e., its WAL is written) and applied. If applying it fails, they're run anyway
+ * (the data store may have been changed partially) and run again when the WAL is re-applied. They're discarded if the
+ * transaction is rolled back or fails before its WAL is written.
+ * <p>
+ * Isolation level: a transaction reads its own buffered writes and the committed state of the data store (read
+ * committed - there are no snapshots, so reading the same entity twice may return different data). The writes aren't
+ * locked until commit; instead, the precondition of each write is validated when the transaction is applied: a save of
+ * an entity that another transaction has committed meanwhile, or an update of an entity that another transaction has
+ * deleted, fails the commit with a DAOException, while the other transactions of the group still commit. Concurrent
+ * updates of the same existing entity don't conflict: the last one committed wins. The commit holds the write lock of
+ * each written entity (the lock its DAO passed to {@link DscTransaction#write(File, byte[], WriteType, Lock)}) while
+ * the writes are validated and applied, so a direct write of the entity (by a thread without a transaction) can't slip
+ * in between.
+ * <p>
+ * Concurrent commits are grouped: while one thread writes and forces a WAL file, the transactions committed by other
+ * threads queue up, and the next thread to commit writes all of the queued transactions to a single WAL file (and
+ * forces it once). Under load, the cost of the WAL force is therefore shared by all of the transactions of the group.
+ * <p>
+ * The WAL directory defaults to the "rootStorePath" of the {@link FileDataStoreContainerFactory} followed by "-wal" (i.e.,
+ * a sibling of the root store), unless it's defined by the "walDirectory" parameter.
+ * <p>
+ * Note: Use {@link com.thruzero.common.core.locator.TransactionMgrLocator TransactionMgrLocator} to locate the
+ * configured instance of TransactionMgr; locate it at startup (e.g., via {@code LocatorWarmUp}), so incomplete commits
+ * are recovered before the data store is read. A transaction isn't begun automatically: the DAOs write directly to the
+ * data store unless {@code beginTransaction()} was called by the current thread (e.g., by the
+ * {@code TransactionFilter}, for each request).
  *
  * @author George Norman
  */
-public final class DscTransactionMgr implements TransactionMgr {
-  private boolean active;
-  private boolean commitRequested;
+public final class DscTransactionMgr implements TransactionMgr, Initializable {
+  private static final Logger logger = Logger.getLogger(DscTransactionMgr.class);
+
+  private static final int WAL_MAGIC = 0x44534357; // "DSCW"
+  private static final int WAL_VERSION = 1;
+  private static final String WAL_FILE_SUFFIX = ".wal";
+  private static final String WAL_TEMP_FILE_SUFFIX = ".wal-tmp";
+
+  private static ThreadLocal<DscTransaction> localTransaction = new ThreadLocal<DscTransaction>();
+
+  private File walDirectory;
+  private final AtomicLong walSequence = new AtomicLong();
+  private final AtomicLong walSyncCount = new AtomicLong();
+
+  private final Object commitQueueLock = new Object();
+  private List<GroupCommit> commitQueue = new ArrayList<GroupCommit>(); // guarded by commitQueueLock
+  private boolean committing; // guarded by commitQueueLock
+  private UnappliedWal unappliedWal; // accessed only by the commit leader
+
+  // ------------------------------------------------
+  // DscTransactionMgrInitParamKeys
+  // ------------------------------------------------
+
+  /**
+   * Initialization parameter keys defined for DscTransactionMgr.
+   */
+  @InitializationParameterKeysBookmark
+  public interface DscTransactionMgrInitParamKeys extends InitializableParameterKeys {
+    /** The section to use when loading the parameters (e.g., config file section, settings context, etc) */
+    String SOURCE_SECTION = DscTransactionMgr.class.getName();
+
+    /**
+     * The optional config key that defines the absolute path of the directory where the write-ahead log files are written
+     * (default is the rootStorePath of the FileDataStoreContainerFactory, plus "-wal"). It should be on the same file
+     * system as the data store and must not be inside of a data store.
+     */
+    String WAL_DIRECTORY = "walDirectory";
+  }
+
+  // ------------------------------------------------
+  // WriteType
+  // ------------------------------------------------
+
+  /** The kind of a buffered write, which determines the precondition that's validated when the transaction is applied. */
+  public static enum WriteType {
+    /** Save a new entity: the file must not exist. */
+    CREATE,
+    /** Update an existing entity: the file must exist. */
+    UPDATE,
+    /** Create or overwrite the file (no precondition). */
+    SAVE_OR_UPDATE,
+    /** Delete the file, if it exists (no precondition). */
+    DELETE
+  }
+
+  // ------------------------------------------------
+  // DscTransaction
+  // ------------------------------------------------
+
+  /**
+   * The writes buffered by the transaction of a single thread: the data of each written file (or null, if the file is
+   * deleted), in the order of the first write to each file, the type of that first write (the only one that was
+   * checked against the data store; later writes of the file were checked against the buffered writes) and the write
+   * lock of each file. The DAOs may buffer from the batch threads of the owning thread, so access is synchronized.
+   */
+  public static final class DscTransaction {
+    private final Map<File, byte[]> writes = new LinkedHashMap<File, byte[]>();
+    private final Map<File, WriteType> writeTypes = new HashMap<File, WriteType>();
+    private final Map<File, Lock> writeLocks = new HashMap<File, Lock>();
+    private final Set<Runnable> afterCommitActions = new LinkedHashSet<Runnable>();
+    private boolean commitRequested;
+
+    /**
+     * Buffer the given data, to be written to the given file on commit (replacing any previously buffered write). The
+     * given writeLock (may be null) is the lock that's held while the file is written directly; the commit holds it
+     * while the write is validated and applied.
+     */
+    public synchronized void write(File file, byte[] data, WriteType writeType, Lock writeLock) {
+      File absoluteFile = file.getAbsoluteFile();
+
+      writes.put(absoluteFile, data);
+      if (!writeTypes.containsKey(absoluteFile)) {
+        writeTypes.put(absoluteFile, writeType);
+      }
+      if (writeLock != null) {
+        writeLocks.put(absoluteFile, writeLock);
+      }
+    }
+
+    /** Buffer the deletion of the given file (see write for the writeLock). */
+    public synchronized void delete(File file, Lock writeLock) {
+      write(file, null, WriteType.DELETE, writeLock);
+    }
+
+    /** Return true if a write (or deletion) of the given file is buffered. */
+    public synchronized boolean isPending(File file) {
+      return writes.containsKey(file.getAbsoluteFile());
+    }
+
+    /** Return the buffered data of the given file, or null if its deletion is buffered (or nothing is, see isPending). */
+    public synchronized byte[] getPendingData(File file) {
+      return writes.get(file.getAbsoluteFile());
+    }
+
+    /**
+     * Add an action to run after the transaction is committed and applied (e.g., to invalidate a cache of the data
+     * store); it's run by the thread that leads the commit of the group. Actions that are equal are run once.
+     */
+    public synchronized void addAfterCommitAction(Runnable action) {
+      afterCommitActions.add(action);
+    }
+
+    public synchronized boolean isEmpty() {
+      return writes.isEmpty();
+    }
+
+    public synchronized boolean isCommitRequested() {
+      return commitRequested;
+    }
+
+    public synchronized void setCommitRequested(boolean commitRequested) {
+      this.commitRequested = commitRequested;
+    }
+
+    synchronized Map<File, byte[]> getWrites() {
+      return new LinkedHashMap<File, byte[]>(writes);
+    }
+
+    synchronized Map<File, WriteType> getWriteTypes() {
+      return new HashMap<File, WriteType>(writeTypes);
+    }
+
+    synchronized List<Runnable> getAfterCommitActions() {
+      return new ArrayList<Runnable>(afterCommitActions);
+    }
+
+    synchronized Set<Lock> getWriteLocks() {
+      return new LinkedHashSet<Lock>(writeLocks.values());
+    }
+  }
+
+  // ------------------------------------------------
+  // GroupCommit
+  // ------------------------------------------------
+
+  /**
+   * A transaction waiting in the commit queue, and the outcome of its commit (written by the commit leader and published
+   * under the commitQueueLock).
+   */
+  private static final class GroupCommit {
+    private final DscTransaction transaction;
+    private boolean done;
+    private RuntimeException failure;
+
+    public GroupCommit(DscTransaction transaction) {
+      this.transaction = transaction;
+    }
+  }
+
+  // ------------------------------------------------
+  // UnappliedWal
+  // ------------------------------------------------
+
+  /**
+   * The WAL file of a group that was committed but failed to apply, with the write locks to hold while it's re-applied
+   * and the after-commit actions to run again.
+   */
+  private static final class UnappliedWal {
+    private final File walFile;
+    private final Set<Lock> writeLocks;
+    private final List<Runnable> afterCommitActions;
+
+    public UnappliedWal(File walFile, Set<Lock> writeLocks, List<Runnable> afterCommitActions) {
+      this.walFile = walFile;
+      this.writeLocks = writeLocks;
+      this.afterCommitActions = afterCommitActions;
+    }
+  }
+
+  // ------------------------------------------------
+  // WalFileFilter
+  // ------------------------------------------------
+
+  private static final class WalFileFilter implements FilenameFilter {
+    private final String suffix;
+
+    public WalFileFilter(String suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override
+    public boolean accept(File dir, String name) {
+      return name.endsWith(suffix);
+    }
+  }
+
+  // =================================================================
+  // DscTransactionMgr
+  // =================================================================
 
   /**
    * Use com.thruzero.common.core.locator.TransactionMgrLocator to access a particular TransactionMgr.
@@ -31,40 +305,502 @@ public final class DscTransactionMgr implements TransactionMgr {
   private DscTransactionMgr() {
   }
 
+  /**
+   * Create the WAL directory, if nonexistent, and then recover the incomplete commits: each complete WAL file is
+   * re-applied (in commit order) and deleted; a WAL file that was never renamed to its final name belongs to a
+   * transaction that didn't reach its commit point, so it's deleted.
+   *
+   * @throws InitializationException if the WAL directory isn't defined (and there's no rootStorePath to derive it
+   *           from) or can't be created.
+   */
+  @Override
+  public void init(InitializationStrategy initStrategy) {
+    StringMap initParams = LocatorUtils.getInheritedParameters(initStrategy, this.getClass(), TransactionMgr.class);
+    String walDirectoryPath = initParams.get(DscTransactionMgrInitParamKeys.WAL_DIRECTORY);
+
+    if (StringUtils.isEmpty(walDirectoryPath)) {
+      walDirectoryPath = getDefaultWalDirectoryPath(initStrategy);
+    }
+
+    walDirectory = new File(walDirectoryPath).getAbsoluteFile();
+    if (!walDirectory.isDirectory() && !walDirectory.mkdirs()) {
+      throw new InitializationException("ERROR: Can't create the WAL directory: " + walDirectory, initStrategy);
+    }
+
+    recover();
+  }
+
+  /** Return the rootStorePath of the file-based data stores, plus "-wal". */
+  private String getDefaultWalDirectoryPath(InitializationStrategy initStrategy) {
+    StringMap factoryParams = LocatorUtils.getInheritedParameters(initStrategy, IndexedFileDataStoreContainerFactory.class, null);
+    String rootStorePath = factoryParams.get(FileDataStoreContainerFactoryInitParamKeys.ROOT_STORE_PATH);
+
+    if (StringUtils.isEmpty(rootStorePath)) {
+      throw InitializationException.createMissingKeyInitializationException(this.getClass().getName(), DscTransactionMgrInitParamKeys.WAL_DIRECTORY, initStrategy);
+    }
+
+    return StringUtils.stripEnd(rootStorePath, "/\\") + "-wal";
+  }
+
+  @Override
+  public void reset() {
+    // buffered writes of other threads are discarded by their next begin, commit or rollback
+    localTransaction.remove();
+  }
+
+  /** Return the active transaction of the calling thread, or null if it's not in a transaction. */
+  public static DscTransaction getActiveTransaction() {
+    return localTransaction.get();
+  }
+
   @Override
   public boolean isTransactionActive() {
-    return active;
+    return localTransaction.get() != null;
   }
 
   @Override
-  public Object beginTransaction() {
-    active = true;
+  public DscTransaction beginTransaction() {
+    DscTransaction result = localTransaction.get();
+
+    if (result == null) {
+      result = new DscTransaction();
+      localTransaction.set(result);
+    }
 
-    return null;
+    return result;
   }
 
+  /**
+   * Write the buffered writes of the calling thread's transaction through the WAL (grouped with the transactions being
+   * committed concurrently) and then end the transaction. If the commit fails, the transaction has ended anyway and the
+   * data store is unchanged, unless the WAL was written, in which case it's re-applied by the next {@code init()}.
+   *
+   * @throws DAOException if the WAL can't be written or applied, or if a write conflicts with a transaction committed
+   *           concurrently (see the isolation level, above).
+   */
   @Override
   public void commitTransaction() {
-    active = false;
+    DscTransaction transaction = localTransaction.get();
+
+    localTransaction.remove();
+    if (transaction != null && !transaction.isEmpty()) {
+      groupCommit(transaction);
+    }
   }
 
+  /** Discard the buffered writes of the calling thread's transaction and end it. */
   @Override
   public void rollbackTransaction() {
-    active = false;
+    localTransaction.remove();
   }
 
   @Override
   public void setCommitRequested(boolean commitRequested) {
-    this.commitRequested = commitRequested;
+    DscTransaction transaction = localTransaction.get();
+
+    if (transaction != null) {
+      transaction.setCommitRequested(commitRequested);
+    }
   }
 
   @Override
   public void commitOrRollbackTransaction() {
-    if (commitRequested) {
+    DscTransaction transaction = localTransaction.get();
+
+    if (transaction != null && transaction.isCommitRequested()) {
       commitTransaction();
     } else {
       rollbackTransaction();
     }
   }
 
+  /** Return the number of WAL files forced to disk, since this TransactionMgr was created (each may hold a group of transactions). */
+  public long getWalSyncCount() {
+    return walSyncCount.get();
+  }
+
+  public File getWalDirectory() {
+    return walDirectory;
+  }
+
+  /**
+   * Queue the given transaction and wait until it's committed. If no other thread is committing, then the calling thread
+   * becomes the leader: it takes every queued transaction (including its own), validates them, writes the valid ones to
+   * one WAL file, applies them and runs their after-commit actions, while the transactions committed meanwhile queue up
+   * for the next leader. The leader holds the write locks of the group's files throughout; it's the only thread that
+   * holds more than one entity lock at a time, so the order they're locked in doesn't matter.
+   */
+  private void groupCommit(DscTransaction transaction) {
+    GroupCommit commit = new GroupCommit(transaction);
+    List<GroupCommit> group;
+
+    synchronized (commitQueueLock) {
+      commitQueue.add(commit);
+
+      while (committing && !commit.done) {
+        try {
+          commitQueueLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          // keep waiting: the transaction is queued and may already be in the WAL of the current group
+        }
+      }
+
+      if (!commit.done) {
+        committing = true;
+        group = commitQueue;
+        commitQueue = new ArrayList<GroupCommit>();
+      } else {
+        group = null; // committed by another leader
+      }
+    }
+
+    if (group != null) {
+      RuntimeException groupFailure = null;
+      List<DscTransaction> groupTransactions = new ArrayList<DscTransaction>(group.size());
+
+      for (GroupCommit groupCommit : group) {
+        groupTransactions.add(groupCommit.transaction);
+      }
+
+      Set<Lock> writeLocks = getWriteLocks(groupTransactions);
+      if (unappliedWal != null) {
+        writeLocks.addAll(unappliedWal.writeLocks);
+      }
+
+      for (Lock lock : writeLocks) {
+        lock.lock();
+      }
+      try {
+        reapplyUnappliedWal();
+
+        List<DscTransaction> transactions = validateWrites(group);
+        if (!transactions.isEmpty()) {
+          File walFile = writeAheadLog(transactions);
+          List<Runnable> afterCommitActions = getAfterCommitActions(transactions);
+          boolean applied = false;
+
+          try {
+            for (DscTransaction groupTransaction : transactions) {
+              applyWrites(groupTransaction.getWrites());
+            }
+            applied = true;
+          } finally {
+            if (!applied) {
+              unappliedWal = new UnappliedWal(walFile, getWriteLocks(transactions), afterCommitActions);
+            }
+            runAfterCommitActions(afterCommitActions); // the group is committed, even if it failed to apply
+          }
+          deleteWalFile(walFile);
+        }
+      } catch (RuntimeException e) {
+        groupFailure = e;
+      } finally {
+        for (Lock lock : writeLocks) {
+          lock.unlock();
+        }
+      }
+
+      synchronized (commitQueueLock) {
+        for (GroupCommit groupCommit : group) {
+          if (groupCommit.failure == null) {
+            groupCommit.failure = groupFailure; // unless it failed its own validation
+          }
+          groupCommit.done = true;
+        }
+        committing = false;
+        commitQueueLock.notifyAll();
+      }
+    }
+
+    if (commit.failure != null) {
+      throw commit.failure;
+    }
+  }
+
+  /**
+   * Validate the precondition of each write of the given group, in commit order, against the data store as it will be
+   * when the write is applied (i.e., after the writes of the preceding transactions of the group): a created file must
+   * not exist and an updated file must exist. Returns the transactions that may be committed, in order. The failure of
+   * each transaction that conflicts is set to a DAOException; it isn't written, so it doesn't affect the validation of the
+   * transactions after it.
+   */
+  private List<DscTransaction> validateWrites(List<GroupCommit> group) {
+    List<DscTransaction> result = new ArrayList<DscTransaction>(group.size());
+    Map<File, Boolean> existsAfterWrites = new HashMap<File, Boolean>();
+
+    for (GroupCommit groupCommit : group) {
+      Map<File, byte[]> writes = groupCommit.transaction.getWrites();
+      Map<File, WriteType> writeTypes = groupCommit.transaction.getWriteTypes();
+      RuntimeException failure = null;
+
+      for (File file : writes.keySet()) {
+        Boolean existsAfterWrite = existsAfterWrites.get(file);
+        boolean exists = existsAfterWrite == null ? file.exists() : existsAfterWrite.booleanValue();
+        WriteType writeType = writeTypes.get(file);
+
+        if (writeType == WriteType.CREATE && exists) {
+          failure = new DAOException("ERROR: Can't commit the transaction: the entity was created by a concurrent transaction. Path is: '" + file.getAbsolutePath() + "'.");
+          break;
+        }
+        if (writeType == WriteType.UPDATE && !exists) {
+          failure = new DAOException("ERROR: Can't commit the transaction: the entity was deleted by a concurrent transaction. Path is: '" + file.getAbsolutePath() + "'.");
+          break;
+        }
+      }
+
+      if (failure == null) {
+        for (Map.Entry<File, byte[]> write : writes.entrySet()) {
+          existsAfterWrites.put(write.getKey(), write.getValue() != null);
+        }
+        result.add(groupCommit.transaction);
+      } else {
+        groupCommit.failure = failure;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * If a previous group was committed (its WAL was written) but failed to apply, then apply it again before the next
+   * group, so the writes are applied in commit order, and then run its after-commit actions again; if it still fails,
+   * the next group fails too (until it's applied, or recovered on startup).
+   */
+  private void reapplyUnappliedWal() {
+    if (unappliedWal != null) {
+      UnappliedWal wal = unappliedWal;
+      Map<File, byte[]> writes = readAheadLog(wal.walFile);
+
+      if (writes == null) {
+        throw new DAOException("Error - Can't re-apply the WAL file: " + wal.walFile.getAbsolutePath());
+      }
+
+      try {
+        applyWrites(writes);
+        deleteWalFile(wal.walFile);
+        unappliedWal = null;
+      } finally {
+        runAfterCommitActions(wal.afterCommitActions);
+      }
+    }
+  }
+
+  /** Return the write locks of the files written by the given transactions. */
+  private Set<Lock> getWriteLocks(List<DscTransaction> transactions) {
+    Set<Lock> result = new LinkedHashSet<Lock>();
+
+    for (DscTransaction transaction : transactions) {
+      result.addAll(transaction.getWriteLocks());
+    }
+
+    return result;
+  }
+
+  /** Return the after-commit actions of the given transactions, in commit order (actions that are equal are run once). */
+  private List<Runnable> getAfterCommitActions(List<DscTransaction> transactions) {
+    Set<Runnable> result = new LinkedHashSet<Runnable>();
+
+    for (DscTransaction transaction : transactions) {
+      result.addAll(transaction.getAfterCommitActions());
+    }
+
+    return new ArrayList<Runnable>(result);
+  }
+
+  /**
+   * Run the given after-commit actions (null is ignored). A failed action is logged, so it doesn't keep the other actions
+   * of the group from running (nor fail the other transactions, which are committed).
+   */
+  private void runAfterCommitActions(List<Runnable> afterCommitActions) {
+    if (afterCommitActions != null) {
+      for (Runnable action : afterCommitActions) {
+        try {
+          action.run();
+        } catch (RuntimeException e) {
+          logger.error("* ERROR: After-commit action failed: " + action, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the buffered writes of the given transactions (in order) to a new WAL file: the writes are streamed to a temp
+   * file, followed by a CRC32 of the content, which is forced to disk and then renamed to the WAL file. Returns the WAL
+   * file.
+   *
+   * @throws DAOException if the WAL file can't be written.
+   */
+  File writeAheadLog(List<DscTransaction> transactions) {
+    String walName = String.format("commit-%013d-%06d", System.currentTimeMillis(), walSequence.incrementAndGet() % 1000000);
+    File tempFile = new File(walDirectory, walName + WAL_TEMP_FILE_SUFFIX);
+    File walFile = new File(walDirectory, walName + WAL_FILE_SUFFIX);
+    FileOutputStream out = null;
+
+    try {
+      List<Map<File, byte[]>> allWrites = new ArrayList<Map<File, byte[]>>(transactions.size());
+      int numWrites = 0;
+
+      for (DscTransaction transaction : transactions) {
+        Map<File, byte[]> writes = transaction.getWrites();
+
+        allWrites.add(writes);
+        numWrites += writes.size();
+      }
+
+      out = new FileOutputStream(tempFile);
+      CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(out), new CRC32());
+      DataOutputStream dataOut = new DataOutputStream(checkedOut);
+
+      dataOut.writeInt(WAL_MAGIC);
+      dataOut.writeInt(WAL_VERSION);
+      dataOut.writeInt(numWrites);
+      for (Map<File, byte[]> writes : allWrites) {
+        for (Map.Entry<File, byte[]> write : writes.entrySet()) {
+          dataOut.writeUTF(write.getKey().getPath());
+          if (write.getValue() == null) {
+            dataOut.writeInt(-1); // delete
+          } else {
+            dataOut.writeInt(write.getValue().length);
+            dataOut.write(write.getValue());
+          }
+        }
+      }
+      dataOut.flush();
+      long checksum = checkedOut.getChecksum().getValue();
+      dataOut.writeLong(checksum);
+      dataOut.flush();
+
+      out.getChannel().force(false);
+      walSyncCount.incrementAndGet();
+      out.close();
+      out = null;
+
+      if (!tempFile.renameTo(walFile)) {
+        throw new DAOException("Error renaming temp WAL file to: " + walFile.getAbsolutePath());
+      }
+      tempFile = null;
+    } catch (IOException e) {
+      throw new DAOException("Error writing WAL file: " + walFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(out);
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+
+    return walFile;
+  }
+
+  /**
+   * Re-apply each complete WAL file in the WAL directory, in commit order, and delete the temp files of incomplete WAL
+   * files. A WAL file that fails its checksum is logged and left in place.
+   */
+  private void recover() {
+    File[] tempFiles = walDirectory.listFiles(new WalFileFilter(WAL_TEMP_FILE_SUFFIX));
+    File[] walFiles = walDirectory.listFiles(new WalFileFilter(WAL_FILE_SUFFIX));
+
+    if (tempFiles != null) {
+      for (File tempFile : tempFiles) {
+        logger.info("Discarding the WAL file of an incomplete commit: " + tempFile.getAbsolutePath());
+        tempFile.delete();
+      }
+    }
+
+    if (walFiles != null) {
+      Arrays.sort(walFiles); // the names sort in commit order
+
+      for (File walFile : walFiles) {
+        Map<File, byte[]> writes = readAheadLog(walFile);
+
+        if (writes != null) {
+          logger.info("Recovering " + writes.size() + " write(s) from WAL file: " + walFile.getAbsolutePath());
+          applyWrites(writes);
+          deleteWalFile(walFile);
+        }
+      }
+    }
+  }
+
+  /** Read the writes from the given WAL file (later writes to the same file replace earlier ones), or return null if it's corrupt. */
+  private Map<File, byte[]> readAheadLog(File walFile) {
+    Map<File, byte[]> result = new LinkedHashMap<File, byte[]>();
+    DataInputStream dataIn = null;
+
+    try {
+      CheckedInputStream checkedIn = new CheckedInputStream(new BufferedInputStream(new FileInputStream(walFile)), new CRC32());
+      dataIn = new DataInputStream(checkedIn);
+
+      if (dataIn.readInt() != WAL_MAGIC || dataIn.readInt() != WAL_VERSION) {
+        throw new IOException("Not a WAL file.");
+      }
+
+      int numWrites = dataIn.readInt();
+      for (int i = 0; i < numWrites; i++) {
+        File file = new File(dataIn.readUTF());
+        int length = dataIn.readInt();
+        byte[] data = null;
+
+        if (length >= 0) {
+          data = new byte[length];
+          dataIn.readFully(data);
+        }
+        result.remove(file); // keep the order of the last write
+        result.put(file, data);
+      }
+
+      long checksum = checkedIn.getChecksum().getValue();
+      if (dataIn.readLong() != checksum) {
+        throw new IOException("Checksum mismatch.");
+      }
+    } catch (IOException e) {
+      logger.error("* ERROR: Skipping corrupt WAL file: " + walFile.getAbsolutePath(), e);
+      result = null;
+    } finally {
+      IOUtils.closeQuietly(dataIn);
+    }
+
+    return result;
+  }
+
+  /**
+   * Apply the given writes to the data store: each file is written to a temp file in the same directory, which is forced
+   * to disk and renamed to the file (so each applied file is durable before the WAL file is deleted); a null write deletes
+   * the file. Applying the same writes again has the same result, so it's safe to re-apply a WAL file that was partially
+   * applied.
+   */
+  private void applyWrites(Map<File, byte[]> writes) {
+    for (Map.Entry<File, byte[]> write : writes.entrySet()) {
+      File fileToWrite = write.getKey();
+
+      if (write.getValue() == null) {
+        if (!fileToWrite.delete() && fileToWrite.exists()) {
+          throw new DAOException("Error - Couldn't delete the file named: " + fileToWrite.getAbsolutePath());
+        }
+      } else {
+        applyWrite(fileToWrite, write.getValue());
+      }
+    }
+  }
+
+  private void applyWrite(File fileToWrite, final byte[] data) {
+    File directory = fileToWrite.getParentFile();
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new DAOException("Error creating directory: " + directory.getAbsolutePath());
+    }
+
+    FileEntityIndex.writeFile(fileToWrite, new DataStoreEntityWriter() {
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        out.write(data);
+      }
+    });
+  }
+
+  private void deleteWalFile(File walFile) {
+    if (!walFile.delete()) {
+      logger.warn("Couldn't delete the applied WAL file (it will be re-applied on startup): " + walFile.getAbsolutePath());
+    }
+  }
 }
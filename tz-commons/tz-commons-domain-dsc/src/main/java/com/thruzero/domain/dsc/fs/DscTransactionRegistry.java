@@ -0,0 +1,51 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import com.thruzero.common.core.bookmarks.LocatorRegistryBookmark;
+import com.thruzero.common.core.locator.RegistryLocatorStrategy.LocatorLogHelper;
+import com.thruzero.common.core.locator.TransactionMgrLocator;
+import com.thruzero.common.core.transaction.TransactionMgr;
+import com.thruzero.common.core.transaction.TransactionMgrRegistry;
+
+/**
+ * Convenience class for registering the transaction-related interfaces of the file-based data store, provided by this
+ * package. Clients may use this class, or alternatively, use the config file or even register the interfaces manually
+ * via the {@link com.thruzero.common.core.locator.TransactionMgrLocator#getRegistry() TransactionMgrLocator.getRegistry()}
+ * method.
+ *
+ * @author George Norman
+ */
+@LocatorRegistryBookmark(comment = "DscTransactionRegistry")
+public final class DscTransactionRegistry extends TransactionMgrRegistry {
+  private static final DscTransactionRegistry instance = new DscTransactionRegistry();
+
+  /** Use getInstance() to get an instance of this class. */
+  private DscTransactionRegistry() {
+  }
+
+  public static DscTransactionRegistry getInstance() {
+    return instance;
+  }
+
+  /** Register all transaction-related interfaces of the file-based data store. */
+  public void registerAllInterfaces() {
+    // this is only called once
+    new LocatorLogHelper(DscTransactionRegistry.class).logBeginRegisterInterfaces(TransactionMgr.class.getName(), DscTransactionRegistry.class);
+
+    TransactionMgrLocator.getRegistry().registerInterface(TransactionMgr.class, DscTransactionMgr.class);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.EntityChangeSource.ChangeType;
+import com.thruzero.domain.dao.EntityChangeSource.EntityChangeListener;
+
+/**
+ * Watches the entity files under a base store directory (recursively) and publishes each file that's created, modified
+ * or deleted as an {@code EntityPath}, relative to the base store directory (e.g., "/a/b/x.xml"). This lets caches see
+ * edits made directly on disk (e.g., content deployed by an editor), instead of relying on a time-to-live.
+ * <p>
+ * The directory is polled: each scan compares the last-modified time and size of every file to the previous scan.
+ * Consequently, a change that preserves both (e.g., a same-size edit within the file system's timestamp resolution) isn't
+ * detected, and changes are reported up to one poll interval late. Temporary files of incomplete writes and os x junk are
+ * ignored (see {@link FileEntityIndex#isEntityFileName(String)}).
+ *
+ * @author George Norman
+ */
+public final class FileChangeWatcher {
+  private static final Logger logger = Logger.getLogger(FileChangeWatcher.class);
+
+  private final File baseDirectory;
+  private final long pollInterval;
+  private final List<EntityChangeListener> listeners = new CopyOnWriteArrayList<EntityChangeListener>();
+
+  private Map<String, FileState> snapshot; // guarded by this; null until the first scan
+  private ScheduledExecutorService scheduler; // guarded by this
+
+  // ------------------------------------------------
+  // FileState
+  // ------------------------------------------------
+
+  private static final class FileState {
+    private final long lastModified;
+    private final long length;
+
+    public FileState(File file) {
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof FileState)) {
+        return false;
+      }
+      FileState other = (FileState)obj;
+
+      return lastModified == other.lastModified && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int)(lastModified ^ length);
+    }
+  }
+
+  // ------------------------------------------------
+  // FileChangeWatcherThreadFactory
+  // ------------------------------------------------
+
+  private static final class FileChangeWatcherThreadFactory implements ThreadFactory {
+    private final String threadName;
+
+    public FileChangeWatcherThreadFactory(String threadName) {
+      this.threadName = threadName;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, threadName);
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ============================================================
+  // FileChangeWatcher
+  // ============================================================
+
+  /**
+   * @param baseDirectory the directory to watch (it doesn't need to exist yet).
+   * @param pollInterval the time between the end of one scan and the start of the next, in milliseconds.
+   */
+  public FileChangeWatcher(File baseDirectory, long pollInterval) {
+    this.baseDirectory = baseDirectory;
+    this.pollInterval = pollInterval;
+  }
+
+  /** Take the initial snapshot of the base directory and start polling it, on a daemon thread. Does nothing if already started. */
+  public synchronized void start() {
+    if (scheduler == null) {
+      if (snapshot == null) {
+        snapshot = scan();
+      }
+
+      scheduler = Executors.newSingleThreadScheduledExecutor(new FileChangeWatcherThreadFactory("file-change-watcher-" + baseDirectory.getName()));
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            poll();
+          } catch (RuntimeException e) {
+            logger.error("* ERROR: Scan for file changes failed: " + baseDirectory, e);
+          }
+        }
+      }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Stop polling (a scan in progress completes). */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      scheduler = null;
+    }
+  }
+
+  public synchronized boolean isStarted() {
+    return scheduler != null;
+  }
+
+  /**
+   * Scan the base directory now and publish the changes made since the previous scan, in path order, to each listener;
+   * returns the number of changes. The first scan only takes the snapshot.
+   */
+  public int poll() {
+    Map<EntityPath, ChangeType> changes = new TreeMap<EntityPath, ChangeType>();
+
+    synchronized (this) {
+      Map<String, FileState> currentSnapshot = scan();
+
+      if (snapshot != null) {
+        for (Map.Entry<String, FileState> entry : currentSnapshot.entrySet()) {
+          FileState previousState = snapshot.remove(entry.getKey());
+
+          if (previousState == null) {
+            changes.put(toEntityPath(entry.getKey()), ChangeType.CREATED);
+          } else if (!previousState.equals(entry.getValue())) {
+            changes.put(toEntityPath(entry.getKey()), ChangeType.MODIFIED);
+          }
+        }
+        for (String deletedPath : snapshot.keySet()) {
+          changes.put(toEntityPath(deletedPath), ChangeType.DELETED);
+        }
+      }
+      snapshot = currentSnapshot;
+    }
+
+    // publish outside of the lock, so a listener can't stall (or dead-lock) the watcher
+    for (Map.Entry<EntityPath, ChangeType> change : changes.entrySet()) {
+      fireEntityChanged(change.getKey(), change.getValue());
+    }
+
+    return changes.size();
+  }
+
+  public void addEntityChangeListener(EntityChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeEntityChangeListener(EntityChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  public File getBaseDirectory() {
+    return baseDirectory;
+  }
+
+  private void fireEntityChanged(EntityPath entityPath, ChangeType changeType) {
+    logger.debug("Entity " + changeType + ": " + entityPath);
+
+    for (EntityChangeListener listener : listeners) {
+      try {
+        listener.entityChanged(entityPath, changeType);
+      } catch (RuntimeException e) {
+        logger.error("EntityChangeListener failed for entity path: " + entityPath, e);
+      }
+    }
+  }
+
+  /** Return the state of every entity file under the base directory, keyed by its path relative to the base directory (e.g., "/a/b/x.xml"). */
+  private Map<String, FileState> scan() {
+    Map<String, FileState> result = new TreeMap<String, FileState>();
+
+    scanDirectory(baseDirectory, ContainerPath.CONTAINER_PATH_SEPARATOR, result);
+
+    return result;
+  }
+
+  private void scanDirectory(File directory, String relativePath, Map<String, FileState> result) {
+    File[] files = directory.listFiles();
+
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          scanDirectory(file, relativePath + file.getName() + ContainerPath.CONTAINER_PATH_SEPARATOR, result);
+        } else if (FileEntityIndex.isEntityFileName(file.getName())) {
+          result.put(relativePath + file.getName(), new FileState(file));
+        }
+      }
+    }
+  }
+
+  private static EntityPath toEntityPath(String relativePath) {
+    int separatorIndex = relativePath.lastIndexOf(ContainerPath.CONTAINER_PATH_SEPARATOR) + 1;
+
+    return new EntityPath(relativePath.substring(0, separatorIndex), relativePath.substring(separatorIndex));
+  }
+}
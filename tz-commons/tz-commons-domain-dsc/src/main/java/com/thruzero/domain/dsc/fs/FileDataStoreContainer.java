@@ -20,10 +20,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import com.thruzero.common.core.support.ContainerPath;
@@ -140,7 +140,7 @@ public class FileDataStoreContainer implements DataStoreContainer {
     if (files != null) {
       for (File file : files) {
         if (file.isFile()) {
-          if (!".DS_Store".equals(file.getName())) { // ignore os x junk.
+          if (FileEntityIndex.isEntityFileName(file.getName())) { // ignore os x junk and incomplete writes.
             EntityPath id = new EntityPath(childPath.getPath(), file.getName());
 
             result.add(id);
@@ -183,28 +183,42 @@ public class FileDataStoreContainer implements DataStoreContainer {
   }
 
   /**
-   * Update an existing data file with the given fileData.
+   * Creates a new data file, if nonexistent and then streams the data from the given entityWriter to it.
+   */
+  @Override
+  public void saveOrUpdateEntity(String fileName, DataStoreEntityWriter entityWriter) {
+    if (!isExistingEntity(fileName)) {
+      // create the file
+      createNewEntity(fileName);
+    }
+
+    // then, write data to it
+    writeFile(getFileFor(fileName), entityWriter);
+  }
+
+  /**
+   * Update an existing data file with the given fileData (copied from the stream through a bounded buffer).
    * 
    * @throws DAOException
    *           if nonexistent.
    */
   @Override
-  public void updateEntity(String fileName, DataStoreEntity fileData) {
+  public void updateEntity(String fileName, final DataStoreEntity fileData) {
     File fileToWrite = getFileFor(fileName);
 
     if (fileToWrite.exists()) {
-      byte[] dataAsBytes;
-      try {
-        dataAsBytes = IOUtils.toByteArray(fileData.getData());
-      } catch (IOException e1) {
-        throw new DAOException("ERROR: Can't read fileData (to byte array).");
-      }
-
-      try {
-        FileUtils.writeByteArrayToFile(fileToWrite, dataAsBytes);
-      } catch (IOException e) {
-        throw new DAOException("Error writing to file: " + fileToWrite.getAbsolutePath(), e);
-      }
+      writeFile(fileToWrite, new DataStoreEntityWriter() {
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+          InputStream in = fileData.getData();
+
+          try {
+            IOUtils.copy(in, out);
+          } finally {
+            IOUtils.closeQuietly(in);
+          }
+        }
+      });
     } else {
       throw new DAOException("Error - Can't write to file that doesn't exist: " + fileToWrite.getAbsolutePath());
     }
@@ -270,6 +284,14 @@ public class FileDataStoreContainer implements DataStoreContainer {
     return fileToCreate.exists();
   }
 
+  /**
+   * Stream the data from the given entityWriter to the given file (overwriting it) via a temp file, so a failed write
+   * never leaves a truncated file behind (see {@link FileEntityIndex#writeFile(File, DataStoreEntityWriter)}).
+   */
+  protected void writeFile(File fileToWrite, DataStoreEntityWriter entityWriter) {
+    FileEntityIndex.writeFile(fileToWrite, entityWriter);
+  }
+
   protected File getFileFor(String fileName) {
     File result = new File(containerStore, fileName);
 
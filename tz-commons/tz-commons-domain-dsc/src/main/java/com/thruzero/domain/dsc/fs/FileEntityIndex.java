@@ -0,0 +1,230 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntityWriter;
+
+/**
+ * An in-memory index of the directories, and the entity files within them, managed by an
+ * {@link com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainerFactory IndexedFileDataStoreContainerFactory}. Each
+ * directory is listed once, the first time it's accessed; after that, the index is updated incrementally as entities are
+ * created and deleted, so listing and existence checks don't touch the file system.
+ * <p>
+ * Note: The index assumes it's the only writer of the directories it manages. If the files are changed by another
+ * process, then the affected directories must be invalidated (or the index cleared), so they'll be listed again.
+ *
+ * @author George Norman
+ */
+public class FileEntityIndex {
+  /** Suffix of the temp files written by {@link #writeFile(File, DataStoreEntityWriter)}, before they're renamed to the entity file. */
+  public static final String TEMP_FILE_SUFFIX = ".dsc-tmp";
+
+  private final ConcurrentMap<String, IndexedDirectory> directories = new ConcurrentHashMap<String, IndexedDirectory>();
+
+  // ------------------------------------------------
+  // IndexedDirectory
+  // ------------------------------------------------
+
+  /** The names of the entity files and sub-directories within a single directory. */
+  public static class IndexedDirectory {
+    private final File directory;
+    private final Set<String> entityNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> subdirectoryNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    protected IndexedDirectory(final File directory) {
+      this.directory = directory;
+    }
+
+    public File getDirectory() {
+      return directory;
+    }
+
+    /** Return a live, thread-safe view of the names of the entities within this directory. */
+    public Set<String> getEntityNames() {
+      return Collections.unmodifiableSet(entityNames);
+    }
+
+    /** Return a live, thread-safe view of the names of the sub-directories within this directory. */
+    public Set<String> getSubdirectoryNames() {
+      return Collections.unmodifiableSet(subdirectoryNames);
+    }
+
+    public boolean isExistingEntity(final String entityName) {
+      return entityNames.contains(entityName);
+    }
+
+    public boolean isExistingSubdirectory(final String name) {
+      return subdirectoryNames.contains(name);
+    }
+
+    public void addEntity(final String entityName) {
+      entityNames.add(entityName);
+    }
+
+    public void removeEntity(final String entityName) {
+      entityNames.remove(entityName);
+    }
+
+    protected void load() {
+      File[] files = directory.listFiles();
+
+      if (files != null) {
+        for (File file : files) {
+          if (file.isFile()) {
+            if (isEntityFileName(file.getName())) {
+              entityNames.add(file.getName());
+            }
+          } else if (file.isDirectory()) {
+            subdirectoryNames.add(file.getName());
+          }
+        }
+      }
+    }
+  }
+
+  // ============================================================
+  // FileEntityIndex
+  // ============================================================
+
+  /** Return true if the given file name is an entity (i.e., not os x junk or an incomplete write). */
+  public static boolean isEntityFileName(final String fileName) {
+    return !".DS_Store".equals(fileName) && !fileName.endsWith(TEMP_FILE_SUFFIX);
+  }
+
+  /**
+   * Stream the data from the given entityWriter to a temp file, in the directory of the given file, force it to disk and
+   * then rename it to the given file (overwriting it), so a failed write never leaves a truncated file behind and readers
+   * see either the old or the new contents. If the platform won't rename over an existing file (e.g., Windows), then the
+   * existing file is deleted first.
+   *
+   * @throws DAOException if the file can't be written.
+   */
+  public static void writeFile(final File fileToWrite, final DataStoreEntityWriter entityWriter) {
+    File tempFile = null;
+    FileOutputStream out = null;
+
+    try {
+      tempFile = File.createTempFile("~" + fileToWrite.getName() + "-", TEMP_FILE_SUFFIX, fileToWrite.getParentFile());
+      out = new FileOutputStream(tempFile);
+
+      BufferedOutputStream bufferedOut = new BufferedOutputStream(out);
+      entityWriter.writeTo(bufferedOut);
+      bufferedOut.flush();
+      out.getChannel().force(false);
+      out.close();
+      out = null;
+
+      if (!tempFile.renameTo(fileToWrite)) {
+        if (!fileToWrite.delete() || !tempFile.renameTo(fileToWrite)) {
+          throw new DAOException("Error renaming temp file to: " + fileToWrite.getAbsolutePath());
+        }
+      }
+      tempFile = null;
+    } catch (IOException e) {
+      throw new DAOException("Error writing to file: " + fileToWrite.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(out);
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Return the index of the given directory, listing it if it hasn't been indexed yet. If the directory doesn't exist,
+   * then it's created (including any nonexistent parents) if {@code createIfNonExistent} is true; otherwise null is
+   * returned.
+   */
+  public IndexedDirectory getDirectory(final File directory, final boolean createIfNonExistent) {
+    String key = toKey(directory);
+    IndexedDirectory result = directories.get(key);
+
+    if (result == null) {
+      boolean exists = directory.isDirectory();
+
+      if (!exists && createIfNonExistent) {
+        exists = directory.mkdirs() || directory.isDirectory(); // another thread may have created it
+        if (exists) {
+          addToParent(directory);
+        }
+      }
+
+      if (exists) {
+        IndexedDirectory newDirectory = new IndexedDirectory(directory);
+
+        newDirectory.load();
+        result = directories.putIfAbsent(key, newDirectory);
+        if (result == null) {
+          result = newDirectory;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /** Remove the given directory from the index, so it will be listed again the next time it's accessed. */
+  public void invalidate(final File directory) {
+    directories.remove(toKey(directory));
+  }
+
+  /** Remove all directories from the index. */
+  public void clear() {
+    directories.clear();
+  }
+
+  /** Return the number of directories currently indexed. */
+  public int size() {
+    return directories.size();
+  }
+
+  /** Register a newly created directory (and any newly created parents) with its parent, if the parent is indexed. */
+  protected void addToParent(final File directory) {
+    File child = directory.getAbsoluteFile();
+    File parent = child.getParentFile();
+
+    while (parent != null) {
+      IndexedDirectory indexedParent = directories.get(toKey(parent));
+
+      if (indexedParent != null) {
+        indexedParent.subdirectoryNames.add(child.getName());
+        break;
+      }
+
+      child = parent;
+      parent = parent.getParentFile();
+    }
+  }
+
+  protected String toKey(final File directory) {
+    String result = FilenameUtils.normalizeNoEndSeparator(directory.getAbsolutePath());
+
+    return result == null ? directory.getAbsolutePath() : result; // normalize returns null if the path can't be normalized (e.g., "/../foo")
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.fs.FileEntityIndex.IndexedDirectory;
+import com.thruzero.domain.dsc.store.DataStoreContainer;
+import com.thruzero.domain.dsc.store.DataStoreException;
+import com.thruzero.domain.store.BaseStorePath;
+
+/**
+ * A DataStoreContainer that manages the files within a single directory, like {@link FileDataStoreContainer}, but uses a
+ * {@link FileEntityIndex} shared by all containers of the same factory, so listing a container and checking if an entity
+ * exists are answered from memory instead of walking the directory (and stat'ing each file).
+ * <p>
+ * Entities smaller than the stream threshold are read onto the heap in one pass (the file is closed before the data is
+ * returned); larger entities are streamed from the file, which the caller must close. Entities are written by streaming the data to a temp file in the same directory and
+ * then renaming it to the entity file, so readers never see a partially written entity.
+ *
+ * @author George Norman
+ */
+public class IndexedFileDataStoreContainer implements DataStoreContainer {
+  private final FileEntityIndex index;
+  private final IndexedDirectory indexedDirectory;
+  private final File containerStore;
+  private final long streamThreshold;
+
+  // ------------------------------------------------
+  // IndexedFileDataStoreEntity
+  // ------------------------------------------------
+
+  /**
+   * Represents a file in the file system. The data is read each time {@code getData()} is called.
+   */
+  public static class IndexedFileDataStoreEntity implements DataStoreEntity {
+    private final File file;
+    private final EntityPath entityPath;
+    private final long streamThreshold;
+
+    public IndexedFileDataStoreEntity(final File file, final EntityPath entityPath, final long streamThreshold) {
+      this.file = file;
+      this.entityPath = entityPath;
+      this.streamThreshold = streamThreshold;
+    }
+
+    /**
+     * Return the data of the file, or null if the file no longer exists. Files smaller than the stream threshold are read
+     * fully and closed; larger files are returned as an open stream.
+     *
+     * @throws DAOException if the file exists, but can't be read.
+     */
+    @Override
+    public InputStream getData() {
+      InputStream result = null;
+
+      if (file.exists()) {
+        FileInputStream fis = null;
+
+        try {
+          fis = new FileInputStream(file);
+          long size = fis.getChannel().size();
+
+          if (size >= streamThreshold) {
+            result = new BufferedInputStream(fis);
+            fis = null; // closed by the caller
+          } else {
+            result = new ByteArrayInputStream(IOUtils.toByteArray(fis));
+          }
+        } catch (FileNotFoundException e) {
+          if (file.exists()) {
+            throw new DAOException("Error reading file: " + file.getAbsolutePath(), e);
+          }
+          // deleted since it was checked, so return null
+        } catch (IOException e) {
+          throw new DAOException("Error reading file: " + file.getAbsolutePath(), e);
+        } finally {
+          IOUtils.closeQuietly(fis);
+        }
+      }
+
+      return result;
+    }
+
+    @Override
+    public EntityPath getEntityPath() {
+      return entityPath;
+    }
+
+    public File getFile() {
+      return file;
+    }
+  }
+
+  // ============================================================
+  // IndexedFileDataStoreContainer
+  // ============================================================
+
+  /**
+   * The given baseStorePath and containerPath are combined to produce an absolute file path to the directory. If it's
+   * nonexistent and createParentContainersIfNonExistent is true, then the directory will be created, including all
+   * nonexistent parent directories.
+   *
+   * @throws DAOException if the path refers to a file that's not a directory.
+   */
+  public IndexedFileDataStoreContainer(final FileEntityIndex index, final BaseStorePath baseStorePath, final ContainerPath containerPath,
+      final boolean createParentContainersIfNonExistent, final long streamThreshold) {
+    this.index = index;
+    this.containerStore = new File(baseStorePath.toString(), containerPath.getPath());
+    this.streamThreshold = streamThreshold;
+    this.indexedDirectory = index.getDirectory(containerStore, createParentContainersIfNonExistent);
+
+    // assert that the containerStore is a directory
+    if (indexedDirectory == null && containerStore.exists()) {
+      throw new DAOException("Error - The directory store is not a directory: " + containerStore.getAbsolutePath());
+    }
+  }
+
+  @Override
+  public List<? extends DataStoreEntity> getAllEntities(final boolean recursive) {
+    List<DataStoreEntity> result = new ArrayList<DataStoreEntity>();
+
+    doGetAllEntities(indexedDirectory, new ContainerPath(), recursive, result, null);
+
+    return result;
+  }
+
+  @Override
+  public List<EntityPath> getAllEntityPaths(final boolean recursive) {
+    List<EntityPath> result = new ArrayList<EntityPath>();
+
+    doGetAllEntities(indexedDirectory, new ContainerPath(), recursive, null, result);
+
+    return result;
+  }
+
+  /** Add the entities (and/or their paths) of the given directory, and if recursive, of all its sub-directories. */
+  protected void doGetAllEntities(final IndexedDirectory directory, final ContainerPath childPath, final boolean recursive, final List<DataStoreEntity> entities,
+      final List<EntityPath> entityPaths) {
+    if (directory != null) {
+      for (String entityName : directory.getEntityNames()) {
+        EntityPath entityPath = new EntityPath(childPath.getPath(), entityName);
+
+        if (entities != null) {
+          entities.add(new IndexedFileDataStoreEntity(new File(directory.getDirectory(), entityName), entityPath, streamThreshold));
+        }
+        if (entityPaths != null) {
+          entityPaths.add(entityPath);
+        }
+      }
+
+      if (recursive) {
+        for (String subdirectoryName : directory.getSubdirectoryNames()) {
+          IndexedDirectory subdirectory = index.getDirectory(new File(directory.getDirectory(), subdirectoryName), false);
+          ContainerPath nextChildPath = new ContainerPath(childPath, subdirectoryName + ContainerPath.CONTAINER_PATH_SEPARATOR);
+
+          doGetAllEntities(subdirectory, nextChildPath, recursive, entities, entityPaths);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a DataStoreEntity that represents the data from the file specified by the given fileName, or null if it
+   * doesn't exist.
+   */
+  @Override
+  public DataStoreEntity readEntity(final String fileName) {
+    DataStoreEntity result = null;
+
+    if (isExistingEntity(fileName)) {
+      result = new IndexedFileDataStoreEntity(getFileFor(fileName), new EntityPath(new ContainerPath(), fileName), streamThreshold);
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the given data to the file, creating it if nonexistent.
+   */
+  @Override
+  public void saveOrUpdateEntity(final String fileName, final DataStoreEntity fileData) {
+    writeEntity(getRequiredDirectory(fileName), fileName, fileData);
+  }
+
+  /**
+   * Streams the data from the given entityWriter to the file, creating it if nonexistent.
+   */
+  @Override
+  public void saveOrUpdateEntity(final String fileName, final DataStoreEntityWriter entityWriter) {
+    writeEntity(getRequiredDirectory(fileName), fileName, entityWriter);
+  }
+
+  /**
+   * Update an existing data file with the given fileData.
+   *
+   * @throws DAOException if nonexistent.
+   */
+  @Override
+  public void updateEntity(final String fileName, final DataStoreEntity fileData) {
+    if (!isExistingEntity(fileName)) {
+      throw new DAOException("Error - Can't write to file that doesn't exist: " + getDebugPathInfo(fileName));
+    }
+
+    writeEntity(indexedDirectory, fileName, fileData);
+  }
+
+  /**
+   * Create a new, empty data file.
+   *
+   * @throws DAOException if file already exists or could not be created.
+   */
+  @Override
+  public void createNewEntity(final String fileName) {
+    IndexedDirectory directory = getRequiredDirectory(fileName);
+    File fileToCreate = getFileFor(fileName);
+
+    if (directory.isExistingEntity(fileName)) {
+      throw new DAOException("Error - Can't create a file that already exists: " + fileToCreate.getAbsolutePath());
+    } else {
+      boolean fileCreated = false;
+
+      try {
+        fileCreated = fileToCreate.createNewFile();
+      } catch (IOException e) {
+        // ignore
+      }
+
+      if (!fileCreated) {
+        throw new DAOException("Error creating file: " + fileToCreate.getAbsolutePath());
+      }
+      directory.addEntity(fileName);
+    }
+  }
+
+  /**
+   * Deletes the file specified by the given fileName.
+   *
+   * @throws DAOException if file is a directory or could not be deleted.
+   */
+  @Override
+  public void deleteEntity(final String fileName) {
+    if (indexedDirectory != null) {
+      File fileToDelete = getFileFor(fileName);
+
+      // assert that the file is not a directory
+      if (indexedDirectory.isExistingSubdirectory(fileName)) {
+        throw new DAOException("Error - The file name refers to a directory: " + fileToDelete.getAbsolutePath());
+      }
+
+      // delete it if it exists
+      if (indexedDirectory.isExistingEntity(fileName)) {
+        if (!fileToDelete.delete() && fileToDelete.exists()) {
+          throw new DAOException("Error - Couldn't delete the file named: " + fileToDelete.getAbsolutePath());
+        }
+        indexedDirectory.removeEntity(fileName);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the specified file is in the index.
+   */
+  @Override
+  public boolean isExistingEntity(final String fileName) {
+    return indexedDirectory != null && indexedDirectory.isExistingEntity(fileName);
+  }
+
+  @Override
+  public String getDebugPathInfo(final String fileName) {
+    return getFileFor(fileName).getAbsolutePath();
+  }
+
+  @Override
+  public void validate() {
+    File parentDirectory = containerStore.getParentFile();
+    if (!parentDirectory.exists() && !parentDirectory.getParentFile().exists()) {
+      throw new DataStoreException("ERROR: The parent directory for the data store does not exist: '" + parentDirectory.getAbsolutePath() + "'.");
+    }
+  }
+
+  protected File getFileFor(final String fileName) {
+    return new File(containerStore, fileName);
+  }
+
+  /** Return the indexed directory, creating it if it didn't exist when this container was created. */
+  protected IndexedDirectory getRequiredDirectory(final String fileName) {
+    IndexedDirectory result = indexedDirectory;
+
+    if (result == null) {
+      result = index.getDirectory(containerStore, true);
+
+      if (result == null) {
+        throw new DAOException("Error - Can't create the directory for file: " + getDebugPathInfo(fileName));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Stream the given data to a temp file, in the same directory, and then rename it to the entity file, so the entity is
+   * replaced in a single step (see {@link FileEntityIndex#writeFile(File, DataStoreEntityWriter)}).
+   */
+  protected void writeEntity(final IndexedDirectory directory, final String fileName, final DataStoreEntity fileData) {
+    writeEntity(directory, fileName, new DataStoreEntityWriter() {
+      @Override
+      public void writeTo(final OutputStream out) throws IOException {
+        InputStream in = fileData.getData();
+
+        try {
+          IOUtils.copy(in, out);
+        } finally {
+          IOUtils.closeQuietly(in);
+        }
+      }
+    });
+  }
+
+  /** Stream the data from the given entityWriter to a temp file and then rename it to the entity file (see above). */
+  protected void writeEntity(final IndexedDirectory directory, final String fileName, final DataStoreEntityWriter entityWriter) {
+    FileEntityIndex.writeFile(new File(directory.getDirectory(), fileName), entityWriter);
+    directory.addEntity(fileName);
+  }
+
+}
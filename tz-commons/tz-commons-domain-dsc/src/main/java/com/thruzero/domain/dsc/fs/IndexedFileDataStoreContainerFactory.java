@@ -0,0 +1,120 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import java.io.File;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
+import com.thruzero.common.core.locator.InitializationException;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.domain.dsc.store.DataStoreContainer;
+import com.thruzero.domain.store.BaseStorePath;
+
+/**
+ * A factory for creating instances of {@link com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainer IndexedFileDataStoreContainer}, which share a single
+ * {@link FileEntityIndex} of the base store managed by this factory (i.e., one index per DAO). It's configured the same way as the
+ * {@code FileDataStoreContainerFactory}, but uses its own section:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.domain.dsc.dao.AbstractDataStoreDAO">
+ *     <entry key="com.thruzero.domain.dsc.store.DataStoreContainerFactory" value="com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainerFactory" />
+ *   </section>
+ *
+ *   <section name="com.thruzero.domain.dsc.fs.IndexedFileDataStoreContainerFactory">
+ *     <entry key="rootStorePath" value="/home/george/pf-test-desktop/demo-data-store" />
+ *     <entry key="streamThreshold" value="1048576" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * @author George Norman
+ */
+public class IndexedFileDataStoreContainerFactory extends FileDataStoreContainerFactory {
+  /** Files smaller than this are read onto the heap; larger files are streamed from the file system. */
+  public static final long DEFAULT_STREAM_THRESHOLD = 1024 * 1024;
+
+  private final FileEntityIndex index = new FileEntityIndex();
+  private long streamThreshold = DEFAULT_STREAM_THRESHOLD;
+
+  // ------------------------------------------------
+  // IndexedFileDataStoreContainerFactoryInitParamKeys
+  // ------------------------------------------------
+
+  /**
+   * Initialization parameter keys defined for {@code IndexedFileDataStoreContainerFactory}.
+   */
+  @InitializationParameterKeysBookmark
+  public interface IndexedFileDataStoreContainerFactoryInitParamKeys extends FileDataStoreContainerFactoryInitParamKeys {
+    /** The parameter key that defines the minimum size, in bytes, of a file to be streamed (instead of read onto the heap): "streamThreshold" (default is 1M). */
+    String STREAM_THRESHOLD = "streamThreshold";
+  }
+
+  // ============================================================
+  // IndexedFileDataStoreContainerFactory
+  // ============================================================
+
+  @Override
+  public BaseStorePath doInit(InitializationStrategy daoInitStrategy, String sourceSectionName, StringMap dscFactoryParams, String baseName) {
+    BaseStorePath result = super.doInit(daoInitStrategy, sourceSectionName, dscFactoryParams, baseName);
+    String threshold = dscFactoryParams.get(IndexedFileDataStoreContainerFactoryInitParamKeys.STREAM_THRESHOLD);
+
+    if (StringUtils.isNotEmpty(threshold)) {
+      try {
+        streamThreshold = Long.parseLong(threshold.trim());
+      } catch (NumberFormatException e) {
+        throw new InitializationException("ERROR: " + IndexedFileDataStoreContainerFactoryInitParamKeys.STREAM_THRESHOLD + " is not a number: " + threshold, e,
+            daoInitStrategy);
+      }
+    }
+    index.clear();
+
+    return result;
+  }
+
+  @Override
+  public DataStoreContainer createDataStoreContainer(ContainerPath containerPath, boolean createParentContainersIfNonExistent) {
+    return new IndexedFileDataStoreContainer(index, getBaseStorePath(), containerPath, createParentContainersIfNonExistent, streamThreshold);
+  }
+
+  /** Return the index shared by all containers created by this factory (e.g., to invalidate directories changed by another process). */
+  public FileEntityIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Remove the directory of the given container from the index, so it will be listed again the next time it's accessed. If includeParents is true,
+   * then its parent directories (up to the base store) are also removed (e.g., because a directory was created or deleted by another process).
+   */
+  public void invalidate(ContainerPath containerPath, boolean includeParents) {
+    File baseDirectory = new File(getBaseStorePath().toString());
+    File directory = new File(baseDirectory, containerPath.getPath());
+
+    index.invalidate(directory);
+    if (includeParents) {
+      String basePath = baseDirectory.getAbsolutePath();
+
+      for (File parent = directory.getAbsoluteFile().getParentFile(); parent != null && parent.getPath().startsWith(basePath); parent = parent.getParentFile()) {
+        index.invalidate(parent);
+      }
+    }
+  }
+
+}
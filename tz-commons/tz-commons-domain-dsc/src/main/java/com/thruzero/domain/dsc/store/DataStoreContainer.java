@@ -15,7 +15,9 @@
  */
 package com.thruzero.domain.dsc.store;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 import com.thruzero.common.core.support.EntityPath;
@@ -49,6 +51,19 @@ public interface DataStoreContainer {
     InputStream getData();
   }
 
+  // ------------------------------------------------
+  // DataStoreEntityWriter
+  // ------------------------------------------------
+
+  /**
+   * Writes the "flattened" data of an entity directly to a stream of the data store (e.g., a FileOutputStream), so the
+   * data doesn't have to be materialized in memory first.
+   */
+  public static interface DataStoreEntityWriter {
+    /** Write the data to the given stream. The stream is owned (and closed) by the DataStoreContainer. */
+    void writeTo(OutputStream out) throws IOException;
+  }
+
   // ============================================================
   // DataStoreContainer
   // ============================================================
@@ -77,6 +92,13 @@ public interface DataStoreContainer {
    */
   void saveOrUpdateEntity(String entityName, DataStoreEntity dataStoreEntity);
 
+  /**
+   * If an entity with the given {@code entityName} does not exist, in the container managed by this
+   * {@code DataStoreContainer}, then create it; then, pass a stream of the entity to the given {@code entityWriter}
+   * (overwriting any existing data). A streaming store writes through a bounded buffer only.
+   */
+  void saveOrUpdateEntity(String entityName, DataStoreEntityWriter entityWriter);
+
   /**
    * Overwrite the existing entity, with the given {@code entityName} and in the container managed by this
    * {@code DataStoreContainer}, with the the given {@code dataEntity}.
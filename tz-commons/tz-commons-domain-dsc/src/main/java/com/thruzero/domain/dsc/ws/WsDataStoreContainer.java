@@ -31,6 +31,7 @@ import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.domain.dsc.store.DataStoreContainer;
+import com.thruzero.domain.dsc.store.DataStoreException;
 import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
 import com.thruzero.domain.store.BaseStorePath;
 
@@ -96,6 +97,16 @@ public class WsDataStoreContainer implements DataStoreContainer {
 
   }
 
+  /**
+   * Not supported yet: the web service has no streaming write operation.
+   *
+   * @throws DataStoreException always.
+   */
+  @Override
+  public void saveOrUpdateEntity(String entityName, DataStoreEntityWriter entityWriter) {
+    throw new DataStoreException("ERROR: Streaming writes are not supported by " + getClass().getSimpleName() + " (entity: '" + entityName + "').");
+  }
+
   @Override
   public void updateEntity(String entityName, DataStoreEntity dataStoreEntity) {
     // TODO-p2(george) Auto-generated method stub
@@ -0,0 +1,220 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dsc.test.support.AbstractDomainDscTestCase;
+import com.thruzero.domain.locator.DAOLocator;
+import com.thruzero.domain.model.TextEnvelope;
+
+/**
+ * Multi-threaded stress test of the per-entity striped locks of AbstractDataStoreDAO (via DscTextEnvelopeDAO). The
+ * workload is 90% reads and 10% updates, spread across a set of entities; no read may see a missing or partially
+ * written entity. The throughput of the striped locks is also compared with the previous method-level synchronization
+ * (modeled by synchronizing on the DAO around each call), at an increasing number of threads (logged at debug level).
+ *
+ * @author George Norman
+ */
+public class AbstractDataStoreDAOStressTest extends AbstractDomainDscTestCase<DscTextEnvelopeDAO> {
+  private static final Logger logger = Logger.getLogger(AbstractDataStoreDAOStressTest.class);
+
+  private static final int ENTITY_COUNT = 64;
+  private static final int OPERATIONS_PER_THREAD = 1000;
+  private static final int THREAD_COUNT = 8;
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+  private static final String DATA_PREFIX = "stress-data-";
+
+  // ---------------------------------------------------------
+  // DaoAccess
+  // ---------------------------------------------------------
+
+  private static interface DaoAccess {
+    TextEnvelope read(EntityPath entityPath);
+
+    void update(TextEnvelope textEnvelope);
+  }
+
+  // ---------------------------------------------------------
+  // SynchronizedDaoAccess
+  // ---------------------------------------------------------
+
+  /** Models the previous implementation, where every DAO method was synchronized on the DAO singleton. */
+  private static final class SynchronizedDaoAccess implements DaoAccess {
+    private final TextEnvelopeDAO dao;
+
+    SynchronizedDaoAccess(TextEnvelopeDAO dao) {
+      this.dao = dao;
+    }
+
+    @Override
+    public TextEnvelope read(EntityPath entityPath) {
+      synchronized (dao) {
+        return dao.getTextEnvelope(entityPath);
+      }
+    }
+
+    @Override
+    public void update(TextEnvelope textEnvelope) {
+      synchronized (dao) {
+        dao.update(textEnvelope);
+      }
+    }
+  }
+
+  // ---------------------------------------------------------
+  // StripedDaoAccess
+  // ---------------------------------------------------------
+
+  private static final class StripedDaoAccess implements DaoAccess {
+    private final TextEnvelopeDAO dao;
+
+    StripedDaoAccess(TextEnvelopeDAO dao) {
+      this.dao = dao;
+    }
+
+    @Override
+    public TextEnvelope read(EntityPath entityPath) {
+      return dao.getTextEnvelope(entityPath);
+    }
+
+    @Override
+    public void update(TextEnvelope textEnvelope) {
+      dao.update(textEnvelope);
+    }
+  }
+
+  // ============================================================================
+  // AbstractDataStoreDAOStressTest
+  // ============================================================================
+
+  public AbstractDataStoreDAOStressTest() {
+    super(DscTextEnvelopeDAO.class);
+  }
+
+  @Test
+  public void testConcurrentReadsAndUpdates() throws Exception {
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+    EntityPath[] entityPaths = createEntities(dao);
+
+    AtomicInteger errorCount = new AtomicInteger();
+
+    runWorkload(new StripedDaoAccess(dao), entityPaths, THREAD_COUNT, errorCount);
+    assertEquals(0, errorCount.get());
+
+    // every entity must still be intact (i.e., no partially written data was persisted)
+    for (EntityPath entityPath : entityPaths) {
+      TextEnvelope textEnvelope = dao.getTextEnvelope(entityPath);
+
+      assertNotNull(textEnvelope);
+      assertTrue(textEnvelope.getData().startsWith(DATA_PREFIX));
+    }
+  }
+
+  @Test
+  public void testThroughputByThreadCount() throws Exception {
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+    EntityPath[] entityPaths = createEntities(dao);
+    DaoAccess synchronizedAccess = new SynchronizedDaoAccess(dao);
+    DaoAccess stripedAccess = new StripedDaoAccess(dao);
+    AtomicInteger errorCount = new AtomicInteger();
+
+    // warm up both paths before measuring
+    runWorkload(synchronizedAccess, entityPaths, 2, errorCount);
+    runWorkload(stripedAccess, entityPaths, 2, errorCount);
+
+    logger.debug("##### AbstractDataStoreDAO 90% read / 10% update (" + OPERATIONS_PER_THREAD + " operations per thread, " + ENTITY_COUNT + " entities)");
+    for (int threadCount : THREAD_COUNTS) {
+      long synchronizedOpsPerSec = runWorkload(synchronizedAccess, entityPaths, threadCount, errorCount);
+      long stripedOpsPerSec = runWorkload(stripedAccess, entityPaths, threadCount, errorCount);
+
+      logger.debug(String.format("##### threads=%2d  synchronized=%8d ops/sec  striped=%8d ops/sec", threadCount, synchronizedOpsPerSec, stripedOpsPerSec));
+    }
+
+    assertEquals(0, errorCount.get());
+  }
+
+  // Support methods /////////////////////////////////////////////////////////
+
+  private EntityPath[] createEntities(TextEnvelopeDAO dao) {
+    EntityPath[] result = new EntityPath[ENTITY_COUNT];
+
+    for (int i = 0; i < ENTITY_COUNT; i++) {
+      result[i] = new EntityPath(new ContainerPath("/stress/c" + (i % 8) + "/"), "entity" + i + ".txt");
+      dao.save(new TextEnvelope(result[i], DATA_PREFIX + 0));
+    }
+
+    return result;
+  }
+
+  /**
+   * Run the workload on each of threadCount threads, adding the number of failed operations to errorCount, and return
+   * the aggregate throughput (ops/sec).
+   */
+  private long runWorkload(final DaoAccess access, final EntityPath[] entityPaths, final int threadCount, final AtomicInteger errorCount) throws Exception {
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final CountDownLatch endGate = new CountDownLatch(threadCount);
+
+    for (int i = 0; i < threadCount; i++) {
+      final Random random = new Random(i);
+
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            startGate.await();
+            for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+              EntityPath entityPath = entityPaths[random.nextInt(entityPaths.length)];
+              TextEnvelope textEnvelope = access.read(entityPath);
+
+              if (textEnvelope == null || !textEnvelope.getData().startsWith(DATA_PREFIX)) {
+                errorCount.incrementAndGet();
+              } else if (random.nextInt(10) == 0) {
+                textEnvelope.setData(DATA_PREFIX + j);
+                access.update(textEnvelope);
+              }
+            }
+          } catch (Exception e) {
+            logger.error("Stress test operation failed.", e);
+            errorCount.incrementAndGet();
+          } finally {
+            endGate.countDown();
+          }
+        }
+      }.start();
+    }
+
+    long start = System.nanoTime();
+    startGate.countDown();
+    assertTrue(endGate.await(60, TimeUnit.SECONDS));
+    long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+    return (long)threadCount * OPERATIONS_PER_THREAD * 1000 / elapsedMs;
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.dao.AbstractDataStoreDAO.DomainObjectTransformer;
+import com.thruzero.domain.dsc.dao.GenericDscDAO.XStreamDomainObjectTransformer;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
+import com.thruzero.domain.model.Preference;
+import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.store.AbstractPersistent;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for BinaryDomainObjectTransformer, including a comparison of the size with the XStreamDomainObjectTransformer.
+ *
+ * @author George Norman
+ */
+public class BinaryDomainObjectTransformerTest extends AbstractCoreTestCase {
+  // ------------------------------------------------
+  // TestAccount
+  // ------------------------------------------------
+
+  public static enum TestStatus {
+    ACTIVE, LOCKED
+  }
+
+  public static class TestAddress {
+    private String city;
+    private int zip;
+
+    public TestAddress() {
+    }
+
+    public TestAddress(String city, int zip) {
+      this.city = city;
+      this.zip = zip;
+    }
+  }
+
+  /** A subclass that's not a declared field type (so it must be explicitly allowed). */
+  public static class TestForeignAddress extends TestAddress {
+    private String country;
+
+    public TestForeignAddress() {
+    }
+
+    public TestForeignAddress(String city, int zip, String country) {
+      super(city, zip);
+      this.country = country;
+    }
+  }
+
+  /** A Domain Object with nested values, similar to BasicUser. */
+  public static class TestAccount extends AbstractPersistent {
+    private static final long serialVersionUID = 1L;
+
+    private String loginId;
+    private int invalidLoginCount;
+    private long lockoutTime;
+    private Date lastLoginDate;
+    private TestStatus status;
+    private Set<String> permissions = new LinkedHashSet<String>();
+    private Map<String, Double> limits = new HashMap<String, Double>();
+    private TestAddress address;
+    private Object extra;
+    private transient String cachedDisplayName;
+  }
+
+  // ============================================================
+  // BinaryDomainObjectTransformerTest
+  // ============================================================
+
+  @Test
+  public void testSettingRoundTrip() throws Exception {
+    BinaryDomainObjectTransformer<Setting> transformer = new BinaryDomainObjectTransformer<Setting>(Setting.class);
+    Setting setting = createSetting(1);
+    EntityPath primaryKey = new EntityPath("/settings/context1/name-1.txt");
+
+    setting.setId(primaryKey);
+    DataStoreEntity entity = transformer.flatten(setting);
+    assertEquals(primaryKey, entity.getEntityPath());
+    assertEquals(primaryKey, setting.getId()); // flatten must not change the given Domain Object
+
+    Setting result = transformer.resurrect(primaryKey, entity);
+    assertEquals(primaryKey, result.getId());
+    assertEquals(setting.getContext(), result.getContext());
+    assertEquals(setting.getName(), result.getName());
+    assertEquals(setting.getValue(), result.getValue());
+    assertEquals(setting.getDescription(), result.getDescription());
+    assertNull(result.getType());
+    assertTrue(result.isEditable());
+  }
+
+  @Test
+  public void testNestedValuesRoundTrip() throws Exception {
+    BinaryDomainObjectTransformer<TestAccount> transformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class);
+    TestAccount account = new TestAccount();
+    EntityPath primaryKey = new EntityPath("/accounts/george.txt");
+
+    account.setId(primaryKey);
+    account.loginId = "george \u00e9\u4e2d"; // non-ASCII must survive
+    account.invalidLoginCount = 3;
+    account.lockoutTime = Long.MAX_VALUE;
+    account.lastLoginDate = new Date(1234567890L);
+    account.status = TestStatus.LOCKED;
+    account.permissions.add("read");
+    account.permissions.add("write");
+    account.limits.put("daily", 10.5);
+    account.address = new TestAddress("Boulder", 80301);
+    account.cachedDisplayName = "transient";
+
+    TestAccount result = transformer.resurrect(primaryKey, transformer.flatten(account));
+    assertEquals(account.loginId, result.loginId);
+    assertEquals(3, result.invalidLoginCount);
+    assertEquals(Long.MAX_VALUE, result.lockoutTime);
+    assertEquals(account.lastLoginDate, result.lastLoginDate);
+    assertEquals(TestStatus.LOCKED, result.status);
+    assertEquals(account.permissions, result.permissions);
+    assertTrue(result.permissions instanceof LinkedHashSet);
+    assertEquals(account.limits, result.limits);
+    assertEquals("Boulder", result.address.city);
+    assertEquals(80301, result.address.zip);
+    assertNull(result.cachedDisplayName);
+  }
+
+  @Test
+  public void testReadLegacyXStreamData() throws Exception {
+    XStreamDomainObjectTransformer<Preference> xstreamTransformer = new XStreamDomainObjectTransformer<Preference>(Preference.class);
+    BinaryDomainObjectTransformer<Preference> binaryTransformer = new BinaryDomainObjectTransformer<Preference>(Preference.class);
+    EntityPath primaryKey = new EntityPath("/owner1/context1/name1.txt");
+    Preference preference = new Preference("owner1", "context1", "name1", "value1");
+
+    preference.setId(primaryKey);
+    byte[] xml = toBytes(xstreamTransformer.flatten(preference));
+    byte[] binary = toBytes(binaryTransformer.flatten(preference));
+    assertFalse(xml.length == binary.length);
+
+    // the binary transformer must read data written by XStream (migration) as well as its own
+    Preference fromXml = binaryTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(xml), primaryKey));
+    Preference fromBinary = binaryTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(binary), primaryKey));
+
+    for (Preference result : new Preference[] {fromXml, fromBinary}) {
+      assertNotNull(result);
+      assertEquals(primaryKey, result.getId());
+      assertEquals("owner1", result.getOwner());
+      assertEquals("context1", result.getContext());
+      assertEquals("name1", result.getName());
+      assertEquals("value1", result.getValue());
+    }
+  }
+
+  @Test
+  public void testCompareWithXStream() throws Exception {
+    DomainObjectTransformer<Setting> xstreamTransformer = new XStreamDomainObjectTransformer<Setting>(Setting.class);
+    DomainObjectTransformer<Setting> binaryTransformer = new BinaryDomainObjectTransformer<Setting>(Setting.class);
+    Setting setting = createSetting(1);
+    EntityPath primaryKey = new EntityPath("/settings/context1/name-1.txt");
+
+    setting.setId(primaryKey);
+    byte[] xml = toBytes(xstreamTransformer.flatten(setting));
+    byte[] binary = toBytes(binaryTransformer.flatten(setting));
+
+    assertTrue("Binary format should be smaller than XML.", binary.length < xml.length);
+
+    // both formats must round-trip to an equal Setting
+    for (byte[] data : new byte[][] {xml, binary}) {
+      Setting result = binaryTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+
+      assertEquals(primaryKey, result.getId());
+      assertEquals(setting.getContext(), result.getContext());
+      assertEquals(setting.getName(), result.getName());
+      assertEquals(setting.getValue(), result.getValue());
+      assertEquals(setting.getDescription(), result.getDescription());
+      assertEquals(setting.isEditable(), result.isEditable());
+    }
+  }
+
+  @Test
+  public void testClassNotAllowed() throws Exception {
+    BinaryDomainObjectTransformer<TestAccount> transformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class);
+    BinaryDomainObjectTransformer<TestAccount> allowingTransformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class, TestForeignAddress.class);
+    EntityPath primaryKey = new EntityPath("/accounts/george.txt");
+    TestAccount account = new TestAccount();
+
+    account.setId(primaryKey);
+    account.address = new TestForeignAddress("Paris", 75001, "France");
+
+    // a subclass of a declared field type can't be written or read, unless it's allowed
+    try {
+      transformer.flatten(account);
+      fail("The TestForeignAddress class was written, but it's not allowed.");
+    } catch (DAOException e) {
+      // expected
+    }
+
+    byte[] data = toBytes(allowingTransformer.flatten(account));
+    TestAccount result = allowingTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+    assertEquals("France", ((TestForeignAddress)result.address).country);
+
+    try {
+      transformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+      fail("The TestForeignAddress class was read, but it's not allowed.");
+    } catch (DAOException e) {
+      assertTrue(e.getMessage().contains(TestForeignAddress.class.getName()));
+    }
+  }
+
+  @Test
+  public void testSerializedClassNotAllowed() throws Exception {
+    BinaryDomainObjectTransformer<TestAccount> transformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class);
+    BinaryDomainObjectTransformer<TestAccount> allowingTransformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class, URI.class);
+    EntityPath primaryKey = new EntityPath("/accounts/george.txt");
+    TestAccount account = new TestAccount();
+
+    account.setId(primaryKey);
+    account.extra = new URI("http://www.thruzero.com/");
+
+    byte[] data = toBytes(allowingTransformer.flatten(account)); // URI is written using Java serialization
+    TestAccount result = allowingTransformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+    assertEquals(account.extra, result.extra);
+
+    // the filtering ObjectInputStream must refuse to resolve the URI class
+    try {
+      transformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+      fail("The URI class was read, but it's not allowed.");
+    } catch (DAOException e) {
+      assertTrue(e.getCause() instanceof InvalidClassException);
+    }
+  }
+
+  @Test
+  public void testLegacyXStreamClassNotAllowed() throws Exception {
+    BinaryDomainObjectTransformer<TestAccount> transformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class);
+    EntityPath primaryKey = new EntityPath("/accounts/george.txt");
+    String allowedXml = "<TestAccount><loginId>george</loginId><extra class=\"java.lang.Long\">7</extra></TestAccount>";
+    String disallowedXml = "<TestAccount><loginId>george</loginId><extra class=\"java.lang.ProcessBuilder\"><command/></extra></TestAccount>";
+
+    TestAccount result = transformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(allowedXml.getBytes("UTF-8")), primaryKey));
+    assertEquals("george", result.loginId);
+    assertEquals(7L, result.extra);
+
+    // legacy (XStream) entities are restricted to the same classes as binary entities
+    try {
+      transformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(disallowedXml.getBytes("UTF-8")), primaryKey));
+      fail("The ProcessBuilder class was read from legacy XML, but it's not allowed.");
+    } catch (DAOException e) {
+      assertTrue(getCauseMessages(e).contains(ProcessBuilder.class.getName()));
+    }
+  }
+
+  @Test
+  public void testInvalidSizeIsRejected() throws Exception {
+    BinaryDomainObjectTransformer<TestAccount> transformer = new BinaryDomainObjectTransformer<TestAccount>(TestAccount.class);
+    EntityPath primaryKey = new EntityPath("/accounts/george.txt");
+    byte[] header = {(byte)0xD5, (byte)0xC0, 'B', 'N', 1, 15, 0, 0}; // magic, version, TAG_OBJECT and the domain type symbol ("")
+    byte[][] invalidTails = {
+        {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07}, // field count of Integer.MAX_VALUE
+        {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F}, // field count of -1
+        {1, 0, 1, 'x', 12, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07}, // one byte[] field of Integer.MAX_VALUE bytes
+        {1, 0, 1, 'x', 13, 0, 19, 'j', 'a', 'v', 'a', '.', 'u', 't', 'i', 'l', '.', 'A', 'r', 'r', 'a', 'y', 'L', 'i', 's', 't', 100}, // 100 elements
+        {1, 5, 12, 0}}; // reference to an undefined symbol
+
+    for (byte[] tail : invalidTails) {
+      byte[] data = new byte[header.length + tail.length];
+
+      System.arraycopy(header, 0, data, 0, header.length);
+      System.arraycopy(tail, 0, data, header.length, tail.length);
+      try {
+        transformer.resurrect(primaryKey, new SimpleDataStoreEntity(new ByteArrayInputStream(data), primaryKey));
+        fail("An entity with an invalid size was read.");
+      } catch (DAOException e) {
+        // expected
+      }
+    }
+  }
+
+  // Support methods /////////////////////////////////////////////////////////
+
+  private Setting createSetting(int i) {
+    Setting result = new Setting();
+
+    result.setContext("context" + i);
+    result.setName("name-" + i);
+    result.setValue("value-" + i);
+    result.setDescription("A test setting used to compare the transformers.");
+    result.setEditable(true);
+
+    return result;
+  }
+
+  private String getCauseMessages(Throwable throwable) {
+    StringBuilder result = new StringBuilder();
+
+    for (Throwable t = throwable; t != null; t = t.getCause()) {
+      result.append(t.getMessage()).append('\n');
+    }
+
+    return result.toString();
+  }
+
+  private byte[] toBytes(DataStoreEntity entity) throws IOException {
+    try {
+      return IOUtils.toByteArray(entity.getData());
+    } finally {
+      IOUtils.closeQuietly(entity.getData());
+    }
+  }
+}
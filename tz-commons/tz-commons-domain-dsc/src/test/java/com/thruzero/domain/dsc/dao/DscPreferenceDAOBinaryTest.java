@@ -0,0 +1,58 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thruzero.common.core.locator.ConfigLocator;
+import com.thruzero.domain.dao.PreferenceDAO;
+import com.thruzero.domain.locator.DAOLocator;
+import com.thruzero.domain.model.Preference;
+import com.thruzero.domain.test.support.dao.PreferenceTestBuilder.PreferenceTestConst;
+
+/**
+ * Runs the DscPreferenceDAOTest with the DscPreferenceDAO configured to use the BinaryDomainObjectTransformer (see
+ * config.binary.test.xml).
+ *
+ * @author George Norman
+ */
+public class DscPreferenceDAOBinaryTest extends DscPreferenceDAOTest {
+  private static final String BINARY_CONFIG_FILE_PATH = "config/config.binary.test.xml";
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    ConfigLocator.reset();
+    ConfigLocator.setup(BINARY_CONFIG_FILE_PATH, null);
+  }
+
+  @Test
+  public void testBinaryDomainObjectTransformerIsConfigured() {
+    DscPreferenceDAO dao = (DscPreferenceDAO)DAOLocator.locate(PreferenceDAO.class);
+    Preference preference = new Preference(PreferenceTestConst.TEST_ONE_OWNER, PreferenceTestConst.TEST_ONE_CONTEXTA, PreferenceTestConst.TEST_ONE_NAME, "binary");
+
+    assertTrue(dao.getDomainObjectTransformer() instanceof BinaryDomainObjectTransformer);
+
+    dao.save(preference);
+    assertEquals("binary", dao.getPreference(PreferenceTestConst.TEST_ONE_OWNER, PreferenceTestConst.TEST_ONE_CONTEXTA, PreferenceTestConst.TEST_ONE_NAME).getValue());
+  }
+}
@@ -102,4 +102,9 @@ public class DscPreferenceDAOTest extends AbstractDomainDscTestCase<DscPreferenc
     testHelper.doTestIsExistingPreference(DAOLocator.locate(PreferenceDAO.class));
   }
 
+  @Test
+  public void testGetPreferences() {
+    testHelper.doTestGetPreferences(DAOLocator.locate(PreferenceDAO.class));
+  }
+
 }
@@ -15,16 +15,30 @@
  */
 package com.thruzero.domain.dsc.dao;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.core.utils.ClassUtils;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dsc.dao.AbstractDataStoreDAO.DataStoreDAOInitParamKeys;
 import com.thruzero.domain.dsc.test.support.AbstractDomainDscTestCase;
+import com.thruzero.domain.dsc.ws.WsDataStoreContainerFactory;
+import com.thruzero.domain.dsc.ws.WsDataStoreContainerFactory.WsDataStoreContainerFactoryInitParamKeys;
 import com.thruzero.domain.locator.DAOLocator;
 import com.thruzero.domain.model.TextEnvelope;
 import com.thruzero.domain.test.support.dao.AbstractTextEnvelopeDAOTestHelper;
@@ -94,6 +108,11 @@ public class DscTextEnvelopeDAOTest extends AbstractDomainDscTestCase<DscTextEnv
     testHelper.doTestUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
   }
 
+  @Test
+  public void testStreamedData() throws Exception {
+    testHelper.doTestStreamedData(DAOLocator.locate(TextEnvelopeDAO.class));
+  }
+
   @Test
   public void testSaveOrUpdatePersistedNode() {
     testHelper.doTestSaveOrUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
@@ -109,4 +128,70 @@ public class DscTextEnvelopeDAOTest extends AbstractDomainDscTestCase<DscTextEnv
     testHelper.doTestIsExistingTextEnvelope(DAOLocator.locate(TextEnvelopeDAO.class));
   }
 
+  @Test
+  public void testGetAllReadsRootContainer() {
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+    EntityPath rootEntityPath = new EntityPath("/getAllRoot.txt");
+
+    dao.save(new TextEnvelope(rootEntityPath, "root"));
+    dao.save(new TextEnvelope(new EntityPath("/getAll/nested.txt"), "nested"));
+
+    Map<Serializable, String> all = new HashMap<Serializable, String>();
+    for (TextEnvelope textEnvelope : dao.getAll()) {
+      all.put(textEnvelope.getId(), textEnvelope.getData());
+    }
+
+    // identified by the store-relative path; sub-containers aren't included
+    assertEquals("root", all.get(rootEntityPath));
+    assertFalse(all.containsKey(new EntityPath("/getAll/nested.txt")));
+  }
+
+  @Test
+  public void testStreamedDataIsSnapshot() throws Exception {
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+    EntityPath entityPath = new EntityPath("/snapshot/data.txt");
+
+    TextEnvelope textEnvelope = new TextEnvelope(entityPath, "version 1");
+    dao.save(textEnvelope);
+
+    InputStream in = dao.getTextEnvelopeData(entityPath);
+    try {
+      // an update replaces the entity (via a temp file and rename), so the open stream still reads the old data
+      textEnvelope.setData("version 2");
+      dao.update(textEnvelope);
+
+      assertEquals("version 1", IOUtils.toString(in, "UTF-8"));
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    assertEquals("version 2", dao.getTextEnvelope(entityPath).getData());
+  }
+
+  @Test
+  public void testNonListableContainerReturnsNull() throws Exception {
+    final Map<String, StringMap> sections = new HashMap<String, StringMap>();
+    StringMap daoParams = new StringMap();
+    daoParams.put(DataStoreDAOInitParamKeys.STORE_CONTAINER_FACTORY, WsDataStoreContainerFactory.class.getName());
+    daoParams.put(DataStoreDAOInitParamKeys.BASE, "test");
+    sections.put(DscTextEnvelopeDAO.class.getName(), daoParams);
+    StringMap dscFactoryParams = new StringMap();
+    dscFactoryParams.put(WsDataStoreContainerFactoryInitParamKeys.ROOT_SERVICE_URI, "http://localhost/unused");
+    sections.put(WsDataStoreContainerFactory.class.getName(), dscFactoryParams);
+
+    // the web service container doesn't list its entities (and nothing here touches the network)
+    DscTextEnvelopeDAO dao = ClassUtils.instanceFrom(DscTextEnvelopeDAO.class);
+    dao.init(new InitializationStrategy() {
+      @Override
+      public StringMap getSectionAsStringMap(String sectionName) {
+        return sections.get(sectionName);
+      }
+    });
+    try {
+      assertNull(dao.getTextEnvelopePaths(new ContainerPath("/a/"), true));
+      assertNull(dao.getTextEnvelopes(new ContainerPath("/a/"), false));
+    } finally {
+      dao.reset();
+    }
+  }
+
 }
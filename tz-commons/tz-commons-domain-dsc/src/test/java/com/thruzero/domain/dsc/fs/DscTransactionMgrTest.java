@@ -0,0 +1,379 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.thruzero.common.core.locator.ConfigInitializationStrategy;
+import com.thruzero.common.core.locator.MapInitializationStrategy;
+import com.thruzero.common.core.locator.TransactionMgrLocator;
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.transaction.TransactionMgr;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TransactionalDAO;
+import com.thruzero.domain.dsc.dao.DscTextEnvelopeDAO;
+import com.thruzero.domain.dsc.fs.DscTransactionMgr.DscTransaction;
+import com.thruzero.domain.dsc.fs.DscTransactionMgr.WriteType;
+import com.thruzero.domain.dsc.test.support.AbstractDomainDscTestCase;
+import com.thruzero.domain.locator.DAOLocator;
+import com.thruzero.domain.model.TextEnvelope;
+import com.thruzero.test.support.AbstractContentionBenchmarkHelper;
+
+/**
+ * Unit test for DscTransactionMgr, using a {@code DscTextEnvelopeDAO}.
+ *
+ * @author George Norman
+ */
+public class DscTransactionMgrTest extends AbstractDomainDscTestCase<DscTextEnvelopeDAO> {
+  private static final EntityPath PATH_A = new EntityPath("/tx/", "a.xml");
+  private static final EntityPath PATH_B = new EntityPath("/tx/sub/", "b.xml");
+
+  private DscTransactionMgr transactionMgr;
+  private TextEnvelopeDAO dao;
+
+  public DscTransactionMgrTest() {
+    super(DscTextEnvelopeDAO.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+
+    DscTransactionRegistry.getInstance().registerAllInterfaces();
+    transactionMgr = (DscTransactionMgr)TransactionMgrLocator.locate(TransactionMgr.class);
+    dao = DAOLocator.locate(TextEnvelopeDAO.class);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    transactionMgr.rollbackTransaction();
+    FileUtils.deleteDirectory(transactionMgr.getWalDirectory());
+
+    super.tearDown();
+
+    DscTransactionRegistry.getInstance().reset();
+  }
+
+  @Test
+  public void testCommit() {
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    dao.save(new TextEnvelope(PATH_B, "B"));
+
+    // the writes are visible to the transaction, but not written to the data store
+    assertTrue(transactionMgr.isTransactionActive());
+    assertTrue(dao.isExistingTextEnvelope(PATH_A));
+    assertEquals("B", dao.getTextEnvelope(PATH_B).getData());
+    assertFalse(getFile(PATH_A).exists());
+
+    transactionMgr.commitOrRollbackTransaction(); // the DAO requested the commit
+    assertFalse(transactionMgr.isTransactionActive());
+    assertEquals("A", dao.getTextEnvelope(PATH_A).getData());
+    assertEquals("B", dao.getTextEnvelope(PATH_B).getData());
+    assertEquals(1, transactionMgr.getWalSyncCount());
+    assertEquals(0, transactionMgr.getWalDirectory().list().length);
+  }
+
+  @Test
+  public void testRollback() {
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    dao.save(new TextEnvelope(PATH_B, "B"));
+
+    transactionMgr.beginTransaction();
+    TextEnvelope textEnvelope = dao.getTextEnvelope(PATH_A);
+    textEnvelope.setData("A2");
+    dao.update(textEnvelope);
+    dao.delete(dao.getTextEnvelope(PATH_B));
+    assertNull(dao.getTextEnvelope(PATH_B));
+    transactionMgr.rollbackTransaction();
+
+    assertEquals("A", dao.getTextEnvelope(PATH_A).getData());
+    assertEquals("B", dao.getTextEnvelope(PATH_B).getData());
+    assertEquals(0, transactionMgr.getWalSyncCount());
+  }
+
+  @Test
+  public void testRecoverIncompleteCommit() throws Exception {
+    dao.save(new TextEnvelope(PATH_B, "B"));
+
+    // write the WAL, then "crash" before it's applied
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    dao.delete(dao.getTextEnvelope(PATH_B));
+    transactionMgr.writeAheadLog(Arrays.asList(DscTransactionMgr.getActiveTransaction()));
+    transactionMgr.rollbackTransaction();
+
+    // and a commit that didn't reach its commit point
+    FileUtils.writeStringToFile(new File(transactionMgr.getWalDirectory(), "commit-9999999999999-000001.wal-tmp"), "torn", "UTF-8");
+    assertFalse(getFile(PATH_A).exists());
+
+    // restart
+    transactionMgr.init(new ConfigInitializationStrategy());
+    assertEquals("A", FileUtils.readFileToString(getFile(PATH_A), "UTF-8"));
+    assertFalse(getFile(PATH_B).exists());
+    assertEquals(0, transactionMgr.getWalDirectory().list().length);
+  }
+
+  @Test
+  public void testConcurrentCommits() throws Exception {
+    final int numThreads = 8;
+    final int numIterations = 10;
+
+    new AbstractContentionBenchmarkHelper() {
+      @Override
+      protected void doExecute(int threadIndex, int iteration) throws Exception {
+        transactionMgr.beginTransaction();
+        dao.save(new TextEnvelope(new EntityPath("/tx/" + threadIndex + "/", iteration + ".xml"), "data" + iteration));
+        transactionMgr.commitTransaction();
+      }
+    }.execute(numThreads, numIterations);
+
+    for (int i = 0; i < numThreads; i++) {
+      for (int j = 0; j < numIterations; j++) {
+        assertEquals("data" + j, dao.getTextEnvelope(new EntityPath("/tx/" + i + "/", j + ".xml")).getData());
+      }
+    }
+
+    // concurrent commits share a WAL file (and its sync)
+    assertTrue(transactionMgr.getWalSyncCount() <= numThreads * numIterations);
+    assertEquals(0, transactionMgr.getWalDirectory().list().length);
+  }
+
+  @Test
+  public void testAfterCommitActions() {
+    final AtomicInteger runCount = new AtomicInteger();
+    Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        runCount.incrementAndGet();
+      }
+    };
+
+    // without a transaction, the action is run immediately
+    ((TransactionalDAO)dao).runAfterCommit(action);
+    assertEquals(1, runCount.get());
+
+    // a rolled back transaction discards its actions
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    ((TransactionalDAO)dao).runAfterCommit(action);
+    transactionMgr.rollbackTransaction();
+    assertEquals(1, runCount.get());
+
+    // a committed transaction runs them after the writes are applied
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    ((TransactionalDAO)dao).runAfterCommit(action);
+    assertEquals(1, runCount.get());
+    transactionMgr.commitTransaction();
+    assertEquals(2, runCount.get());
+  }
+
+  @Test
+  public void testAfterCommitActionsRunWhenApplyFails() throws Exception {
+    final AtomicInteger runCount = new AtomicInteger();
+    Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        runCount.incrementAndGet();
+      }
+    };
+
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_B, "B"));
+    ((TransactionalDAO)dao).runAfterCommit(action);
+
+    // replace the entity's directory with a file, so the WAL is written but can't be applied
+    File directory = getFile(PATH_B).getParentFile();
+    FileUtils.deleteDirectory(directory);
+    FileUtils.writeStringToFile(directory, "blocker", "UTF-8");
+    try {
+      transactionMgr.commitTransaction();
+      fail("expected DAOException");
+    } catch (DAOException expected) {
+      // expected
+    }
+    assertEquals(1, runCount.get());
+
+    // the next commit re-applies the WAL first, and runs its actions again
+    assertTrue(directory.delete());
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "A"));
+    transactionMgr.commitTransaction();
+    assertEquals(2, runCount.get());
+    assertEquals("B", FileUtils.readFileToString(getFile(PATH_B), "UTF-8"));
+    assertEquals(0, transactionMgr.getWalDirectory().list().length);
+  }
+
+  @Test
+  public void testCommitHoldsWriteLocks() {
+    final ReentrantReadWriteLock entityLock = new ReentrantReadWriteLock();
+    final AtomicBoolean lockedWhileApplied = new AtomicBoolean();
+
+    DscTransaction transaction = transactionMgr.beginTransaction();
+    transaction.write(getFile(PATH_A), "A".getBytes(), WriteType.SAVE_OR_UPDATE, entityLock.writeLock());
+    transaction.addAfterCommitAction(new Runnable() {
+      @Override
+      public void run() {
+        lockedWhileApplied.set(entityLock.isWriteLockedByCurrentThread() && getFile(PATH_A).exists());
+      }
+    });
+    transactionMgr.commitTransaction();
+
+    assertTrue(lockedWhileApplied.get());
+    assertFalse(entityLock.isWriteLocked());
+  }
+
+  @Test
+  public void testCreateConflictsWithCommittedCreate() throws Exception {
+    transactionMgr.beginTransaction();
+    dao.save(new TextEnvelope(PATH_A, "mine"));
+
+    // another thread creates the same entity first
+    runInOtherThread(new Runnable() {
+      @Override
+      public void run() {
+        dao.save(new TextEnvelope(PATH_A, "theirs"));
+      }
+    });
+
+    try {
+      transactionMgr.commitTransaction();
+      fail("expected DAOException");
+    } catch (DAOException expected) {
+      // expected
+    }
+    assertFalse(transactionMgr.isTransactionActive());
+    assertEquals("theirs", dao.getTextEnvelope(PATH_A).getData());
+    assertEquals(0, transactionMgr.getWalSyncCount());
+  }
+
+  @Test
+  public void testUpdateConflictsWithCommittedDelete() throws Exception {
+    dao.save(new TextEnvelope(PATH_A, "A"));
+
+    transactionMgr.beginTransaction();
+    TextEnvelope textEnvelope = dao.getTextEnvelope(PATH_A);
+    textEnvelope.setData("A2");
+    dao.update(textEnvelope);
+
+    // another thread deletes the entity first
+    runInOtherThread(new Runnable() {
+      @Override
+      public void run() {
+        dao.delete(dao.getTextEnvelope(PATH_A));
+      }
+    });
+
+    try {
+      transactionMgr.commitTransaction();
+      fail("expected DAOException");
+    } catch (DAOException expected) {
+      // expected
+    }
+    assertFalse(getFile(PATH_A).exists());
+  }
+
+  @Test
+  public void testConcurrentCreatesOfSameEntity() throws Exception {
+    final int numThreads = 8;
+    final CountDownLatch buffered = new CountDownLatch(numThreads);
+    final AtomicInteger commitCount = new AtomicInteger();
+    final AtomicInteger conflictCount = new AtomicInteger();
+    List<Thread> threads = new ArrayList<Thread>();
+
+    for (int i = 0; i < numThreads; i++) {
+      final String data = "data" + i;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          transactionMgr.beginTransaction();
+          dao.save(new TextEnvelope(PATH_A, data));
+          dao.save(new TextEnvelope(new EntityPath("/tx/other/", data + ".xml"), data));
+          buffered.countDown();
+          try {
+            buffered.await(); // every transaction saw the entity as nonexistent
+            transactionMgr.commitTransaction();
+            commitCount.incrementAndGet();
+          } catch (DAOException e) {
+            conflictCount.incrementAndGet();
+          } catch (InterruptedException e) {
+            transactionMgr.rollbackTransaction();
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // the first transaction committed (whether or not they were in the same group); the others failed as a whole
+    assertEquals(1, commitCount.get());
+    assertEquals(numThreads - 1, conflictCount.get());
+    String committedData = dao.getTextEnvelope(PATH_A).getData();
+    assertEquals(1, dao.getTextEnvelopes(new ContainerPath("/tx/other/"), false).size());
+    assertEquals(committedData, dao.getTextEnvelope(new EntityPath("/tx/other/", committedData + ".xml")).getData());
+  }
+
+  @Test
+  public void testDefaultWalDirectory() throws Exception {
+    File rootStore = new File("./target/test-classes/test-default-root-store");
+    StringMap factoryParams = new StringMap();
+    factoryParams.put("rootStorePath", rootStore.getPath() + "/");
+
+    try {
+      transactionMgr.init(new MapInitializationStrategy(FileDataStoreContainerFactory.class.getName(), factoryParams));
+      assertEquals(new File(rootStore.getPath() + "-wal").getAbsoluteFile(), transactionMgr.getWalDirectory());
+      assertTrue(transactionMgr.getWalDirectory().isDirectory());
+    } finally {
+      FileUtils.deleteDirectory(transactionMgr.getWalDirectory());
+      transactionMgr.init(new ConfigInitializationStrategy());
+    }
+  }
+
+  private void runInOtherThread(Runnable runnable) throws Exception {
+    Thread thread = new Thread(runnable);
+
+    thread.start();
+    thread.join();
+  }
+
+  private File getFile(EntityPath entityPath) {
+    return new File(getBaseStorePath().toString() + entityPath.getContainerPath().getPath(), entityPath.getEntityName());
+  }
+
+}
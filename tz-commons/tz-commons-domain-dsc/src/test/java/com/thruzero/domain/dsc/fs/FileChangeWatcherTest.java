@@ -0,0 +1,130 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.EntityChangeSource.ChangeType;
+import com.thruzero.domain.dao.EntityChangeSource.EntityChangeListener;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for FileChangeWatcher (each test polls explicitly, instead of waiting for the scheduled poll).
+ *
+ * @author George Norman
+ */
+public class FileChangeWatcherTest extends AbstractCoreTestCase {
+  private static final String BASE_DIRECTORY = "./target/test-classes/test-watched-data-store";
+
+  private File baseDirectory;
+  private FileChangeWatcher watcher;
+  private final List<String> changes = new ArrayList<String>();
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    baseDirectory = new File(BASE_DIRECTORY);
+    writeFile("a/existing.xml", "<existing/>");
+
+    watcher = new FileChangeWatcher(baseDirectory, 3600 * 1000);
+    watcher.addEntityChangeListener(new EntityChangeListener() {
+      @Override
+      public void entityChanged(EntityPath entityPath, ChangeType changeType) {
+        changes.add(changeType + " " + entityPath);
+      }
+    });
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    watcher.stop();
+    FileUtils.deleteDirectory(baseDirectory);
+
+    super.tearDown();
+  }
+
+  @Test
+  public void testCreateModifyDelete() throws Exception {
+    watcher.start();
+    assertTrue(watcher.isStarted());
+    assertEquals("existing files aren't reported", 0, watcher.poll());
+
+    writeFile("a/b/new.xml", "<new/>");
+    writeFile("top.xml", "<top/>");
+    writeFile("a/~partial-123" + FileEntityIndex.TEMP_FILE_SUFFIX, "<partial");
+    assertEquals(2, watcher.poll());
+    assertEquals("[CREATED /a/b/new.xml, CREATED /top.xml]", changes.toString());
+
+    changes.clear();
+    writeFile("a/existing.xml", "<existing changed=\"true\"/>");
+    assertTrue(new File(baseDirectory, "top.xml").delete());
+    assertEquals(2, watcher.poll());
+    assertEquals("[MODIFIED /a/existing.xml, DELETED /top.xml]", changes.toString());
+
+    changes.clear();
+    assertEquals(0, watcher.poll());
+    assertEquals(0, changes.size());
+  }
+
+  @Test
+  public void testDeletedDirectory() throws Exception {
+    watcher.poll(); // first poll takes the snapshot
+
+    FileUtils.deleteDirectory(new File(baseDirectory, "a"));
+    assertEquals(1, watcher.poll());
+    assertEquals("[DELETED /a/existing.xml]", changes.toString());
+  }
+
+  @Test
+  public void testFailingListenerIsIsolated() throws Exception {
+    watcher.addEntityChangeListener(new EntityChangeListener() {
+      @Override
+      public void entityChanged(EntityPath entityPath, ChangeType changeType) {
+        throw new IllegalStateException("test");
+      }
+    });
+    watcher.poll();
+
+    writeFile("x.xml", "<x/>");
+    watcher.poll();
+    writeFile("y.xml", "<y/>");
+    watcher.poll();
+    assertEquals("[CREATED /x.xml, CREATED /y.xml]", changes.toString());
+  }
+
+  /** Write the given text to the file at relativePath (under the watched base directory), creating its parent directories. */
+  private void writeFile(String relativePath, String text) throws Exception {
+    File file = new File(baseDirectory, relativePath);
+
+    file.getParentFile().mkdirs();
+    FileUtils.writeStringToFile(file, text, "UTF-8");
+  }
+
+}
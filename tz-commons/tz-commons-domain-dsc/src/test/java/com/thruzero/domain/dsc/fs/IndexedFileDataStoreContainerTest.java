@@ -0,0 +1,211 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dsc.fs.FileDataStoreContainerFactory.FileBaseStorePath;
+import com.thruzero.domain.dsc.store.DataStoreContainer;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntity;
+import com.thruzero.domain.dsc.store.DataStoreContainer.DataStoreEntityWriter;
+import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
+import com.thruzero.domain.store.BaseStorePath;
+import com.thruzero.test.support.AbstractCoreTestCase;
+
+/**
+ * Unit test for IndexedFileDataStoreContainer (the cost of listing a container is measured by the
+ * FileDataStoreContainerBenchmark, in the tz-commons-benchmarks module).
+ *
+ * @author George Norman
+ */
+public class IndexedFileDataStoreContainerTest extends AbstractCoreTestCase {
+  private static final String ROOT_STORE_PATH = "./target/test-classes/test-indexed-data-store";
+
+  private BaseStorePath baseStorePath;
+  private FileEntityIndex index;
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    baseStorePath = new FileBaseStorePath(ROOT_STORE_PATH, "IndexedFileDataStoreContainerTest", null);
+    index = new FileEntityIndex();
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(new File(ROOT_STORE_PATH));
+
+    super.tearDown();
+  }
+
+  @Test
+  public void testCreateReadUpdateDelete() throws Exception {
+    DataStoreContainer container = createContainer("/foo/", 1024);
+
+    assertFalse(container.isExistingEntity("a.txt"));
+    assertNull(container.readEntity("a.txt"));
+
+    container.saveOrUpdateEntity("a.txt", createEntity("alpha"));
+    assertTrue(container.isExistingEntity("a.txt"));
+    assertEquals("alpha", readData(container.readEntity("a.txt")));
+
+    container.updateEntity("a.txt", createEntity("alpha-2"));
+    assertEquals("alpha-2", readData(createContainer("/foo/", 1024).readEntity("a.txt"))); // new container, same index
+
+    container.deleteEntity("a.txt");
+    assertFalse(container.isExistingEntity("a.txt"));
+    assertFalse(new File(baseStorePath.toString(), "foo/a.txt").exists());
+
+    // no temp files are left behind
+    assertEquals(0, new File(baseStorePath.toString(), "foo").list().length);
+  }
+
+  @Test(expected = DAOException.class)
+  public void testUpdateNonexistentEntity() {
+    createContainer("/foo/", 1024).updateEntity("missing.txt", createEntity("data"));
+  }
+
+  @Test
+  public void testStreamedRead() throws Exception {
+    DataStoreContainer container = createContainer("/foo/", 16);
+    String data = StringUtils.repeat("0123456789", 100);
+
+    container.saveOrUpdateEntity("large.txt", createEntity(data));
+    DataStoreEntity entity = container.readEntity("large.txt");
+
+    assertEquals(data, readData(entity));
+
+    // the stream is closed after it's read, so the file can be deleted
+    container.deleteEntity("large.txt");
+    assertNull(entity.getData());
+  }
+
+  @Test
+  public void testRecursiveListing() {
+    createContainer("/foo/", 1024).saveOrUpdateEntity("a.txt", createEntity("a"));
+    createContainer("/foo/bar/", 1024).saveOrUpdateEntity("b.txt", createEntity("b"));
+    createContainer("/foo/bar/baz/", 1024).saveOrUpdateEntity("c.txt", createEntity("c"));
+
+    DataStoreContainer container = createContainer("/foo/", 1024);
+    assertEquals(1, container.getAllEntityPaths(false).size());
+
+    Set<String> paths = new HashSet<String>();
+    for (EntityPath entityPath : container.getAllEntityPaths(true)) {
+      paths.add(entityPath.toString());
+    }
+    assertEquals(toSet(new EntityPath("/", "a.txt"), new EntityPath("/bar/", "b.txt"), new EntityPath("/bar/baz/", "c.txt")), paths);
+
+    // a fresh index (e.g., after a restart) lists the same entities from the file system
+    index = new FileEntityIndex();
+    assertEquals(3, createContainer("/foo/", 1024).getAllEntities(true).size());
+  }
+
+  @Test
+  public void testListingMatchesFileDataStoreContainer() throws Exception {
+    int entityCount = 200;
+    File directory = new File(baseStorePath.toString(), "big");
+
+    directory.mkdirs();
+    for (int i = 0; i < entityCount; i++) {
+      FileUtils.writeStringToFile(new File(directory, "entity" + i + ".txt"), "data" + i, "UTF-8");
+    }
+
+    DataStoreContainer fileContainer = new FileDataStoreContainer(baseStorePath, new ContainerPath("/big/"), false);
+    List<EntityPath> expected = fileContainer.getAllEntityPaths(false);
+
+    createContainer("/big/", 1024).getAllEntityPaths(false); // first access lists the directory
+    List<EntityPath> actual = createContainer("/big/", 1024).getAllEntityPaths(false); // answered from the index
+
+    assertEquals(entityCount, expected.size());
+    assertEquals(new HashSet<EntityPath>(expected), new HashSet<EntityPath>(actual));
+  }
+
+  @Test
+  public void testFailedFileContainerWriteKeepsOldData() throws Exception {
+    DataStoreContainer fileContainer = new FileDataStoreContainer(baseStorePath, new ContainerPath("/atomic/"), true);
+
+    fileContainer.saveOrUpdateEntity("a.txt", createEntity("old data"));
+    try {
+      fileContainer.saveOrUpdateEntity("a.txt", new DataStoreEntityWriter() {
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+          out.write("partial".getBytes("UTF-8"));
+          throw new IOException("test");
+        }
+      });
+      fail("expected DAOException");
+    } catch (DAOException expected) {
+      // expected
+    }
+
+    // the failed write didn't truncate the entity, and its temp file was removed
+    assertEquals("old data", readData(fileContainer.readEntity("a.txt")));
+    assertEquals(1, new File(baseStorePath.toString(), "atomic").list().length);
+    assertEquals(1, fileContainer.getAllEntityPaths(false).size());
+  }
+
+  // Support methods /////////////////////////////////////////////////////////
+
+  private DataStoreContainer createContainer(String containerPath, long streamThreshold) {
+    return new IndexedFileDataStoreContainer(index, baseStorePath, new ContainerPath(containerPath), true, streamThreshold);
+  }
+
+  private DataStoreEntity createEntity(String data) {
+    try {
+      return new SimpleDataStoreEntity(IOUtils.toInputStream(data, "UTF-8"), null);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private String readData(DataStoreEntity entity) throws IOException {
+    return IOUtils.toString(entity.getData(), "UTF-8");
+  }
+
+  private Set<String> toSet(EntityPath... entityPaths) {
+    Set<String> result = new HashSet<String>();
+
+    for (EntityPath entityPath : entityPaths) {
+      result.add(entityPath.toString());
+    }
+
+    return result;
+  }
+}
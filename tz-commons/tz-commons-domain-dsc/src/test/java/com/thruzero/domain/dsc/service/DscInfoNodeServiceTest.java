@@ -0,0 +1,153 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.locator.ServiceLocator;
+import com.thruzero.common.core.support.ContainerPath;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dsc.dao.DscTextEnvelopeDAO;
+import com.thruzero.domain.dsc.test.support.AbstractDomainDscTestCase;
+import com.thruzero.domain.locator.DAOLocator;
+import com.thruzero.domain.model.TextEnvelope;
+import com.thruzero.domain.service.InfoNodeService;
+import com.thruzero.domain.service.InfoNodeService.InfoNodeServiceListener;
+import com.thruzero.domain.service.impl.GenericInfoNodeService;
+
+/**
+ * Test the {@code GenericInfoNodeService} using a {@code DscTextEnvelopeDAO} (configured to load the InfoNodes in parallel).
+ *
+ * @author George Norman
+ */
+public class DscInfoNodeServiceTest extends AbstractDomainDscTestCase<DscTextEnvelopeDAO> {
+  private static final ContainerPath ROOT_PATH = new ContainerPath("/infonodes/");
+  private static final String INVALID_NODE_NAME = "invalid.xml";
+
+  public DscInfoNodeServiceTest() {
+    super(DscTextEnvelopeDAO.class);
+  }
+
+  @Test
+  public void testGetInfoNodes() {
+    List<String> expectedNames = createInfoNodes(40);
+    InfoNodeService service = ServiceLocator.locate(GenericInfoNodeService.class);
+
+    assertEquals(expectedNames, getNames(service.getInfoNodes(ROOT_PATH, true).iterator()));
+    assertEquals(20, service.getInfoNodes(new ContainerPath("/infonodes/sub/"), false).size());
+  }
+
+  @Test
+  public void testIterateInfoNodes() {
+    List<String> expectedNames = createInfoNodes(40);
+    InfoNodeService service = ServiceLocator.locate(GenericInfoNodeService.class);
+
+    assertEquals(expectedNames, getNames(service.iterateInfoNodes(ROOT_PATH, true)));
+
+    // stop early (the remaining loads are abandoned)
+    Iterator<InfoNodeElement> iter = service.iterateInfoNodes(ROOT_PATH, true);
+    assertTrue(iter.hasNext());
+    assertEquals(expectedNames.get(0), iter.next().getAttributeValue("name"));
+
+    assertFalse(service.iterateInfoNodes(new ContainerPath("/empty/"), true).hasNext());
+  }
+
+  @Test
+  public void testGetTextEnvelopes() {
+    createInfoNodes(10);
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+    List<EntityPath> entityPaths = dao.getTextEnvelopePaths(ROOT_PATH, true);
+    List<? extends TextEnvelope> textEnvelopes = dao.getTextEnvelopes(ROOT_PATH, true);
+
+    assertEquals(11, entityPaths.size());
+    assertEquals(entityPaths.size(), textEnvelopes.size());
+    for (int i = 0; i < entityPaths.size(); i++) {
+      assertEquals(entityPaths.get(i), textEnvelopes.get(i).getEntityPath()); // listing order, absolute paths
+      assertEquals(entityPaths.get(i), dao.getTextEnvelope(entityPaths.get(i)).getEntityPath());
+    }
+    assertTrue(dao.getTextEnvelopes(new ContainerPath("/empty/"), true).isEmpty());
+  }
+
+  @Test
+  public void testExternalChangeNotifiesListeners() throws Exception {
+    InfoNodeService service = ServiceLocator.locate(GenericInfoNodeService.class);
+    DscTextEnvelopeDAO dao = (DscTextEnvelopeDAO)DAOLocator.locate(TextEnvelopeDAO.class);
+    final List<EntityPath> changedPaths = new ArrayList<EntityPath>();
+
+    service.addInfoNodeServiceListener(new InfoNodeServiceListener() {
+      @Override
+      public void infoNodeChanged(EntityPath entityPath) {
+        changedPaths.add(entityPath);
+      }
+    });
+
+    // edit a file directly on disk (e.g., deployed by a content editor)
+    File editedFile = new File(dao.getBaseStorePath().toString(), "infonodes/edited.xml");
+    editedFile.getParentFile().mkdirs();
+    FileUtils.writeStringToFile(editedFile, "<node name=\"edited.xml\"/>", "UTF-8");
+    dao.getChangeWatcher().poll();
+
+    EntityPath editedPath = new EntityPath(ROOT_PATH, "edited.xml");
+    assertEquals(Arrays.asList(editedPath), changedPaths);
+    assertEquals("edited.xml", service.getInfoNode(editedPath).getAttributeValue("name"));
+  }
+
+  /** Create numNodes valid InfoNodes (half of them in a sub-container) and an invalid one; return the names of the valid ones in listing order. */
+  private List<String> createInfoNodes(int numNodes) {
+    TextEnvelopeDAO dao = DAOLocator.locate(TextEnvelopeDAO.class);
+
+    for (int i = 0; i < numNodes; i++) {
+      ContainerPath containerPath = i % 2 == 0 ? ROOT_PATH : new ContainerPath("/infonodes/sub/");
+      String name = "node" + i + ".xml";
+
+      dao.save(new TextEnvelope(new EntityPath(containerPath, name), "<node name=\"" + name + "\"><item>" + i + "</item></node>"));
+    }
+    dao.save(new TextEnvelope(new EntityPath(ROOT_PATH, INVALID_NODE_NAME), "<node name=\"invalid\">"));
+
+    List<String> result = new ArrayList<String>();
+    for (EntityPath entityPath : dao.getTextEnvelopePaths(ROOT_PATH, true)) {
+      if (!INVALID_NODE_NAME.equals(entityPath.getEntityName())) {
+        result.add(entityPath.getEntityName());
+      }
+    }
+
+    return result;
+  }
+
+  private static List<String> getNames(Iterator<? extends InfoNodeElement> infoNodes) {
+    List<String> result = new ArrayList<String>();
+
+    while (infoNodes.hasNext()) {
+      result.add(infoNodes.next().getAttributeValue("name"));
+    }
+
+    return result;
+  }
+
+}
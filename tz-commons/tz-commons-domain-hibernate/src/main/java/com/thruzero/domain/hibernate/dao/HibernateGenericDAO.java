@@ -16,18 +16,26 @@
 package com.thruzero.domain.hibernate.dao;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.SessionFactoryImplementor;
 
 import com.thruzero.common.core.locator.TransactionMgrLocator;
 import com.thruzero.common.core.support.SimpleInfo;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.common.core.transaction.DatabaseTransactionMgr;
 import com.thruzero.common.core.transaction.TransactionMgr;
 import com.thruzero.domain.dao.GenericDAO;
+import com.thruzero.domain.store.EntityIterator;
 import com.thruzero.domain.store.Persistent;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * Base class for all Hibernate-based DAOs. It provides basic functionality for CRUD operations.
@@ -38,14 +46,98 @@ import com.thruzero.domain.store.Persistent;
  * @param <T>
  */
 public abstract class HibernateGenericDAO<T extends Persistent> implements GenericDAO<T> {
+  /** Number of objects written by the batch functions between flushes, when JDBC batching isn't configured. */
+  public static final int DEFAULT_BATCH_SIZE = 50;
+
   private Class<? extends T> type;
   private String tableName;
 
+  // the generic queries, generated once per entity type
+  private final QueryDefinition<? extends T> queryByKeyQuery;
+  private final QueryDefinition<? extends T> getAllQuery;
+  private final QueryDefinition<? extends T> getAllOrderedQuery;
+  private final QueryDefinition<Serializable> isExistingEntityQuery;
+
   private DatabaseTransactionMgr transactionMgr = (DatabaseTransactionMgr)TransactionMgrLocator.locate(TransactionMgr.class);
 
+  // ------------------------------------------------
+  // ScrollingEntityIterator
+  // ------------------------------------------------
+
+  /**
+   * An EntityIterator backed by a forward-only {@code ScrollableResults} cursor. Each entity is evicted from the session
+   * as it's returned, so the session doesn't grow while the results are streamed. The cursor is closed when the last
+   * entity has been returned (or by {@code close()}); it must be consumed before the current transaction ends.
+   */
+  private static final class ScrollingEntityIterator<T> implements EntityIterator<T> {
+    private final Session session;
+    private final Class<? extends T> type;
+    private ScrollableResults results;
+    private T next;
+
+    public ScrollingEntityIterator(Session session, Class<? extends T> type, ScrollableResults results) {
+      this.session = session;
+      this.type = type;
+      this.results = results;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+
+      T result = next;
+      advance();
+
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      next = null;
+      if (results != null) {
+        results.close();
+        results = null;
+      }
+    }
+
+    private void advance() {
+      next = null;
+      if (results != null) {
+        if (results.next()) {
+          next = type.cast(results.get(0));
+          session.evict(next);
+        } else {
+          close();
+        }
+      }
+    }
+  }
+
+  // ============================================================
+  // HibernateGenericDAO
+  // ============================================================
+
   protected HibernateGenericDAO(Class<? extends T> type) {
     this.type = type;
     this.tableName = type.getSimpleName();
+
+    queryByKeyQuery = QueryDefinition.from(tableName, type, "o").whereEquals("id", "primaryKey").build(tableName + ".queryByKey");
+    getAllQuery = QueryDefinition.from(tableName, type, "o").build(tableName + ".getAll");
+    getAllOrderedQuery = QueryDefinition.from(tableName, type, "o").orderBy("id").build(tableName + ".getAllOrdered");
+    isExistingEntityQuery = QueryDefinition.from(tableName, type, "entity").select("id", Serializable.class).whereEquals("id", "primaryKey").build(tableName + ".isExistingEntity");
   }
 
   protected Session getCurrentSession() {
@@ -65,13 +157,7 @@ public abstract class HibernateGenericDAO<T extends Persistent> implements Gener
   }
 
   public T queryByKey(Serializable primaryKey) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM ", tableName, " o ");
-    hql.append("  WHERE o.id = :primaryKey ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(queryByKeyQuery);
     hqlQuery.setParameter("primaryKey", primaryKey);
 
     T result = type.cast(hqlQuery.uniqueResult()); // use dynamic cast to avoid @SuppressWarnings("unchecked")
@@ -81,12 +167,22 @@ public abstract class HibernateGenericDAO<T extends Persistent> implements Gener
 
   @Override
   public List<? extends T> getAll() {
-    Session session = getCurrentSession();
+    Query hqlQuery = createQuery(getAllQuery);
 
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM ", tableName, " o ");
+    @SuppressWarnings("unchecked") // Hibernate isn't generic
+    List<? extends T> result = hqlQuery.list();
 
-    Query hqlQuery = session.createQuery(hql.toString());
+    return result;
+  }
+
+  /**
+   * Return one page of the Domain Objects, ordered by id, starting at the given (zero-based) firstResult and containing
+   * at most maxResults objects.
+   */
+  public List<? extends T> getAll(int firstResult, int maxResults) {
+    Query hqlQuery = createQuery(getAllOrderedQuery);
+    hqlQuery.setFirstResult(firstResult);
+    hqlQuery.setMaxResults(maxResults);
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
     List<? extends T> result = hqlQuery.list();
@@ -94,20 +190,29 @@ public abstract class HibernateGenericDAO<T extends Persistent> implements Gener
     return result;
   }
 
-  @Override
-  public boolean isExistingEntity(Serializable primaryKey) {
+  /**
+   * Return an EntityIterator that streams all of the Domain Objects, ordered by id, using a forward-only cursor that
+   * fetches {@link #getBatchSize()} rows at a time. The returned objects are read-only and detached; the iterator must
+   * be consumed (or closed) before the current transaction is committed.
+   */
+  public EntityIterator<T> iterateAll() {
     Session session = getCurrentSession();
+    Query hqlQuery = createQuery(session, getAllOrderedQuery);
+    hqlQuery.setReadOnly(true);
+    hqlQuery.setFetchSize(getBatchSize());
 
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (entity) FROM ", tableName, " entity");
-    hql.append("  WHERE entity.id = :primaryKey ");
+    return new ScrollingEntityIterator<T>(session, type, hqlQuery.scroll(ScrollMode.FORWARD_ONLY));
+  }
 
-    Query hqlQuery = session.createQuery(hql.toString());
+  /**
+   * Tests for existence by selecting just the id and stopping at the first match (instead of counting all matches).
+   */
+  @Override
+  public boolean isExistingEntity(Serializable primaryKey) {
+    Query hqlQuery = createQuery(isExistingEntityQuery);
     hqlQuery.setParameter("primaryKey", primaryKey);
 
-    Long result = (Long) hqlQuery.uniqueResult();
-
-    return result != null && result > 0;
+    return hasResult(hqlQuery);
   }
 
   /**
@@ -189,6 +294,155 @@ public abstract class HibernateGenericDAO<T extends Persistent> implements Gener
     transactionMgr.setCommitRequested(true);
   }
 
+  /**
+   * Saves each of the given domainObjects, flushing the session after every {@link #getBatchSize()} objects, so the
+   * pending INSERT statements are sent as JDBC batches (see "hibernate.jdbc.batch_size"). After each flush, the objects
+   * of that batch are evicted, so the session doesn't grow without bound during large imports. A single commit is
+   * requested for the whole collection.
+   * <p>
+   * Note: Only the given objects are evicted (and only the ones that weren't already in the session), so they're
+   * detached once the call returns; any other object in the (shared) session stays attached.
+   */
+  @Override
+  public void saveAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      Session session = getCurrentSession();
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      List<T> batch = new ArrayList<T>(batchSize);
+
+      for (T domainObject : domainObjects) {
+        if (!session.contains(domainObject)) {
+          batch.add(domainObject);
+        }
+        doSave(session, domainObject);
+        session.save(domainObject);
+        flushAndEvictIfBatchFull(session, ++count, batchSize, batch);
+      }
+      flushAndEvict(session, batch);
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Updates each of the given domainObjects, using the same batching strategy as {@link #saveAll(Collection)}.
+   */
+  @Override
+  public void updateAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      Session session = getCurrentSession();
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      List<T> batch = new ArrayList<T>(batchSize);
+
+      for (T domainObject : domainObjects) {
+        if (!session.contains(domainObject)) {
+          batch.add(domainObject);
+        }
+        doUpdate(session, domainObject);
+        session.update(domainObject);
+        flushAndEvictIfBatchFull(session, ++count, batchSize, batch);
+      }
+      flushAndEvict(session, batch);
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Deletes each of the given domainObjects, using the same batching strategy as {@link #saveAll(Collection)} (a deleted
+   * object leaves the session when it's flushed, so nothing needs to be evicted).
+   */
+  @Override
+  public void deleteAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      Session session = getCurrentSession();
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      for (T domainObject : domainObjects) {
+        session.delete(domainObject);
+        flushAndEvictIfBatchFull(session, ++count, batchSize, null);
+      }
+      session.flush();
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Return the number of objects written by saveAll, updateAll and deleteAll before the session is flushed and the
+   * batch is evicted. Defaults to the JDBC batch size configured for the SessionFactory ("hibernate.jdbc.batch_size"), or
+   * DEFAULT_BATCH_SIZE if JDBC batching is disabled.
+   */
+  protected int getBatchSize() {
+    int result = DEFAULT_BATCH_SIZE;
+    SessionFactory sessionFactory = getCurrentSession().getSessionFactory();
+
+    if (sessionFactory instanceof SessionFactoryImplementor) {
+      int jdbcBatchSize = ((SessionFactoryImplementor)sessionFactory).getSettings().getJdbcBatchSize();
+
+      if (jdbcBatchSize > 0) {
+        result = jdbcBatchSize;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a Query, in the current session, from the given (prebuilt) QueryDefinition. Since the query string is
+   * identical on every call, Hibernate's query plan cache parses it only once.
+   */
+  protected Query createQuery(QueryDefinition<?> queryDefinition) {
+    return createQuery(getCurrentSession(), queryDefinition);
+  }
+
+  protected Query createQuery(Session session, QueryDefinition<?> queryDefinition) {
+    Query result = session.createQuery(queryDefinition.getQueryString());
+    result.setComment(queryDefinition.getName()); // included in the SQL when "use_sql_comments" is enabled
+
+    return result;
+  }
+
+  /**
+   * Return true if the given query matches at least one row. The query is limited to a single row, so the database can
+   * stop at the first match; select a single column (e.g., the id) to avoid hydrating an entity.
+   */
+  protected boolean hasResult(Query hqlQuery) {
+    hqlQuery.setMaxResults(1);
+
+    return !hqlQuery.list().isEmpty();
+  }
+
+  /**
+   * Return the first value selected by the given projection query (e.g., "SELECT setting.value FROM ..."), or the
+   * defaultValue if the query matches no rows. Only the selected column is read; no entity is hydrated.
+   */
+  protected String getFirstValue(Query hqlQuery, String defaultValue) {
+    hqlQuery.setMaxResults(1);
+    List<?> values = hqlQuery.list();
+
+    return values.isEmpty() ? defaultValue : (String)values.get(0);
+  }
+
+  private void flushAndEvictIfBatchFull(Session session, int count, int batchSize, List<T> batch) {
+    if (count % batchSize == 0) {
+      flushAndEvict(session, batch);
+    }
+  }
+
+  /** Flush the session and evict the given batch (if any), leaving the rest of the session intact. */
+  private void flushAndEvict(Session session, List<T> batch) {
+    session.flush();
+    if (batch != null) {
+      for (T domainObject : batch) {
+        session.evict(domainObject);
+      }
+      batch.clear();
+    }
+  }
+
   public void refresh(T domainObject) {
     Session session = getCurrentSession();
 
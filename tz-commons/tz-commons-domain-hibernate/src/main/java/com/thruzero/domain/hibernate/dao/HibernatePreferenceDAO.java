@@ -15,14 +15,14 @@
  */
 package com.thruzero.domain.hibernate.dao;
 
+import java.io.Serializable;
 import java.util.List;
 
 import org.hibernate.Query;
-import org.hibernate.Session;
 
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.PreferenceDAO;
 import com.thruzero.domain.model.Preference;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of PreferenceDAO that uses Hibernate for storage.
@@ -31,6 +31,16 @@ import com.thruzero.domain.model.Preference;
  */
 public final class HibernatePreferenceDAO extends HibernateGenericDAO<Preference> implements PreferenceDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_PREFERENCE = QueryDefinition.from(Preference.class, "preference").select("id", Serializable.class)
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.isExistingPreference");
+  private static final QueryDefinition<String> GET_PREFERENCE_VALUE = QueryDefinition.from(Preference.class, "preference").select("value", String.class)
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.getPreferenceValue");
+  private static final QueryDefinition<Preference> GET_PREFERENCE = QueryDefinition.from(Preference.class, "preference")
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.getPreference");
+  private static final QueryDefinition<Preference> GET_PREFERENCES = QueryDefinition.from(Preference.class, "preference")
+      .whereEquals("context").whereEquals("owner").build("Preference.getPreferences");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -40,22 +50,12 @@ public final class HibernatePreferenceDAO extends HibernateGenericDAO<Preference
 
   @Override
   public boolean isExistingPreference(String owner, String context, String name) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (preference) FROM Preference preference");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("  AND preference.name = :name ");
-    hql.append("  AND preference.owner = :owner ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_PREFERENCE);
     hqlQuery.setString("context", context);
     hqlQuery.setString("name", name);
     hqlQuery.setString("owner", owner);
 
-    Long result = (Long) hqlQuery.uniqueResult();
-
-    return result != null && result > 0;
+    return hasResult(hqlQuery);
   }
 
   @Override
@@ -63,24 +63,20 @@ public final class HibernatePreferenceDAO extends HibernateGenericDAO<Preference
     return getPreferenceValue(owner, context, name, null);
   }
 
+  /** Selects only the value column (the Preference entity is not loaded). */
   @Override
   public String getPreferenceValue(String owner, String context, String name, String defaultValue) {
-    Preference result = getPreference(owner, context, name);
+    Query hqlQuery = createQuery(GET_PREFERENCE_VALUE);
+    hqlQuery.setString("context", context);
+    hqlQuery.setString("name", name);
+    hqlQuery.setString("owner", owner);
 
-    return result == null ? defaultValue : result.getValue();
+    return getFirstValue(hqlQuery, defaultValue);
   }
 
   @Override
   public Preference getPreference(String owner, String context, String name) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Preference preference ");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("  AND preference.name = :name ");
-    hql.append("  AND preference.owner = :owner ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_PREFERENCE);
     hqlQuery.setString("context", context);
     hqlQuery.setString("name", name);
     hqlQuery.setString("owner", owner);
@@ -92,14 +88,7 @@ public final class HibernatePreferenceDAO extends HibernateGenericDAO<Preference
 
   @Override
   public List<? extends Preference> getPreferences(String owner, String context) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Preference preference ");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("  AND preference.owner = :owner ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_PREFERENCES);
     hqlQuery.setString("context", context);
     hqlQuery.setString("owner", owner);
 
@@ -15,14 +15,19 @@
  */
 package com.thruzero.domain.hibernate.dao;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Query;
-import org.hibernate.Session;
 
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.SettingDAO;
 import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of SettingDAO that uses Hibernate for storage.
@@ -31,6 +36,18 @@ import com.thruzero.domain.model.Setting;
  */
 public final class HibernateSettingDAO extends HibernateGenericDAO<Setting> implements SettingDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_SETTING = QueryDefinition.from(Setting.class, "setting").select("id", Serializable.class)
+      .whereEquals("context").whereEquals("name").build("Setting.isExistingSetting");
+  private static final QueryDefinition<String> GET_SETTING_VALUE = QueryDefinition.from(Setting.class, "setting").select("value", String.class)
+      .whereEquals("context").whereEquals("name").build("Setting.getSettingValue");
+  private static final QueryDefinition<Setting> GET_SETTING = QueryDefinition.from(Setting.class, "setting")
+      .whereEquals("context").whereEquals("name").build("Setting.getSetting");
+  private static final QueryDefinition<Setting> GET_SETTINGS = QueryDefinition.from(Setting.class, "setting")
+      .whereEquals("context").build("Setting.getSettings");
+  private static final QueryDefinition<Setting> GET_SETTINGS_IN_CONTEXTS = QueryDefinition.from(Setting.class, "setting")
+      .whereIn("context", "contexts").build("Setting.getSettingsInContexts");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -40,20 +57,11 @@ public final class HibernateSettingDAO extends HibernateGenericDAO<Setting> impl
 
   @Override
   public boolean isExistingSetting(String context, String name) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (setting) FROM Setting setting");
-    hql.append("  WHERE setting.context = :context ");
-    hql.append("    AND setting.name = :name ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_SETTING);
     hqlQuery.setString("context", context);
     hqlQuery.setString("name", name);
 
-    Long result = (Long)hqlQuery.uniqueResult();
-
-    return result != null && result > 0;
+    return hasResult(hqlQuery);
   }
 
   @Override
@@ -61,23 +69,19 @@ public final class HibernateSettingDAO extends HibernateGenericDAO<Setting> impl
     return getSettingValue(context, name, null);
   }
 
+  /** Selects only the value column (the Setting entity is not loaded). */
   @Override
   public String getSettingValue( String context, String name, String defaultValue ) {
-    Setting result = getSetting(context, name);
+    Query hqlQuery = createQuery(GET_SETTING_VALUE);
+    hqlQuery.setString("context", context);
+    hqlQuery.setString("name", name);
 
-    return result == null ? defaultValue : result.getValue();
+    return getFirstValue(hqlQuery, defaultValue);
   }
 
   @Override
   public Setting getSetting( String context, String name ) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(200);
-    hql.append("FROM Setting setting ");
-    hql.append("  WHERE setting.context = :context ");
-    hql.append("    AND setting.name = :name ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_SETTING);
     hqlQuery.setString("context", context);
     hqlQuery.setString("name", name);
 
@@ -88,13 +92,7 @@ public final class HibernateSettingDAO extends HibernateGenericDAO<Setting> impl
 
   @Override
   public List<? extends Setting> getSettings( String context ) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(200);
-    hql.append("FROM Setting setting ");
-    hql.append("  WHERE setting.context = :context ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_SETTINGS);
     hqlQuery.setString("context", context);
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
@@ -103,4 +101,32 @@ public final class HibernateSettingDAO extends HibernateGenericDAO<Setting> impl
     return result;
   }
 
+  /** Load the Settings of all of the given contexts with a single query. */
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+    Map<String, List<Setting>> settingsByContext = new HashMap<String, List<Setting>>();
+
+    for (String context : contexts) {
+      List<Setting> settings = new ArrayList<Setting>();
+
+      settingsByContext.put(context, settings);
+      result.put(context, settings);
+    }
+
+    if (!settingsByContext.isEmpty()) {
+      Query hqlQuery = createQuery(GET_SETTINGS_IN_CONTEXTS);
+      hqlQuery.setParameterList("contexts", settingsByContext.keySet());
+
+      @SuppressWarnings("unchecked") // Hibernate isn't generic
+      List<? extends Setting> allSettings = hqlQuery.list();
+
+      for (Setting setting : allSettings) {
+        settingsByContext.get(setting.getContext()).add(setting);
+      }
+    }
+
+    return result;
+  }
+
 }
@@ -15,16 +15,19 @@
  */
 package com.thruzero.domain.hibernate.dao;
 
+import java.io.InputStream;
+import java.io.Serializable;
 import java.util.List;
 
 import org.hibernate.Query;
-import org.hibernate.Session;
 
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
+import com.thruzero.domain.dao.impl.TextEnvelopeDataHelper;
 import com.thruzero.domain.model.TextEnvelope;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of TextEnvelopeDAO that uses Hibernate for storage.
@@ -33,6 +36,14 @@ import com.thruzero.domain.model.TextEnvelope;
  */
 public final class HibernateTextEnvelopeDAO extends HibernateGenericDAO<TextEnvelope> implements TextEnvelopeDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_TEXT_ENVELOPE = QueryDefinition.from(TextEnvelope.class, "textEnvelope").select("id", Serializable.class)
+      .whereEquals("entityPath.containerPath").whereEquals("entityPath.entityName").build("TextEnvelope.isExistingTextEnvelope");
+  private static final QueryDefinition<TextEnvelope> GET_TEXT_ENVELOPES = QueryDefinition.from(TextEnvelope.class, "textEnvelope")
+      .whereEquals("containerPath").build("TextEnvelope.getTextEnvelopes");
+  private static final QueryDefinition<TextEnvelope> GET_TEXT_ENVELOPE = QueryDefinition.from(TextEnvelope.class, "textEnvelope")
+      .whereEquals("entityPath.containerPath").whereEquals("entityPath.entityName").build("TextEnvelope.getTextEnvelope");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -42,31 +53,16 @@ public final class HibernateTextEnvelopeDAO extends HibernateGenericDAO<TextEnve
 
   @Override
   public boolean isExistingTextEnvelope(EntityPath entityPath) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (textEnvelope) FROM TextEnvelope textEnvelope");
-    hql.append("  WHERE textEnvelope.entityPath.containerPath = :containerPath ");
-    hql.append("    AND textEnvelope.entityPath.entityName = :entityName ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_TEXT_ENVELOPE);
     hqlQuery.setString("containerPath", entityPath.getContainerPath().getPath());
     hqlQuery.setString("entityName", entityPath.getEntityName());
 
-    Long result = (Long)hqlQuery.uniqueResult();
-
-    return result != null && result > 0;
+    return hasResult(hqlQuery);
   }
 
   @Override
   public List<? extends TextEnvelope> getTextEnvelopes(ContainerPath containerPath, boolean recursive) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append(" FROM TextEnvelope textEnvelope ");
-    hql.append("  WHERE textEnvelope.containerPath = :containerPath ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_TEXT_ENVELOPES);
     hqlQuery.setString("containerPath", containerPath.getPath());
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
@@ -83,14 +79,7 @@ public final class HibernateTextEnvelopeDAO extends HibernateGenericDAO<TextEnve
 
   @Override
   public TextEnvelope getTextEnvelope(EntityPath entityPath) {
-    Session session = getCurrentSession();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append(" FROM TextEnvelope textEnvelope ");
-    hql.append("  WHERE textEnvelope.entityPath.containerPath = :containerPath ");
-    hql.append("    AND textEnvelope.entityPath.entityName = :entityName ");
-
-    Query hqlQuery = session.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_TEXT_ENVELOPE);
     hqlQuery.setString("containerPath", entityPath.getContainerPath().getPath());
     hqlQuery.setString("entityName", entityPath.getEntityName());
 
@@ -98,4 +87,15 @@ public final class HibernateTextEnvelopeDAO extends HibernateGenericDAO<TextEnve
 
     return result;
   }
+
+  /** Returns the data as a stream of the TextEnvelope's String (the data column isn't streamed). */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return TextEnvelopeDataHelper.getTextEnvelopeData(this, entityPath);
+  }
+
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter) {
+    TextEnvelopeDataHelper.saveOrUpdateTextEnvelopeData(this, entityPath, dataWriter);
+  }
 }
@@ -46,8 +46,8 @@ import com.thruzero.common.core.transaction.DatabaseTransactionMgr;
 public final class HibernateDatabaseTransactionMgr implements DatabaseTransactionMgr, Initializable {
   private static final Logger logger = Logger.getLogger(HibernateDatabaseTransactionMgr.class);
 
-  private static Configuration hibernateConfiguration; // for lazy init
-  private static SessionFactory sessionFactory;
+  private static Configuration hibernateConfiguration; // for lazy init (guarded by the class lock)
+  private static volatile SessionFactory sessionFactory; // built once, then read without locking
   private static ThreadLocal<HibernateTransactionState> localTransactionState = new ThreadLocal<HibernateTransactionState>() {
     @Override
     protected HibernateTransactionState initialValue() {
@@ -189,22 +189,36 @@ public final class HibernateDatabaseTransactionMgr implements DatabaseTransactio
     return currentSession;
   }
 
-  protected static synchronized SessionFactory ensureSessionFactory() { // TODO-p1(george) static synchronized bottleneck
-    if (sessionFactory == null) {
-      try {
-        // Create the SessionFactory from hibernate Configuration
-        if (logger.isDebugEnabled()) {
-          logger.debug("Building SessionFactory from hibernate Configuration");
+  /**
+   * Return the SessionFactory, building it from the hibernate Configuration on first use. Once built, the factory is
+   * read from a volatile field without locking; only the threads that race to build it (or rebuild it, after a reset)
+   * take the class lock, which is the same lock that guards init() and reset().
+   */
+  protected static SessionFactory ensureSessionFactory() {
+    SessionFactory result = sessionFactory;
+
+    if (result == null) {
+      synchronized (HibernateDatabaseTransactionMgr.class) {
+        result = sessionFactory;
+
+        if (result == null) {
+          try {
+            // Create the SessionFactory from hibernate Configuration
+            if (logger.isDebugEnabled()) {
+              logger.debug("Building SessionFactory from hibernate Configuration");
+            }
+            result = hibernateConfiguration.buildSessionFactory(); // TODO-p1(george) c3p0 error
+            sessionFactory = result;
+          } catch (Throwable ex) {
+            String msg = "* ERROR: Hibernate SessionFactory creation failed.";
+            logger.error(msg, ex);
+            throw new RuntimeException(msg, ex);
+          }
         }
-        sessionFactory = hibernateConfiguration.buildSessionFactory(); // TODO-p1(george) c3p0 error
-      } catch (Throwable ex) {
-        String msg = "* ERROR: Hibernate SessionFactory creation failed.";
-        logger.error(msg, ex);
-        throw new RuntimeException(msg, ex);
       }
     }
 
-    return sessionFactory;
+    return result;
   }
 
   /**
@@ -15,13 +15,27 @@
  */
 package com.thruzero.domain.hibernate.dao;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hibernate.Session;
 import org.junit.Test;
 
+import com.thruzero.common.core.locator.TransactionMgrLocator;
+import com.thruzero.common.core.transaction.DatabaseTransactionMgr;
+import com.thruzero.common.core.transaction.TransactionMgr;
 import com.thruzero.domain.dao.SettingDAO;
 import com.thruzero.domain.hibernate.test.support.AbstractDomainHibernateTestCase;
 import com.thruzero.domain.locator.DAOLocator;
+import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.store.EntityIterator;
 import com.thruzero.domain.test.support.dao.AbstractSettingDAOTestHelper;
 
 /**
@@ -100,4 +114,115 @@ public class HibernateSettingDAOTest extends AbstractDomainHibernateTestCase {
     testHelper.doTestIsExistingSetting(DAOLocator.locate(SettingDAO.class));
   }
 
+  @Test
+  public void testGetSettings() {
+    testHelper.doTestGetSettings(DAOLocator.locate(SettingDAO.class));
+  }
+
+  @Test
+  public void testBatchWrites() {
+    testHelper.doTestBatchWrites(DAOLocator.locate(SettingDAO.class));
+  }
+
+  @Test
+  public void testBatchWritesDetachOnlyTheBatch() {
+    SettingDAO dao = DAOLocator.locate(SettingDAO.class);
+    Setting existing = new Setting();
+
+    existing.setContext("batch-context");
+    existing.setName("existing");
+    existing.setValue("value");
+    getTransactionService().beginTransaction();
+    dao.save(existing);
+    getTransactionService().commitTransaction();
+
+    getTransactionService().beginTransaction();
+    try {
+      Session persistenceManager = (Session)((DatabaseTransactionMgr)TransactionMgrLocator.locate(TransactionMgr.class)).getCurrentPersistenceManager();
+      Setting loaded = dao.getSetting("batch-context", "existing");
+      List<Setting> newSettings = new ArrayList<Setting>();
+
+      for (int i = 0; i < HibernateGenericDAO.DEFAULT_BATCH_SIZE + 3; i++) {
+        Setting setting = new Setting();
+        setting.setContext("batch-context");
+        setting.setName("name" + i);
+        setting.setValue("value" + i);
+        newSettings.add(setting);
+      }
+      dao.saveAll(newSettings);
+
+      // only the objects written by the batch are detached; the rest of the (shared) persistence context is intact
+      assertTrue(persistenceManager.contains(loaded));
+      for (Setting setting : newSettings) {
+        assertFalse(persistenceManager.contains(setting));
+      }
+      assertEquals(newSettings.size() + 1, dao.getSettings("batch-context").size());
+    } finally {
+      getTransactionService().commitTransaction();
+    }
+  }
+
+  @Test
+  public void testPagedAndStreamedGetAll() {
+    HibernateSettingDAO dao = (HibernateSettingDAO)DAOLocator.locate(SettingDAO.class);
+
+    getTransactionService().beginTransaction();
+    for (int i = 0; i < 7; i++) {
+      Setting setting = new Setting();
+      setting.setContext("paging-context");
+      setting.setName("name" + i);
+      setting.setValue("value" + i);
+      dao.save(setting);
+    }
+    getTransactionService().commitTransaction();
+
+    getTransactionService().beginTransaction();
+    try {
+      List<Serializable> allIds = new ArrayList<Serializable>();
+      for (Setting setting : dao.getAll()) {
+        allIds.add(setting.getId());
+      }
+      Collections.sort(allIds, new Comparator<Serializable>() {
+        @Override
+        public int compare(Serializable id1, Serializable id2) {
+          return ((Long)id1).compareTo((Long)id2);
+        }
+      });
+      assertTrue(allIds.size() >= 7);
+
+      // read the settings three at a time
+      List<Serializable> pagedIds = new ArrayList<Serializable>();
+      List<? extends Setting> page;
+      do {
+        page = dao.getAll(pagedIds.size(), 3);
+        for (Setting setting : page) {
+          pagedIds.add(setting.getId());
+        }
+      } while (page.size() == 3);
+      assertEquals(allIds, pagedIds);
+
+      // stream the settings
+      List<Serializable> streamedIds = new ArrayList<Serializable>();
+      EntityIterator<Setting> iter = dao.iterateAll();
+      try {
+        while (iter.hasNext()) {
+          streamedIds.add(iter.next().getId());
+        }
+      } finally {
+        iter.close();
+      }
+      assertEquals(allIds, streamedIds);
+
+      // projection and existence queries
+      assertEquals("value3", dao.getSettingValue("paging-context", "name3", null));
+      assertEquals("default", dao.getSettingValue("paging-context", "bogus-name", "default"));
+      assertTrue(dao.isExistingSetting("paging-context", "name6"));
+      assertFalse(dao.isExistingSetting("paging-context", "bogus-name"));
+      assertTrue(dao.isExistingEntity(allIds.get(0)));
+      assertFalse(dao.isExistingEntity(Long.valueOf(-1)));
+    } finally {
+      getTransactionService().commitTransaction();
+    }
+  }
+
 }
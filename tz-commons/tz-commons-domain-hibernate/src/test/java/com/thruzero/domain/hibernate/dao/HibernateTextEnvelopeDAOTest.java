@@ -89,6 +89,11 @@ public class HibernateTextEnvelopeDAOTest extends AbstractDomainHibernateTestCas
     testHelper.doTestUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
   }
 
+  @Test
+  public void testStreamedData() throws Exception {
+    testHelper.doTestStreamedData(DAOLocator.locate(TextEnvelopeDAO.class));
+  }
+
   @Test
   public void testSaveOrUpdatePersistedNode() {
     testHelper.doTestSaveOrUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
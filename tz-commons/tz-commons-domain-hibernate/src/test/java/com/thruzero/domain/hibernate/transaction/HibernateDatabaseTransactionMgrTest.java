@@ -0,0 +1,108 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.hibernate.transaction;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import com.thruzero.domain.hibernate.test.support.AbstractDomainHibernateTestCase;
+import com.thruzero.test.support.AbstractContentionBenchmarkHelper;
+
+/**
+ * Unit test (and contention benchmark) for HibernateDatabaseTransactionMgr.
+ *
+ * @author George Norman
+ */
+public class HibernateDatabaseTransactionMgrTest extends AbstractDomainHibernateTestCase {
+  private static final int NUM_THREADS = 64;
+  private static final int NUM_ITERATIONS = 200;
+
+  // -----------------------------------------------
+  // SessionContentionBenchmarkHelper
+  // -----------------------------------------------
+
+  /**
+   * Each iteration opens a Session (and transaction) and rolls it back, so every iteration looks up the SessionFactory.
+   * The first wave of threads races to build the factory; all threads must see the same one.
+   */
+  public class SessionContentionBenchmarkHelper extends AbstractContentionBenchmarkHelper {
+    private final AtomicReference<SessionFactory> sharedSessionFactory = new AtomicReference<SessionFactory>();
+
+    @Override
+    protected void doExecute(int threadIndex, int iteration) throws Exception {
+      Session session = (Session)getTransactionService().getCurrentPersistenceManager();
+      SessionFactory sessionFactory = session.getSessionFactory();
+
+      if (!sharedSessionFactory.compareAndSet(null, sessionFactory) && sharedSessionFactory.get() != sessionFactory) {
+        throw new IllegalStateException("SessionFactory was built more than once.");
+      }
+
+      getTransactionService().rollbackTransaction();
+    }
+
+    @Override
+    protected void doThreadTeardown(int threadIndex) throws Exception {
+      getTransactionService().rollbackTransaction();
+    }
+  }
+
+  // =====================================================================
+  // HibernateDatabaseTransactionMgrTest
+  // =====================================================================
+
+  @Test
+  public void testConcurrentSessionCreation() throws Exception {
+    SessionContentionBenchmarkHelper benchmark = new SessionContentionBenchmarkHelper();
+
+    benchmark.execute(NUM_THREADS, NUM_ITERATIONS);
+
+    assertNotNull(benchmark.sharedSessionFactory.get());
+  }
+
+  /** Every thread must see the Statistics of the one shared SessionFactory (i.e., the factory is looked up, not rebuilt). */
+  @Test
+  public void testConcurrentSessionFactoryLookup() throws Exception {
+    final AtomicReference<Statistics> sharedStatistics = new AtomicReference<Statistics>();
+    AbstractContentionBenchmarkHelper benchmark = new AbstractContentionBenchmarkHelper() {
+      @Override
+      protected void doExecute(int threadIndex, int iteration) throws Exception {
+        Statistics statistics = HibernateDatabaseTransactionMgr.getStatistics();
+
+        assertNotNull(statistics);
+        if (!sharedStatistics.compareAndSet(null, statistics)) {
+          assertSame("Statistics of a different SessionFactory.", sharedStatistics.get(), statistics);
+        }
+      }
+    };
+
+    benchmark.execute(NUM_THREADS, NUM_ITERATIONS * 50);
+
+    try {
+      Session session = (Session)getTransactionService().getCurrentPersistenceManager();
+      assertSame(session.getSessionFactory().getStatistics(), sharedStatistics.get());
+    } finally {
+      getTransactionService().rollbackTransaction();
+    }
+  }
+
+}
@@ -16,6 +16,7 @@
 package com.thruzero.domain.jpa.dao;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,6 +26,7 @@ import org.apache.log4j.Logger;
 
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
 import com.thruzero.domain.dsc.store.DataStoreContainer;
 import com.thruzero.domain.dsc.store.DataStoreException;
 import com.thruzero.domain.dsc.store.SimpleDataStoreEntity;
@@ -91,6 +93,17 @@ public class JpaDataStoreContainer implements DataStoreContainer {
     updateEntity(entityName, dataStoreEntity);
   }
 
+  /** The data is buffered and saved as the data of a TextEnvelope (see {@link JpaTextEnvelopeDAO#saveOrUpdateTextEnvelopeData}). */
+  @Override
+  public void saveOrUpdateEntity(String entityName, final DataStoreEntityWriter entityWriter) {
+    jpaTextEnvelopeDAO.saveOrUpdateTextEnvelopeData(getPrimaryKey(entityName), new TextEnvelopeDataWriter() {
+      @Override
+      public void writeData(OutputStream out) throws IOException {
+        entityWriter.writeTo(out);
+      }
+    });
+  }
+
   @Override
   public void updateEntity(String entityName, DataStoreEntity dataStoreEntity) {
     TextEnvelope inputsEnvelope = jpaTextEnvelopeDAO.getTextEnvelope(getPrimaryKey(entityName));
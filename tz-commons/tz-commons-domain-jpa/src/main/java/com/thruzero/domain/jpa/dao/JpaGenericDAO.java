@@ -16,19 +16,24 @@
 package com.thruzero.domain.jpa.dao;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
 import com.thruzero.common.core.locator.TransactionMgrLocator;
 import com.thruzero.common.core.support.SimpleInfo;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.common.core.transaction.DatabaseTransactionMgr;
 import com.thruzero.common.core.transaction.TransactionMgr;
 import com.thruzero.domain.dao.GenericDAO;
 import com.thruzero.domain.jpa.utils.JpaUtils;
+import com.thruzero.domain.store.EntityIterator;
 import com.thruzero.domain.store.Persistent;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * Base class for all JPA-based DAOs. It provides basic functionality for CRUD operations.
@@ -37,11 +42,91 @@ import com.thruzero.domain.store.Persistent;
  * @param <T> Type of Domain Object managed by this DAO.
  */
 public abstract class JpaGenericDAO<T extends Persistent> implements GenericDAO<T> {
+  /** Number of objects written by the batch functions between flushes. */
+  public static final int DEFAULT_BATCH_SIZE = 50;
+
   private Class<? extends T> clazz;
+
+  // the generic queries, generated once per entity type
+  private final QueryDefinition<? extends T> queryByKeyQuery;
+  private final QueryDefinition<? extends T> getAllQuery;
+  private final QueryDefinition<? extends T> getAllOrderedQuery;
+  private final QueryDefinition<? extends T> getAllAfterQuery;
+  private final QueryDefinition<Serializable> isExistingEntityQuery;
   private DatabaseTransactionMgr transactionMgr = (DatabaseTransactionMgr)TransactionMgrLocator.locate(TransactionMgr.class);
 
+  // ------------------------------------------------
+  // PagingEntityIterator
+  // ------------------------------------------------
+
+  /**
+   * An EntityIterator that reads the Domain Objects one page at a time (JPA 2.0 has no cursor API). Pages are read by
+   * keyset (each page starts after the last id of the previous one), so the database seeks directly to each page instead
+   * of skipping an ever-growing offset. Each entity is detached from the persistence context as it's returned, so the
+   * context doesn't grow while the results are streamed.
+   */
+  private final class PagingEntityIterator implements EntityIterator<T> {
+    private final int pageSize;
+    private Serializable lastId;
+    private Iterator<? extends T> page;
+    private boolean lastPage;
+
+    public PagingEntityIterator(int pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while ((page == null || !page.hasNext()) && !lastPage) {
+        List<? extends T> entities = lastId == null ? getAll(0, pageSize) : getAllAfter(lastId, pageSize);
+
+        if (!entities.isEmpty()) {
+          lastId = entities.get(entities.size() - 1).getId();
+        }
+        lastPage = entities.size() < pageSize;
+        page = entities.iterator();
+      }
+
+      return page != null && page.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      T result = page.next();
+      getCurrentPersistenceManager().detach(result);
+
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      page = null;
+      lastPage = true;
+    }
+  }
+
+  // ============================================================
+  // JpaGenericDAO
+  // ============================================================
+
   protected JpaGenericDAO(Class<? extends T> clazz) {
     this.clazz = clazz;
+
+    String entityName = clazz.getSimpleName();
+    queryByKeyQuery = QueryDefinition.from(entityName, clazz, "o").whereEquals("id", "primaryKey").build(entityName + ".queryByKey");
+    getAllQuery = QueryDefinition.from(entityName, clazz, "o").build(entityName + ".getAll");
+    getAllOrderedQuery = QueryDefinition.from(entityName, clazz, "o").orderBy("id").build(entityName + ".getAllOrdered");
+    getAllAfterQuery = QueryDefinition.from(entityName, clazz, "o").whereGreaterThan("id", "lastId").orderBy("id").build(entityName + ".getAllAfter");
+    isExistingEntityQuery = QueryDefinition.from(entityName, clazz, "entity").select("id", Serializable.class).whereEquals("id", "primaryKey").build(entityName + ".isExistingEntity");
   }
 
   protected EntityManager getCurrentPersistenceManager( ) {
@@ -66,13 +151,7 @@ public abstract class JpaGenericDAO<T extends Persistent> implements GenericDAO<
   }
 
   public T queryByKey(Serializable primaryKey) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM " + clazz.getSimpleName() +" o ");
-    hql.append("    WHERE o.id = :primaryKey ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(queryByKeyQuery);
     hqlQuery.setParameter("primaryKey", primaryKey);
 
     // type parameters of <T>T cannot be determined; no unique maximal instance exists for type variable T with upper bounds T,java.lang.Object
@@ -84,10 +163,22 @@ public abstract class JpaGenericDAO<T extends Persistent> implements GenericDAO<
 
   @Override
   public List<? extends T> getAll( ) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-    String hql = "FROM " + clazz.getSimpleName() + " o ";
+    Query hqlQuery = createQuery(getAllQuery);
 
-    Query hqlQuery = entityManager.createQuery(hql);
+    @SuppressWarnings("unchecked") // Hibernate isn't generic
+    List<? extends T> result = hqlQuery.getResultList();
+
+    return result;
+  }
+
+  /**
+   * Return one page of the Domain Objects, ordered by id, starting at the given (zero-based) firstResult and containing
+   * at most maxResults objects.
+   */
+  public List<? extends T> getAll(int firstResult, int maxResults) {
+    Query hqlQuery = createQuery(getAllOrderedQuery);
+    hqlQuery.setFirstResult(firstResult);
+    hqlQuery.setMaxResults(maxResults);
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
     List<? extends T> result = hqlQuery.getResultList();
@@ -95,20 +186,38 @@ public abstract class JpaGenericDAO<T extends Persistent> implements GenericDAO<
     return result;
   }
 
-  @Override
-  public boolean isExistingEntity(Serializable primaryKey) {
-    EntityManager entityManager = getCurrentPersistenceManager();
+  /**
+   * Return the next page of the Domain Objects, ordered by id, containing at most maxResults objects whose id is
+   * greater than lastId. Unlike {@link #getAll(int, int)}, the cost of each page doesn't grow with its position.
+   */
+  public List<? extends T> getAllAfter(Serializable lastId, int maxResults) {
+    Query hqlQuery = createQuery(getAllAfterQuery);
+    hqlQuery.setParameter("lastId", lastId);
+    hqlQuery.setMaxResults(maxResults);
+
+    @SuppressWarnings("unchecked") // Hibernate isn't generic
+    List<? extends T> result = hqlQuery.getResultList();
 
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (entity) FROM ", clazz.getSimpleName(), " entity");
-    hql.append("  WHERE entity.id = :primaryKey ");
+    return result;
+  }
 
-    Query hqlQuery = entityManager.createQuery(hql.toString());
-    hqlQuery.setParameter("primaryKey", primaryKey);
+  /**
+   * Return an EntityIterator that streams all of the Domain Objects, ordered by id, reading {@link #getBatchSize()}
+   * objects per keyset-paged query. The returned objects are read-only and detached.
+   */
+  public EntityIterator<T> iterateAll() {
+    return new PagingEntityIterator(getBatchSize());
+  }
 
-    Long result = (Long)hqlQuery.getSingleResult();
+  /**
+   * Tests for existence by selecting just the id and stopping at the first match (instead of counting all matches).
+   */
+  @Override
+  public boolean isExistingEntity(Serializable primaryKey) {
+    Query hqlQuery = createQuery(isExistingEntityQuery);
+    hqlQuery.setParameter("primaryKey", primaryKey);
 
-    return result != null && result > 0;
+    return JpaUtils.hasResult(hqlQuery);
   }
 
   @Override
@@ -151,6 +260,119 @@ public abstract class JpaGenericDAO<T extends Persistent> implements GenericDAO<
     transactionMgr.setCommitRequested(true);
   }
 
+  /**
+   * Persists each of the given domainObjects without flushing after every object (as save does). Instead, the
+   * persistence context is flushed after every {@link #getBatchSize()} objects, so the provider can send the INSERT
+   * statements as JDBC batches (e.g., "hibernate.jdbc.batch_size"), and then the objects of that batch are detached, so
+   * the context doesn't grow without bound during large imports. A single commit is requested for the whole collection.
+   * <p>
+   * Note: Only the given objects are detached (and only the ones that weren't already managed), so they're detached
+   * once the call returns; any other entity in the (shared) persistence context stays managed.
+   */
+  @Override
+  public void saveAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      EntityManager persistenceManager = getCurrentPersistenceManager( );
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      List<Object> batch = new ArrayList<Object>(batchSize);
+
+      for (T domainObject : domainObjects) {
+        if ( !persistenceManager.contains(domainObject) ) {
+          batch.add(domainObject);
+        }
+        persistenceManager.persist(domainObject);
+        flushAndDetachIfBatchFull(persistenceManager, ++count, batchSize, batch);
+      }
+      flushAndDetach(persistenceManager, batch);
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Updates each of the given domainObjects (merging the ones that are detached), using the same batching strategy as
+   * {@link #saveAll(Collection)}. The managed copies created by merge are detached with their batch.
+   */
+  @Override
+  public void updateAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      EntityManager persistenceManager = getCurrentPersistenceManager( );
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      List<Object> batch = new ArrayList<Object>(batchSize);
+
+      for (T domainObject : domainObjects) {
+        if ( !persistenceManager.contains(domainObject) ) {
+          batch.add(persistenceManager.merge(domainObject));
+        }
+        flushAndDetachIfBatchFull(persistenceManager, ++count, batchSize, batch);
+      }
+      flushAndDetach(persistenceManager, batch);
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Removes each of the given domainObjects (merging the ones that are detached), using the same batching strategy as
+   * {@link #saveAll(Collection)} (a removed entity leaves the persistence context when it's flushed, so nothing needs to
+   * be detached).
+   */
+  @Override
+  public void deleteAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      EntityManager persistenceManager = getCurrentPersistenceManager( );
+      int batchSize = getBatchSize();
+      int count = 0;
+
+      for (T domainObject : domainObjects) {
+        T entity = domainObject;
+
+        if ( !persistenceManager.contains(entity) ) {
+          entity = persistenceManager.merge(entity);
+        }
+        persistenceManager.remove(entity);
+        flushAndDetachIfBatchFull(persistenceManager, ++count, batchSize, null);
+      }
+      persistenceManager.flush( );
+      transactionMgr.setCommitRequested(true);
+    }
+  }
+
+  /**
+   * Create a Query, in the current persistence context, from the given (prebuilt) QueryDefinition. Since the query
+   * string is identical on every call, the provider's query plan cache parses it only once.
+   */
+  protected Query createQuery(QueryDefinition<?> queryDefinition) {
+    return getCurrentPersistenceManager().createQuery(queryDefinition.getQueryString());
+  }
+
+  /**
+   * Return the number of objects written by saveAll, updateAll and deleteAll before the persistence context is flushed
+   * and the batch is detached. Override to match the JDBC batch size configured for the persistence provider.
+   */
+  protected int getBatchSize() {
+    return DEFAULT_BATCH_SIZE;
+  }
+
+  private void flushAndDetachIfBatchFull(EntityManager persistenceManager, int count, int batchSize, List<Object> batch) {
+    if (count % batchSize == 0) {
+      flushAndDetach(persistenceManager, batch);
+    }
+  }
+
+  /** Flush the persistence context and detach the given batch (if any), leaving the rest of the context intact. */
+  private void flushAndDetach(EntityManager persistenceManager, List<Object> batch) {
+    persistenceManager.flush( );
+    if (batch != null) {
+      for (Object entity : batch) {
+        persistenceManager.detach(entity);
+      }
+      batch.clear();
+    }
+  }
+
   @Override
   public SimpleInfo getSimpleInfo() {
     return SimpleInfo.createSimpleInfo(this);
@@ -15,15 +15,15 @@
  */
 package com.thruzero.domain.jpa.dao;
 
+import java.io.Serializable;
 import java.util.List;
 
-import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.PreferenceDAO;
 import com.thruzero.domain.jpa.utils.JpaUtils;
 import com.thruzero.domain.model.Preference;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of PreferenceDAO that uses JPA for storage.
@@ -32,6 +32,16 @@ import com.thruzero.domain.model.Preference;
  */
 public final class JpaPreferenceDAO extends JpaGenericDAO<Preference> implements PreferenceDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_PREFERENCE = QueryDefinition.from(Preference.class, "preference").select("id", Serializable.class)
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.isExistingPreference");
+  private static final QueryDefinition<String> GET_PREFERENCE_VALUE = QueryDefinition.from(Preference.class, "preference").select("value", String.class)
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.getPreferenceValue");
+  private static final QueryDefinition<Preference> GET_PREFERENCE = QueryDefinition.from(Preference.class, "preference")
+      .whereEquals("context").whereEquals("name").whereEquals("owner").build("Preference.getPreference");
+  private static final QueryDefinition<Preference> GET_PREFERENCES = QueryDefinition.from(Preference.class, "preference")
+      .whereEquals("context").whereEquals("owner").build("Preference.getPreferences");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -41,22 +51,12 @@ public final class JpaPreferenceDAO extends JpaGenericDAO<Preference> implements
 
   @Override
   public boolean isExistingPreference(String owner, String context, String name) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (preference) FROM Preference preference");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("    AND preference.name = :name ");
-    hql.append("    AND preference.owner = :owner ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_PREFERENCE);
     hqlQuery.setParameter("context", context);
     hqlQuery.setParameter("name", name);
     hqlQuery.setParameter("owner", owner);
 
-    Long result = (Long)hqlQuery.getSingleResult();
-
-    return result != null && result > 0;
+    return JpaUtils.hasResult(hqlQuery);
   }
 
   @Override
@@ -64,24 +64,20 @@ public final class JpaPreferenceDAO extends JpaGenericDAO<Preference> implements
     return getPreferenceValue(owner, context, name, null);
   }
 
+  /** Selects only the value column (the Preference entity is not loaded). */
   @Override
   public String getPreferenceValue(String owner, String context, String name, String defaultValue) {
-    Preference result = getPreference(owner, context, name);
+    Query hqlQuery = createQuery(GET_PREFERENCE_VALUE);
+    hqlQuery.setParameter("context", context);
+    hqlQuery.setParameter("name", name);
+    hqlQuery.setParameter("owner", owner);
 
-    return result == null ? defaultValue : result.getValue();
+    return JpaUtils.getFirstResult(hqlQuery, defaultValue);
   }
 
   @Override
   public Preference getPreference( String owner, String context, String name ) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Preference preference ");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("    AND preference.name = :name ");
-    hql.append("    AND preference.owner = :owner ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_PREFERENCE);
     hqlQuery.setParameter("context", context);
     hqlQuery.setParameter("name", name);
     hqlQuery.setParameter("owner", owner);
@@ -93,14 +89,7 @@ public final class JpaPreferenceDAO extends JpaGenericDAO<Preference> implements
 
   @Override
   public List<? extends Preference> getPreferences(String owner, String context) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Preference preference ");
-    hql.append("  WHERE preference.context = :context ");
-    hql.append("    AND preference.owner = :owner ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_PREFERENCES);
     hqlQuery.setParameter("context", context);
     hqlQuery.setParameter("owner", owner);
 
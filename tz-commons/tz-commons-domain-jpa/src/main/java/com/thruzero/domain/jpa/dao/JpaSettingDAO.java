@@ -15,15 +15,20 @@
  */
 package com.thruzero.domain.jpa.dao;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.SettingDAO;
 import com.thruzero.domain.jpa.utils.JpaUtils;
 import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of SettingDAO that uses JPA for storage.
@@ -32,6 +37,18 @@ import com.thruzero.domain.model.Setting;
  */
 public final class JpaSettingDAO extends JpaGenericDAO<Setting> implements SettingDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_SETTING = QueryDefinition.from(Setting.class, "setting").select("id", Serializable.class)
+      .whereEquals("context").whereEquals("name").build("Setting.isExistingSetting");
+  private static final QueryDefinition<String> GET_SETTING_VALUE = QueryDefinition.from(Setting.class, "setting").select("value", String.class)
+      .whereEquals("context").whereEquals("name").build("Setting.getSettingValue");
+  private static final QueryDefinition<Setting> GET_SETTING = QueryDefinition.from(Setting.class, "setting")
+      .whereEquals("context").whereEquals("name").build("Setting.getSetting");
+  private static final QueryDefinition<Setting> GET_SETTINGS = QueryDefinition.from(Setting.class, "setting")
+      .whereEquals("context").build("Setting.getSettings");
+  private static final QueryDefinition<Setting> GET_SETTINGS_IN_CONTEXTS = QueryDefinition.from(Setting.class, "setting")
+      .whereIn("context", "contexts").build("Setting.getSettingsInContexts");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -41,20 +58,11 @@ public final class JpaSettingDAO extends JpaGenericDAO<Setting> implements Setti
 
   @Override
   public boolean isExistingSetting(String context, String name) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT (setting) FROM Setting setting");
-    hql.append("  WHERE setting.context = :context ");
-    hql.append("    AND setting.name = :name ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_SETTING);
     hqlQuery.setParameter("context", context);
     hqlQuery.setParameter("name", name);
 
-    Long result = (Long)hqlQuery.getSingleResult();
-
-    return result != null && result > 0;
+    return JpaUtils.hasResult(hqlQuery);
   }
 
   @Override
@@ -62,23 +70,19 @@ public final class JpaSettingDAO extends JpaGenericDAO<Setting> implements Setti
     return getSettingValue(context, name, null);
   }
 
+  /** Selects only the value column (the Setting entity is not loaded). */
   @Override
   public String getSettingValue(String context, String name, String defaultValue) {
-    Setting result = getSetting(context, name);
+    Query hqlQuery = createQuery(GET_SETTING_VALUE);
+    hqlQuery.setParameter("context", context);
+    hqlQuery.setParameter("name", name);
 
-    return result == null ? defaultValue : result.getValue();
+    return JpaUtils.getFirstResult(hqlQuery, defaultValue);
   }
 
   @Override
   public Setting getSetting( String context, String name ) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Setting setting ");
-    hql.append("  WHERE setting.context = :context ");
-    hql.append("    AND setting.name = :name ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_SETTING);
     hqlQuery.setParameter("context", context);
     hqlQuery.setParameter("name", name);
 
@@ -89,13 +93,7 @@ public final class JpaSettingDAO extends JpaGenericDAO<Setting> implements Setti
 
   @Override
   public List<? extends Setting> getSettings( String context ) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("FROM Setting setting ");
-    hql.append("  WHERE setting.context = :context ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_SETTINGS);
     hqlQuery.setParameter("context", context);
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
@@ -104,4 +102,32 @@ public final class JpaSettingDAO extends JpaGenericDAO<Setting> implements Setti
     return result;
   }
 
+  /** Load the Settings of all of the given contexts with a single query. */
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+    Map<String, List<Setting>> settingsByContext = new HashMap<String, List<Setting>>();
+
+    for (String context : contexts) {
+      List<Setting> settings = new ArrayList<Setting>();
+
+      settingsByContext.put(context, settings);
+      result.put(context, settings);
+    }
+
+    if (!settingsByContext.isEmpty()) {
+      Query hqlQuery = createQuery(GET_SETTINGS_IN_CONTEXTS);
+      hqlQuery.setParameter("contexts", settingsByContext.keySet());
+
+      @SuppressWarnings("unchecked") // Hibernate isn't generic
+      List<? extends Setting> allSettings = hqlQuery.getResultList();
+
+      for (Setting setting : allSettings) {
+        settingsByContext.get(setting.getContext()).add(setting);
+      }
+    }
+
+    return result;
+  }
+
 }
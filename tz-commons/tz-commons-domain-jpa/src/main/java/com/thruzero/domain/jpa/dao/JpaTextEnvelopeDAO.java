@@ -15,17 +15,20 @@
  */
 package com.thruzero.domain.jpa.dao;
 
+import java.io.InputStream;
+import java.io.Serializable;
 import java.util.List;
 
-import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
-import com.thruzero.common.core.support.StrBuilderExt;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
+import com.thruzero.domain.dao.impl.TextEnvelopeDataHelper;
 import com.thruzero.domain.jpa.utils.JpaUtils;
 import com.thruzero.domain.model.TextEnvelope;
+import com.thruzero.domain.store.QueryDefinition;
 
 /**
  * An implementation of TextEnvelopeDAO that uses JPA for storage.
@@ -34,6 +37,14 @@ import com.thruzero.domain.model.TextEnvelope;
  */
 public final class JpaTextEnvelopeDAO extends JpaGenericDAO<TextEnvelope> implements TextEnvelopeDAO {
 
+  // named queries, generated once per entity type
+  private static final QueryDefinition<Serializable> IS_EXISTING_TEXT_ENVELOPE = QueryDefinition.from(TextEnvelope.class, "textEnvelope").select("id", Serializable.class)
+      .whereEquals("entityPath.containerPath.path").whereEquals("entityPath.entityName").build("TextEnvelope.isExistingTextEnvelope");
+  private static final QueryDefinition<TextEnvelope> GET_TEXT_ENVELOPES = QueryDefinition.from(TextEnvelope.class, "textEnvelope")
+      .whereEquals("entityPath.containerPath.path").build("TextEnvelope.getTextEnvelopes");
+  private static final QueryDefinition<TextEnvelope> GET_TEXT_ENVELOPE = QueryDefinition.from(TextEnvelope.class, "textEnvelope")
+      .whereEquals("entityPath.containerPath.path").whereEquals("entityPath.entityName").build("TextEnvelope.getTextEnvelope");
+
   /**
    * Use {@link com.thruzero.domain.locator.DAOLocator DAOLocator} to access a particular DAO.
    */
@@ -43,31 +54,16 @@ public final class JpaTextEnvelopeDAO extends JpaGenericDAO<TextEnvelope> implem
 
   @Override
   public boolean isExistingTextEnvelope(EntityPath entityPath) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append("SELECT COUNT(textEnvelope) FROM TextEnvelope textEnvelope");
-    hql.append("  WHERE textEnvelope.entityPath.containerPath.path = :path ");
-    hql.append("    AND textEnvelope.entityPath.entityName = :entityName ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(IS_EXISTING_TEXT_ENVELOPE);
     hqlQuery.setParameter("path", entityPath.getContainerPath().getPath());
     hqlQuery.setParameter("entityName", entityPath.getEntityName());
 
-    Long result = JpaUtils.getSingleResultHack(hqlQuery);
-
-    return result != null && result > 0;
+    return JpaUtils.hasResult(hqlQuery);
   }
 
   @Override
   public List<? extends TextEnvelope> getTextEnvelopes(final ContainerPath containerPath, final boolean recursive) { // TODO-p1(george) implement recursive
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append(" FROM TextEnvelope textEnvelope ");
-    hql.append("  WHERE textEnvelope.entityPath.containerPath.path = :path ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_TEXT_ENVELOPES);
     hqlQuery.setParameter("path", containerPath.getPath());
 
     @SuppressWarnings("unchecked") // Hibernate isn't generic
@@ -84,14 +80,7 @@ public final class JpaTextEnvelopeDAO extends JpaGenericDAO<TextEnvelope> implem
 
   @Override
   public TextEnvelope getTextEnvelope(EntityPath entityPath) {
-    EntityManager entityManager = getCurrentPersistenceManager();
-
-    StrBuilderExt hql = new StrBuilderExt(100);
-    hql.append(" FROM TextEnvelope textEnvelope ");
-    hql.append("  WHERE textEnvelope.entityPath.containerPath.path = :path ");
-    hql.append("    AND textEnvelope.entityPath.entityName = :entityName ");
-
-    Query hqlQuery = entityManager.createQuery(hql.toString());
+    Query hqlQuery = createQuery(GET_TEXT_ENVELOPE);
     hqlQuery.setParameter("path", entityPath.getContainerPath().getPath());
     hqlQuery.setParameter("entityName", entityPath.getEntityName());
 
@@ -99,4 +88,15 @@ public final class JpaTextEnvelopeDAO extends JpaGenericDAO<TextEnvelope> implem
 
     return result;
   }
+
+  /** Returns the data as a stream of the TextEnvelope's String (the data column isn't streamed). */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return TextEnvelopeDataHelper.getTextEnvelopeData(this, entityPath);
+  }
+
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter) {
+    TextEnvelopeDataHelper.saveOrUpdateTextEnvelopeData(this, entityPath, dataWriter);
+  }
 }
@@ -73,10 +73,10 @@ public final class JpaDatabaseTransactionMgr implements DatabaseTransactionMgr,
       return new JpaTransactionState();
     }
   };
-  private static EntityManagerFactory entityManagerFactory;
+  private static volatile EntityManagerFactory entityManagerFactory; // created once, then read without locking
 
-  private static String persistenceUnitName;
-  private static StringMap cachedParams; // for lazy init
+  private static String persistenceUnitName; // guarded by the class lock
+  private static StringMap cachedParams; // for lazy init (guarded by the class lock)
 
   // ------------------------------------------------
   // JpaDatabaseTransactionMgrInitParamKeys
@@ -193,10 +193,7 @@ public final class JpaDatabaseTransactionMgr implements DatabaseTransactionMgr,
     synchronized (JpaDatabaseTransactionMgr.class) {
       entityManagerFactory = null;
       persistenceUnitName = null;
-
-      if (cachedParams != null) {
-        cachedParams.clear();
-      }
+      cachedParams = null; // init() installs a fresh copy, so a factory being created from the old params is unaffected
     }
   }
 
@@ -232,13 +229,31 @@ public final class JpaDatabaseTransactionMgr implements DatabaseTransactionMgr,
     return currentEntityManager;
   }
 
-  protected static synchronized EntityManager createEntityManager() { // TODO-p1(george) static synchronized bottleneck
-    if (entityManagerFactory == null) {
-      transactionMgrLogHelper.logCreatingEntityManagerFactory();
-      entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName, cachedParams);
+  protected static EntityManager createEntityManager() {
+    return ensureEntityManagerFactory().createEntityManager();
+  }
+
+  /**
+   * Return the EntityManagerFactory, creating it from the cached init params on first use. Once created, the factory
+   * is read from a volatile field without locking; only the threads that race to create it (or recreate it, after a
+   * reset) take the class lock, which is the same lock that guards init() and reset().
+   */
+  protected static EntityManagerFactory ensureEntityManagerFactory() {
+    EntityManagerFactory result = entityManagerFactory;
+
+    if (result == null) {
+      synchronized (JpaDatabaseTransactionMgr.class) {
+        result = entityManagerFactory;
+
+        if (result == null) {
+          transactionMgrLogHelper.logCreatingEntityManagerFactory();
+          result = Persistence.createEntityManagerFactory(persistenceUnitName, cachedParams);
+          entityManagerFactory = result;
+        }
+      }
     }
 
-    return entityManagerFactory.createEntityManager();
+    return result;
   }
 
   @Override
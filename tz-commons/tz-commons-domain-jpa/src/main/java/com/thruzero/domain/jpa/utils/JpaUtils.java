@@ -49,4 +49,27 @@ public class JpaUtils {
 
     return result;
   }
+
+  /**
+   * Return true if the given hqlQuery matches at least one row. The query is limited to a single row, so the database
+   * can stop at the first match; select a single column (e.g., the id) to avoid hydrating an entity.
+   */
+  public static boolean hasResult(Query hqlQuery) {
+    hqlQuery.setMaxResults(1);
+
+    return !hqlQuery.getResultList().isEmpty();
+  }
+
+  /**
+   * Return the first value selected by the given projection query (e.g., "SELECT setting.value FROM ..."), or the
+   * defaultValue if the query matches no rows. Only the selected column is read; no entity is hydrated.
+   */
+  public static <T> T getFirstResult(Query hqlQuery, T defaultValue) {
+    hqlQuery.setMaxResults(1);
+
+    @SuppressWarnings("unchecked") // JPA 2.0 Query isn't generic
+    List<? extends T> values = hqlQuery.getResultList();
+
+    return values.isEmpty() ? defaultValue : values.get(0);
+  }
 }
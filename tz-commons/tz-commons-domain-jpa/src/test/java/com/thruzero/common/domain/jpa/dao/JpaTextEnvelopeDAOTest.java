@@ -90,6 +90,11 @@ public class JpaTextEnvelopeDAOTest extends AbstractDomainJpaTestCase {
     testHelper.doTestUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
   }
 
+  @Test
+  public void testStreamedData() throws Exception {
+    testHelper.doTestStreamedData(DAOLocator.locate(TextEnvelopeDAO.class));
+  }
+
   @Test
   public void testSaveOrUpdatePersistedNode() {
     testHelper.doTestSaveOrUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
@@ -0,0 +1,81 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.domain.jpa.transaction;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.Test;
+
+import com.thruzero.domain.jpa.test.support.AbstractDomainJpaTestCase;
+import com.thruzero.test.support.AbstractContentionBenchmarkHelper;
+
+/**
+ * Unit test (and contention benchmark) for JpaDatabaseTransactionMgr.
+ *
+ * @author George Norman
+ */
+public class JpaDatabaseTransactionMgrTest extends AbstractDomainJpaTestCase {
+  private static final int NUM_THREADS = 64;
+  private static final int NUM_ITERATIONS = 200;
+
+  // -----------------------------------------------
+  // EntityManagerContentionBenchmarkHelper
+  // -----------------------------------------------
+
+  /**
+   * Each iteration creates an EntityManager (and transaction) and rolls it back, so every iteration looks up the
+   * EntityManagerFactory. The first wave of threads races to create the factory; all threads must see the same one.
+   */
+  public class EntityManagerContentionBenchmarkHelper extends AbstractContentionBenchmarkHelper {
+    private final AtomicReference<EntityManagerFactory> sharedEntityManagerFactory = new AtomicReference<EntityManagerFactory>();
+
+    @Override
+    protected void doExecute(int threadIndex, int iteration) throws Exception {
+      EntityManager entityManager = (EntityManager)getTransactionService().getCurrentPersistenceManager();
+      EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+
+      if (!sharedEntityManagerFactory.compareAndSet(null, entityManagerFactory) && sharedEntityManagerFactory.get() != entityManagerFactory) {
+        throw new IllegalStateException("EntityManagerFactory was created more than once.");
+      }
+
+      getTransactionService().rollbackTransaction();
+    }
+
+    @Override
+    protected void doThreadTeardown(int threadIndex) throws Exception {
+      getTransactionService().rollbackTransaction();
+    }
+  }
+
+  // =====================================================================
+  // JpaDatabaseTransactionMgrTest
+  // =====================================================================
+
+  @Test
+  public void testConcurrentEntityManagerCreation() throws Exception {
+    EntityManagerContentionBenchmarkHelper benchmark = new EntityManagerContentionBenchmarkHelper();
+
+    benchmark.execute(NUM_THREADS, NUM_ITERATIONS);
+
+    assertNotNull(benchmark.sharedEntityManagerFactory.get());
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao;
+
+import com.thruzero.common.core.support.EntityPath;
+
+/**
+ * Implemented by a DAO that can report changes made to its entities outside of the DAO (e.g., files of a file-based data
+ * store edited directly on disk), so caches can invalidate the changed entities precisely, instead of relying on a
+ * time-to-live.
+ *
+ * @author George Norman
+ */
+public interface EntityChangeSource {
+
+  // ------------------------------------------------------
+  // ChangeType
+  // ------------------------------------------------------
+
+  public static enum ChangeType {
+    CREATED, MODIFIED, DELETED
+  }
+
+  // ------------------------------------------------------
+  // EntityChangeListener
+  // ------------------------------------------------------
+
+  public static interface EntityChangeListener {
+    /** Called after the entity at the given (absolute) entityPath was created, modified or deleted. */
+    void entityChanged(EntityPath entityPath, ChangeType changeType);
+  }
+
+  // ============================================================================
+  // EntityChangeSource
+  // ============================================================================
+
+  void addEntityChangeListener(EntityChangeListener listener);
+
+  void removeEntityChangeListener(EntityChangeListener listener);
+
+}
@@ -74,6 +74,18 @@ public interface GenericDAO<T> extends DAO, SimpleInfoProvider {
   /** Delete the domainObject from the data store, if it exists. */
   void delete(T domainObject);
 
+  /**
+   * Save each of the new domainObjects to the data store. Implementations batch the writes where the data store
+   * supports it (e.g., JDBC batches and a single commit), so this is preferred over calling save in a loop.
+   */
+  void saveAll(Collection<? extends T> domainObjects);
+
+  /** Update the data store from each of the given domainObjects, batching the writes where supported. */
+  void updateAll(Collection<? extends T> domainObjects);
+
+  /** Delete each of the given domainObjects from the data store, batching the writes where supported. */
+  void deleteAll(Collection<? extends T> domainObjects);
+
   /** Load and return the Domain Object from the data store, for the given primaryKey; returning null if not found. */
   T getByKey(Serializable primaryKey);
 
@@ -15,7 +15,9 @@
  */
 package com.thruzero.domain.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.thruzero.domain.model.Setting;
 
@@ -36,4 +38,11 @@ public interface SettingDAO extends GenericDAO<Setting> {
 
   List<? extends Setting> getSettings(String context);
 
+  /**
+   * Return the Settings of each of the given contexts, keyed by context (in the iteration order of the given contexts), using as few
+   * round trips to the data store as possible (e.g., to load all of the sections at startup). A context without any Settings maps to an
+   * empty list.
+   */
+  Map<String, List<? extends Setting>> getSettings(Collection<String> contexts);
+
 }
@@ -15,6 +15,9 @@
  */
 package com.thruzero.domain.dao;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 import com.thruzero.common.core.support.ContainerPath;
@@ -28,6 +31,23 @@ import com.thruzero.domain.model.TextEnvelope;
  */
 public interface TextEnvelopeDAO extends GenericDAO<TextEnvelope> {
 
+  // ------------------------------------------------------
+  // TextEnvelopeDataWriter
+  // ------------------------------------------------------
+
+  /**
+   * Writes the data of a TextEnvelope, UTF-8 encoded, directly to the stream provided by the DAO (e.g., so a document
+   * can be serialized straight to a file, instead of to an intermediate String).
+   */
+  public static interface TextEnvelopeDataWriter {
+    /** Write the data to the given stream; the stream is owned (and closed) by the DAO. */
+    void writeData(OutputStream out) throws IOException;
+  }
+
+  // ============================================================================
+  // TextEnvelopeDAO
+  // ============================================================================
+
   /**
    * Returns true if a node at the given {@code entityPath} exists; otherwise, returns false.
    */
@@ -53,4 +73,17 @@ public interface TextEnvelopeDAO extends GenericDAO<TextEnvelope> {
    */
   TextEnvelope getTextEnvelope(EntityPath entityPath);
 
+  /**
+   * Returns a stream of the (UTF-8 encoded) data of the {@code TextEnvelope} at the given {@code entityPath}, if it exists; otherwise, returns
+   * {@code null}. The caller must close the stream. A DAO backed by a streaming store (e.g., a file) returns a stream of the store itself, so the
+   * data is never loaded into memory as a whole.
+   */
+  InputStream getTextEnvelopeData(EntityPath entityPath);
+
+  /**
+   * Writes the data of the {@code TextEnvelope} at the given {@code entityPath}, creating it if it doesn't exist, by passing the given
+   * {@code dataWriter} a stream to write to. A DAO backed by a streaming store passes a stream of the store itself; other DAOs buffer the data.
+   */
+  void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter);
+
 }
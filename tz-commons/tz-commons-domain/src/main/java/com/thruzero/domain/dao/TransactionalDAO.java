@@ -0,0 +1,33 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao;
+
+/**
+ * Implemented by a DAO whose writes may be buffered by a transaction of the calling thread (e.g., a file-based data store
+ * that writes on commit), so the caches and listeners that depend on a write can wait until the write is visible to
+ * other threads, instead of reacting to a write that's still buffered (or that's later rolled back).
+ *
+ * @author George Norman
+ */
+public interface TransactionalDAO {
+
+  /**
+   * Run the given action after the active transaction of the calling thread is committed (it's discarded if the
+   * transaction is rolled back or fails to commit). If no transaction is active, the action is run immediately.
+   */
+  void runAfterCommit(Runnable action);
+
+}
@@ -0,0 +1,532 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
+import com.thruzero.common.core.locator.Initializable;
+import com.thruzero.common.core.locator.InitializationException;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.locator.LocatorUtils;
+import com.thruzero.common.core.map.ExpiringLruCache;
+import com.thruzero.common.core.map.ExpiringLruCache.EntryFilter;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.support.SimpleInfo;
+import com.thruzero.common.core.utils.ClassUtils;
+import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+import com.thruzero.domain.dao.GenericDAO;
+import com.thruzero.domain.dao.TransactionalDAO;
+import com.thruzero.domain.store.Persistent;
+
+/**
+ * An abstract base class for a DAO that caches the Domain Objects read from a target DAO, grouped by context (e.g., all of the Settings in
+ * a context). It's a decorator: the locator binds the DAO interface to the caching DAO, and the caching DAO creates and initializes the
+ * target DAO named by the "targetDAO" init param, using the same initialization strategy. For example:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.domain.dao.DAO">
+ *     <entry key="com.thruzero.domain.dao.SettingDAO" value="com.thruzero.domain.dao.impl.CachingSettingDAO" />
+ *   </section>
+ *
+ *   <section name="com.thruzero.domain.dao.impl.CachingSettingDAO">
+ *     <entry key="targetDAO" value="com.thruzero.domain.dsc.dao.DscSettingDAO" />
+ *     <entry key="maxSize" value="500" />
+ *     <entry key="timeToLiveInSeconds" value="300" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * <p>
+ * On the first read from a context, the whole context is loaded from the target (bulk loading); if the target can't list a context (it
+ * returns null), then each Domain Object is loaded and cached individually instead. Names that don't exist are cached too (negative caching),
+ * so repeated lookups of a missing key don't reach the target. The cache is bounded by the number of contexts (least-recently-used contexts
+ * are evicted first) and each context expires after a configurable time-to-live.
+ * <p>
+ * Writes go to the target first, then the affected contexts are invalidated (write-through invalidation): the context of the written Domain
+ * Object and any cached context holding a Domain Object with the same id (e.g., when a Domain Object is moved to another context). If the
+ * target is a {@link TransactionalDAO}, the invalidation waits until the calling thread's transaction is committed, so a context read by
+ * another thread before the commit isn't left in the cache. Cached Domain Objects are never handed out directly; readers receive a copy.
+ *
+ * @author George Norman
+ * @param <T> the type of Domain Object cached by this DAO.
+ * @param <D> the type of target DAO.
+ */
+public abstract class AbstractCachingDAO<T extends Persistent, D extends GenericDAO<T>> implements GenericDAO<T>, Initializable, TransactionalDAO {
+  private static final Logger logger = Logger.getLogger(AbstractCachingDAO.class);
+
+  public static final int DEFAULT_MAX_SIZE = 500;
+  public static final int DEFAULT_TIME_TO_LIVE_IN_SECONDS = 300;
+
+  /** The maximum number of missing names remembered for each context (bounds the memory used by lookups of arbitrary names). */
+  private static final int MAX_MISSING_NAMES_PER_CONTEXT = 1024;
+
+  private final Class<D> targetDAOInterface;
+  private volatile D targetDAO;
+  private volatile ExpiringLruCache<String, CachedContext<T>> cache = new ExpiringLruCache<String, CachedContext<T>>(DEFAULT_MAX_SIZE,
+      TimeUnit.SECONDS.toMillis(DEFAULT_TIME_TO_LIVE_IN_SECONDS));
+  private volatile boolean bulkLoad = true;
+  private final Object invalidationLock = new Object();
+  private long invalidationCount; // guarded by invalidationLock
+
+  // ------------------------------------------------
+  // CachingDAOInitParamKeys
+  // ------------------------------------------------
+
+  /**
+   * Initialization parameter keys defined for {@code AbstractCachingDAO}.
+   */
+  @InitializationParameterKeysBookmark
+  public interface CachingDAOInitParamKeys extends InitializableParameterKeys {
+    /** The section to use when loading parameters (e.g., config file section, settings context, etc) */
+    String SOURCE_SECTION = AbstractCachingDAO.class.getName();
+
+    /** The required parameter key that defines the fully qualified class name of the DAO being cached: "targetDAO". */
+    String TARGET_DAO = "targetDAO";
+
+    /** The parameter key that defines the maximum number of cached contexts: "maxSize" (default is 500). */
+    String MAX_SIZE = "maxSize";
+
+    /** The parameter key that defines how long a cached context remains valid: "timeToLiveInSeconds" (default is 300). */
+    String TIME_TO_LIVE_IN_SECONDS = "timeToLiveInSeconds";
+
+    /** The parameter key that enables loading the whole context on the first read from it: "bulkLoad" (default is true). */
+    String BULK_LOAD = "bulkLoad";
+  }
+
+  // ------------------------------------------------
+  // ContextLoader
+  // ------------------------------------------------
+
+  /** Reads a single context from the target DAO, on a cache miss. */
+  protected interface ContextLoader<T> {
+    /** Return all of the Domain Objects in the context, or null if the target can't list a context. */
+    List<? extends T> loadContext();
+
+    /** Return the Domain Object with the given name, or null if it doesn't exist. */
+    T loadEntity(String name);
+  }
+
+  // ------------------------------------------------
+  // CachedContext
+  // ------------------------------------------------
+
+  /**
+   * The cached Domain Objects of a single context. A complete context was bulk loaded, so a name that's absent is known to be missing.
+   * Otherwise, Domain Objects and missing names are added as they're read.
+   */
+  private static final class CachedContext<T extends Persistent> {
+    private final List<T> allEntities; // null if not complete
+    private final Map<String, T> entities;
+    private final Set<String> missingNames;
+
+    /** Create an empty context, filled in one name at a time. */
+    public CachedContext() {
+      allEntities = null;
+      entities = new ConcurrentHashMap<String, T>();
+      missingNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /** Create a complete context from the given (copied) Domain Objects. */
+    public CachedContext(List<T> allEntities, Map<String, T> entities) {
+      this.allEntities = allEntities;
+      this.entities = entities;
+      this.missingNames = null;
+    }
+
+    public boolean isComplete() {
+      return allEntities != null;
+    }
+
+    public boolean containsId(Serializable id) {
+      for (T entity : entities.values()) {
+        if (id.equals(entity.getId())) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  // ============================================================================
+  // AbstractCachingDAO
+  // ============================================================================
+
+  protected AbstractCachingDAO(Class<D> targetDAOInterface) {
+    this.targetDAOInterface = targetDAOInterface;
+  }
+
+  /**
+   * Create and initialize the target DAO (using the given daoInitStrategy) and create the cache.
+   */
+  @Override
+  public void init(InitializationStrategy daoInitStrategy) {
+    StringMap daoParams = LocatorUtils.getInheritedParameters(daoInitStrategy, this.getClass(), GenericDAO.class);
+    String targetDAOClassName = LocatorUtils.getRequiredParam(daoParams, this.getClass().getName(), CachingDAOInitParamKeys.TARGET_DAO, daoInitStrategy);
+
+    try {
+      Class<?> targetDAOClass = ClassUtils.classFrom(targetDAOClassName);
+
+      if (!targetDAOInterface.isAssignableFrom(targetDAOClass)) {
+        throw new InitializationException("ERROR: The target DAO of type: '" + targetDAOClassName + "' does not implement " + targetDAOInterface.getName() + ".", daoInitStrategy);
+      }
+      targetDAO = targetDAOInterface.cast(ClassUtils.instanceFrom(targetDAOClass));
+    } catch (ClassUtilsException e) {
+      throw new InitializationException("ERROR: Could not create the target DAO of type: '" + targetDAOClassName + "' for DAO of type: " + this.getClass().getName() + ".", e, daoInitStrategy);
+    }
+
+    if (targetDAO instanceof Initializable) {
+      ((Initializable)targetDAO).init(daoInitStrategy);
+    }
+
+    int maxSize = daoParams.getValueTransformer(CachingDAOInitParamKeys.MAX_SIZE).getIntValue(DEFAULT_MAX_SIZE);
+    int timeToLiveInSeconds = daoParams.getValueTransformer(CachingDAOInitParamKeys.TIME_TO_LIVE_IN_SECONDS).getIntValue(DEFAULT_TIME_TO_LIVE_IN_SECONDS);
+
+    cache = new ExpiringLruCache<String, CachedContext<T>>(maxSize, TimeUnit.SECONDS.toMillis(timeToLiveInSeconds));
+    bulkLoad = daoParams.getValueTransformer(CachingDAOInitParamKeys.BULK_LOAD).getBooleanValue(true);
+
+    logger.info(getClass().getSimpleName() + " is caching " + targetDAOClassName + " (maxSize=" + maxSize + ", timeToLiveInSeconds=" + timeToLiveInSeconds + ", bulkLoad="
+        + bulkLoad + ").");
+  }
+
+  @Override
+  public void reset() {
+    if (targetDAO instanceof Initializable) {
+      ((Initializable)targetDAO).reset();
+    }
+    clearCache();
+  }
+
+  /** Return the DAO being cached. */
+  public D getTargetDAO() {
+    if (targetDAO == null) {
+      throw new DAOException("ERROR: " + getClass().getSimpleName() + " has not been initialized (the target DAO is undefined).");
+    }
+
+    return targetDAO;
+  }
+
+  /** Return the underlying cache, for diagnostics (e.g., size and hit ratio). */
+  public ExpiringLruCache<String, ?> getCache() {
+    return cache;
+  }
+
+  /** Remove all cached contexts (e.g., after the data store was modified by some other process). */
+  public void clearCache() {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+      cache.clear();
+    }
+  }
+
+  // write-through //////////////////////////////////////////
+
+  @Override
+  public void save(T domainObject) {
+    getTargetDAO().save(domainObject);
+    invalidate(domainObject);
+  }
+
+  @Override
+  public void saveOrUpdate(T domainObject) {
+    getTargetDAO().saveOrUpdate(domainObject);
+    invalidate(domainObject);
+  }
+
+  @Override
+  public void update(T domainObject) {
+    getTargetDAO().update(domainObject);
+    invalidate(domainObject);
+  }
+
+  @Override
+  public void delete(T domainObject) {
+    getTargetDAO().delete(domainObject);
+    invalidate(domainObject);
+  }
+
+  @Override
+  public void saveAll(Collection<? extends T> domainObjects) {
+    getTargetDAO().saveAll(domainObjects);
+    invalidateAll(domainObjects);
+  }
+
+  @Override
+  public void updateAll(Collection<? extends T> domainObjects) {
+    getTargetDAO().updateAll(domainObjects);
+    invalidateAll(domainObjects);
+  }
+
+  @Override
+  public void deleteAll(Collection<? extends T> domainObjects) {
+    getTargetDAO().deleteAll(domainObjects);
+    invalidateAll(domainObjects);
+  }
+
+  // pass-through ///////////////////////////////////////////
+
+  @Override
+  public T getByKey(Serializable primaryKey) {
+    return getTargetDAO().getByKey(primaryKey);
+  }
+
+  @Override
+  public boolean isExistingEntity(Serializable primaryKey) {
+    return getTargetDAO().isExistingEntity(primaryKey);
+  }
+
+  @Override
+  public Collection<? extends T> getAll() {
+    return getTargetDAO().getAll();
+  }
+
+  @Override
+  public SimpleInfo getSimpleInfo() {
+    return SimpleInfo.createSimpleInfo(this, getTargetDAO());
+  }
+
+  /** Run the given action after the target's transaction is committed, or immediately if the target isn't transactional. */
+  @Override
+  public void runAfterCommit(Runnable action) {
+    D dao = getTargetDAO();
+
+    if (dao instanceof TransactionalDAO) {
+      ((TransactionalDAO)dao).runAfterCommit(action);
+    } else {
+      action.run();
+    }
+  }
+
+  // Support ////////////////////////////////////////////////
+
+  /** Return the key of the context that holds the given Domain Object (must match the contextKey used to read it). */
+  protected abstract String getContextKey(T domainObject);
+
+  /** Return the name of the given Domain Object, unique within its context. */
+  protected abstract String getName(T domainObject);
+
+  /** Return a new instance of the Domain Object, copied from the given domainObject. */
+  protected abstract T copyOf(T domainObject);
+
+  /**
+   * Return a copy of the cached Domain Object with the given name, from the context identified by contextKey. On a miss, the given loader is
+   * used to read the context (or just the named Domain Object) from the target DAO. Returns null if the Domain Object doesn't exist.
+   */
+  protected T getCachedEntity(String contextKey, String name, ContextLoader<T> loader) {
+    CachedContext<T> cachedContext = getCachedContext(contextKey, loader);
+    T result = cachedContext.entities.get(name);
+
+    if (result != null) {
+      return copyOf(result);
+    }
+
+    if (cachedContext.isComplete() || cachedContext.missingNames.contains(name)) {
+      return null;
+    }
+
+    // a concurrent write removes the context from the cache, so a stale result only lands in a context that's no longer reachable
+    result = loader.loadEntity(name);
+    if (result == null) {
+      if (cachedContext.missingNames.size() < MAX_MISSING_NAMES_PER_CONTEXT) {
+        cachedContext.missingNames.add(name);
+      }
+    } else {
+      cachedContext.entities.put(name, copyOf(result));
+    }
+
+    return result;
+  }
+
+  /**
+   * Return copies of all of the Domain Objects in the context identified by contextKey, loading the whole context from the target DAO if
+   * it's not cached (or was only partially cached). Returns null if the target can't list a context.
+   */
+  protected List<T> getCachedEntities(String contextKey, ContextLoader<T> loader) {
+    List<T> result = getCompleteContextIfCached(contextKey);
+
+    if (result == null) {
+      long expectedInvalidationCount = getInvalidationCount();
+      List<? extends T> entities = loader.loadContext();
+
+      if (entities != null) {
+        result = cacheCompleteContext(contextKey, entities, expectedInvalidationCount);
+      }
+    }
+
+    return result;
+  }
+
+  /** Return copies of the Domain Objects of the given context, if it's cached and complete; otherwise, return null. */
+  protected List<T> getCompleteContextIfCached(String contextKey) {
+    CachedContext<T> cachedContext = cache.get(contextKey);
+
+    return cachedContext == null || !cachedContext.isComplete() ? null : copyOf(cachedContext.allEntities);
+  }
+
+  /**
+   * Cache the given Domain Objects as the complete context identified by contextKey, unless a write invalidated the cache since
+   * expectedInvalidationCount was read (see {@link #getInvalidationCount()}), and return copies of them.
+   */
+  protected List<T> cacheCompleteContext(String contextKey, List<? extends T> entities, long expectedInvalidationCount) {
+    CachedContext<T> cachedContext = createCompleteContext(entities);
+
+    putIfNotInvalidated(contextKey, cachedContext, expectedInvalidationCount);
+
+    return copyOf(cachedContext.allEntities);
+  }
+
+  /** Return the number of invalidations so far; read it before loading from the target, to detect a concurrent write. */
+  protected long getInvalidationCount() {
+    synchronized (invalidationLock) {
+      return invalidationCount;
+    }
+  }
+
+  /**
+   * Remove the context of the given Domain Object and every cached context that holds a Domain Object with the same id, after the write is
+   * committed (see {@link #runAfterCommit(Runnable)}).
+   */
+  protected void invalidate(final T domainObject) {
+    if (domainObject == null) {
+      return;
+    }
+
+    // capture the context and id now, in case the Domain Object is modified before the commit
+    final String contextKey = getContextKey(domainObject);
+    final Serializable id = domainObject.getId();
+
+    runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        invalidateNow(contextKey, id);
+      }
+    });
+  }
+
+  /**
+   * Remove the contexts of all of the given Domain Objects from the cache, after the writes are committed. If the batch is at least as large
+   * as the cache, the whole cache is cleared instead of scanning it once per object.
+   */
+  protected void invalidateAll(Collection<? extends T> domainObjects) {
+    if (domainObjects == null || domainObjects.isEmpty()) {
+      return;
+    }
+
+    final List<String> contextKeys = new ArrayList<String>(domainObjects.size());
+    final List<Serializable> ids = new ArrayList<Serializable>(domainObjects.size());
+    for (T domainObject : domainObjects) {
+      if (domainObject != null) {
+        contextKeys.add(getContextKey(domainObject));
+        ids.add(domainObject.getId());
+      }
+    }
+
+    runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (invalidationLock) {
+          if (contextKeys.size() >= cache.size()) {
+            invalidationCount++;
+            cache.clear();
+          } else {
+            for (int i = 0; i < contextKeys.size(); i++) {
+              invalidateNow(contextKeys.get(i), ids.get(i));
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /** Remove the given context and every cached context that holds a Domain Object with the given id (if not null). */
+  private void invalidateNow(String contextKey, final Serializable id) {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+      cache.remove(contextKey);
+
+      if (id != null) {
+        // scan without counting lookups or changing the LRU order of the contexts that remain
+        cache.removeIf(new EntryFilter<String, CachedContext<T>>() {
+          @Override
+          public boolean accept(String contextKey, CachedContext<T> cachedContext) {
+            return cachedContext.containsId(id);
+          }
+        });
+      }
+    }
+  }
+
+  /** Return the cached context, creating it on a miss (bulk loaded from the target, if enabled and supported by the target). */
+  private CachedContext<T> getCachedContext(String contextKey, ContextLoader<T> loader) {
+    CachedContext<T> result = cache.get(contextKey);
+
+    if (result == null) {
+      long expectedInvalidationCount = getInvalidationCount();
+      List<? extends T> entities = bulkLoad ? loader.loadContext() : null;
+
+      result = entities == null ? new CachedContext<T>() : createCompleteContext(entities);
+      putIfNotInvalidated(contextKey, result, expectedInvalidationCount);
+    }
+
+    return result;
+  }
+
+  /** Cache the given context, unless a write invalidated the cache while the context was being read (it may be stale). */
+  private void putIfNotInvalidated(String contextKey, CachedContext<T> cachedContext, long expectedInvalidationCount) {
+    synchronized (invalidationLock) {
+      if (invalidationCount == expectedInvalidationCount) {
+        cache.put(contextKey, cachedContext);
+      }
+    }
+  }
+
+  private List<T> copyOf(List<T> entities) {
+    List<T> result = new ArrayList<T>(entities.size());
+
+    for (T entity : entities) {
+      result.add(copyOf(entity));
+    }
+
+    return result;
+  }
+
+  private CachedContext<T> createCompleteContext(List<? extends T> entities) {
+    List<T> allEntities = new ArrayList<T>(entities.size());
+    Map<String, T> entityMap = new HashMap<String, T>();
+
+    for (T entity : entities) {
+      T copy = copyOf(entity);
+
+      allEntities.add(copy);
+      entityMap.put(getName(copy), copy);
+    }
+
+    return new CachedContext<T>(Collections.unmodifiableList(allEntities), Collections.unmodifiableMap(entityMap));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao.impl;
+
+import java.util.List;
+
+import com.thruzero.domain.dao.PreferenceDAO;
+import com.thruzero.domain.model.Preference;
+
+/**
+ * A PreferenceDAO that caches the Preferences read from the PreferenceDAO named by the "targetDAO" init param, grouped by owner and context
+ * (see {@link AbstractCachingDAO}).
+ *
+ * @author George Norman
+ */
+public final class CachingPreferenceDAO extends AbstractCachingDAO<Preference, PreferenceDAO> implements PreferenceDAO {
+  private static final char CONTEXT_KEY_SEPARATOR = '\u0000'; // can't appear in an owner or context
+
+  private CachingPreferenceDAO() {
+    super(PreferenceDAO.class);
+  }
+
+  @Override
+  public boolean isExistingPreference(String owner, String context, String name) {
+    return getPreference(owner, context, name) != null;
+  }
+
+  @Override
+  public Preference getPreference(String owner, String context, String name) {
+    return getCachedEntity(createContextKey(owner, context), name, createContextLoader(owner, context));
+  }
+
+  @Override
+  public String getPreferenceValue(String owner, String context, String name) {
+    return getPreferenceValue(owner, context, name, null);
+  }
+
+  @Override
+  public String getPreferenceValue(String owner, String context, String name, String defaultValue) {
+    Preference result = getPreference(owner, context, name);
+
+    return result == null ? defaultValue : result.getValue();
+  }
+
+  @Override
+  public List<? extends Preference> getPreferences(String owner, String context) {
+    return getCachedEntities(createContextKey(owner, context), createContextLoader(owner, context));
+  }
+
+  @Override
+  protected String getContextKey(Preference domainObject) {
+    return createContextKey(domainObject.getOwner(), domainObject.getContext());
+  }
+
+  @Override
+  protected String getName(Preference domainObject) {
+    return domainObject.getName();
+  }
+
+  @Override
+  protected Preference copyOf(Preference domainObject) {
+    Preference result = new Preference();
+
+    result.copyFrom(domainObject);
+
+    return result;
+  }
+
+  private static String createContextKey(String owner, String context) {
+    return owner + CONTEXT_KEY_SEPARATOR + context;
+  }
+
+  private ContextLoader<Preference> createContextLoader(final String owner, final String context) {
+    return new ContextLoader<Preference>() {
+      @Override
+      public List<? extends Preference> loadContext() {
+        return getTargetDAO().getPreferences(owner, context);
+      }
+
+      @Override
+      public Preference loadEntity(String name) {
+        return getTargetDAO().getPreference(owner, context, name);
+      }
+    };
+  }
+}
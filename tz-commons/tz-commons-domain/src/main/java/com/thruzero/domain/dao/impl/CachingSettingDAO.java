@@ -0,0 +1,127 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.thruzero.domain.dao.SettingDAO;
+import com.thruzero.domain.model.Setting;
+
+/**
+ * A SettingDAO that caches the Settings read from the SettingDAO named by the "targetDAO" init param, grouped by context (see
+ * {@link AbstractCachingDAO}).
+ *
+ * @author George Norman
+ */
+public final class CachingSettingDAO extends AbstractCachingDAO<Setting, SettingDAO> implements SettingDAO {
+
+  private CachingSettingDAO() {
+    super(SettingDAO.class);
+  }
+
+  @Override
+  public boolean isExistingSetting(String context, String name) {
+    return getSetting(context, name) != null;
+  }
+
+  @Override
+  public Setting getSetting(String context, String name) {
+    return getCachedEntity(context, name, createContextLoader(context));
+  }
+
+  @Override
+  public String getSettingValue(String context, String name) {
+    return getSettingValue(context, name, null);
+  }
+
+  @Override
+  public String getSettingValue(String context, String name, String defaultValue) {
+    Setting result = getSetting(context, name);
+
+    return result == null ? defaultValue : result.getValue();
+  }
+
+  @Override
+  public List<? extends Setting> getSettings(String context) {
+    return getCachedEntities(context, createContextLoader(context));
+  }
+
+  /** Return the cached contexts and load the rest with a single bulk read from the target DAO. */
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+    List<String> missedContexts = new ArrayList<String>();
+
+    for (String context : contexts) {
+      List<Setting> settings = getCompleteContextIfCached(context);
+
+      if (settings == null) {
+        missedContexts.add(context);
+      }
+      result.put(context, settings); // keeps the order of the given contexts
+    }
+
+    if (!missedContexts.isEmpty()) {
+      long expectedInvalidationCount = getInvalidationCount();
+      Map<String, List<? extends Setting>> loadedSettings = getTargetDAO().getSettings(missedContexts);
+
+      for (String context : missedContexts) {
+        List<? extends Setting> settings = loadedSettings.get(context);
+
+        result.put(context, settings == null ? null : cacheCompleteContext(context, settings, expectedInvalidationCount));
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  protected String getContextKey(Setting domainObject) {
+    return domainObject.getContext();
+  }
+
+  @Override
+  protected String getName(Setting domainObject) {
+    return domainObject.getName();
+  }
+
+  @Override
+  protected Setting copyOf(Setting domainObject) {
+    Setting result = new Setting();
+
+    result.copyFrom(domainObject);
+
+    return result;
+  }
+
+  private ContextLoader<Setting> createContextLoader(final String context) {
+    return new ContextLoader<Setting>() {
+      @Override
+      public List<? extends Setting> loadContext() {
+        return getTargetDAO().getSettings(context);
+      }
+
+      @Override
+      public Setting loadEntity(String name) {
+        return getTargetDAO().getSetting(context, name);
+      }
+    };
+  }
+}
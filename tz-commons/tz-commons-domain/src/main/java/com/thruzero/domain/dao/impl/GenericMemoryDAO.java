@@ -16,7 +16,11 @@
 package com.thruzero.domain.dao.impl;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.thruzero.common.core.support.KeyGen;
@@ -47,6 +51,9 @@ public abstract class GenericMemoryDAO<T extends Persistent> implements GenericD
 
     void persist(T entity);
 
+    /** Persist all of the given entities (keyed by primary key) with a single bulk put. */
+    void persistAll(Map<Serializable, T> entities);
+
     T find(Serializable primaryKey);
 
     Collection<T> getResultList();
@@ -57,6 +64,9 @@ public abstract class GenericMemoryDAO<T extends Persistent> implements GenericD
 
     void remove(T entity);
 
+    /** Remove all of the entities with the given primary keys. */
+    void removeAll(Collection<Serializable> primaryKeys);
+
     /** Clear the Map used to store the Domain Objects. */
     void clear();
   }
@@ -120,6 +130,69 @@ public abstract class GenericMemoryDAO<T extends Persistent> implements GenericD
     }
   }
 
+  /**
+   * Validates all of the given domainObjects before writing any of them, then assigns their IDs and persists them with
+   * a single bulk put.
+   */
+  @Override
+  public void saveAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      for (T domainObject : domainObjects) {
+        if (domainObject.getId() != null) {
+          throw new DAOException("ERROR: Can't save a Domain Object that already has an ID. Use update function instead. ID is: '" + domainObject.getId().toString() + "'.");
+        }
+      }
+
+      Map<Serializable, T> entities = new LinkedHashMap<Serializable, T>();
+      for (T domainObject : domainObjects) {
+        Serializable primaryKey = getKeyGen().createKey(domainObject);
+
+        domainObject.setId(primaryKey);
+        entities.put(primaryKey, domainObject);
+      }
+      memoryStore.persistAll(entities);
+    }
+  }
+
+  /**
+   * Validates all of the given domainObjects before writing any of them, then persists them with a single bulk put.
+   */
+  @Override
+  public void updateAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      Map<Serializable, T> entities = new LinkedHashMap<Serializable, T>();
+
+      for (T domainObject : domainObjects) {
+        if (domainObject.getId() == null) {
+          throw new DAOException("ERROR: Can't update a Domain Object that doesn't have an ID.");
+        }
+
+        if (memoryStore.find(domainObject.getId()) == null) {
+          throw new DAOException("ERROR: Domain Object not found. ID is: " + domainObject.getId());
+        }
+
+        entities.put(domainObject.getId(), domainObject);
+      }
+      memoryStore.persistAll(entities);
+    }
+  }
+
+  @Override
+  public void deleteAll(Collection<? extends T> domainObjects) {
+    if (domainObjects != null && !domainObjects.isEmpty()) {
+      List<Serializable> primaryKeys = new ArrayList<Serializable>(domainObjects.size());
+
+      for (T domainObject : domainObjects) {
+        if (domainObject.getId() == null) {
+          throw new DAOException("ERROR: Can't delete a Domain Object with an empty ID.");
+        }
+
+        primaryKeys.add(domainObject.getId());
+      }
+      memoryStore.removeAll(primaryKeys);
+    }
+  }
+
   @Override
   public T getByKey(Serializable primaryKey) {
     T result = null;
@@ -16,12 +16,16 @@
 
 package com.thruzero.domain.dao.impl;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
@@ -29,7 +33,9 @@ import org.apache.commons.io.IOUtils;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.support.KeyGen;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
 import com.thruzero.domain.model.TextEnvelope;
 
 /**
@@ -65,6 +71,11 @@ public final class HttpTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
       // TODO-p2(george) Auto-generated method stub
     }
 
+    @Override
+    public void persistAll(Map<Serializable, TextEnvelope> entities) {
+      throw new DAOException("ERROR: persistAll is not supported by " + getClass().getSimpleName() + " (the remote data-store is read-only).");
+    }
+
     /**
      * Return a {@code TextEnvelope} using an HTTP connection, defined by the given primaryKey. In this case, the
      * primaryKey is expected to be an {@code EntityPath} that resolves to a well-formed URL to the text resource.
@@ -75,13 +86,7 @@ public final class HttpTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
       HttpURLConnection connection = null;
 
       try {
-        URL remoteUrl = new URL(primaryKey.toString());
-        connection = (HttpURLConnection)remoteUrl.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setAllowUserInteraction(false);
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-        connection.connect();
+        connection = openConnection(primaryKey);
 
         String rawData = IOUtils.toString(connection.getInputStream());
         result = new TextEnvelope((EntityPath)primaryKey, rawData);
@@ -97,6 +102,31 @@ public final class HttpTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
       return result;
     }
 
+    /**
+     * Return a stream of the text resource defined by the given primaryKey (see {@link #find(Serializable)}), read
+     * directly from the HTTP connection. The connection is released when the stream is closed.
+     */
+    public InputStream findData(Serializable primaryKey) {
+      final HttpURLConnection connection;
+
+      try {
+        connection = openConnection(primaryKey);
+
+        return new FilterInputStream(connection.getInputStream()) {
+          @Override
+          public void close() throws IOException {
+            try {
+              super.close();
+            } finally {
+              connection.disconnect();
+            }
+          }
+        };
+      } catch (Exception e) {
+        throw new RuntimeException("ERROR reading remote data store: " + e.toString());
+      }
+    }
+
     @Override
     public Collection<TextEnvelope> getResultList() {
       // TODO-p2(george) Auto-generated method stub
@@ -119,10 +149,28 @@ public final class HttpTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
       // TODO-p2(george) Auto-generated method stub
     }
 
+    @Override
+    public void removeAll(Collection<Serializable> primaryKeys) {
+      throw new DAOException("ERROR: removeAll is not supported by " + getClass().getSimpleName() + " (the remote data-store is read-only).");
+    }
+
     @Override
     public void clear() {
       // TODO-p2(george) Auto-generated method stub
     }
+
+    protected HttpURLConnection openConnection(Serializable primaryKey) throws IOException {
+      URL remoteUrl = new URL(primaryKey.toString());
+      HttpURLConnection result = (HttpURLConnection)remoteUrl.openConnection();
+
+      result.setRequestMethod("GET");
+      result.setAllowUserInteraction(false);
+      result.setConnectTimeout(5000);
+      result.setReadTimeout(5000);
+      result.connect();
+
+      return result;
+    }
   }
 
   // ============================================================================
@@ -163,6 +211,17 @@ public final class HttpTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
     return getByKey(entityPath);
   }
 
+  /** Returns a stream read directly from the HTTP connection to the remote resource. */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return ((HttpTextEnvelopeMemoryStore)getMemoryStore()).findData(entityPath);
+  }
+
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter) {
+    TextEnvelopeDataHelper.saveOrUpdateTextEnvelopeData(this, entityPath, dataWriter);
+  }
+
   @Override
   protected KeyGen<TextEnvelope> createKeyGen() {
     return new TextEnvelopeKeyGen();
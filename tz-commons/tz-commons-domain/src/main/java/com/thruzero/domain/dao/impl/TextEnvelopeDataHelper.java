@@ -0,0 +1,85 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.lang3.CharEncoding;
+
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.dao.GenericDAO.DAOException;
+import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
+import com.thruzero.domain.model.TextEnvelope;
+
+/**
+ * Implements the stream-based functions of {@link TextEnvelopeDAO} for DAOs that hold the data of a TextEnvelope as a
+ * String (e.g., a database column or an in-memory store), by converting to and from the String.
+ *
+ * @author George Norman
+ */
+public final class TextEnvelopeDataHelper {
+
+  private TextEnvelopeDataHelper() {
+  }
+
+  /** Return the data of the TextEnvelope at the given entityPath as a stream of UTF-8 bytes, or null if it doesn't exist. */
+  public static InputStream getTextEnvelopeData(final TextEnvelopeDAO textEnvelopeDAO, final EntityPath entityPath) {
+    InputStream result = null;
+    TextEnvelope textEnvelope = textEnvelopeDAO.getTextEnvelope(entityPath);
+
+    if (textEnvelope != null && textEnvelope.getData() != null) {
+      try {
+        result = new ByteArrayInputStream(textEnvelope.getData().getBytes(CharEncoding.UTF_8));
+      } catch (UnsupportedEncodingException e) {
+        throw new DAOException("ERROR: Can't encode the data of: " + entityPath, e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Buffer the data written by the given dataWriter and save it as a new TextEnvelope at the given entityPath, or update
+   * the existing one.
+   */
+  public static void saveOrUpdateTextEnvelopeData(final TextEnvelopeDAO textEnvelopeDAO, final EntityPath entityPath, final TextEnvelopeDataWriter dataWriter) {
+    String data;
+
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+      dataWriter.writeData(buffer);
+      data = buffer.toString(CharEncoding.UTF_8);
+    } catch (IOException e) {
+      throw new DAOException("ERROR: Can't write the data of: " + entityPath, e);
+    }
+
+    TextEnvelope textEnvelope = textEnvelopeDAO.getTextEnvelope(entityPath);
+
+    if (textEnvelope == null) {
+      textEnvelopeDAO.save(new TextEnvelope(entityPath, data));
+    } else {
+      textEnvelope.setData(data);
+      textEnvelopeDAO.update(textEnvelope);
+    }
+  }
+
+}
@@ -15,6 +15,9 @@
  */
 package com.thruzero.domain.locator;
 
+import java.util.concurrent.ExecutorService;
+
+import com.thruzero.common.core.locator.LocatorWarmUpReport;
 import com.thruzero.common.core.locator.RegistryLocatorStrategy;
 import com.thruzero.common.core.locator.RegistryLocatorStrategy.InterfaceBindingRegistry;
 import com.thruzero.domain.dao.DAO;
@@ -65,6 +68,14 @@ public class DAOLocator {
     return type.cast(locatorStrategy.locate(type)); // use dynamic cast to avoid @SuppressWarnings("unchecked")
   }
 
+  /**
+   * Eagerly create and initialize every registered {@code DAO}, using the given executor to initialize independent
+   * bindings in parallel. See {@link RegistryLocatorStrategy#warmUp(ExecutorService, LocatorWarmUpReport)}.
+   */
+  public static void warmUp(final ExecutorService executor, final LocatorWarmUpReport report) {
+    locatorStrategy.warmUp(executor, report);
+  }
+
   /** Clears the locator registry and bindings. */
   public static void reset() {
     locatorStrategy.reset();
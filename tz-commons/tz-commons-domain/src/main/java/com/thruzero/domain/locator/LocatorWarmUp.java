@@ -0,0 +1,191 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.locator;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.ConfigKeysBookmark;
+import com.thruzero.common.core.config.Config;
+import com.thruzero.common.core.config.Config.ConfigKeys;
+import com.thruzero.common.core.locator.ConfigLocator;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.locator.LocatorWarmUpReport;
+import com.thruzero.common.core.locator.ProviderLocator;
+import com.thruzero.common.core.locator.ServiceLocator;
+import com.thruzero.common.core.locator.TransactionMgrLocator;
+
+/**
+ * Eagerly creates and initializes every registered binding of the standard locators, so the cost of class loading,
+ * initialization (e.g., building a Hibernate SessionFactory or validating a data store container) is paid at startup,
+ * rather than by the first request. The locators are warmed up in dependency order: Config, then
+ * {@code TransactionMgr}, {@code DAO}, {@code Provider} and finally {@code Service}. Within each locator, the bindings
+ * are initialized in parallel, using a bounded thread pool.
+ * <p>
+ * Warm-up is opt-in. It can be run directly, or enabled via the {@code InitFilter} or the config section named by
+ * {@code LocatorWarmUpConfigKeys.CONFIG_SECTION}:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.domain.locator.LocatorWarmUp">
+ *     <entry key="enabled" value="true" />
+ *     <entry key="threadPoolSize" value="4" />
+ *     <entry key="preloadSettingsSections" value="com.example.FooService, com.example.BarService" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * The settings sections listed by "preloadSettingsSections" (i.e., the sections of the bindings initialized via the
+ * {@link SettingsInitializationStrategy}) are read in one bulk read, after the DAOs are warmed up and before the
+ * Providers and Services are.
+ *
+ * A failed binding doesn't stop the warm-up; it's listed in the startup report and will fail again, as usual, when it's
+ * first located.
+ *
+ * @author George Norman
+ */
+public class LocatorWarmUp {
+  private static final Logger logger = Logger.getLogger(LocatorWarmUp.class);
+
+  // ------------------------------------------------
+  // LocatorWarmUpConfigKeys
+  // ------------------------------------------------
+
+  /**
+   * Config keys defined for LocatorWarmUp and are defined inside of the config file section named by CONFIG_SECTION:
+   * "com.thruzero.domain.locator.LocatorWarmUp".
+   */
+  @ConfigKeysBookmark
+  public interface LocatorWarmUpConfigKeys extends ConfigKeys {
+    /** The config section to use */
+    String CONFIG_SECTION = LocatorWarmUp.class.getName();
+
+    /** The config key that enables the warm-up at startup: "enabled" (default is false). */
+    String ENABLED = "enabled";
+
+    /** The config key that defines the number of threads used to initialize bindings: "threadPoolSize" (default is the number of processors). */
+    String THREAD_POOL_SIZE = "threadPoolSize";
+
+    /** The config key that defines the comma-separated settings sections to preload: "preloadSettingsSections" (default is none). */
+    String PRELOAD_SETTINGS_SECTIONS = "preloadSettingsSections";
+  }
+
+  // ------------------------------------------------
+  // WarmUpThreadFactory
+  // ------------------------------------------------
+
+  private static final class WarmUpThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, "locator-warm-up-" + threadCount.incrementAndGet());
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ============================================================================
+  // LocatorWarmUp
+  // ============================================================================
+
+  /** This is a utility class - Allow for class extensions; disallow client instantiation */
+  protected LocatorWarmUp() {
+  }
+
+  /** Return true if the warm-up has been enabled via config. */
+  public static boolean isEnabled() {
+    return ConfigLocator.locate().getBooleanValue(LocatorWarmUpConfigKeys.CONFIG_SECTION, LocatorWarmUpConfigKeys.ENABLED, false);
+  }
+
+  /** Warm up all locators, using the thread pool size defined by config, and return (and log) the startup report. */
+  public static LocatorWarmUpReport warmUp() {
+    Config config = ConfigLocator.locate();
+    int threadPoolSize = config.getIntegerValue(LocatorWarmUpConfigKeys.CONFIG_SECTION, LocatorWarmUpConfigKeys.THREAD_POOL_SIZE,
+        Runtime.getRuntime().availableProcessors());
+
+    return warmUp(threadPoolSize);
+  }
+
+  /** Warm up all locators, using a pool of the given number of threads, and return (and log) the startup report. */
+  public static LocatorWarmUpReport warmUp(final int threadPoolSize) {
+    LocatorWarmUpReport result = new LocatorWarmUpReport();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadPoolSize), new WarmUpThreadFactory());
+    long start = System.nanoTime();
+
+    try {
+      warmUpConfig(result);
+      TransactionMgrLocator.warmUp(executor, result);
+      DAOLocator.warmUp(executor, result);
+      preloadSettingsSections(result);
+      ProviderLocator.warmUp(executor, result);
+      ServiceLocator.warmUp(executor, result);
+    } finally {
+      executor.shutdown();
+      result.setTotalElapsedMillis((System.nanoTime() - start) / 1000000);
+    }
+
+    if (result.getFailureCount() > 0) {
+      logger.warn(result);
+    } else {
+      logger.info(result);
+    }
+
+    return result;
+  }
+
+  /** The Config instance has a single binding and everything else depends on it, so it's initialized first, on the calling thread. */
+  private static void warmUpConfig(final LocatorWarmUpReport report) {
+    long start = System.nanoTime();
+    Throwable failure = null;
+    String instanceClassName = null;
+
+    try {
+      instanceClassName = ConfigLocator.locate().getClass().getName();
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+
+    report.addBindingTiming(Config.class.getName(), Config.class.getName(), instanceClassName, (System.nanoTime() - start) / 1000000, failure);
+  }
+
+  /** Preload the settings sections defined by config (if any), on the calling thread. A failure is reported, and each section is then read on demand. */
+  private static void preloadSettingsSections(final LocatorWarmUpReport report) {
+    String sectionNames = ConfigLocator.locate().getValue(LocatorWarmUpConfigKeys.CONFIG_SECTION, LocatorWarmUpConfigKeys.PRELOAD_SETTINGS_SECTIONS);
+
+    if (StringUtils.isNotBlank(sectionNames)) {
+      long start = System.nanoTime();
+      Throwable failure = null;
+
+      try {
+        SettingsInitializationStrategy.preloadSections(Arrays.asList(StringUtils.split(sectionNames, ", ")));
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+
+      report.addBindingTiming(InitializationStrategy.class.getName(), SettingsInitializationStrategy.class.getName(), SettingsInitializationStrategy.class.getName(),
+          (System.nanoTime() - start) / 1000000, failure);
+    }
+  }
+}
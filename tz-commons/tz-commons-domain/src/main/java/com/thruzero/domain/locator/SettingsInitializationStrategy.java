@@ -15,7 +15,10 @@
  */
 package com.thruzero.domain.locator;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.thruzero.common.core.locator.InitializationStrategy;
 import com.thruzero.common.core.locator.ServiceLocator;
@@ -27,12 +30,33 @@ import com.thruzero.domain.service.SettingService;
  * Load initialization parameters from the Settings service. This is an alternative to initializing a locatable from the
  * config file.
  * <p>
+ * The sections needed at startup can be loaded in one pass, using {@link #preloadSections(Collection)}, rather than with one
+ * round trip to the data store per section (see the "preloadSettingsSections" key of {@link LocatorWarmUp}). The preloaded
+ * sections are shared by every instance, since the locators create a strategy per binding. Each preloaded section is
+ * discarded once it's used (a locatable is initialized only once), so a later read gets the current settings.
+ * <p>
  * NOTE: DO NOT USE THIS TO INITIALIZE THE SettingService. TODO-p1(george) Throw exception if this is attempted.
  * </p>
  *
  * @author George Norman
  */
 public class SettingsInitializationStrategy implements InitializationStrategy {
+  private static final Map<String, StringMap> preloadedSections = new ConcurrentHashMap<String, StringMap>();
+
+  /**
+   * Load the given sections with a single bulk read from the settings service (see {@link SettingService#getSettings(Collection)}).
+   * The next request for each of these sections is answered from memory; other sections are still loaded on demand.
+   */
+  public static void preloadSections(Collection<String> sectionNames) {
+    SettingService settingService = ServiceLocator.locate(SettingService.class);
+    Map<String, List<? extends Setting>> settingsBySection = settingService.getSettings(sectionNames);
+
+    for (Map.Entry<String, List<? extends Setting>> entry : settingsBySection.entrySet()) {
+      if (entry.getValue() != null) {
+        preloadedSections.put(entry.getKey(), toStringMap(entry.getValue()));
+      }
+    }
+  }
 
   /**
    * Load initialization parameters from the settings service, using the context named by the given instanceClassName
@@ -40,13 +64,26 @@ public class SettingsInitializationStrategy implements InitializationStrategy {
    */
   @Override
   public StringMap getSectionAsStringMap(String sectionName) {
-    StringMap result = null;
-    SettingService settingService = ServiceLocator.locate(SettingService.class);
-    List<? extends Setting> settings = settingService.getSettings(sectionName);
+    StringMap result = preloadedSections.remove(sectionName); // a preloaded section is used once, so it can't become stale
+
+    if (result == null) {
+      SettingService settingService = ServiceLocator.locate(SettingService.class);
+
+      result = toStringMap(settingService.getSettings(sectionName));
+    }
+
+    return result.isEmpty() ? null : result;
+  }
+
+  /** Discard the preloaded sections that haven't been used (e.g., when the locators are reset). */
+  public static void reset() {
+    preloadedSections.clear();
+  }
 
-    if (settings != null && !settings.isEmpty()) {
-      result = new StringMap();
+  private static StringMap toStringMap(List<? extends Setting> settings) {
+    StringMap result = new StringMap();
 
+    if (settings != null) {
       for (Setting setting : settings) {
         result.put(setting.getName(), setting.getValue());
       }
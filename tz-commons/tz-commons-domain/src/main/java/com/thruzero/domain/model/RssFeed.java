@@ -43,6 +43,8 @@ public class RssFeed {
   private final List<NewsEntry> entries = new ArrayList<NewsEntry>();
   private final long refreshPoint;
   private final String errorStatus;
+  private final String entityTag;
+  private final String lastModified;
 
   // ------------------------------------------------------
   // NewsEntry
@@ -118,6 +120,19 @@ public class RssFeed {
    * @param errorStatus if empty, then no error; otherwise, the message will be displayed to the user.
    */
   public RssFeed(String feedUrl, Date publishedDate, List<NewsEntry> entries, long refreshPoint, String errorStatus) {
+    this(feedUrl, publishedDate, entries, refreshPoint, errorStatus, null, null);
+  }
+
+  /**
+   * @param feedUrl href to the news feed.
+   * @param publishedDate date the article was published; if null, then current date is used.
+   * @param entries the news articles associated with this feed.
+   * @param refreshPoint the date/time this feed should be read again.
+   * @param errorStatus if empty, then no error; otherwise, the message will be displayed to the user.
+   * @param entityTag the ETag header returned by the feed source (may be null).
+   * @param lastModified the Last-Modified header returned by the feed source (may be null).
+   */
+  public RssFeed(String feedUrl, Date publishedDate, List<NewsEntry> entries, long refreshPoint, String errorStatus, String entityTag, String lastModified) {
     this.feedUrl = feedUrl;
     this.publishedDate = publishedDate == null ? new Date() : publishedDate;
     if (entries != null) {
@@ -125,16 +140,21 @@ public class RssFeed {
     }
     this.refreshPoint = refreshPoint;
     this.errorStatus = errorStatus;
+    this.entityTag = entityTag;
+    this.lastModified = lastModified;
   }
 
+  /** Create a copy of the given feed, with a new refresh point. */
   public RssFeed(RssFeed copyFrom, long refreshPoint) {
     feedUrl = copyFrom.feedUrl;
     this.publishedDate = copyFrom.publishedDate;
     if (copyFrom.entries != null) {
-      this.entries.addAll(entries);
+      this.entries.addAll(copyFrom.entries);
     }
-    this.refreshPoint = copyFrom.refreshPoint;
+    this.refreshPoint = refreshPoint;
     this.errorStatus = copyFrom.errorStatus;
+    this.entityTag = copyFrom.entityTag;
+    this.lastModified = copyFrom.lastModified;
   }
 
   public String getFeedUrl() {
@@ -157,4 +177,14 @@ public class RssFeed {
     return errorStatus;
   }
 
+  /** Return the ETag of the source document, used to make a conditional request when the feed is refreshed (may be null). */
+  public String getEntityTag() {
+    return entityTag;
+  }
+
+  /** Return the Last-Modified date of the source document, as sent by the feed source (may be null). */
+  public String getLastModified() {
+    return lastModified;
+  }
+
 }
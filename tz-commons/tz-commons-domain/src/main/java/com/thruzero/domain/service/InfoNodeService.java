@@ -15,10 +15,14 @@
  */
 package com.thruzero.domain.service;
 
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder.InfoNodeHandler;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder.InfoNodeMatcher;
 import com.thruzero.common.core.service.Service;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
@@ -29,11 +33,33 @@ import com.thruzero.domain.model.DataStoreInfo;
  * A Service interface to manage persistence-related functionality of InfoNodeElement instances.
  * <p>
  * Note: The particular DAO configured for this service defines where the data is actually stored.
+ * <p>
+ * Documents are streamed between the data store and the SAX parser (on read) or the serializer (on write), so a
+ * document isn't held in memory as a String, unless the configured DAO stores it as one (e.g., a database column).
  * 
  * @author George Norman
  */
 public interface InfoNodeService extends Service, SimpleInfoProvider {
 
+  // ------------------------------------------------------
+  // InfoNodeServiceListener
+  // ------------------------------------------------------
+
+  /**
+   * A listener that is notified after an InfoNodeElement has been written to, or deleted from, the data store (e.g., so caches of the parsed
+   * InfoNodeElement, or the models built from it, can be invalidated). If the DAO is an
+   * {@link com.thruzero.domain.dao.EntityChangeSource EntityChangeSource}, then changes made outside of the service (e.g., files edited directly on
+   * disk) are reported as well.
+   */
+  public static interface InfoNodeServiceListener {
+    /** Called after the entity at the given entityPath was saved, updated or deleted. */
+    void infoNodeChanged(EntityPath entityPath);
+  }
+
+  // ============================================================================
+  // InfoNodeService
+  // ============================================================================
+
   /**
    * Return the collection of InfoNodeElement instances at the given containerPath. If recursive is true, then return all of the InfoNodeElement instances for
    * all child container paths.
@@ -61,6 +87,13 @@ public interface InfoNodeService extends Service, SimpleInfoProvider {
    */
   Collection<? extends InfoNodeElement> getInfoNodes(ContainerPath containerPath, boolean recursive);
 
+  /**
+   * Same as {@link #getInfoNodes(ContainerPath, boolean)}, except the InfoNodeElement instances are loaded incrementally, a bounded number
+   * ahead of the caller, so the caller can start processing the first nodes before the rest have been loaded. A node that can't be loaded
+   * (e.g., invalid XML) is logged and skipped.
+   */
+  Iterator<InfoNodeElement> iterateInfoNodes(ContainerPath containerPath, boolean recursive);
+
   List<EntityPath> getInfoNodePaths(ContainerPath containerPath, boolean recursive);
 
   InfoNodeElement getInfoNode(EntityPath entityPath);
@@ -88,9 +121,19 @@ public interface InfoNodeService extends Service, SimpleInfoProvider {
    * <ul>
    * <li>getFirstInfoNode("/a/x1.xml", "//y1") =&gt; "&lt;y1&gt;D test&lt;/y1&gt;".</li> TODO-p1(george) TEST THIS
    * </ul>
+   * Simple paths (e.g., "y1", "//y1" or "panel[@id='news']") are evaluated while streaming the document, so only the
+   * returned subtree is built (see {@link com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder#createPathMatcher(String)}).
    */
   InfoNodeElement getFirstInfoNode(EntityPath entityPath, String xpathExpr);
 
+  /**
+   * Stream the document at the given entityPath, building only the elements accepted by the given matcher (along with
+   * their descendants) and passing each one to the given handler as soon as it's complete; the rest of the document is
+   * skipped. Use {@link com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder#CHILD_NODE_MATCHER} to iterate over
+   * the top-level children of the document. Does nothing if there's no entity at the given entityPath.
+   */
+  void streamInfoNodes(EntityPath entityPath, InfoNodeMatcher matcher, InfoNodeHandler handler);
+
   /** Save the new domainObject to the data store */
   void save(InfoNodeElement domainObject);
 
@@ -108,6 +151,17 @@ public interface InfoNodeService extends Service, SimpleInfoProvider {
 
   String getRawData(EntityPath entityPath);
 
+  /** Return a stream of the raw (unfiltered, UTF-8 encoded) data at the given entityPath, or null if none. The caller must close the stream. */
+  InputStream getRawDataStream(EntityPath entityPath);
+
   void saveOrUpdateRawData(EntityPath entityPath, String data);
 
+  /** Copy the given (UTF-8 encoded) data to the data store, through a bounded buffer. The given stream is not closed. */
+  void saveOrUpdateRawData(EntityPath entityPath, InputStream data);
+
+  /** Register the given listener, to be notified each time an entity is saved, updated or deleted via this service. */
+  void addInfoNodeServiceListener(InfoNodeServiceListener listener);
+
+  void removeInfoNodeServiceListener(InfoNodeServiceListener listener);
+
 }
@@ -15,7 +15,9 @@
  */
 package com.thruzero.domain.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.thruzero.common.core.bookmarks.SettingBookmark;
@@ -64,6 +66,9 @@ public interface SettingService extends Service {
 
   List<? extends Setting> getSettings(String context);
 
+  /** Return the Settings of each of the given contexts, keyed by context, loaded in bulk (see {@link com.thruzero.domain.dao.SettingDAO#getSettings(Collection)}). */
+  Map<String, List<? extends Setting>> getSettings(Collection<String> contexts);
+
   void saveOrUpdatSetting(Setting setting);
 
   void deleteSetting(Setting setting);
@@ -15,9 +15,29 @@
  */
 package com.thruzero.domain.service.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.jdom.JDOMException;
@@ -25,9 +45,10 @@ import org.jdom.JDOMException;
 import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
 import com.thruzero.common.core.infonode.InfoNodeElement;
 import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
-import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilter;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder.InfoNodeHandler;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder.InfoNodeMatcher;
 import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilterChain;
-import com.thruzero.common.core.infonode.builder.filter.SimpleInfoNodeFilterChain;
+import com.thruzero.common.core.infonode.builder.filter.InfoNodeFilterChainFactory;
 import com.thruzero.common.core.locator.Initializable;
 import com.thruzero.common.core.locator.InitializationException;
 import com.thruzero.common.core.locator.InitializationStrategy;
@@ -36,11 +57,14 @@ import com.thruzero.common.core.map.StringMap;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.support.SimpleInfo;
-import com.thruzero.common.core.utils.ClassUtils;
 import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
-import com.thruzero.common.core.utils.ExceptionUtilsExt;
 import com.thruzero.common.core.utils.LogUtils;
+import com.thruzero.domain.dao.EntityChangeSource;
+import com.thruzero.domain.dao.EntityChangeSource.ChangeType;
+import com.thruzero.domain.dao.EntityChangeSource.EntityChangeListener;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
+import com.thruzero.domain.dao.TransactionalDAO;
 import com.thruzero.domain.model.DataStoreInfo;
 import com.thruzero.domain.model.TextEnvelope;
 import com.thruzero.domain.service.InfoNodeService;
@@ -58,8 +82,17 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
   private static final Logger logger = Logger.getLogger(AbstractInfoNodeService.class);
 
   private final TextEnvelopeDAO textEnvelopeDAO;
-  
-  private String[] infoNodeFilters; // virtually "final" (initialized once via the init method and never updated).
+  private final List<InfoNodeServiceListener> listeners = new CopyOnWriteArrayList<InfoNodeServiceListener>();
+  private final EntityChangeListener entityChangeListener = new EntityChangeListener() {
+    @Override
+    public void entityChanged(EntityPath entityPath, ChangeType changeType) {
+      fireInfoNodeChanged(entityPath); // changed outside of this service (e.g., edited directly on disk)
+    }
+  };
+
+  private InfoNodeFilterChainFactory filterChainFactory; // virtually "final" (initialized once via the init method and never updated).
+  private volatile ExecutorService loadExecutor; // null if InfoNodes are loaded by the calling thread only
+  private int loadWindow = 1;
 
   // ------------------------------------------------
   // InfoNodeServiceInitParamKeys
@@ -73,6 +106,125 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     String SOURCE_SECTION = InfoNodeService.class.getName();
 
     String INFONODE_FILTER_LIST = "infoNodeFilters";
+
+    /**
+     * The optional parameter key that defines the maximum number of threads used to load (read and parse) the InfoNodes returned by getInfoNodes
+     * and iterateInfoNodes: "loadThreads" (default is 1, which loads all of the InfoNodes on the calling thread).
+     */
+    String LOAD_THREADS = "loadThreads";
+  }
+
+  // ------------------------------------------------
+  // InfoNodeLoadThreadFactory
+  // ------------------------------------------------
+
+  private static final class InfoNodeLoadThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public InfoNodeLoadThreadFactory(String namePrefix) {
+      this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, namePrefix + "-load-" + threadCount.incrementAndGet());
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ------------------------------------------------
+  // OrderedLoadIterator
+  // ------------------------------------------------
+
+  /**
+   * Loads an InfoNodeElement from each of the given sources, using up to "loadThreads" threads, and returns them in the order of the sources.
+   * At most "loadWindow" loads are in progress ahead of the caller. A source that can't be loaded is logged and skipped, so one invalid
+   * InfoNode doesn't fail the others.
+   */
+  private abstract class OrderedLoadIterator<S> implements Iterator<InfoNodeElement> {
+    private final Iterator<? extends S> sources;
+    private final ExecutorService executor = loadExecutor;
+    private final LinkedList<Future<InfoNodeElement>> pendingLoads = new LinkedList<Future<InfoNodeElement>>();
+    private InfoNodeElement nextInfoNode;
+
+    protected OrderedLoadIterator(Iterator<? extends S> sources) {
+      this.sources = sources;
+    }
+
+    /** Load the InfoNodeElement from the given source; returns null if there's nothing to load (e.g., it was deleted). */
+    protected abstract InfoNodeElement load(S source) throws Exception;
+
+    @Override
+    public boolean hasNext() {
+      while (nextInfoNode == null) {
+        startLoads();
+        if (pendingLoads.isEmpty()) {
+          return false;
+        }
+        nextInfoNode = awaitLoad(pendingLoads.removeFirst());
+      }
+
+      return true;
+    }
+
+    @Override
+    public InfoNodeElement next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      InfoNodeElement result = nextInfoNode;
+      nextInfoNode = null;
+
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /** Start loading the next sources, until the window is full (without an executor, the next source is loaded by the calling thread). */
+    private void startLoads() {
+      int window = executor == null ? 1 : loadWindow;
+
+      while (pendingLoads.size() < window && sources.hasNext()) {
+        final S source = sources.next();
+        FutureTask<InfoNodeElement> task = new FutureTask<InfoNodeElement>(new Callable<InfoNodeElement>() {
+          @Override
+          public InfoNodeElement call() {
+            try {
+              return load(source);
+            } catch (Exception e) {
+              logger.error("Invalid InfoNode model.", e);
+              return null;
+            }
+          }
+        });
+
+        if (executor == null) {
+          task.run();
+        } else {
+          executor.execute(task); // runs on the calling thread, if the pool is saturated or shut down
+        }
+        pendingLoads.add(task);
+      }
+    }
+
+    private InfoNodeElement awaitLoad(Future<InfoNodeElement> pendingLoad) {
+      try {
+        return pendingLoad.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while loading InfoNodes.", e);
+      } catch (ExecutionException e) {
+        logger.error("Invalid InfoNode model.", e.getCause());
+        return null;
+      }
+    }
   }
 
   // ============================================================================
@@ -85,25 +237,12 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     logger.debug(LogUtils.getObjectCreationMessage(this));
   }
   
+  /**
+   * Return a new filter chain for a single parse, or null if no filters are configured. The filters were resolved by
+   * the init method, so this is cheap (only filters that aren't stateless are instantiated).
+   */
   protected InfoNodeFilterChain createFilterChain() {
-    InfoNodeFilterChain result = null;
-    
-    if (infoNodeFilters != null) {
-      List<InfoNodeFilter> filterList = new ArrayList<InfoNodeFilter>();
-
-      for (String filterClassName : infoNodeFilters) {
-        try {
-          Class<InfoNodeFilter> filterClass = ClassUtils.classFrom(filterClassName);
-          filterList.add(ClassUtils.instanceFrom(filterClass));
-        } catch (ClassUtilsException e) {
-          throw ExceptionUtilsExt.logAndCreateLocatorException(logger, "Couldn't create filter named: " + filterClassName, e);
-        }
-      }
-
-      result = new SimpleInfoNodeFilterChain(filterList);
-    }
-    
-    return result;
+    return filterChainFactory == null ? null : filterChainFactory.createFilterChain();
   }
 
   /**
@@ -114,7 +253,38 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
   public void init(InitializationStrategy initStrategy) {
     StringMap initParams = LocatorUtils.getInheritedParameters(initStrategy, this.getClass(), AbstractInfoNodeService.class);
 
-    infoNodeFilters = initParams.getValueTransformer(InfoNodeServiceInitParamKeys.INFONODE_FILTER_LIST).getStringArrayValue();
+    String[] infoNodeFilters = initParams.getValueTransformer(InfoNodeServiceInitParamKeys.INFONODE_FILTER_LIST).getStringArrayValue();
+
+    if (infoNodeFilters != null) {
+      try {
+        filterChainFactory = new InfoNodeFilterChainFactory(Arrays.asList(infoNodeFilters));
+      } catch (ClassUtilsException e) {
+        throw new InitializationException("ERROR: Couldn't create the filters: " + Arrays.toString(infoNodeFilters) + " for InfoNodeService of type: " + getClass().getName() + ".", e, initStrategy);
+      }
+    }
+
+    // forward the changes made outside of this service (if the DAO reports them) to the InfoNodeServiceListeners
+    if (textEnvelopeDAO instanceof EntityChangeSource) {
+      ((EntityChangeSource)textEnvelopeDAO).removeEntityChangeListener(entityChangeListener);
+      ((EntityChangeSource)textEnvelopeDAO).addEntityChangeListener(entityChangeListener);
+    }
+
+    // create the pool used to load InfoNodes in parallel (bounded; when it's saturated, the calling thread does the loading)
+    int loadThreads = initParams.getValueTransformer(InfoNodeServiceInitParamKeys.LOAD_THREADS).getIntValue(1);
+    shutdownLoadExecutor();
+    if (loadThreads > 1) {
+      ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(loadThreads, loadThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(loadThreads * 4),
+          new InfoNodeLoadThreadFactory(getClass().getSimpleName()), new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+              runnable.run(); // unlike CallerRunsPolicy, also runs the load after a shutdown, so a pending iterator never waits forever
+            }
+          });
+
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      loadWindow = loadThreads * 2;
+      loadExecutor = threadPoolExecutor;
+    }
   }
 
   /**
@@ -122,24 +292,50 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
    */
   @Override
   public void reset() {
+    filterChainFactory = null;
+    shutdownLoadExecutor();
+
+    if (textEnvelopeDAO instanceof EntityChangeSource) {
+      ((EntityChangeSource)textEnvelopeDAO).removeEntityChangeListener(entityChangeListener);
+    }
   }
 
+  /**
+   * The models are read by the DAO and then parsed using up to "loadThreads" threads (see {@link InfoNodeServiceInitParamKeys#LOAD_THREADS});
+   * the result is in the order returned by the DAO.
+   */
   @Override
   public List<? extends InfoNodeElement> getInfoNodes(final ContainerPath containerPath, final boolean recursive) {
     List<InfoNodeElement> result = new ArrayList<InfoNodeElement>();
-    List<? extends TextEnvelope> models = getTextEnvelopeDAO().getTextEnvelopes(containerPath, recursive);
+    Iterator<InfoNodeElement> iter = iterateTextEnvelopes(getTextEnvelopeDAO().getTextEnvelopes(containerPath, recursive));
 
-    for (TextEnvelope infoNodeModel : models) {
-      try {
-        result.add(getSaxInfoNodeBuilder(false).buildInfoNode(infoNodeModel.getData(), createFilterChain()));
-      } catch (Exception e) {
-        logger.error("Invalid InfoNode model.", e);
-      }
+    while (iter.hasNext()) {
+      result.add(iter.next());
     }
 
     return result;
   }
 
+  /**
+   * Only the paths are listed up front; each InfoNode is then read and parsed (using up to "loadThreads" threads) as the iteration
+   * proceeds. If the DAO can't list the paths, then the models are read up front (as for getInfoNodes) and only the parsing is incremental.
+   */
+  @Override
+  public Iterator<InfoNodeElement> iterateInfoNodes(final ContainerPath containerPath, final boolean recursive) {
+    List<EntityPath> entityPaths = getInfoNodePaths(containerPath, recursive);
+
+    if (entityPaths == null) {
+      return iterateTextEnvelopes(getTextEnvelopeDAO().getTextEnvelopes(containerPath, recursive));
+    }
+
+    return new OrderedLoadIterator<EntityPath>(entityPaths.iterator()) {
+      @Override
+      protected InfoNodeElement load(EntityPath entityPath) {
+        return getInfoNode(entityPath);
+      }
+    };
+  }
+
   @Override
   public List<EntityPath> getInfoNodePaths(ContainerPath containerPath, boolean recursive) {
     List<EntityPath> result = getTextEnvelopeDAO().getTextEnvelopePaths(containerPath, recursive);
@@ -150,13 +346,15 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
   @Override
   public InfoNodeElement getInfoNode(final EntityPath entityPath) {
     InfoNodeElement result = null;
-    TextEnvelope infoNodeModel = getTextEnvelopeDAO().getTextEnvelope(entityPath);
+    InputStream infoNodeData = getTextEnvelopeDAO().getTextEnvelopeData(entityPath);
 
-    if (infoNodeModel != null) {
+    if (infoNodeData != null) {
       try {
-        result = getSaxInfoNodeBuilder(false).buildInfoNode(infoNodeModel.getData(), createFilterChain());
+        result = getSaxInfoNodeBuilder(false).buildInfoNode(infoNodeData, createFilterChain());
       } catch (Exception e) {
         logger.error("Invalid InfoNode model.", e);
+      } finally {
+        IOUtils.closeQuietly(infoNodeData);
       }
     }
 
@@ -177,6 +375,23 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
 
   @Override
   public InfoNodeElement getFirstInfoNode(final EntityPath entityPath, final String xpathExpr) {
+    InfoNodeMatcher matcher = SaxInfoNodeBuilder.createPathMatcher(xpathExpr);
+
+    if (matcher != null) {
+      // simple path: build the matching subtree only
+      final InfoNodeElement[] result = new InfoNodeElement[1];
+
+      streamInfoNodes(entityPath, matcher, new InfoNodeHandler() {
+        @Override
+        public boolean handleInfoNode(InfoNodeElement infoNode) {
+          result[0] = infoNode;
+          return false;
+        }
+      });
+
+      return result[0];
+    }
+
     InfoNodeElement result = null;
     InfoNodeElement infoNode = getInfoNode(entityPath);
 
@@ -194,6 +409,21 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     return result;
   }
 
+  @Override
+  public void streamInfoNodes(final EntityPath entityPath, final InfoNodeMatcher matcher, final InfoNodeHandler handler) {
+    InputStream infoNodeData = getTextEnvelopeDAO().getTextEnvelopeData(entityPath);
+
+    if (infoNodeData != null) {
+      try {
+        getSaxInfoNodeBuilder(false).streamInfoNodes(infoNodeData, matcher, createFilterChain(), handler);
+      } catch (Exception e) {
+        logger.error("Invalid InfoNode model.", e);
+      } finally {
+        IOUtils.closeQuietly(infoNodeData);
+      }
+    }
+  }
+
   @Override
   public boolean isExistingEntity(EntityPath entityPath) {
     boolean result = getTextEnvelopeDAO().isExistingTextEnvelope(entityPath);
@@ -206,10 +436,11 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     if (infoNodeElement.getEntityPath() == null) {
       throw new RuntimeException("Error attempting to save InfoNodeElement: The EntityPath is null. An EntityPath is required to save an InfoNodeElement.");
     }
+    if (isExistingEntity(infoNodeElement.getEntityPath())) {
+      throw new RuntimeException("Error attempting to save InfoNodeElement: An entity already exists at: " + infoNodeElement.getEntityPath());
+    }
 
-    TextEnvelope domainObject = new TextEnvelope(infoNodeElement);
-
-    getTextEnvelopeDAO().save(domainObject);
+    writeInfoNode(infoNodeElement);
   }
 
   @Override
@@ -218,11 +449,7 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
       throw new RuntimeException("Error attempting to save or update InfoNodeElement: The EntityPath is null. An EntityPath is required to save or update an InfoNodeElement.");
     }
 
-    if (isExistingEntity(infoNodeElement.getEntityPath())) {
-      update(infoNodeElement);
-    } else {
-      save(infoNodeElement);
-    }
+    writeInfoNode(infoNodeElement);
   }
 
   @Override
@@ -230,10 +457,11 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     if (infoNodeElement.getEntityPath() == null) {
       throw new RuntimeException("Error attempting to update InfoNodeElement: The EntityPath is null. An EntityPath is required to update an InfoNodeElement.");
     }
+    if (!isExistingEntity(infoNodeElement.getEntityPath())) {
+      throw new RuntimeException("Error attempting to update InfoNodeElement: No entity exists at: " + infoNodeElement.getEntityPath());
+    }
 
-    TextEnvelope domainObject = new TextEnvelope(infoNodeElement);
-
-    getTextEnvelopeDAO().update(domainObject);
+    writeInfoNode(infoNodeElement);
   }
 
   @Override
@@ -246,7 +474,7 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     domainObject.setId(infoNodeElement.getEntityPath()); // TODO-p0(geo) Should the ID be set by the TextEnvelope constructor?
 
     getTextEnvelopeDAO().delete(domainObject);
-
+    fireInfoNodeChanged(infoNodeElement.getEntityPath());
   }
 
   @Override
@@ -261,6 +489,26 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     return result;
   }
 
+  @Override
+  public InputStream getRawDataStream(final EntityPath entityPath) {
+    return getTextEnvelopeDAO().getTextEnvelopeData(entityPath); // TODO-p0(geo) infoNodeFilterChain is ignored
+  }
+
+  @Override
+  public void saveOrUpdateRawData(EntityPath entityPath, final InputStream data) {
+    if (entityPath == null) {
+      throw new RuntimeException("Error attempting to save or update InfoNodeElement: The EntityPath is null. An EntityPath is required to save or update an InfoNodeElement.");
+    }
+
+    getTextEnvelopeDAO().saveOrUpdateTextEnvelopeData(entityPath, new TextEnvelopeDataWriter() {
+      @Override
+      public void writeData(OutputStream out) throws IOException {
+        IOUtils.copy(data, out);
+      }
+    });
+    fireInfoNodeChanged(entityPath);
+  }
+
   @Override
   public void saveOrUpdateRawData(EntityPath entityPath, String data) {
     if (entityPath == null) {
@@ -274,6 +522,80 @@ public abstract class AbstractInfoNodeService implements InfoNodeService, Initia
     } else {
       getTextEnvelopeDAO().save(domainObject);
     }
+    fireInfoNodeChanged(entityPath);
+  }
+
+  @Override
+  public void addInfoNodeServiceListener(InfoNodeServiceListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeInfoNodeServiceListener(InfoNodeServiceListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Serialize the given InfoNodeElement (pretty-printed) directly to the data store, creating or overwriting the entity
+   * at its EntityPath, and notify the listeners.
+   */
+  protected void writeInfoNode(final InfoNodeElement infoNodeElement) {
+    getTextEnvelopeDAO().saveOrUpdateTextEnvelopeData(infoNodeElement.getEntityPath(), new TextEnvelopeDataWriter() {
+      @Override
+      public void writeData(OutputStream out) throws IOException {
+        infoNodeElement.writeFormatted(out);
+      }
+    });
+    fireInfoNodeChanged(infoNodeElement.getEntityPath());
+  }
+
+  /** Return an iterator that parses each of the given models, in order, using up to "loadThreads" threads. */
+  protected Iterator<InfoNodeElement> iterateTextEnvelopes(final List<? extends TextEnvelope> models) {
+    return new OrderedLoadIterator<TextEnvelope>(models.iterator()) {
+      @Override
+      protected InfoNodeElement load(TextEnvelope infoNodeModel) throws Exception {
+        return getSaxInfoNodeBuilder(false).buildInfoNode(infoNodeModel.getData(), createFilterChain());
+      }
+    };
+  }
+
+  private void shutdownLoadExecutor() {
+    ExecutorService executor = loadExecutor;
+
+    loadExecutor = null;
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Notify each registered listener that the entity at the given entityPath has changed. A failing listener does not affect the others. If
+   * the TextEnvelopeDAO is a {@link TransactionalDAO}, the listeners are notified after the calling thread's transaction is committed (so
+   * they don't re-read the entity before the change is visible).
+   */
+  protected void fireInfoNodeChanged(final EntityPath entityPath) {
+    TextEnvelopeDAO dao = getTextEnvelopeDAO();
+
+    if (dao instanceof TransactionalDAO) {
+      ((TransactionalDAO)dao).runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          notifyInfoNodeChanged(entityPath);
+        }
+      });
+    } else {
+      notifyInfoNodeChanged(entityPath);
+    }
+  }
+
+  private void notifyInfoNodeChanged(EntityPath entityPath) {
+    for (InfoNodeServiceListener listener : listeners) {
+      try {
+        listener.infoNodeChanged(entityPath);
+      } catch (RuntimeException e) {
+        logger.error("InfoNodeServiceListener failed for entity path: " + entityPath, e);
+      }
+    }
   }
 
   @Override
@@ -20,6 +20,7 @@ import com.thruzero.common.core.locator.RegistryLocatorStrategy.LocatorLogHelper
 import com.thruzero.common.core.locator.ServiceLocator;
 import com.thruzero.common.core.service.Service;
 import com.thruzero.common.core.service.impl.ServiceRegistry;
+import com.thruzero.domain.locator.SettingsInitializationStrategy;
 import com.thruzero.domain.service.MailService;
 import com.thruzero.domain.service.PreferenceService;
 import com.thruzero.domain.service.RssFeedService;
@@ -56,4 +57,11 @@ public final class DomainServiceRegistry extends ServiceRegistry {
     ServiceLocator.getRegistry().registerInterface(RssFeedService.class, SimpleRssFeedService.class);
   }
 
+  /** Clears the locator registry and bindings, plus any settings preloaded to initialize them. */
+  @Override
+  public void reset() {
+    super.reset();
+    SettingsInitializationStrategy.reset();
+  }
+
 }
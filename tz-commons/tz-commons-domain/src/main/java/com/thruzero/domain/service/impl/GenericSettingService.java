@@ -15,8 +15,10 @@
  */
 package com.thruzero.domain.service.impl;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -105,6 +107,13 @@ public final class GenericSettingService implements SettingService {
     return result;
   }
 
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = settingDAO.getSettings(contexts);
+
+    return result;
+  }
+
   @Override
   public void saveOrUpdatSetting(final Setting setting) {
     settingDAO.saveOrUpdate(setting);
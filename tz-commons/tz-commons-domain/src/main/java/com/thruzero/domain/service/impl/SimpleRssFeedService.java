@@ -17,7 +17,12 @@
 package com.thruzero.domain.service.impl;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -25,11 +30,25 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang3.CharEncoding;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 
@@ -41,7 +60,15 @@ import com.sun.syndication.feed.synd.SyndFeed;
 import com.sun.syndication.feed.synd.SyndFeedImpl;
 import com.sun.syndication.io.SyndFeedInput;
 import com.sun.syndication.io.SyndFeedOutput;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.reflection.Sun14ReflectionProvider;
+import com.thruzero.common.core.bookmarks.InitializationParameterKeysBookmark;
 import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.locator.Initializable;
+import com.thruzero.common.core.locator.InitializationStrategy;
+import com.thruzero.common.core.locator.LocatorUtils;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.security.MessageDigestHelper;
 import com.thruzero.common.core.utils.DateTimeUtilsExt;
 import com.thruzero.common.core.utils.LogUtils;
 import com.thruzero.common.core.utils.XmlUtils;
@@ -50,139 +77,719 @@ import com.thruzero.domain.model.RssFeed.NewsEntry;
 import com.thruzero.domain.service.RssFeedService;
 
 /**
- * Implementation of RssFeedService that reads RSS feeds from various news sources plus writes/publishes feeds 
+ * Implementation of RssFeedService that reads RSS feeds from various news sources plus writes/publishes feeds
  * generated from clients of this service.
  * <p>
  * The requested RSS feeds will be read and cached locally, so that subsequent requests return the cached results.
- * Each feed in the cache will be refreshed according to its refresh rate.
+ * Each feed in the cache will be refreshed according to its refresh rate. There are two refresh modes:
+ * <ul>
+ * <li>inline (default) - an expired feed is read again by the first request that finds it expired (other requests
+ * receive the existing feed until the refresh completes).</li>
+ * <li>scheduled - feeds are never read on the request thread. A scheduler periodically looks for feeds that are about
+ * to expire and refreshes them ahead of time, using a bounded pool of worker threads (with a limit on the number of
+ * concurrent reads per host). Requests always receive the cached feed, even if it's stale, and a feed that fails to
+ * refresh keeps its last good content and is retried with a jittered, exponential backoff.</li>
+ * </ul>
+ * In both modes, a refresh is a conditional request (using the ETag and Last-Modified headers of the previous
+ * response), so an unchanged feed costs a 304 response and isn't parsed again. If a cache directory is configured,
+ * each feed that is read successfully is also saved to that directory and loaded again when the service is
+ * initialized, so a restart doesn't need to read every feed again.
+ * <p>
+ * Following is an example initialization using the config file (see {@link SimpleRssFeedServiceInitParamKeys} for
+ * details and default values):
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.domain.service.impl.SimpleRssFeedService">
+ *     <entry key="refreshMode" value="scheduled" />
+ *     <entry key="refreshThreads" value="4" />
+ *     <entry key="maxFetchesPerHost" value="2" />
+ *     <entry key="scanIntervalInSeconds" value="60" />
+ *     <entry key="refreshLeadTimeInSeconds" value="300" />
+ *     <entry key="retryBaseDelayInSeconds" value="60" />
+ *     <entry key="retryMaxDelayInSeconds" value="14400" />
+ *     <entry key="idleTimeoutInHours" value="24" />
+ *     <entry key="cacheDirectory" value="/var/cache/rss-feeds" />
+ *   </section>
+ * }
+ * </pre>
  *
  * @author George Norman
  */
-public class SimpleRssFeedService implements RssFeedService {
+public class SimpleRssFeedService implements RssFeedService, Initializable {
   private static final Logger logger = Logger.getLogger(SimpleRssFeedService.class);
 
-  // TODO-p1(george). Should cache be saved to file?
-  private final Map<String, RssFeed> feedCache = new HashMap<String, RssFeed>();
-  
-  public SimpleRssFeedService() {
-    logger.debug(LogUtils.getObjectCreationMessage(this));
+  /** Feeds are read on the request thread, when they expire. */
+  public static final String INLINE_REFRESH_MODE = "inline";
+
+  /** Feeds are read ahead of expiry by a background scheduler; requests always receive the cached feed. */
+  public static final String SCHEDULED_REFRESH_MODE = "scheduled";
+
+  private static final String REFRESH_IN_PROGRESS_STATUS = "Refresh is in progress...";
+
+  private final ConcurrentMap<String, FeedEntry> feedCache = new ConcurrentHashMap<String, FeedEntry>();
+
+  private volatile FeedRefreshScheduler refreshScheduler; // null for the inline refresh mode
+  private volatile FeedFileStore feedStore; // null if the feed cache isn't persisted
+  private final AtomicLong notModifiedCount = new AtomicLong();
+
+  // ------------------------------------------------
+  // SimpleRssFeedServiceInitParamKeys
+  // ------------------------------------------------
+
+  /**
+   * Initialization parameter keys defined for SimpleRssFeedService. All keys except REFRESH_MODE and CACHE_DIRECTORY
+   * apply only to the scheduled refresh mode.
+   */
+  @InitializationParameterKeysBookmark
+  public interface SimpleRssFeedServiceInitParamKeys extends InitializableParameterKeys {
+    /** The section to use when loading the parameters (e.g., config file section, settings context, etc) */
+    String SOURCE_SECTION = SimpleRssFeedService.class.getName();
+
+    /** The key that defines how feeds are refreshed: "refreshMode" ("inline" or "scheduled"; default is "inline"). */
+    String REFRESH_MODE = "refreshMode";
+
+    /** The key that defines the number of threads used to read feeds: "refreshThreads" (default is 4). */
+    String REFRESH_THREADS = "refreshThreads";
+
+    /** The key that defines the maximum number of feeds read concurrently from a single host: "maxFetchesPerHost" (default is 2). */
+    String MAX_FETCHES_PER_HOST = "maxFetchesPerHost";
+
+    /** The key that defines how often the scheduler looks for feeds to refresh: "scanIntervalInSeconds" (default is 60; 0 disables the scan). */
+    String SCAN_INTERVAL_IN_SECONDS = "scanIntervalInSeconds";
+
+    /** The key that defines how long before its refresh point a feed is refreshed: "refreshLeadTimeInSeconds" (default is 300). */
+    String REFRESH_LEAD_TIME_IN_SECONDS = "refreshLeadTimeInSeconds";
+
+    /** The key that defines the delay before the first retry of a failing feed: "retryBaseDelayInSeconds" (default is 60). */
+    String RETRY_BASE_DELAY_IN_SECONDS = "retryBaseDelayInSeconds";
+
+    /** The key that defines the maximum delay between retries of a failing feed: "retryMaxDelayInSeconds" (default is 4 hours). */
+    String RETRY_MAX_DELAY_IN_SECONDS = "retryMaxDelayInSeconds";
+
+    /** The key that defines how long a feed is kept (and refreshed) after it was last requested: "idleTimeoutInHours" (default is 24). */
+    String IDLE_TIMEOUT_IN_HOURS = "idleTimeoutInHours";
+
+    /** The key that defines the directory where the feed cache is saved: "cacheDirectory" (default is empty - the cache isn't saved). */
+    String CACHE_DIRECTORY = "cacheDirectory";
   }
 
-  // TODO-p1(george). Add support for multiple users (so every user can have their own title, refresh-rate, etc).
-  @Override
-  public RssFeed readRssFeed(int maxEntries, String feedUrl, int refreshRateInHours, boolean includeImage) {
-    RssFeed result;
-    boolean feedNeedsRefresh = false;
-    
-    // block just long enough to get the existing feed from the cache or create and add a new one if refresh is required
-    synchronized(feedCache) {
-      result = feedCache.get(feedUrl);
-
-      // if node not found or the refresh point has been exceeded, then it's time to refresh this node.
-      if (result == null || result.getRefreshPoint() < System.currentTimeMillis()) {
-        feedNeedsRefresh = true;
-
-        // allow 3-minutes to refresh this feed (if timeouts are working properly, then the feed should be refreshed in about 9-seconds, or else fail out).
-        long refreshPoint = TimeUnit.MINUTES.toMillis(3) + System.currentTimeMillis();
-        if (result == null) {
-          // create new empty feed for refresh
-          result = new RssFeed(feedUrl, null, null, refreshPoint, "Refresh is in progress...");
-        } else {
-          // use existing feed, for other users, until the latest feed content is loaded
-          result = new RssFeed(result, refreshPoint);
+  // ------------------------------------------------
+  // FeedEntry
+  // ------------------------------------------------
+
+  /** A cached feed, plus the state used to refresh it. */
+  private static final class FeedEntry {
+    private final String feedUrl;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile RssFeed feed;
+    private volatile boolean hasContent; // true, once the feed was read successfully
+    private volatile long nextRefreshTime;
+    private volatile int failureCount;
+    private volatile long lastRequestTime;
+
+    // the most recently requested read options
+    private volatile int maxEntries;
+    private volatile int refreshRateInHours;
+    private volatile boolean includeImage;
+
+    public FeedEntry(String feedUrl) {
+      this.feedUrl = feedUrl;
+      this.feed = new RssFeed(feedUrl, null, null, 0, REFRESH_IN_PROGRESS_STATUS);
+    }
+
+    public boolean isRefreshDue(long now) {
+      return nextRefreshTime <= now;
+    }
+  }
+
+  // ------------------------------------------------
+  // PersistedFeed
+  // ------------------------------------------------
+
+  /** The state of a cached feed that is saved to the cache directory. */
+  private static final class PersistedFeed {
+    private RssFeed feed;
+    private int maxEntries;
+    private int refreshRateInHours;
+    private boolean includeImage;
+  }
+
+  // ------------------------------------------------
+  // FeedFileStore
+  // ------------------------------------------------
+
+  /**
+   * Saves each cached feed as an XML file (using XStream), named by the MD5 hash of the feed URL. Files are written to a
+   * temporary file first and then renamed, so a crash never leaves a partially written feed behind.
+   */
+  private static final class FeedFileStore {
+    private static final String FILE_EXTENSION = ".feed.xml";
+
+    private final File directory;
+    private final XStream xstream; // XStream is thread safe
+
+    public FeedFileStore(File directory) {
+      this.directory = directory;
+
+      // RssFeed and NewsEntry are immutable (no no-args constructors), so don't let XStream guess the reflection provider
+      xstream = new XStream(new Sun14ReflectionProvider());
+      xstream.alias("persistedFeed", PersistedFeed.class);
+      xstream.alias("rssFeed", RssFeed.class);
+      xstream.alias("newsEntry", NewsEntry.class);
+
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        logger.error("* ERROR: RSS feed cache directory could not be created: " + directory.getAbsolutePath());
+      }
+    }
+
+    public List<PersistedFeed> loadAll() {
+      List<PersistedFeed> result = new ArrayList<PersistedFeed>();
+      File[] files = directory.listFiles();
+
+      if (files != null) {
+        for (File file : files) {
+          if (file.getName().endsWith(FILE_EXTENSION)) {
+            try {
+              result.add(load(file));
+            } catch (Exception e) {
+              logger.warn("* WARNING: Ignoring unreadable RSS feed cache file: " + file.getAbsolutePath() + " (" + e + ")");
+              file.delete();
+            }
+          }
         }
-        feedCache.put(feedUrl, result);
-      }
-    }
-
-    // refresh node, if needed, by connecting to RSS feed end-point and fetching the latest data.
-    if (feedNeedsRefresh) {
-      HttpURLConnection connection = null;
-      BufferedInputStream feedInputStream = null;
-      
-      try {        
-        URL feedSource = new URL(feedUrl);
-        HttpURLConnection.setFollowRedirects(true);
-        connection = (HttpURLConnection)feedSource.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setAllowUserInteraction(false);
-        connection.setConnectTimeout(3000);
-        connection.setReadTimeout(6000);
-        connection.connect();
-        
-        SyndFeedInput input = new SyndFeedInput();
-        feedInputStream = new BufferedInputStream(connection.getInputStream(), 65536);
-        Document document = XmlUtils.createDocument(feedInputStream);
-        SyndFeed feed = input.build(document);
-        feedInputStream.close();
-        connection.disconnect();
-        //SyndFeed feed = input.build(new XmlReader(connection.getInputStream()));
-
-        @SuppressWarnings("unchecked")
-        List<SyndEntry> syndEntries = feed.getEntries();
-        List<NewsEntry> newsEntries = new ArrayList<NewsEntry>();
-        int count = 0;
-
-        for (SyndEntry syndEntry : syndEntries) {
-          String description = syndEntry.getDescription() == null ? "" : syndEntry.getDescription().getValue();
-          newsEntries.add(new NewsEntry(syndEntry.getTitle(), syndEntry.getLink(), description, includeImage));
-          if (++count >= maxEntries) {
-            break;
+      }
+
+      return result;
+    }
+
+    public void save(PersistedFeed persistedFeed) {
+      File file = getFile(persistedFeed.feed.getFeedUrl());
+      File tempFile = new File(directory, file.getName() + ".tmp");
+
+      try {
+        OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tempFile), CharEncoding.UTF_8);
+        try {
+          xstream.toXML(persistedFeed, writer);
+        } finally {
+          writer.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+          // some platforms won't rename onto an existing file
+          file.delete();
+          if (!tempFile.renameTo(file)) {
+            throw new IOException("could not rename " + tempFile.getAbsolutePath());
+          }
+        }
+      } catch (IOException e) {
+        logger.error("* ERROR: Failed to save RSS feed to the cache directory: " + persistedFeed.feed.getFeedUrl(), e);
+        tempFile.delete();
+      }
+    }
+
+    public void delete(String feedUrl) {
+      getFile(feedUrl).delete();
+    }
+
+    public void deleteAll() {
+      File[] files = directory.listFiles();
+
+      if (files != null) {
+        for (File file : files) {
+          if (file.getName().endsWith(FILE_EXTENSION)) {
+            file.delete();
           }
         }
+      }
+    }
+
+    private PersistedFeed load(File file) throws IOException {
+      InputStreamReader reader = new InputStreamReader(new FileInputStream(file), CharEncoding.UTF_8);
+
+      try {
+        return (PersistedFeed)xstream.fromXML(reader);
+      } finally {
+        reader.close();
+      }
+    }
+
+    private File getFile(String feedUrl) {
+      return new File(directory, MessageDigestHelper.getInstance().encodeAsMd5Hex(feedUrl.getBytes()) + FILE_EXTENSION);
+    }
+  }
+
+  // ------------------------------------------------
+  // RssFeedThreadFactory
+  // ------------------------------------------------
+
+  private static final class RssFeedThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public RssFeedThreadFactory(String namePrefix) {
+      this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ------------------------------------------------
+  // FeedRefreshScheduler
+  // ------------------------------------------------
+
+  /**
+   * Periodically scans the feed cache and refreshes (on a bounded pool of worker threads) every feed that is about to
+   * expire or whose retry delay has passed.
+   */
+  private final class FeedRefreshScheduler {
+    private final ScheduledExecutorService scanExecutor;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+    private final Random random = new Random();
+
+    private final int maxFetchesPerHost;
+    private final long refreshLeadTime;
+    private final long retryBaseDelay;
+    private final long retryMaxDelay;
+    private final long idleTimeout;
 
-        long refreshPoint = refreshRateInHours * TimeUnit.HOURS.toMillis(1) + System.currentTimeMillis(); // next time to refresh the feed
-        result = new RssFeed(feedUrl, feed.getPublishedDate(), newsEntries, refreshPoint, "");
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
 
-        synchronized(feedCache) {
-          feedCache.put(feedUrl, result);
+    public FeedRefreshScheduler(StringMap initParams) {
+      int refreshThreads = Math.max(1, initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.REFRESH_THREADS).getIntValue(4));
+      long scanInterval = TimeUnit.SECONDS.toMillis(initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.SCAN_INTERVAL_IN_SECONDS).getLongValue(60));
+
+      maxFetchesPerHost = Math.max(1, initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.MAX_FETCHES_PER_HOST).getIntValue(2));
+      refreshLeadTime = TimeUnit.SECONDS.toMillis(initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.REFRESH_LEAD_TIME_IN_SECONDS).getLongValue(300));
+      retryBaseDelay = TimeUnit.SECONDS.toMillis(initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.RETRY_BASE_DELAY_IN_SECONDS).getLongValue(60));
+      retryMaxDelay = Math.max(retryBaseDelay,
+          TimeUnit.SECONDS.toMillis(initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.RETRY_MAX_DELAY_IN_SECONDS).getLongValue(TimeUnit.MILLISECONDS.toSeconds(DEFAULT_RETRY_DELAY))));
+      idleTimeout = TimeUnit.HOURS.toMillis(initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.IDLE_TIMEOUT_IN_HOURS).getLongValue(24));
+
+      // the queue holds at most one task per feed (see submitRefresh), so it only needs to absorb bursts of new feeds
+      refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(256), new RssFeedThreadFactory("rss-feed-refresh-"));
+      refreshExecutor.allowCoreThreadTimeOut(true);
+
+      scanExecutor = Executors.newSingleThreadScheduledExecutor(new RssFeedThreadFactory("rss-feed-scheduler-"));
+      if (scanInterval > 0) {
+        scanExecutor.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              refreshDueFeeds();
+            } catch (RuntimeException e) {
+              logger.error("* ERROR: RSS feed refresh scan failed.", e);
+            }
+          }
+        }, scanInterval, scanInterval, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    public void refreshDueFeeds() {
+      long now = System.currentTimeMillis();
+
+      for (Iterator<FeedEntry> iter = feedCache.values().iterator(); iter.hasNext();) {
+        FeedEntry entry = iter.next();
+
+        if (idleTimeout > 0 && now - entry.lastRequestTime > idleTimeout) {
+          iter.remove(); // nobody reads this feed anymore
+          FeedFileStore store = feedStore;
+          if (store != null) {
+            store.delete(entry.feedUrl);
+          }
+        } else if (entry.isRefreshDue(now)) {
+          submitRefresh(entry);
         }
+      }
+    }
+
+    /**
+     * Refresh the given entry on a worker thread, unless it's already being refreshed or the limit for its host has
+     * been reached (in which case, it remains due and is picked up by the next scan).
+     */
+    public void submitRefresh(final FeedEntry entry) {
+      if (!entry.refreshing.compareAndSet(false, true)) {
+        return;
+      }
+
+      final Semaphore permits = getHostPermits(entry.feedUrl);
+      if (!permits.tryAcquire()) {
+        entry.refreshing.set(false);
+        deferredCount.incrementAndGet();
+        return;
+      }
+
+      try {
+        refreshExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (refreshFeedEntry(entry)) {
+                refreshCount.incrementAndGet();
+              } else {
+                failedCount.incrementAndGet();
+              }
+            } finally {
+              permits.release();
+              entry.refreshing.set(false);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        permits.release();
+        entry.refreshing.set(false);
+        deferredCount.incrementAndGet();
+      }
+    }
+
+    /** Return the time, before the refresh point of a successfully read feed, to refresh it. */
+    public long getRefreshLeadTime() {
+      return refreshLeadTime;
+    }
+
+    /**
+     * Return the delay before the next attempt to read a feed that failed failureCount times in a row: an exponential
+     * backoff (capped at retryMaxDelay), where the second half of the delay is random, so failing feeds don't retry in
+     * lockstep.
+     */
+    public long getRetryDelay(int failureCount) {
+      long delay = retryBaseDelay << Math.min(Math.max(failureCount - 1, 0), 20);
+
+      delay = Math.min(delay, retryMaxDelay);
+
+      return delay / 2 + (long)(random.nextDouble() * (delay / 2));
+    }
+
+    public void shutdown() {
+      scanExecutor.shutdownNow();
+      refreshExecutor.shutdownNow();
+    }
+
+    private Semaphore getHostPermits(String feedUrl) {
+      String host;
+
+      try {
+        host = new URL(feedUrl).getHost();
       } catch (MalformedURLException e) {
-        // on feed error, don't try again for another N-hours
-        result = createErrorFeed(feedUrl, "RSS Feed URL is malformed: " + feedUrl);
-        synchronized(feedCache) {
-          feedCache.put(feedUrl, result);
+        host = feedUrl;
+      }
+
+      Semaphore result = hostPermits.get(host);
+      if (result == null) {
+        Semaphore permits = new Semaphore(maxFetchesPerHost);
+
+        result = hostPermits.putIfAbsent(host, permits);
+        if (result == null) {
+          result = permits;
         }
-      } catch (SocketTimeoutException e) {
-        // on feed error, don't try again for another N-hours
-        result = createErrorFeed(feedUrl, "RSS Feed could not be read: "+ e.getClass().getSimpleName() + " [using url: " + feedUrl + "]" );
-        synchronized(feedCache) {
-          feedCache.put(feedUrl, result);
+      }
+
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "FeedRefreshScheduler[feeds=" + feedCache.size() + ", active=" + refreshExecutor.getActiveCount() + ", queueDepth=" + refreshExecutor.getQueue().size() + ", refreshed="
+          + refreshCount.get() + ", failed=" + failedCount.get() + ", deferred=" + deferredCount.get() + "]";
+    }
+  }
+
+  // ============================================================================
+  // SimpleRssFeedService
+  // ============================================================================
+
+  public SimpleRssFeedService() {
+    logger.debug(LogUtils.getObjectCreationMessage(this));
+  }
+
+  @Override
+  public void init(InitializationStrategy initStrategy) {
+    StringMap initParams = LocatorUtils.getInheritedParameters(initStrategy, this.getClass(), RssFeedService.class);
+    String refreshMode = initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.REFRESH_MODE).getStringValue(INLINE_REFRESH_MODE);
+
+    shutdownRefreshScheduler();
+    if (SCHEDULED_REFRESH_MODE.equalsIgnoreCase(refreshMode)) {
+      refreshScheduler = new FeedRefreshScheduler(initParams);
+      logger.info("RSS feeds will be refreshed by a background scheduler.");
+    } else if (!INLINE_REFRESH_MODE.equalsIgnoreCase(refreshMode)) {
+      logger.warn("* WARNING: Unknown RSS feed refresh mode '" + refreshMode + "'; using inline refresh.");
+    }
+
+    String cacheDirectory = initParams.getValueTransformer(SimpleRssFeedServiceInitParamKeys.CACHE_DIRECTORY).getStringValue("");
+    if (StringUtils.isEmpty(cacheDirectory)) {
+      feedStore = null;
+    } else {
+      feedStore = new FeedFileStore(new File(cacheDirectory));
+      loadPersistedFeeds();
+    }
+  }
+
+  @Override
+  public void reset() {
+    shutdownRefreshScheduler();
+    feedCache.clear();
+  }
+
+  // TODO-p1(george). Add support for multiple users (so every user can have their own title, refresh-rate, etc).
+  @Override
+  public RssFeed readRssFeed(int maxEntries, String feedUrl, int refreshRateInHours, boolean includeImage) {
+    long now = System.currentTimeMillis();
+    FeedEntry entry = feedCache.get(feedUrl);
+
+    if (entry == null) {
+      FeedEntry newEntry = new FeedEntry(feedUrl);
+
+      entry = feedCache.putIfAbsent(feedUrl, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+    entry.maxEntries = maxEntries;
+    entry.refreshRateInHours = refreshRateInHours;
+    entry.includeImage = includeImage;
+    entry.lastRequestTime = now;
+
+    if (entry.isRefreshDue(now)) {
+      FeedRefreshScheduler scheduler = refreshScheduler;
+
+      if (scheduler == null) {
+        // inline: the first request to find the feed expired, reads it; other requests use the existing feed until the latest content is loaded
+        if (entry.refreshing.compareAndSet(false, true)) {
+          try {
+            refreshFeedEntry(entry);
+          } finally {
+            entry.refreshing.set(false);
+          }
         }
+      } else if (!entry.hasContent) {
+        // new (or never successfully read) feed - don't wait for the next scan; the scheduler ignores the request if a refresh is already running
+        scheduler.submitRefresh(entry);
+      }
+    }
+
+    return entry.feed;
+  }
+
+  /** Return true if feeds are refreshed by a background scheduler (i.e., never on the request thread). */
+  public boolean isScheduledRefreshMode() {
+    return refreshScheduler != null;
+  }
+
+  /**
+   * Refresh, in the background, every cached feed that is due for refresh. This is called periodically by the
+   * scheduler; it does nothing when using the inline refresh mode.
+   */
+  public void refreshDueFeeds() {
+    FeedRefreshScheduler scheduler = refreshScheduler;
+
+    if (scheduler != null) {
+      scheduler.refreshDueFeeds();
+    }
+  }
+
+  /**
+   * Read the feed from its source and update the given entry. If the read fails and the entry has content from a
+   * previous read, then the stale content is kept when using the scheduled refresh mode; otherwise, an error feed
+   * replaces it. Return true if the feed was read successfully.
+   */
+  private boolean refreshFeedEntry(FeedEntry entry) {
+    FeedRefreshScheduler scheduler = refreshScheduler;
+    boolean result;
+
+    try {
+      RssFeed cachedFeed = entry.hasContent && StringUtils.isEmpty(entry.feed.getErrorStatus()) ? entry.feed : null;
+      RssFeed feed = fetchRssFeed(entry.maxEntries, entry.feedUrl, entry.refreshRateInHours, entry.includeImage, cachedFeed);
+
+      entry.feed = feed;
+      entry.hasContent = true;
+      entry.failureCount = 0;
+      entry.nextRefreshTime = getNextRefreshTime(feed, scheduler);
+      result = true;
+
+      FeedFileStore store = feedStore;
+      if (store != null) {
+        PersistedFeed persistedFeed = new PersistedFeed();
+
+        persistedFeed.feed = feed;
+        persistedFeed.maxEntries = entry.maxEntries;
+        persistedFeed.refreshRateInHours = entry.refreshRateInHours;
+        persistedFeed.includeImage = entry.includeImage;
+        store.save(persistedFeed);
+      }
+    } catch (Exception e) {
+      int failureCount = entry.failureCount + 1; // only one thread refreshes a given entry at a time
+      long retryDelay = scheduler == null ? DEFAULT_RETRY_DELAY : scheduler.getRetryDelay(failureCount);
+
+      entry.failureCount = failureCount;
+      entry.nextRefreshTime = System.currentTimeMillis() + retryDelay;
+      if (scheduler == null || !entry.hasContent) {
+        // on feed error, don't try again until the retry delay has passed
+        entry.feed = createErrorFeed(entry.feedUrl, createErrorMessage(entry.feedUrl, e), entry.nextRefreshTime);
+      }
+      if (e instanceof SocketTimeoutException) {
         logger.debug("** SocketTimeoutException occurred‎.");
-      } catch (Exception e) {
-        // on feed error, don't try again for another N-hours
-        result = createErrorFeed(feedUrl, "RSS Feed could not be read: "+ e.getClass().getSimpleName() + " [using url: " + feedUrl + "]" );
-        synchronized(feedCache) {
-          feedCache.put(feedUrl, result);
+      }
+      logger.debug("RSS feed could not be read (failure " + failureCount + ", next attempt in " + TimeUnit.MILLISECONDS.toSeconds(retryDelay) + " seconds): " + entry.feedUrl);
+      result = false;
+    }
+
+    return result;
+  }
+
+  /**
+   * Connect to the RSS feed end-point, fetch the latest data and return it as an RssFeed whose refresh point is
+   * refreshRateInHours from now. If cachedFeed is given, then a conditional request is made, using its ETag and
+   * Last-Modified values; if the source responds that the feed hasn't changed, then a copy of cachedFeed (with the new
+   * refresh point) is returned, without reading or parsing the feed.
+   *
+   * @param cachedFeed the last successfully read version of the feed (may be null).
+   */
+  protected RssFeed fetchRssFeed(int maxEntries, String feedUrl, int refreshRateInHours, boolean includeImage, RssFeed cachedFeed) throws Exception {
+    HttpURLConnection connection = null;
+    BufferedInputStream feedInputStream = null;
+
+    try {
+      URL feedSource = new URL(feedUrl);
+      HttpURLConnection.setFollowRedirects(true);
+      connection = (HttpURLConnection)feedSource.openConnection();
+      connection.setRequestMethod("GET");
+      connection.setAllowUserInteraction(false);
+      connection.setConnectTimeout(3000);
+      connection.setReadTimeout(6000);
+      if (cachedFeed != null) {
+        if (StringUtils.isNotEmpty(cachedFeed.getEntityTag())) {
+          connection.setRequestProperty("If-None-Match", cachedFeed.getEntityTag());
         }
-      } finally {
-        if (feedInputStream != null) {
-          try {
-            feedInputStream.close();
-          } catch (IOException e) {
-            logger.error("****** Failed to close RSS Feed InputStream: ", e);
-          }
+        if (StringUtils.isNotEmpty(cachedFeed.getLastModified())) {
+          connection.setRequestProperty("If-Modified-Since", cachedFeed.getLastModified());
+        }
+      }
+      connection.connect();
+
+      long refreshPoint = refreshRateInHours * TimeUnit.HOURS.toMillis(1) + System.currentTimeMillis(); // next time to refresh the feed
+
+      if (cachedFeed != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        notModifiedCount.incrementAndGet();
+
+        return new RssFeed(cachedFeed, refreshPoint);
+      }
+
+      SyndFeedInput input = new SyndFeedInput();
+      feedInputStream = new BufferedInputStream(connection.getInputStream(), 65536);
+      Document document = XmlUtils.createDocument(feedInputStream);
+      SyndFeed feed = input.build(document);
+      //SyndFeed feed = input.build(new XmlReader(connection.getInputStream()));
+
+      @SuppressWarnings("unchecked")
+      List<SyndEntry> syndEntries = feed.getEntries();
+      List<NewsEntry> newsEntries = new ArrayList<NewsEntry>();
+      int count = 0;
+
+      for (SyndEntry syndEntry : syndEntries) {
+        String description = syndEntry.getDescription() == null ? "" : syndEntry.getDescription().getValue();
+        newsEntries.add(new NewsEntry(syndEntry.getTitle(), syndEntry.getLink(), description, includeImage));
+        if (++count >= maxEntries) {
+          break;
         }
-        
-        if (connection != null) {
-          connection.disconnect();
+      }
+
+      return new RssFeed(feedUrl, feed.getPublishedDate(), newsEntries, refreshPoint, "", connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+    } finally {
+      if (feedInputStream != null) {
+        try {
+          feedInputStream.close();
+        } catch (IOException e) {
+          logger.error("****** Failed to close RSS Feed InputStream: ", e);
         }
       }
+
+      if (connection != null) {
+        connection.disconnect();
+      }
     }
+  }
 
-    return result;
+  /** Return the number of refreshes that were answered with a 304 (Not Modified) response. */
+  public long getNotModifiedCount() {
+    return notModifiedCount.get();
+  }
+
+  /** Add the feeds saved in the cache directory to the feed cache (feeds already in the cache are not replaced). */
+  private void loadPersistedFeeds() {
+    FeedRefreshScheduler scheduler = refreshScheduler;
+    long now = System.currentTimeMillis();
+    int count = 0;
+
+    for (PersistedFeed persistedFeed : feedStore.loadAll()) {
+      FeedEntry entry = new FeedEntry(persistedFeed.feed.getFeedUrl());
+
+      entry.feed = persistedFeed.feed;
+      entry.hasContent = true;
+      entry.nextRefreshTime = getNextRefreshTime(persistedFeed.feed, scheduler);
+      entry.lastRequestTime = now;
+      entry.maxEntries = persistedFeed.maxEntries;
+      entry.refreshRateInHours = persistedFeed.refreshRateInHours;
+      entry.includeImage = persistedFeed.includeImage;
+      if (feedCache.putIfAbsent(entry.feedUrl, entry) == null) {
+        count++;
+      }
+    }
+    logger.info("Loaded " + count + " RSS feeds from the cache directory.");
+  }
+
+  private long getNextRefreshTime(RssFeed feed, FeedRefreshScheduler scheduler) {
+    return scheduler == null ? feed.getRefreshPoint() : feed.getRefreshPoint() - scheduler.getRefreshLeadTime();
+  }
+
+  private String createErrorMessage(String feedUrl, Exception e) {
+    if (e instanceof MalformedURLException) {
+      return "RSS Feed URL is malformed: " + feedUrl;
+    }
+
+    return "RSS Feed could not be read: " + e.getClass().getSimpleName() + " [using url: " + feedUrl + "]";
   }
-  
-  private RssFeed createErrorFeed(String feedUrl, String errorMessage) {
-    RssFeed result = new RssFeed(feedUrl, null, null, DEFAULT_RETRY_DELAY + System.currentTimeMillis(), errorMessage);
-    
+
+  private RssFeed createErrorFeed(String feedUrl, String errorMessage, long refreshPoint) {
+    RssFeed result = new RssFeed(feedUrl, null, null, refreshPoint, errorMessage);
+
     return result;
   }
 
+  private void shutdownRefreshScheduler() {
+    FeedRefreshScheduler scheduler = refreshScheduler;
+
+    if (scheduler != null) {
+      refreshScheduler = null;
+      scheduler.shutdown();
+    }
+  }
+
   @Override
   public void clearReadCache() {
     feedCache.clear();
+
+    FeedFileStore store = feedStore;
+    if (store != null) {
+      store.deleteAll();
+    }
+  }
+
+  @Override
+  public String toString() {
+    FeedRefreshScheduler scheduler = refreshScheduler;
+
+    return getClass().getSimpleName() + "[" + (scheduler == null ? INLINE_REFRESH_MODE + ", feeds=" + feedCache.size() : scheduler) + "]";
   }
 
   @Override
@@ -0,0 +1,34 @@
+/*
+ *   Copyright 2012 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.store;
+
+import java.util.Iterator;
+
+/**
+ * An Iterator that streams persistent entities from a data store (e.g., a database cursor), instead of loading them all
+ * into memory. It holds data store resources until it's exhausted or closed, so clients that stop early must call
+ * {@code close()} (typically in a finally block). The entities are read-only: they're detached from the persistence
+ * context as they're returned, so changes made to them are not persisted automatically.
+ *
+ * @author George Norman
+ * @param <T> Type of Domain Object returned by the Iterator.
+ */
+public interface EntityIterator<T> extends Iterator<T> {
+
+  /** Release the data store resources held by this Iterator. Safe to call more than once. */
+  void close();
+
+}
@@ -0,0 +1,175 @@
+/*
+ *   Copyright 2012 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.thruzero.common.core.support.StrBuilderExt;
+
+/**
+ * An immutable, named query (the subset of HQL that is also valid JPQL), generated once by a typed {@link Builder} and
+ * then reused by every call of a DAO function. DAOs typically register their queries as static constants (i.e., once
+ * per entity type), so the query string isn't rebuilt on each call and the persistence provider's query plan cache
+ * (which is keyed by the query string) parses it only once.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * private static final QueryDefinition&lt;String&gt; GET_SETTING_VALUE = QueryDefinition.from(Setting.class, &quot;setting&quot;)
+ *     .select(&quot;value&quot;, String.class)
+ *     .whereEquals(&quot;context&quot;)
+ *     .whereEquals(&quot;name&quot;)
+ *     .build(&quot;Setting.getSettingValue&quot;);
+ * </pre>
+ *
+ * generates: "SELECT setting.value FROM Setting setting WHERE setting.context = :context AND setting.name = :name".
+ *
+ * @author George Norman
+ * @param <R> the type of each result returned by the query.
+ */
+public final class QueryDefinition<R> {
+  private final String name;
+  private final String queryString;
+  private final Class<R> resultType;
+
+  // ------------------------------------------------
+  // Builder
+  // ------------------------------------------------
+
+  /**
+   * A typed criteria builder for simple queries of a single entity: an optional single-property projection, a
+   * conjunction of equality (or IN, or greater-than) conditions, each bound to a named parameter, and an optional ordering.
+   */
+  public static final class Builder<R> {
+    private final String entityName;
+    private final String alias;
+    private Class<R> resultType;
+    private String selectProperty;
+    private final List<String> conditions = new ArrayList<String>();
+    private String orderByProperty;
+
+    private Builder(String entityName, String alias, Class<R> resultType) {
+      this.entityName = entityName;
+      this.alias = alias;
+      this.resultType = resultType;
+    }
+
+    /** Select only the given property (e.g., "value" or "id") instead of the entity; the entity is not hydrated. */
+    @SuppressWarnings("unchecked") // the builder is re-typed to the type of the selected property
+    public <V> Builder<V> select(String property, Class<V> propertyType) {
+      Builder<V> result = (Builder<V>)this;
+
+      result.selectProperty = property;
+      result.resultType = propertyType;
+
+      return result;
+    }
+
+    /** Add the condition "alias.property = :parameter", where the parameter is named after the last segment of the property path. */
+    public Builder<R> whereEquals(String property) {
+      return whereEquals(property, StringUtils.substringAfterLast("." + property, "."));
+    }
+
+    /** Add the condition "alias.property = :parameterName". */
+    public Builder<R> whereEquals(String property, String parameterName) {
+      conditions.add(alias + "." + property + " = :" + parameterName);
+
+      return this;
+    }
+
+    /** Add the condition "alias.property > :parameterName" (e.g., to read the next page of a keyset-paged query). */
+    public Builder<R> whereGreaterThan(String property, String parameterName) {
+      conditions.add(alias + "." + property + " > :" + parameterName);
+
+      return this;
+    }
+
+    /** Add the condition "alias.property IN (:parameterName)"; the parameter is bound to a collection. */
+    public Builder<R> whereIn(String property, String parameterName) {
+      conditions.add(alias + "." + property + " IN (:" + parameterName + ")");
+
+      return this;
+    }
+
+    /** Order the results by the given property (ascending). */
+    public Builder<R> orderBy(String property) {
+      this.orderByProperty = property;
+
+      return this;
+    }
+
+    /** Generate the query string and return the named QueryDefinition. */
+    public QueryDefinition<R> build(String name) {
+      StrBuilderExt query = new StrBuilderExt(200);
+
+      if (selectProperty != null) {
+        query.append("SELECT ", alias, ".", selectProperty, " ");
+      }
+      query.append("FROM ", entityName, " ", alias);
+
+      for (int i = 0; i < conditions.size(); i++) {
+        query.append(i == 0 ? " WHERE " : " AND ", conditions.get(i));
+      }
+
+      if (orderByProperty != null) {
+        query.append(" ORDER BY ", alias, ".", orderByProperty);
+      }
+
+      return new QueryDefinition<R>(name, query.toString(), resultType);
+    }
+  }
+
+  // ============================================================
+  // QueryDefinition
+  // ============================================================
+
+  private QueryDefinition(String name, String queryString, Class<R> resultType) {
+    this.name = name;
+    this.queryString = queryString;
+    this.resultType = resultType;
+  }
+
+  /** Start building a query of the given entity type (the entity name is the simple name of the type). */
+  public static <T> Builder<T> from(Class<T> entityType, String alias) {
+    return new Builder<T>(entityType.getSimpleName(), alias, entityType);
+  }
+
+  /** Start building a query of the entity with the given name (e.g., a configurable subclass of entityType). */
+  public static <T> Builder<T> from(String entityName, Class<T> entityType, String alias) {
+    return new Builder<T>(entityName, alias, entityType);
+  }
+
+  /** Return the name of the query (e.g., "Setting.getSettingValue"), used for diagnostics and SQL comments. */
+  public String getName() {
+    return name;
+  }
+
+  public String getQueryString() {
+    return queryString;
+  }
+
+  public Class<R> getResultType() {
+    return resultType;
+  }
+
+  @Override
+  public String toString() {
+    return name + ": " + queryString;
+  }
+}
@@ -42,6 +42,11 @@ public class SimpleMemoryStore<T extends Persistent> implements MemoryStore<T> {
     entityMap.put(entity.getId(), entity);
   }
 
+  @Override
+  public void persistAll(Map<Serializable, T> entities) {
+    entityMap.putAll(entities);
+  }
+
   @Override
   public T find(Serializable primaryKey) {
     return entityMap.get(primaryKey);
@@ -67,6 +72,11 @@ public class SimpleMemoryStore<T extends Persistent> implements MemoryStore<T> {
     entityMap.remove(entity.getId());
   }
 
+  @Override
+  public void removeAll(Collection<Serializable> primaryKeys) {
+    entityMap.keySet().removeAll(primaryKeys);
+  }
+
   @Override
   public void clear() {
     entityMap.clear();
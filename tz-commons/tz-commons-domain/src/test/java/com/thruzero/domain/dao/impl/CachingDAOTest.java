@@ -0,0 +1,392 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.thruzero.common.core.locator.InitializationException;
+import com.thruzero.common.core.locator.MapInitializationStrategy;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.common.core.support.KeyGen;
+import com.thruzero.common.core.utils.ClassUtils;
+import com.thruzero.common.core.utils.ClassUtils.ClassUtilsException;
+import com.thruzero.domain.dao.PreferenceDAO;
+import com.thruzero.domain.dao.SettingDAO;
+import com.thruzero.domain.dao.TransactionalDAO;
+import com.thruzero.domain.dao.impl.AbstractCachingDAO.CachingDAOInitParamKeys;
+import com.thruzero.domain.dao.mock.MockPreferenceDAO.PreferenceKeyGen;
+import com.thruzero.domain.dao.mock.MockSettingDAO.SettingKeyGen;
+import com.thruzero.domain.model.Preference;
+import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.store.SimpleMemoryStore;
+import com.thruzero.domain.test.support.AbstractDomainTestCase;
+
+/**
+ * Unit test for CachingSettingDAO and CachingPreferenceDAO.
+ *
+ * @author George Norman
+ */
+public class CachingDAOTest extends AbstractDomainTestCase {
+
+  // ------------------------------------------------
+  // CountingSettingDAO
+  // ------------------------------------------------
+
+  /**
+   * A memory based SettingDAO that counts the reads; listing a context can be disabled, to simulate a target that can't list, and the
+   * after-commit actions can be held, to simulate an active transaction.
+   */
+  public static final class CountingSettingDAO extends GenericMemoryDAO<Setting> implements SettingDAO, TransactionalDAO {
+    private final AtomicInteger getSettingCount = new AtomicInteger();
+    private final AtomicInteger getSettingsCount = new AtomicInteger();
+    private final List<String> bulkLoadedContexts = new ArrayList<String>();
+    private boolean listingSupported = true;
+    private List<Runnable> afterCommitActions; // null unless a transaction is simulated
+
+    private CountingSettingDAO() {
+      super(new SimpleMemoryStore<Setting>());
+    }
+
+    @Override
+    public void runAfterCommit(Runnable action) {
+      if (afterCommitActions == null) {
+        action.run();
+      } else {
+        afterCommitActions.add(action);
+      }
+    }
+
+    @Override
+    public boolean isExistingSetting(String context, String name) {
+      return getSetting(context, name) != null;
+    }
+
+    @Override
+    public Setting getSetting(String context, String name) {
+      getSettingCount.incrementAndGet();
+
+      return getByKey(((SettingKeyGen)getKeyGen()).createKey(context, name));
+    }
+
+    @Override
+    public String getSettingValue(String context, String name) {
+      return getSettingValue(context, name, null);
+    }
+
+    @Override
+    public String getSettingValue(String context, String name, String defaultValue) {
+      Setting result = getSetting(context, name);
+
+      return result == null ? defaultValue : result.getValue();
+    }
+
+    @Override
+    public List<? extends Setting> getSettings(String context) {
+      getSettingsCount.incrementAndGet();
+      if (!listingSupported) {
+        return null;
+      }
+
+      List<Setting> result = new ArrayList<Setting>();
+      for (Setting setting : getAll()) {
+        if (setting.getContext().equals(context)) {
+          result.add(setting);
+        }
+      }
+
+      return result;
+    }
+
+    @Override
+    public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+      Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+
+      bulkLoadedContexts.addAll(contexts);
+      for (String context : contexts) {
+        result.put(context, getSettings(context));
+      }
+
+      return result;
+    }
+
+    @Override
+    protected KeyGen<Setting> createKeyGen() {
+      return new SettingKeyGen();
+    }
+  }
+
+  // ------------------------------------------------
+  // CountingPreferenceDAO
+  // ------------------------------------------------
+
+  /** A memory based PreferenceDAO that can't list a context and counts the reads. */
+  public static final class CountingPreferenceDAO extends GenericMemoryDAO<Preference> implements PreferenceDAO {
+    private final AtomicInteger getPreferenceCount = new AtomicInteger();
+
+    private CountingPreferenceDAO() {
+      super(new SimpleMemoryStore<Preference>());
+    }
+
+    @Override
+    public boolean isExistingPreference(String owner, String context, String name) {
+      return getPreference(owner, context, name) != null;
+    }
+
+    @Override
+    public Preference getPreference(String owner, String context, String name) {
+      getPreferenceCount.incrementAndGet();
+
+      return getByKey(((PreferenceKeyGen)getKeyGen()).createKey(owner, context, name));
+    }
+
+    @Override
+    public String getPreferenceValue(String owner, String context, String name) {
+      return getPreferenceValue(owner, context, name, null);
+    }
+
+    @Override
+    public String getPreferenceValue(String owner, String context, String name, String defaultValue) {
+      Preference result = getPreference(owner, context, name);
+
+      return result == null ? defaultValue : result.getValue();
+    }
+
+    @Override
+    public List<? extends Preference> getPreferences(String owner, String context) {
+      return null;
+    }
+
+    @Override
+    protected KeyGen<Preference> createKeyGen() {
+      return new PreferenceKeyGen();
+    }
+  }
+
+  // ============================================================================
+  // CachingDAOTest
+  // ============================================================================
+
+  @Test
+  public void testBulkLoad() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+    dao.save(createSetting("contextA", "name1", "value1"));
+    dao.save(createSetting("contextA", "name2", "value2"));
+
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+    assertEquals("value2", dao.getSettingValue("contextA", "name2"));
+    assertNull(dao.getSetting("contextA", "bogus"));
+    assertFalse(dao.isExistingSetting("contextA", "bogus"));
+    assertEquals(2, dao.getSettings("contextA").size());
+    assertEquals(1, target.getSettingsCount.get());
+    assertEquals(0, target.getSettingCount.get());
+
+    // an empty context is cached too
+    assertEquals("default", dao.getSettingValue("contextB", "name1", "default"));
+    assertEquals("default", dao.getSettingValue("contextB", "name1", "default"));
+    assertEquals(2, target.getSettingsCount.get());
+  }
+
+  @Test
+  public void testBulkGetSettings() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+    dao.save(createSetting("contextA", "name1", "value1"));
+    dao.save(createSetting("contextC", "name1", "value3"));
+    dao.getSettings("contextA");
+
+    Map<String, List<? extends Setting>> settings = dao.getSettings(Arrays.asList("contextC", "contextA", "contextB"));
+    assertEquals(Arrays.asList("contextC", "contextA", "contextB"), new ArrayList<String>(settings.keySet()));
+    assertEquals("value3", settings.get("contextC").get(0).getValue());
+    assertEquals("value1", settings.get("contextA").get(0).getValue());
+    assertTrue(settings.get("contextB").isEmpty());
+    assertEquals(Arrays.asList("contextC", "contextB"), target.bulkLoadedContexts);
+
+    // the bulk loaded contexts are cached
+    assertEquals("value3", dao.getSettingValue("contextC", "name1"));
+    dao.getSettings(Arrays.asList("contextA", "contextB", "contextC"));
+    assertEquals(2, target.bulkLoadedContexts.size());
+  }
+
+  @Test
+  public void testPerKeyAndNegativeCaching() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+    target.listingSupported = false;
+    target.save(createSetting("contextA", "name1", "value1"));
+
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+    assertEquals(1, target.getSettingCount.get());
+
+    assertNull(dao.getSetting("contextA", "bogus"));
+    assertNull(dao.getSetting("contextA", "bogus"));
+    assertEquals(2, target.getSettingCount.get());
+
+    // a target that can't list a context returns null
+    assertNull(dao.getSettings("contextA"));
+  }
+
+  @Test
+  public void testWriteThroughInvalidation() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+    assertNull(dao.getSetting("contextA", "name1"));
+
+    // the negative entry is invalidated by the save
+    dao.saveOrUpdate(createSetting("contextA", "name1", "value1"));
+    Setting setting = dao.getSetting("contextA", "name1");
+    assertEquals("value1", setting.getValue());
+
+    // readers get a copy, so changes aren't visible until they're saved
+    setting.setValue("value2");
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+    dao.saveOrUpdate(setting);
+    assertEquals("value2", dao.getSettingValue("contextA", "name1"));
+
+    dao.delete(dao.getSetting("contextA", "name1"));
+    assertNull(dao.getSetting("contextA", "name1"));
+    assertEquals(4, target.getSettingsCount.get());
+  }
+
+  @Test
+  public void testInvalidationWaitsForCommit() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+    dao.save(createSetting("contextA", "name1", "value1"));
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+
+    // while the write is buffered, the cached context remains
+    target.afterCommitActions = new ArrayList<Runnable>();
+    Setting setting = dao.getSetting("contextA", "name1");
+    setting.setValue("value2");
+    dao.update(setting);
+    dao.saveAll(Arrays.asList(createSetting("contextA", "name2", "value2")));
+    assertEquals("value1", dao.getSettingValue("contextA", "name1"));
+    assertNull(dao.getSetting("contextA", "name2"));
+    assertEquals(2, target.afterCommitActions.size());
+
+    // "commit"
+    for (Runnable action : target.afterCommitActions) {
+      action.run();
+    }
+    target.afterCommitActions = null;
+    assertEquals("value2", dao.getSettingValue("contextA", "name1"));
+    assertEquals("value2", dao.getSettingValue("contextA", "name2"));
+  }
+
+  @Test
+  public void testInvalidationDoesNotCountLookups() {
+    CachingSettingDAO dao = createCachingSettingDAO(new StringMap());
+    dao.getSetting("contextA", "name1");
+    dao.getSetting("contextB", "name1");
+    long hitCount = dao.getCache().getHitCount();
+    long missCount = dao.getCache().getMissCount();
+
+    dao.saveOrUpdate(createSetting("contextA", "name1", "value1"));
+    assertEquals(hitCount, dao.getCache().getHitCount());
+    assertEquals(missCount, dao.getCache().getMissCount());
+    assertEquals(1, dao.getCache().size());
+  }
+
+  @Test
+  public void testMaxSize() {
+    StringMap initParams = new StringMap();
+    initParams.put(CachingDAOInitParamKeys.MAX_SIZE, "1");
+    CachingSettingDAO dao = createCachingSettingDAO(initParams);
+    CountingSettingDAO target = (CountingSettingDAO)dao.getTargetDAO();
+
+    dao.getSetting("contextA", "name1");
+    dao.getSetting("contextB", "name1");
+    dao.getSetting("contextA", "name1");
+    assertEquals(3, target.getSettingsCount.get());
+    assertEquals(1, dao.getCache().size());
+  }
+
+  @Test
+  public void testMissingTargetDAO() {
+    try {
+      CachingSettingDAO dao = createDAO(CachingSettingDAO.class);
+      dao.init(new MapInitializationStrategy(CachingSettingDAO.class.getName(), new StringMap()));
+      fail("Expected an InitializationException");
+    } catch (InitializationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testPreferencesByOwner() {
+    StringMap initParams = new StringMap();
+    initParams.put(CachingDAOInitParamKeys.TARGET_DAO, CountingPreferenceDAO.class.getName());
+    CachingPreferenceDAO dao = createDAO(CachingPreferenceDAO.class);
+    dao.init(new MapInitializationStrategy(CachingPreferenceDAO.class.getName(), initParams));
+    CountingPreferenceDAO target = (CountingPreferenceDAO)dao.getTargetDAO();
+    dao.save(new Preference("owner1", "contextA", "name1", "value1"));
+
+    assertEquals("value1", dao.getPreferenceValue("owner1", "contextA", "name1"));
+    assertTrue(dao.isExistingPreference("owner1", "contextA", "name1"));
+    assertNull(dao.getPreference("owner2", "contextA", "name1"));
+    assertNull(dao.getPreference("owner2", "contextA", "name1"));
+    assertEquals(2, target.getPreferenceCount.get());
+
+    dao.save(new Preference("owner2", "contextA", "name1", "value2"));
+    assertEquals("value2", dao.getPreferenceValue("owner2", "contextA", "name1"));
+    assertEquals("value1", dao.getPreferenceValue("owner1", "contextA", "name1"));
+    assertEquals(3, target.getPreferenceCount.get());
+  }
+
+  private static Setting createSetting(String context, String name, String value) {
+    Setting result = new Setting();
+
+    result.setContext(context);
+    result.setName(name);
+    result.setValue(value);
+
+    return result;
+  }
+
+  private static CachingSettingDAO createCachingSettingDAO(StringMap initParams) {
+    CachingSettingDAO result = createDAO(CachingSettingDAO.class);
+
+    initParams.put(CachingDAOInitParamKeys.TARGET_DAO, CountingSettingDAO.class.getName());
+    result.init(new MapInitializationStrategy(CachingSettingDAO.class.getName(), initParams));
+
+    return result;
+  }
+
+  /** Create the given caching DAO, via its private constructor (as the locator does). */
+  private static <T> T createDAO(Class<T> daoClass) {
+    try {
+      return ClassUtils.instanceFrom(daoClass);
+    } catch (ClassUtilsException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
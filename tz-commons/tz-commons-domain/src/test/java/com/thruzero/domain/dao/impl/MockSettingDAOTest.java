@@ -102,4 +102,14 @@ public class MockSettingDAOTest extends AbstractDomainTestCase {
     testHelper.doTestIsExistingSetting(DAOLocator.locate(SettingDAO.class));
   }
 
+  @Test
+  public void testGetSettings() {
+    testHelper.doTestGetSettings(DAOLocator.locate(SettingDAO.class));
+  }
+
+  @Test
+  public void testBatchWrites() {
+    testHelper.doTestBatchWrites(DAOLocator.locate(SettingDAO.class));
+  }
+
 }
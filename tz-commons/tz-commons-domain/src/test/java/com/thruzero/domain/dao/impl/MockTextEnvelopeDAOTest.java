@@ -91,6 +91,11 @@ public class MockTextEnvelopeDAOTest extends AbstractDomainTestCase {
     testHelper.doTestUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
   }
 
+  @Test
+  public void testStreamedData() throws Exception {
+    testHelper.doTestStreamedData(DAOLocator.locate(TextEnvelopeDAO.class));
+  }
+
   @Test
   public void testSaveOrUpdatePersistedNode() {
     testHelper.doTestSaveOrUpdatePersistedNode(DAOLocator.locate(TextEnvelopeDAO.class));
@@ -16,7 +16,11 @@
 package com.thruzero.domain.dao.mock;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
@@ -88,7 +92,26 @@ public final class MockSettingDAO extends GenericMemoryDAO<Setting> implements S
 
   @Override
   public List<? extends Setting> getSettings(String context) {
-    return null;
+    List<Setting> result = new ArrayList<Setting>();
+
+    for (Setting setting : getMemoryStore().getResultList()) {
+      if (setting.getContext().equals(context)) {
+        result.add(setting);
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+    Map<String, List<? extends Setting>> result = new LinkedHashMap<String, List<? extends Setting>>();
+
+    for (String context : contexts) {
+      result.put(context, getSettings(context));
+    }
+
+    return result;
   }
 
   @Override
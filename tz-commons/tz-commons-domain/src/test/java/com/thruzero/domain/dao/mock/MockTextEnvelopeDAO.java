@@ -15,6 +15,7 @@
  */
 package com.thruzero.domain.dao.mock;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.List;
 
@@ -22,7 +23,9 @@ import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.support.KeyGen;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
 import com.thruzero.domain.dao.impl.GenericMemoryDAO;
+import com.thruzero.domain.dao.impl.TextEnvelopeDataHelper;
 import com.thruzero.domain.model.TextEnvelope;
 import com.thruzero.domain.store.SimpleMemoryStore;
 
@@ -77,6 +80,17 @@ public final class MockTextEnvelopeDAO extends GenericMemoryDAO<TextEnvelope> im
     return getByKey(entityPath);
   }
 
+  /** Returns the data as a stream of the (in-memory) String; the data isn't streamed from the store. */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return TextEnvelopeDataHelper.getTextEnvelopeData(this, entityPath);
+  }
+
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter) {
+    TextEnvelopeDataHelper.saveOrUpdateTextEnvelopeData(this, entityPath, dataWriter);
+  }
+
   @Override
   protected KeyGen<TextEnvelope> createKeyGen() {
     return new TextEnvelopeKeyGen();
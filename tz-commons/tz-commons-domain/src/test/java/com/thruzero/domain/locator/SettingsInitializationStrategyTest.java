@@ -0,0 +1,83 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.locator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.thruzero.common.core.locator.ServiceLocator;
+import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.service.SettingService;
+import com.thruzero.domain.test.support.AbstractDomainTestCase;
+
+/**
+ * Unit test for SettingsInitializationStrategy.
+ *
+ * @author George Norman
+ */
+public class SettingsInitializationStrategyTest extends AbstractDomainTestCase {
+  private static final String SECTION_NAME = "com.thruzero.test.PreloadedService"; // see the LocatorWarmUp section of config.test.xml
+
+  @Test
+  public void testPreloadedSectionIsUsedOnce() {
+    SettingsInitializationStrategy strategy = new SettingsInitializationStrategy();
+    saveSetting("param1", "value1");
+
+    SettingsInitializationStrategy.preloadSections(Arrays.asList(SECTION_NAME, "com.thruzero.test.MissingService"));
+    saveSetting("param1", "value2");
+
+    // the first read is answered by the preloaded section; the next read gets the current settings
+    assertEquals("value1", strategy.getSectionAsStringMap(SECTION_NAME).get("param1"));
+    assertEquals("value2", strategy.getSectionAsStringMap(SECTION_NAME).get("param1"));
+    assertNull(strategy.getSectionAsStringMap("com.thruzero.test.MissingService"));
+  }
+
+  @Test
+  public void testResetDiscardsPreloadedSections() {
+    saveSetting("param1", "value1");
+    SettingsInitializationStrategy.preloadSections(Arrays.asList(SECTION_NAME));
+    saveSetting("param1", "value2");
+
+    SettingsInitializationStrategy.reset();
+    assertEquals("value2", new SettingsInitializationStrategy().getSectionAsStringMap(SECTION_NAME).get("param1"));
+  }
+
+  @Test
+  public void testLocatorWarmUpPreloadsSections() {
+    saveSetting("param1", "value1");
+    LocatorWarmUp.warmUp(1);
+    saveSetting("param1", "value2");
+
+    assertEquals("value1", new SettingsInitializationStrategy().getSectionAsStringMap(SECTION_NAME).get("param1"));
+  }
+
+  private void saveSetting(String name, String value) {
+    SettingService settingService = ServiceLocator.locate(SettingService.class);
+    Setting setting = settingService.getSetting(SECTION_NAME, name);
+
+    if (setting == null) {
+      setting = new Setting();
+      setting.setContext(SECTION_NAME);
+      setting.setName(name);
+    }
+    setting.setValue(value);
+    settingService.saveOrUpdatSetting(setting);
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.CharEncoding;
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.thruzero.common.core.locator.MapInitializationStrategy;
+import com.thruzero.common.core.map.StringMap;
+import com.thruzero.domain.model.RssFeed;
+import com.thruzero.domain.model.RssFeed.NewsEntry;
+import com.thruzero.domain.service.impl.SimpleRssFeedService.SimpleRssFeedServiceInitParamKeys;
+import com.thruzero.domain.test.support.AbstractDomainTestCase;
+
+/**
+ * Unit test for the inline and scheduled refresh modes of SimpleRssFeedService.
+ *
+ * @author George Norman
+ */
+public class SimpleRssFeedServiceTest extends AbstractDomainTestCase {
+  private static final String FEED_URL1 = "http://news.example.com/feed1.xml";
+  private static final String FEED_URL2 = "http://news.example.com/feed2.xml";
+  private static final String OTHER_HOST_FEED_URL = "http://other.example.com/feed.xml";
+
+  private static final String RSS_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+      "<rss version=\"2.0\"><channel><title>Test feed</title><link>http://thruzero.com/</link><description>Test</description>" +
+      "<item><title>News entry #1</title><link>http://thruzero.com/news1</link><description>Description #1</description></item>" +
+      "<item><title>News entry #2</title><link>http://thruzero.com/news2</link><description>Description #2</description></item>" +
+      "</channel></rss>";
+  private static final String ETAG = "\"v1\"";
+  private static final String LAST_MODIFIED = "Mon, 01 Jul 2013 12:00:00 GMT";
+
+  private TestRssFeedService service;
+  private SimpleRssFeedService httpService;
+  private HttpServer server;
+  private final AtomicInteger fullResponseCount = new AtomicInteger();
+  private final AtomicInteger notModifiedResponseCount = new AtomicInteger();
+
+  // ------------------------------------------------
+  // StubFeedHandler
+  // ------------------------------------------------
+
+  /** Serves RSS_DOCUMENT, or a 304 response if the request's If-None-Match header matches its ETag. */
+  private class StubFeedHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModifiedResponseCount.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        byte[] body = RSS_DOCUMENT.getBytes(CharEncoding.UTF_8);
+
+        fullResponseCount.incrementAndGet();
+        exchange.getResponseHeaders().add("Content-Type", "application/rss+xml");
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+      exchange.close();
+    }
+  }
+
+  // ------------------------------------------------
+  // TestRssFeedService
+  // ------------------------------------------------
+
+  /** Returns a feed with a single entry, whose title is the fetch count, instead of reading from the network. */
+  public static class TestRssFeedService extends SimpleRssFeedService {
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger maxActiveCount = new AtomicInteger();
+    private final List<String> fetchThreadNames = new ArrayList<String>();
+    private volatile CountDownLatch blocker;
+    private volatile boolean failing;
+
+    @Override
+    protected RssFeed fetchRssFeed(int maxEntries, String feedUrl, int refreshRateInHours, boolean includeImage, RssFeed cachedFeed) throws Exception {
+      int active = activeCount.incrementAndGet();
+
+      try {
+        synchronized (fetchThreadNames) {
+          fetchThreadNames.add(Thread.currentThread().getName());
+          maxActiveCount.set(Math.max(maxActiveCount.get(), active));
+        }
+
+        CountDownLatch latch = blocker;
+        if (latch != null) {
+          latch.await(5, TimeUnit.SECONDS);
+        }
+
+        int fetch = fetchCount.incrementAndGet();
+        if (failing) {
+          throw new IOException("Feed is down");
+        }
+
+        List<NewsEntry> entries = new ArrayList<NewsEntry>();
+        entries.add(new NewsEntry("Fetch " + fetch, "http://news.example.com/" + fetch, "", false));
+
+        return new RssFeed(feedUrl, null, entries, refreshRateInHours * TimeUnit.HOURS.toMillis(1) + System.currentTimeMillis(), "");
+      } finally {
+        activeCount.decrementAndGet();
+      }
+    }
+  }
+
+  // ============================================================================
+  // SimpleRssFeedServiceTest
+  // ============================================================================
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    if (service != null) {
+      service.reset();
+    }
+    if (httpService != null) {
+      httpService.clearReadCache();
+      httpService.reset();
+    }
+    if (server != null) {
+      server.stop(0);
+    }
+
+    super.tearDown();
+  }
+
+  @Test
+  public void testInlineRefresh() throws Exception {
+    service = new TestRssFeedService();
+
+    RssFeed feed = service.readRssFeed(5, FEED_URL1, 1, false);
+    assertFalse(service.isScheduledRefreshMode());
+    assertEquals("Fetch 1", getTitle(feed));
+    assertEquals(Thread.currentThread().getName(), service.fetchThreadNames.get(0));
+
+    // cached until the refresh point
+    assertEquals("Fetch 1", getTitle(service.readRssFeed(5, FEED_URL1, 1, false)));
+    assertEquals(1, service.fetchCount.get());
+
+    // a refresh rate of 0 expires immediately
+    service.readRssFeed(5, FEED_URL2, 0, false);
+    assertEquals("Fetch 3", getTitle(service.readRssFeed(5, FEED_URL2, 0, false)));
+
+    service.failing = true;
+    assertEquals("RSS Feed could not be read: IOException [using url: " + FEED_URL2 + "]", service.readRssFeed(5, FEED_URL2, 0, false).getErrorStatus());
+  }
+
+  @Test
+  public void testScheduledRefreshNeverFetchesOnRequestThread() throws Exception {
+    service = createScheduledService(4, 2, 60);
+    service.blocker = new CountDownLatch(1);
+
+    RssFeed feed = service.readRssFeed(5, FEED_URL1, 1, false);
+    assertTrue(service.isScheduledRefreshMode());
+    assertTrue(feed.getEntries().isEmpty());
+    assertEquals("Refresh is in progress...", feed.getErrorStatus());
+
+    service.blocker.countDown();
+    waitForFetchCount(1);
+    assertEquals("Fetch 1", getTitle(awaitContent(FEED_URL1, 1)));
+    assertTrue(service.fetchThreadNames.get(0).startsWith("rss-feed-refresh-"));
+
+    // not due yet (refresh point is 1 hour away and the lead time is 5 minutes)
+    service.refreshDueFeeds();
+    assertEquals(1, service.fetchCount.get());
+  }
+
+  @Test
+  public void testServeStaleWhileRefreshing() throws Exception {
+    service = createScheduledService(4, 2, 60);
+    service.readRssFeed(5, FEED_URL1, 0, false);
+    assertEquals("Fetch 1", getTitle(awaitContent(FEED_URL1, 0)));
+
+    // block the next refresh; requests keep receiving the stale feed without waiting
+    service.blocker = new CountDownLatch(1);
+    service.refreshDueFeeds();
+    waitForFetchThreadCount(2);
+    long start = System.currentTimeMillis();
+    assertEquals("Fetch 1", getTitle(service.readRssFeed(5, FEED_URL1, 0, false)));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+
+    service.blocker.countDown();
+    waitForFetchCount(2);
+    waitForTitle(FEED_URL1, 0, "Fetch 2");
+
+    // a failed refresh keeps the last good content
+    service.failing = true;
+    service.refreshDueFeeds();
+    waitForFetchCount(3);
+    Thread.sleep(100);
+    RssFeed feed = service.readRssFeed(5, FEED_URL1, 0, false);
+    assertEquals("Fetch 2", getTitle(feed));
+    assertEquals("", feed.getErrorStatus());
+  }
+
+  @Test
+  public void testPerHostLimit() throws Exception {
+    service = createScheduledService(4, 1, 60);
+    service.blocker = new CountDownLatch(1);
+
+    service.readRssFeed(5, FEED_URL1, 1, false);
+    service.readRssFeed(5, FEED_URL2, 1, false); // same host - deferred
+    service.readRssFeed(5, OTHER_HOST_FEED_URL, 1, false);
+    waitForFetchThreadCount(2);
+    Thread.sleep(100);
+    assertEquals(2, service.fetchThreadNames.size());
+    assertEquals(2, service.maxActiveCount.get());
+
+    service.blocker.countDown();
+    waitForFetchCount(2);
+
+    // the deferred feed is picked up by a later scan (once the first read of its host has released its permit)
+    service.blocker = null;
+    for (int i = 0; i < 100 && service.fetchCount.get() < 3; i++) {
+      service.refreshDueFeeds();
+      Thread.sleep(50);
+    }
+    assertEquals(3, service.fetchCount.get());
+    assertEquals("Fetch 3", getTitle(awaitContent(FEED_URL2, 1)));
+  }
+
+  @Test
+  public void testRetryBackoff() throws Exception {
+    service = createScheduledService(4, 2, 1);
+    service.failing = true;
+
+    service.readRssFeed(5, FEED_URL1, 1, false);
+    waitForFetchCount(1);
+    Thread.sleep(100);
+    assertEquals("RSS Feed could not be read: IOException [using url: " + FEED_URL1 + "]", service.readRssFeed(5, FEED_URL1, 1, false).getErrorStatus());
+
+    // the first retry is delayed by 0.5 to 1 second
+    service.refreshDueFeeds();
+    Thread.sleep(100);
+    assertEquals(1, service.fetchCount.get());
+
+    Thread.sleep(1000);
+    service.failing = false;
+    service.refreshDueFeeds();
+    waitForFetchCount(2);
+    assertEquals("Fetch 2", getTitle(awaitContent(FEED_URL1, 1)));
+  }
+
+  @Test
+  public void testConditionalGet() throws Exception {
+    String feedUrl = startServer();
+    httpService = createHttpService(null);
+
+    // a refresh rate of 0 expires immediately, so every read is a refresh
+    RssFeed feed = httpService.readRssFeed(5, feedUrl, 0, false);
+    assertEquals("", feed.getErrorStatus());
+    assertEquals(2, feed.getEntries().size());
+    assertEquals(ETAG, feed.getEntityTag());
+    assertEquals(LAST_MODIFIED, feed.getLastModified());
+    String entryId = feed.getEntries().iterator().next().getId();
+
+    RssFeed refreshedFeed = httpService.readRssFeed(5, feedUrl, 0, false);
+    assertEquals(1, fullResponseCount.get());
+    assertEquals(1, notModifiedResponseCount.get());
+    assertEquals(1, httpService.getNotModifiedCount());
+    assertEquals(entryId, refreshedFeed.getEntries().iterator().next().getId()); // not parsed again
+    assertTrue(refreshedFeed.getRefreshPoint() >= feed.getRefreshPoint());
+  }
+
+  @Test
+  public void testPersistentCache() throws Exception {
+    String feedUrl = startServer();
+    File cacheDirectory = getTempTestFile("rss-feed-cache");
+    createHttpService(cacheDirectory).clearReadCache(); // remove files left by a previous run
+    httpService = createHttpService(cacheDirectory);
+
+    RssFeed feed = httpService.readRssFeed(5, feedUrl, 1, false);
+    assertEquals(2, feed.getEntries().size());
+    assertEquals(1, cacheDirectory.listFiles().length);
+    httpService.reset();
+
+    // a new instance (e.g., after a restart) starts with the saved feed
+    httpService = createHttpService(cacheDirectory);
+    RssFeed loadedFeed = httpService.readRssFeed(5, feedUrl, 1, false);
+    assertEquals(1, fullResponseCount.get());
+    assertEquals(feed.getRefreshPoint(), loadedFeed.getRefreshPoint());
+    assertEquals(ETAG, loadedFeed.getEntityTag());
+    assertEquals("News entry #2", new ArrayList<NewsEntry>(loadedFeed.getEntries()).get(1).getTitle());
+
+    httpService.clearReadCache();
+    assertEquals(0, cacheDirectory.listFiles().length);
+  }
+
+  private String startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/feed.xml", new StubFeedHandler());
+    server.start();
+
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/feed.xml";
+  }
+
+  private SimpleRssFeedService createHttpService(File cacheDirectory) {
+    SimpleRssFeedService result = new SimpleRssFeedService();
+    StringMap initParams = new StringMap();
+
+    if (cacheDirectory != null) {
+      initParams.put(SimpleRssFeedServiceInitParamKeys.CACHE_DIRECTORY, cacheDirectory.getAbsolutePath());
+    }
+    result.init(new MapInitializationStrategy(SimpleRssFeedServiceInitParamKeys.SOURCE_SECTION, initParams));
+
+    return result;
+  }
+
+  private TestRssFeedService createScheduledService(int refreshThreads, int maxFetchesPerHost, int retryBaseDelayInSeconds) {
+    TestRssFeedService result = new TestRssFeedService();
+    StringMap initParams = new StringMap();
+
+    initParams.put(SimpleRssFeedServiceInitParamKeys.REFRESH_MODE, SimpleRssFeedService.SCHEDULED_REFRESH_MODE);
+    initParams.put(SimpleRssFeedServiceInitParamKeys.REFRESH_THREADS, String.valueOf(refreshThreads));
+    initParams.put(SimpleRssFeedServiceInitParamKeys.MAX_FETCHES_PER_HOST, String.valueOf(maxFetchesPerHost));
+    initParams.put(SimpleRssFeedServiceInitParamKeys.SCAN_INTERVAL_IN_SECONDS, "0"); // the test drives the scans
+    initParams.put(SimpleRssFeedServiceInitParamKeys.RETRY_BASE_DELAY_IN_SECONDS, String.valueOf(retryBaseDelayInSeconds));
+
+    result.init(new MapInitializationStrategy(SimpleRssFeedServiceInitParamKeys.SOURCE_SECTION, initParams));
+
+    return result;
+  }
+
+  private String getTitle(RssFeed feed) {
+    return feed.getEntries().isEmpty() ? null : feed.getEntries().iterator().next().getTitle();
+  }
+
+  private RssFeed awaitContent(String feedUrl, int refreshRateInHours) throws InterruptedException {
+    RssFeed result = service.readRssFeed(5, feedUrl, refreshRateInHours, false);
+
+    for (int i = 0; i < 100 && result.getEntries().isEmpty(); i++) {
+      Thread.sleep(50);
+      result = service.readRssFeed(5, feedUrl, refreshRateInHours, false);
+    }
+
+    return result;
+  }
+
+  private void waitForTitle(String feedUrl, int refreshRateInHours, String title) throws InterruptedException {
+    for (int i = 0; i < 100 && !title.equals(getTitle(service.readRssFeed(5, feedUrl, refreshRateInHours, false))); i++) {
+      Thread.sleep(50);
+    }
+    assertEquals(title, getTitle(service.readRssFeed(5, feedUrl, refreshRateInHours, false)));
+  }
+
+  private void waitForFetchCount(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && service.fetchCount.get() < count; i++) {
+      Thread.sleep(50);
+    }
+    assertEquals(count, service.fetchCount.get());
+  }
+
+  private void waitForFetchThreadCount(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && service.fetchThreadNames.size() < count; i++) {
+      Thread.sleep(50);
+    }
+  }
+}
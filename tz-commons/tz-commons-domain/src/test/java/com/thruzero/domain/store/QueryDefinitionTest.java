@@ -0,0 +1,73 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.domain.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.thruzero.domain.model.Setting;
+import com.thruzero.domain.model.TextEnvelope;
+
+/**
+ * Unit test for QueryDefinition.
+ *
+ * @author George Norman
+ */
+public class QueryDefinitionTest {
+
+  @Test
+  public void testEntityQuery() {
+    QueryDefinition<Setting> query = QueryDefinition.from(Setting.class, "setting").whereEquals("context").orderBy("name").build("Setting.getSettings");
+
+    assertEquals("Setting.getSettings", query.getName());
+    assertEquals("FROM Setting setting WHERE setting.context = :context ORDER BY setting.name", query.getQueryString());
+    assertEquals(Setting.class, query.getResultType());
+  }
+
+  @Test
+  public void testProjectionQuery() {
+    QueryDefinition<String> query = QueryDefinition.from(Setting.class, "setting").select("value", String.class).whereEquals("context").whereEquals("name").build("Setting.getSettingValue");
+
+    assertEquals("SELECT setting.value FROM Setting setting WHERE setting.context = :context AND setting.name = :name", query.getQueryString());
+    assertEquals(String.class, query.getResultType());
+  }
+
+  @Test
+  public void testPropertyPathAndInQuery() {
+    QueryDefinition<Serializable> query = QueryDefinition.from(TextEnvelope.class, "te").select("id", Serializable.class).whereEquals("entityPath.entityName")
+        .whereIn("entityPath.containerPath.path", "paths").build("TextEnvelope.test");
+
+    assertEquals("SELECT te.id FROM TextEnvelope te WHERE te.entityPath.entityName = :entityName AND te.entityPath.containerPath.path IN (:paths)", query.getQueryString());
+  }
+
+  @Test
+  public void testKeysetQuery() {
+    QueryDefinition<Setting> query = QueryDefinition.from(Setting.class, "o").whereGreaterThan("id", "lastId").orderBy("id").build("Setting.getAllAfter");
+
+    assertEquals("FROM Setting o WHERE o.id > :lastId ORDER BY o.id", query.getQueryString());
+  }
+
+  @Test
+  public void testNamedEntityQuery() {
+    QueryDefinition<Setting> query = QueryDefinition.from("CustomSetting", Setting.class, "o").whereEquals("id", "primaryKey").build("CustomSetting.queryByKey");
+
+    assertEquals("FROM CustomSetting o WHERE o.id = :primaryKey", query.getQueryString());
+  }
+
+}
@@ -20,6 +20,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import com.thruzero.domain.dao.PreferenceDAO;
 import com.thruzero.domain.model.Preference;
 import com.thruzero.domain.test.support.dao.PreferenceTestBuilder.PreferenceTestConst;
@@ -255,6 +257,34 @@ public abstract class AbstractPreferenceDAOTestHelper {
     }
   }
 
+  public void doTestGetPreferences(PreferenceDAO dao) {
+    for (int i = 1; i > 0; i++) {
+      beginTransaction(); // simulate the Transaction per Request pattern - Begin request cycle
+      switch (i) {
+        case 1: {
+          // setup multiple preferences
+          preferenceTestBuilder.setupComplexPreference();
+        }
+          break;
+        case 2: {
+          List<? extends Preference> preferences = dao.getPreferences(PreferenceTestConst.TEST_ONE_OWNER, PreferenceTestConst.TEST_ONE_CONTEXTB);
+
+          assertEquals(10, preferences.size());
+          for (Preference preference : preferences) {
+            assertEquals(PreferenceTestConst.TEST_ONE_OWNER, preference.getOwner());
+            assertEquals(PreferenceTestConst.TEST_ONE_CONTEXTB, preference.getContext());
+            assertEquals(preference, dao.getPreference(PreferenceTestConst.TEST_ONE_OWNER, PreferenceTestConst.TEST_ONE_CONTEXTB, preference.getName()));
+          }
+          assertTrue(dao.getPreferences(PreferenceTestConst.TEST_TWO_OWNER, PreferenceTestConst.TEST_ONE_CONTEXTB).isEmpty());
+        }
+          break;
+        default:
+          i = -1;
+      }
+      commitTransaction(); // simulate the Transaction per Request pattern - End request cycle
+    }
+  }
+
   protected abstract void beginTransaction();
 
   protected abstract void commitTransaction();
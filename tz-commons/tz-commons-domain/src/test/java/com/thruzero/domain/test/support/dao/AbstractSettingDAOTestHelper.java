@@ -20,6 +20,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import com.thruzero.domain.dao.SettingDAO;
 import com.thruzero.domain.locator.DAOLocator;
 import com.thruzero.domain.model.Setting;
@@ -259,6 +264,93 @@ public abstract class AbstractSettingDAOTestHelper {
     }
   }
 
+  public void doTestGetSettings(SettingDAO dao) {
+    for (int i = 1; i>0; i++) {
+      beginTransaction(); // simulate the Transaction per Request pattern - Begin request cycle
+      switch (i) {
+        case 1: {
+          // setup multiple settings
+          settingTestBuilder.setupComplexSetting();
+        }
+          break;
+        case 2: {
+          List<? extends Setting> settings = dao.getSettings(SettingTestConst.TEST_ONE_CONTEXTA);
+
+          assertEquals(10, settings.size());
+          for (Setting setting : settings) {
+            assertEquals(SettingTestConst.TEST_ONE_CONTEXTA, setting.getContext());
+            assertEquals(setting, dao.getSetting(SettingTestConst.TEST_ONE_CONTEXTA, setting.getName()));
+          }
+        }
+          break;
+        case 3: {
+          // load several contexts at once
+          List<String> contexts = Arrays.asList(SettingTestConst.TEST_TWO_CONTEXT, SettingTestConst.TEST_ONE_CONTEXTA, "bogus-context");
+          Map<String, List<? extends Setting>> settings = dao.getSettings(contexts);
+
+          assertEquals(contexts, new ArrayList<String>(settings.keySet()));
+          assertEquals(10, settings.get(SettingTestConst.TEST_TWO_CONTEXT).size());
+          assertEquals(SettingTestConst.TEST_TWO_CONTEXT, settings.get(SettingTestConst.TEST_TWO_CONTEXT).get(0).getContext());
+          assertEquals(10, settings.get(SettingTestConst.TEST_ONE_CONTEXTA).size());
+          assertTrue(settings.get("bogus-context").isEmpty());
+        }
+          break;
+        default:
+          i=-1;
+      }
+      commitTransaction(); // simulate the Transaction per Request pattern - End request cycle
+    }
+  }
+
+  public void doTestBatchWrites(SettingDAO dao) {
+    final String context = "batch-context";
+    final int count = 120; // spans several flush and I/O batches
+
+    for (int i = 1; i>0; i++) {
+      beginTransaction(); // simulate the Transaction per Request pattern - Begin request cycle
+      switch (i) {
+        case 1: {
+          List<Setting> newSettings = new ArrayList<Setting>();
+          for (int j = 0; j < count; j++) {
+            Setting setting = settingTestBuilder.createTestSettingOneA();
+            setting.setContext(context);
+            setting.setName("name" + j);
+            setting.setValue("value" + j);
+            newSettings.add(setting);
+          }
+          dao.saveAll(newSettings);
+        }
+          break;
+        case 2: {
+          List<? extends Setting> settings = dao.getSettings(context);
+          assertEquals(count, settings.size());
+
+          for (Setting setting : settings) {
+            setting.setValue(setting.getName() + "-updated");
+          }
+          dao.updateAll(settings);
+        }
+          break;
+        case 3: {
+          assertEquals("name7-updated", dao.getSettingValue(context, "name7", null));
+          assertEquals("name" + (count - 1) + "-updated", dao.getSettingValue(context, "name" + (count - 1), null));
+        }
+          break;
+        case 4: {
+          dao.deleteAll(dao.getSettings(context));
+        }
+          break;
+        case 5: {
+          assertTrue(dao.getSettings(context).isEmpty());
+        }
+          break;
+        default:
+          i=-1;
+      }
+      commitTransaction(); // simulate the Transaction per Request pattern - End request cycle
+    }
+  }
+
   protected abstract void beginTransaction();
 
   protected abstract void commitTransaction();
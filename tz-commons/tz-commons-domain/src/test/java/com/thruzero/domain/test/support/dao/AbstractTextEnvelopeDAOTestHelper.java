@@ -20,7 +20,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.CharEncoding;
+
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
 import com.thruzero.domain.model.TextEnvelope;
 import com.thruzero.domain.test.support.dao.TextEnvelopeTestBuilder.TextEnvelopeTestConst;
 
@@ -202,6 +210,55 @@ public abstract class AbstractTextEnvelopeDAOTestHelper {
     }
   }
 
+  public void doTestStreamedData(TextEnvelopeDAO dao) throws IOException {
+    for (int i = 1; i>0; i++) {
+      beginTransaction(); // simulate the Transaction per Request pattern - Begin request cycle
+      switch (i) {
+        case 1: {
+          assertNull(dao.getTextEnvelopeData(textEnvelopeTestBuilder.createNodePathTwo()));
+          dao.saveOrUpdateTextEnvelopeData(textEnvelopeTestBuilder.createNodePathTwo(), createDataWriter(TextEnvelopeTestConst.TEST_TWO_NODE_DATA)); // create
+        }
+          break;
+        case 2: {
+          assertEquals(TextEnvelopeTestConst.TEST_TWO_NODE_DATA, readData(dao));
+          assertEquals(TextEnvelopeTestConst.TEST_TWO_NODE_DATA, dao.getTextEnvelope(textEnvelopeTestBuilder.createNodePathTwo()).getData());
+        }
+          break;
+        case 3: {
+          dao.saveOrUpdateTextEnvelopeData(textEnvelopeTestBuilder.createNodePathTwo(), createDataWriter(TextEnvelopeTestConst.TEST_ONE_NODE_DATA)); // overwrite
+        }
+          break;
+        case 4: {
+          assertEquals(TextEnvelopeTestConst.TEST_ONE_NODE_DATA, readData(dao));
+        }
+          break;
+        default:
+          i=-1;
+      }
+      commitTransaction(); // simulate the Transaction per Request pattern - End request cycle
+    }
+  }
+
+  private TextEnvelopeDataWriter createDataWriter(final String data) {
+    return new TextEnvelopeDataWriter() {
+      @Override
+      public void writeData(OutputStream out) throws IOException {
+        out.write(data.getBytes(CharEncoding.UTF_8));
+      }
+    };
+  }
+
+  private String readData(TextEnvelopeDAO dao) throws IOException {
+    InputStream in = dao.getTextEnvelopeData(textEnvelopeTestBuilder.createNodePathTwo());
+
+    assertNotNull(in);
+    try {
+      return IOUtils.toString(in, CharEncoding.UTF_8);
+    } finally {
+      in.close();
+    }
+  }
+
   protected abstract void beginTransaction();
 
   protected abstract void commitTransaction();
@@ -20,7 +20,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.thruzero.common.core.support.ValueTransformer;
@@ -70,6 +72,13 @@ public abstract class AbstractSettingServiceTestHelper {
       return result;
     }
 
+    @Override
+    public Map<String, List<? extends Setting>> getSettings(Collection<String> contexts) {
+      Map<String, List<? extends Setting>> result = dao.getSettings(contexts);
+
+      return result;
+    }
+
     @Override
     public void deleteSetting(Setting setting) {
       dao.delete(setting);
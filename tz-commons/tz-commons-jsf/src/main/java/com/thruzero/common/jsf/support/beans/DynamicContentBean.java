@@ -18,6 +18,7 @@ package com.thruzero.common.jsf.support.beans;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,11 +36,13 @@ import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.utils.PerformanceTimerUtils.PerformanceLoggerHelper;
 import com.thruzero.common.jsf.support.ContentQuery;
+import com.thruzero.common.jsf.support.content.SharedRootNodeCache;
 import com.thruzero.common.jsf.support.content.XmlRootNodeCache;
-import com.thruzero.common.jsf.utils.FacesUtils;
+import com.thruzero.common.web.model.container.AbstractPanel;
 import com.thruzero.common.web.model.container.ErrorHtmlPanel;
 import com.thruzero.common.web.model.container.PanelGrid;
 import com.thruzero.common.web.model.container.PanelSet;
+import com.thruzero.common.web.model.container.RssFeedPanel;
 import com.thruzero.common.web.model.nav.MenuBar;
 import com.thruzero.common.web.model.nav.MenuNode;
 import com.thruzero.domain.model.DataStoreInfo;
@@ -50,6 +53,9 @@ import com.thruzero.domain.service.InfoNodeService;
  * Reads content from the data store and builds component models used to render UI components on a page. The data-store may reside in a relational database, the
  * file system or be a remote private service (e.g., Dropbox). The relational database and file system choices are mutually exclusive, however, the private
  * data-store is optional and unique for each individual user.
+ * <p>
+ * The root nodes read from the data store, and the component models built from them, are held by the application-wide {@link SharedRootNodeCache}, so
+ * they're shared across all requests and users of the same data store, until evicted or invalidated by a change to the underlying entity.
  * 
  * @author George Norman
  */
@@ -60,9 +66,7 @@ public class DynamicContentBean implements Serializable {
 
   private static final ErrorBuilder errorBuilder = new ErrorBuilder();
   private static final ContentQueryBuilder contentQueryBuilder = new ContentQueryBuilder();
-
-  // BUG Fix: http://stackoverflow.com/questions/2968876/final-transient-fields-and-serialization
-  private transient DataStoreCache dataStoreCache;
+  private static final RootNodeCacheBuilder rootNodeCacheBuilder = new XmlRootNodeCacheBuilder();
 
   // ------------------------------------------------------
   // ContentException
@@ -81,47 +85,36 @@ public class DynamicContentBean implements Serializable {
   }
 
   // ------------------------------------------------------
-  // DataStoreCache
+  // RootNodeCacheBuilder
   // ------------------------------------------------------
 
-  /**
-   * A cache of root nodes as well as the list of component models built from the root node (see RootNodeCache).
-   */
-  public static class DataStoreCache {
-    private String requestUri;
+  public static interface RootNodeCacheBuilder {
+    RootNodeCache createRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo);
+  }
 
-    // TODO-p0(george). ConcurrentHashMap may not be the best for this (investigate this vs rw lock)
-    private final Map<String, RootNodeCache> cache = new ConcurrentHashMap<String, RootNodeCache>();
+  // ------------------------------------------------------
+  // XmlRootNodeCacheBuilder
+  // ------------------------------------------------------
 
-    public RootNodeCache getRootNodeCache(String key) {
-      return cache.get(key);
-    }
+  /**
+   * Reads the root node from the configured InfoNodeService and wraps it in an XmlRootNodeCache. Returns null if the entity doesn't exist.
+   */
+  public static class XmlRootNodeCacheBuilder implements RootNodeCacheBuilder {
+    @Override
+    public RootNodeCache createRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+      RootNodeCache result = null;
+      InfoNodeService infoNodeService = ServiceLocator.locate(InfoNodeService.class);
+      InfoNodeElement rootNode = infoNodeService.getInfoNode(entityPath, dataStoreInfo);
 
-    public void putRootNodeCache(String key, RootNodeCache value) {
-      if (!StringUtils.equals(requestUri, FacesUtils.getRequest().getRequestURI())) {
-        cache.clear();
-        requestUri = FacesUtils.getRequest().getRequestURI();
+      if (rootNode != null) {
+        rootNode.enableRootNode();
+        result = new XmlRootNodeCache(rootNode);
       }
-      cache.put(key, value);
-    }
 
-    public void clear() {
-      cache.clear();
-    }
-
-    public void clear(String key) {
-      cache.remove(key);
+      return result;
     }
   }
 
-  // ------------------------------------------------------
-  // RootNodeCacheBuilder
-  // ------------------------------------------------------
-
-  public static interface RootNodeCacheBuilder {
-    RootNodeCache createRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo);
-  }
-
   // ------------------------------------------------------
   // ContentQueryBuilder
   // ------------------------------------------------------
@@ -197,9 +190,17 @@ public class DynamicContentBean implements Serializable {
   // RootNodeCache
   // ------------------------------------------------------
 
+  /**
+   * A root node plus the component models built from it. Instances are shared by all request threads (see SharedRootNodeCache), so the root node and the
+   * cached models must be treated as read-only: each model is frozen before it's cached (see PanelSet.freeze(), PanelGrid.freeze() and MenuBar.freeze()),
+   * so an attempt to modify a shared model fails fast instead of corrupting the content rendered by other requests. The JDOM nodes can't be frozen, so
+   * DynamicContentBean hands out copies of them.
+   * <p>
+   * Models holding live or transient content (RSS feed panels and error panels, such as a timeout or a "refresh is in progress" message) are rebuilt on
+   * each request instead of being cached, so they're never frozen for the lifetime of the shared entry.
+   */
   public static abstract class RootNodeCache {
     private final InfoNodeElement rootNode;
-    // TODO-p0(george). ConcurrentHashMap may not be the best for this (investigate this vs rw lock)
     private final Map<String, InfoNodeElement> contentNodeCache = new ConcurrentHashMap<String, InfoNodeElement>();
     private final Map<String, PanelSet> panelSetCache = new ConcurrentHashMap<String, PanelSet>();
     private final Map<String, List<PanelGrid>> panelGridListCache = new ConcurrentHashMap<String, List<PanelGrid>>();
@@ -210,12 +211,14 @@ public class DynamicContentBean implements Serializable {
       this.rootNode = rootNode;
     }
 
+    /** Return the shared root node (it must not be modified). */
     public InfoNodeElement getRootNode() {
       return rootNode;
     }
 
     /**
      * Return the content node, for the given xPath, by returning it from the cache or finding it in the RootNode and then caching it for future access).
+     * The returned node is shared by all requests, so it must not be modified.
      */
     public InfoNodeElement getContentNode(String xPath) {
       InfoNodeElement result = contentNodeCache.get(xPath);
@@ -248,7 +251,11 @@ public class DynamicContentBean implements Serializable {
 
         if (panelSetNode != null) {
           result = buildPanelSet(panelSetNode);
-          panelSetCache.put(xPath, result);
+
+          if (isShareable(result)) {
+            result.freeze();
+            panelSetCache.put(xPath, result);
+          }
         }
       }
 
@@ -274,8 +281,14 @@ public class DynamicContentBean implements Serializable {
 
             result.add(panelGrid);
           }
+          result = Collections.unmodifiableList(result);
 
-          panelGridListCache.put(xPath, result);
+          if (isShareablePanelGridList(result)) {
+            for (PanelGrid panelGrid : result) {
+              panelGrid.freeze();
+            }
+            panelGridListCache.put(xPath, result);
+          }
         }
       }
 
@@ -301,8 +314,14 @@ public class DynamicContentBean implements Serializable {
 
             result.add(panelSet);
           }
+          result = Collections.unmodifiableList(result);
 
-          panelSetListCache.put(xPath, result);
+          if (isShareablePanelSetList(result)) {
+            for (PanelSet panelSet : result) {
+              panelSet.freeze();
+            }
+            panelSetListCache.put(xPath, result);
+          }
         }
       }
 
@@ -317,6 +336,7 @@ public class DynamicContentBean implements Serializable {
 
         if (menuBarNode != null) {
           result = buildMenuBar(menuBarNode);
+          result.freeze();
           menuBarCache.put(xPath, result);
         }
       }
@@ -326,12 +346,50 @@ public class DynamicContentBean implements Serializable {
 
     protected abstract MenuBar buildMenuBar(InfoNodeElement menuBarNode) throws ContentException;
 
+    /**
+     * Return true if the given PanelSet may be cached and shared by all requests: it must not hold an RSS feed panel (its content is refreshed
+     * independently of the root node) or an error panel (the error may be transient).
+     */
+    protected boolean isShareable(PanelSet panelSet) {
+      for (AbstractPanel panel : panelSet.getPanels()) {
+        if (panel instanceof RssFeedPanel || panel instanceof ErrorHtmlPanel) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    private boolean isShareablePanelSetList(List<PanelSet> panelSets) {
+      for (PanelSet panelSet : panelSets) {
+        if (!isShareable(panelSet)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    private boolean isShareablePanelGridList(List<PanelGrid> panelGrids) {
+      for (PanelGrid panelGrid : panelGrids) {
+        for (PanelSet panelSet : panelGrid.getPanelSets()) {
+          if (!isShareable(panelSet)) {
+            return false;
+          }
+        }
+      }
+
+      return true;
+    }
+
     // Cache management ////////////////////////////////
 
     /** Delete all content that has been cached by this instance. */
     public void clearContentCache() {
       contentNodeCache.clear();
       panelSetCache.clear();
+      panelGridListCache.clear();
+      panelSetListCache.clear();
       menuBarCache.clear();
     }
 
@@ -339,6 +397,8 @@ public class DynamicContentBean implements Serializable {
     public void clearContentCacheFor(String xPath) {
       contentNodeCache.remove(xPath);
       panelSetCache.remove(xPath);
+      panelGridListCache.remove(xPath);
+      panelSetListCache.remove(xPath);
       menuBarCache.remove(xPath);
     }
   }
@@ -347,23 +407,10 @@ public class DynamicContentBean implements Serializable {
   // DynamicContentBean
   // ============================================================================
 
-  /**
-   * Lazy init transients due to dependencies on Locator.
-   * <p/>
-   * TODO-p1(george). REVISIT. This issue can happen again with another class unless a better solution is found. Issue: On Tomcat startup, serialization appears
-   * to happen before the InitFilter is called. This breaks locator as follows. First, the config locator requires the InitFilter to give it the path to the
-   * config file. Second, if readObject is used to init the transients, the locators are accessed causing the Registry to be created and interfaces registered.
-   * Then, when InitFilter is called, it causes the Locators to be loaded/initialized again, which generates an error (RegistryLocatorStrategy:57 -
-   * InterfaceBindingRegistry ERROR - Binding already exists for given interface: com.thruzero.common.core.config.Config).
-   */
-  private void ensureTransients() {
-    if (dataStoreCache == null) {
-      dataStoreCache = new DataStoreCache();
-    }
-  }
-
   public String getText(String key) {
-    InfoNodeElement resultNode = getContentNode(key);
+    // read-only access, so use the shared node instead of a copy
+    ContentQuery contentQuery = contentQueryBuilder.buildFromKey(key, getDataStoreInfo());
+    InfoNodeElement resultNode = findContentNode(contentQuery);
     if (resultNode == null) {
       return null;
     } else {
@@ -382,8 +429,6 @@ public class DynamicContentBean implements Serializable {
   }
 
   public InfoNodeElement getContentNode(String key) throws ContentException {
-    ensureTransients();
-
     ContentQuery contentQuery = contentQueryBuilder.buildFromKey(key, getDataStoreInfo());
     InfoNodeElement result = loadContentNode(contentQuery);
 
@@ -392,23 +437,22 @@ public class DynamicContentBean implements Serializable {
 
   // TODO-p1(george). Investigate why JSF EL can't distinguish between ContentQuery and String.
   // Renamed from getContentNode to loadContentNode for now.
+  /**
+   * Return a copy of the content node for the given query (the cached node is shared by all requests, so the caller is free to modify the copy).
+   */
   public InfoNodeElement loadContentNode(ContentQuery contentQuery) throws ContentException {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
-    RootNodeCache rootNodeCache = getRootNodeCache(contentQuery.getEntityPath());
-
-    assertRootNodeCacheFound(rootNodeCache, "Content Node", contentQuery.toString());
+    InfoNodeElement result = findContentNode(contentQuery);
 
-    InfoNodeElement result = rootNodeCache.getContentNode(contentQuery.getXPath());
+    if (result != null) {
+      result = (InfoNodeElement)result.clone();
+    }
     performanceLoggerHelper.debug("loadContentNode");
 
     return result;
   }
 
   public List<PanelGrid> loadPanelGridList(ContentQuery contentQuery) throws ContentException {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
     List<PanelGrid> result;
     EntityPath entityPath = contentQuery.getEntityPath();
@@ -433,8 +477,6 @@ public class DynamicContentBean implements Serializable {
   }
 
   public PanelSet getPanelSet(String key) throws Exception {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
     ContentQuery contentQuery = contentQueryBuilder.buildFromKey(key, getDataStoreInfo());
     RootNodeCache rootNodeCache = getRootNodeCache(contentQuery.getEntityPath());
@@ -447,7 +489,7 @@ public class DynamicContentBean implements Serializable {
       result = errorBuilder.buildMissingPanelSetError(contentQuery.getXPath());
 
       // remove bad node
-      dataStoreCache.clear(contentQuery.getEntityPath().toString());
+      getSharedRootNodeCache().remove(contentQuery.getEntityPath(), getDataStoreInfo());
     }
     performanceLoggerHelper.debug("getPanelSet {" + key + "}");
 
@@ -455,8 +497,6 @@ public class DynamicContentBean implements Serializable {
   }
 
   public List<PanelSet> getPanelSetList(String key) throws ContentException {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
     ContentQuery contentQuery = contentQueryBuilder.buildFromKey(key, getDataStoreInfo());
     List<PanelSet> result = loadPanelSetList(contentQuery);
@@ -466,7 +506,7 @@ public class DynamicContentBean implements Serializable {
       result.add(errorBuilder.buildMissingPanelSetError(contentQuery.getXPath()));
 
       // remove bad node
-      dataStoreCache.clear(contentQuery.getEntityPath().toString());
+      getSharedRootNodeCache().remove(contentQuery.getEntityPath(), getDataStoreInfo());
     }
     performanceLoggerHelper.debug("getPanelSetList {" + key + "}");
 
@@ -474,8 +514,6 @@ public class DynamicContentBean implements Serializable {
   }
 
   public List<PanelSet> loadPanelSetList(ContentQuery contentQuery) throws ContentException {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
     List<PanelSet> result;
     EntityPath entityPath = contentQuery.getEntityPath();
@@ -500,8 +538,6 @@ public class DynamicContentBean implements Serializable {
   }
 
   public MenuBar getMenuBar(String key) throws ContentException {
-    ensureTransients();
-
     PerformanceLoggerHelper performanceLoggerHelper = new PerformanceLoggerHelper();
     ContentQuery contentQuery = contentQueryBuilder.buildFromKey(key, getDataStoreInfo());
     RootNodeCache rootNodeCache = getRootNodeCache(contentQuery.getEntityPath());
@@ -514,7 +550,7 @@ public class DynamicContentBean implements Serializable {
       result = errorBuilder.buildMissingMenuBarError(contentQuery.getXPath());
 
       // remove bad node
-      dataStoreCache.clear(contentQuery.getEntityPath().toString());
+      getSharedRootNodeCache().remove(contentQuery.getEntityPath(), getDataStoreInfo());
     }
     performanceLoggerHelper.debug("getMenuBar {" + key + "}");
 
@@ -522,37 +558,37 @@ public class DynamicContentBean implements Serializable {
   }
 
   public void clearCache() {
-    ensureTransients();
-
-    dataStoreCache.clear();
+    getSharedRootNodeCache().clear();
   }
 
   // Support methods /////////////////////////////////////////////////////////
 
   protected RootNodeCache getRootNodeCache(EntityPath entityPath) {
-    RootNodeCache result = dataStoreCache.getRootNodeCache(entityPath.toString());
-
-    // if not found in cache, then load it from the data store and cache it
-    if (result == null) {
-      InfoNodeService infoNodeService = ServiceLocator.locate(InfoNodeService.class);
-      InfoNodeElement rootNode = infoNodeService.getInfoNode(entityPath, getDataStoreInfo());
-
-      if (rootNode != null) {
-        rootNode.enableRootNode();
-        result = new XmlRootNodeCache(rootNode);
-        dataStoreCache.putRootNodeCache(entityPath.toString(), result);
-      }
-    }
+    // if not found in the shared cache, then the builder loads it from the data store and it's cached for all requests
+    RootNodeCache result = getSharedRootNodeCache().getRootNodeCache(entityPath, getDataStoreInfo(), rootNodeCacheBuilder);
 
     return result;
   }
 
+  protected SharedRootNodeCache getSharedRootNodeCache() {
+    return SharedRootNodeCache.getInstance();
+  }
+
   public DataStoreInfo getDataStoreInfo() {
     DataStoreInfo result = ProviderLocator.locate(DataStoreInfoProvider.class).getDataStoreInfo();
 
     return result;
   }
 
+  /** Return the shared (read-only) content node for the given query. */
+  protected InfoNodeElement findContentNode(ContentQuery contentQuery) throws ContentException {
+    RootNodeCache rootNodeCache = getRootNodeCache(contentQuery.getEntityPath());
+
+    assertRootNodeCacheFound(rootNodeCache, "Content Node", contentQuery.toString());
+
+    return rootNodeCache.getContentNode(contentQuery.getXPath());
+  }
+
   protected void assertRootNodeCacheFound(RootNodeCache rootNodeCache, String contentType, String contentKey) {
     if (rootNodeCache == null) {
       throw new ContentException("ERROR: " + contentType + " not found for key: " + contentKey);
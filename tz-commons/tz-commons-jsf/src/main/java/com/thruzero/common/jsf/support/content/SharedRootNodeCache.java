@@ -0,0 +1,277 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.thruzero.common.jsf.support.content;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.ConfigKeysBookmark;
+import com.thruzero.common.core.config.Config;
+import com.thruzero.common.core.config.Config.ConfigKeys;
+import com.thruzero.common.core.locator.ConfigLocator;
+import com.thruzero.common.core.locator.ServiceLocator;
+import com.thruzero.common.core.map.ExpiringLruCache;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.jsf.support.beans.DynamicContentBean.RootNodeCache;
+import com.thruzero.common.jsf.support.beans.DynamicContentBean.RootNodeCacheBuilder;
+import com.thruzero.domain.model.DataStoreInfo;
+import com.thruzero.domain.service.InfoNodeService;
+import com.thruzero.domain.service.InfoNodeService.InfoNodeServiceListener;
+
+/**
+ * An application-wide cache of {@link com.thruzero.common.jsf.support.beans.DynamicContentBean.RootNodeCache RootNodeCache} instances, keyed by
+ * {@code EntityPath} plus the {@code DataStoreInfo} of the user the content was read for. The cache is bounded by size (least-recently-used entries are
+ * evicted first) and each entry expires after a configurable time-to-live. Entries are also invalidated as soon as the {@code InfoNodeService} saves,
+ * updates or deletes the entity they were read from.
+ * <p>
+ * The root nodes and the component models built from them (e.g., {@code PanelSet} and {@code MenuBar}) are shared by all request threads, so they must be
+ * treated as read-only once cached. A RootNodeCache that was read while its entity was being invalidated (e.g., a save that overlaps the read) is
+ * returned to the caller, but not cached, since it may be stale.
+ * <p>
+ * The cache is configured via the config section named by {@code SharedRootNodeCacheConfigKeys.CONFIG_SECTION}:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.common.jsf.support.content.SharedRootNodeCache">
+ *     <entry key="maxSize" value="500" />
+ *     <entry key="timeToLiveInMinutes" value="30" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * @author George Norman
+ */
+public final class SharedRootNodeCache implements InfoNodeServiceListener {
+  private static final Logger logger = Logger.getLogger(SharedRootNodeCache.class);
+
+  private static final int DEFAULT_MAX_SIZE = 500;
+  private static final int DEFAULT_TIME_TO_LIVE_IN_MINUTES = 30;
+
+  private final ExpiringLruCache<RootNodeCacheKey, RootNodeCache> cache;
+  private volatile InfoNodeService observedInfoNodeService;
+  private final Object invalidationLock = new Object();
+  private long invalidationCount; // guarded by invalidationLock
+
+  // ------------------------------------------------
+  // SharedRootNodeCacheConfigKeys
+  // ------------------------------------------------
+
+  /**
+   * Config keys defined for SharedRootNodeCache and are defined inside of the config file section named by CONFIG_SECTION:
+   * "com.thruzero.common.jsf.support.content.SharedRootNodeCache".
+   */
+  @ConfigKeysBookmark
+  public interface SharedRootNodeCacheConfigKeys extends ConfigKeys {
+    /** The config section to use */
+    String CONFIG_SECTION = SharedRootNodeCache.class.getName();
+
+    /** The config key that defines the maximum number of root nodes held by the cache: "maxSize". */
+    String MAX_SIZE = "maxSize";
+
+    /** The config key that defines how long a cached root node remains valid: "timeToLiveInMinutes". */
+    String TIME_TO_LIVE_IN_MINUTES = "timeToLiveInMinutes";
+  }
+
+  // ------------------------------------------------
+  // RootNodeCacheKey
+  // ------------------------------------------------
+
+  /**
+   * Identifies a root node by its EntityPath plus the data store it was read from (the same EntityPath may resolve to a different entity for users with a
+   * private root data store).
+   */
+  public static final class RootNodeCacheKey {
+    private final EntityPath entityPath;
+    private final EntityPath resolvedEntityPath;
+    private final String dataStoreContext;
+    private final String privateRootDataStorePath;
+
+    public RootNodeCacheKey(EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+      this.entityPath = entityPath;
+      this.dataStoreContext = dataStoreInfo == null ? null : dataStoreInfo.getDataStoreContext();
+      this.privateRootDataStorePath = dataStoreInfo == null ? null : dataStoreInfo.getPrivateRootDataStorePath();
+
+      // same resolution as used by InfoNodeService.getInfoNode(EntityPath, DataStoreInfo)
+      if (StringUtils.isEmpty(privateRootDataStorePath)) {
+        resolvedEntityPath = entityPath;
+      } else {
+        resolvedEntityPath = new EntityPath(privateRootDataStorePath, entityPath.getContainerPath(), entityPath.getEntityName());
+      }
+    }
+
+    public EntityPath getEntityPath() {
+      return entityPath;
+    }
+
+    /** Return true if this key refers to the entity at the given path (either as requested or as resolved against the private root data store). */
+    public boolean isKeyFor(EntityPath changedEntityPath) {
+      return entityPath.equals(changedEntityPath) || resolvedEntityPath.equals(changedEntityPath);
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + entityPath.hashCode();
+      result = prime * result + ((dataStoreContext == null) ? 0 : dataStoreContext.hashCode());
+      result = prime * result + ((privateRootDataStorePath == null) ? 0 : privateRootDataStorePath.hashCode());
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null || getClass() != obj.getClass())
+        return false;
+      RootNodeCacheKey other = (RootNodeCacheKey)obj;
+      return entityPath.equals(other.entityPath) && StringUtils.equals(dataStoreContext, other.dataStoreContext)
+          && StringUtils.equals(privateRootDataStorePath, other.privateRootDataStorePath);
+    }
+
+    @Override
+    public String toString() {
+      return resolvedEntityPath + " [" + dataStoreContext + "]";
+    }
+  }
+
+  // ------------------------------------------------
+  // InstanceHolder
+  // ------------------------------------------------
+
+  /** Lazily creates the shared instance on first use (after the InitFilter has configured the ConfigLocator). */
+  private static final class InstanceHolder {
+    private static final SharedRootNodeCache instance = new SharedRootNodeCache();
+  }
+
+  // ============================================================================
+  // SharedRootNodeCache
+  // ============================================================================
+
+  private SharedRootNodeCache() {
+    Config config = ConfigLocator.locate();
+    int maxSize = config.getIntegerValue(SharedRootNodeCacheConfigKeys.CONFIG_SECTION, SharedRootNodeCacheConfigKeys.MAX_SIZE, DEFAULT_MAX_SIZE);
+    int timeToLiveInMinutes = config.getIntegerValue(SharedRootNodeCacheConfigKeys.CONFIG_SECTION, SharedRootNodeCacheConfigKeys.TIME_TO_LIVE_IN_MINUTES,
+        DEFAULT_TIME_TO_LIVE_IN_MINUTES);
+
+    cache = new ExpiringLruCache<RootNodeCacheKey, RootNodeCache>(maxSize, TimeUnit.MINUTES.toMillis(timeToLiveInMinutes));
+  }
+
+  public static SharedRootNodeCache getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Return the cached RootNodeCache for the given entityPath and dataStoreInfo. If absent (or expired), then use the given builder to create it and
+   * cache it for all future requests. Returns null if the builder returns null (e.g., the entity does not exist).
+   */
+  public RootNodeCache getRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo, RootNodeCacheBuilder builder) {
+    ensureObservingInfoNodeService();
+
+    RootNodeCacheKey key = new RootNodeCacheKey(entityPath, dataStoreInfo);
+    RootNodeCache result = cache.get(key);
+
+    if (result == null) {
+      long expectedInvalidationCount = getInvalidationCount();
+
+      result = builder.createRootNodeCache(entityPath, dataStoreInfo);
+
+      if (result != null) {
+        putIfNotInvalidated(key, result, expectedInvalidationCount);
+      }
+    }
+
+    return result;
+  }
+
+  /** Remove the RootNodeCache for the given entityPath, as read for the given dataStoreInfo. */
+  public void remove(EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+      cache.remove(new RootNodeCacheKey(entityPath, dataStoreInfo));
+    }
+  }
+
+  /** Remove every RootNodeCache read from the given entityPath (for all data stores). */
+  public void invalidate(EntityPath entityPath) {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+
+      for (RootNodeCacheKey key : cache.getKeys()) {
+        if (key.isKeyFor(entityPath)) {
+          cache.remove(key);
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+      cache.clear();
+    }
+  }
+
+  /** Return the underlying cache, for diagnostics (e.g., size and hit ratio). */
+  public ExpiringLruCache<RootNodeCacheKey, RootNodeCache> getCache() {
+    return cache;
+  }
+
+  @Override
+  public void infoNodeChanged(EntityPath entityPath) {
+    logger.debug("Invalidating shared root node cache for: " + entityPath);
+    invalidate(entityPath);
+  }
+
+  /**
+   * Register this cache as a listener of the currently configured InfoNodeService. The service is re-checked on each lookup, since the locator may be
+   * reset (e.g., by tests), creating a new service instance.
+   */
+  private void ensureObservingInfoNodeService() {
+    InfoNodeService infoNodeService = ServiceLocator.locate(InfoNodeService.class);
+
+    if (infoNodeService != observedInfoNodeService) {
+      synchronized (this) {
+        if (infoNodeService != observedInfoNodeService) {
+          infoNodeService.addInfoNodeServiceListener(this);
+          observedInfoNodeService = infoNodeService;
+
+          // content read from the previous service can no longer be invalidated, so discard it
+          clear();
+        }
+      }
+    }
+  }
+
+  /** Return the number of invalidations so far; read it before building a RootNodeCache, to detect a concurrent write. */
+  private long getInvalidationCount() {
+    synchronized (invalidationLock) {
+      return invalidationCount;
+    }
+  }
+
+  /** Cache the given RootNodeCache, unless an invalidation happened while it was being built (it may be stale). */
+  private void putIfNotInvalidated(RootNodeCacheKey key, RootNodeCache rootNodeCache, long expectedInvalidationCount) {
+    synchronized (invalidationLock) {
+      if (invalidationCount == expectedInvalidationCount) {
+        cache.put(key, rootNodeCache);
+      }
+    }
+  }
+}
@@ -57,6 +57,11 @@ public abstract class HttpSessionDAO<T extends Persistent> extends GenericMemory
       getEntityMap().put(entity.getId(), entity);
     }
 
+    @Override
+    public void persistAll(Map<Serializable, T> entities) {
+      getEntityMap().putAll(entities);
+    }
+
     @Override
     public T find(Serializable primaryKey) {
       return getEntityMap().get(primaryKey);
@@ -82,6 +87,11 @@ public abstract class HttpSessionDAO<T extends Persistent> extends GenericMemory
       getEntityMap().remove(entity.getId());
     }
 
+    @Override
+    public void removeAll(Collection<Serializable> primaryKeys) {
+      getEntityMap().keySet().removeAll(primaryKeys);
+    }
+
     @Override
     public void clear() {
       getEntityMap().clear();
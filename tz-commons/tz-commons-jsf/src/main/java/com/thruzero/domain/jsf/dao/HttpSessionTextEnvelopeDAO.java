@@ -15,6 +15,7 @@
  */
 package com.thruzero.domain.jsf.dao;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,6 +26,8 @@ import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
 import com.thruzero.common.core.support.KeyGen;
 import com.thruzero.domain.dao.TextEnvelopeDAO;
+import com.thruzero.domain.dao.TextEnvelopeDAO.TextEnvelopeDataWriter;
+import com.thruzero.domain.dao.impl.TextEnvelopeDataHelper;
 import com.thruzero.domain.model.TextEnvelope;
 
 /**
@@ -94,6 +97,17 @@ public final class HttpSessionTextEnvelopeDAO extends HttpSessionDAO<TextEnvelop
     return getByKey(entityPath);
   }
 
+  /** Returns the data as a stream of the (in-memory) String; the data isn't streamed from the store. */
+  @Override
+  public InputStream getTextEnvelopeData(EntityPath entityPath) {
+    return TextEnvelopeDataHelper.getTextEnvelopeData(this, entityPath);
+  }
+
+  @Override
+  public void saveOrUpdateTextEnvelopeData(EntityPath entityPath, TextEnvelopeDataWriter dataWriter) {
+    TextEnvelopeDataHelper.saveOrUpdateTextEnvelopeData(this, entityPath, dataWriter);
+  }
+
   @Override
   protected KeyGen<TextEnvelope> createKeyGen() {
     return new TextEnvelopeKeyGen();
@@ -0,0 +1,223 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.jsf.support.content;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.locator.ServiceLocator;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.jsf.support.beans.DynamicContentBean.ContentException;
+import com.thruzero.common.jsf.support.beans.DynamicContentBean.RootNodeCache;
+import com.thruzero.common.jsf.support.beans.DynamicContentBean.RootNodeCacheBuilder;
+import com.thruzero.common.web.model.container.ErrorHtmlPanel;
+import com.thruzero.common.web.model.container.HtmlPanel;
+import com.thruzero.common.web.model.container.PanelGrid;
+import com.thruzero.common.web.model.container.PanelSet;
+import com.thruzero.common.web.model.nav.MenuBar;
+import com.thruzero.common.web.model.nav.MenuNode;
+import com.thruzero.domain.model.DataStoreInfo;
+import com.thruzero.domain.service.InfoNodeService;
+import com.thruzero.domain.service.impl.GenericInfoNodeService;
+import com.thruzero.domain.test.support.AbstractDomainTestCase;
+
+/**
+ * Unit test for SharedRootNodeCache (using the GenericInfoNodeService backed by the mock TextEnvelopeDAO).
+ *
+ * @author George Norman
+ */
+public class SharedRootNodeCacheTest extends AbstractDomainTestCase {
+  private static final EntityPath ENTITY_PATH = new EntityPath("/jsf/test/index.xml");
+
+  private final DataStoreInfo dataStoreInfo = new DataStoreInfo();
+
+  // ------------------------------------------------
+  // CountingBuilder
+  // ------------------------------------------------
+
+  /** Reads the root node from the InfoNodeService, counts the number of reads and builds a TestRootNodeCache. */
+  private static class CountingBuilder implements RootNodeCacheBuilder {
+    private final AtomicInteger buildCount = new AtomicInteger();
+
+    @Override
+    public RootNodeCache createRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+      buildCount.incrementAndGet();
+      InfoNodeElement rootNode = ServiceLocator.locate(InfoNodeService.class).getInfoNode(entityPath);
+
+      if (rootNode == null) {
+        return null;
+      }
+      rootNode.enableRootNode();
+
+      return new TestRootNodeCache(rootNode);
+    }
+  }
+
+  // ------------------------------------------------
+  // TestRootNodeCache
+  // ------------------------------------------------
+
+  /** Builds a PanelSet with a single panel, which is an error panel if the PanelSet node is named "error". */
+  private static class TestRootNodeCache extends RootNodeCache {
+    public TestRootNodeCache(InfoNodeElement rootNode) {
+      super(rootNode);
+    }
+
+    @Override
+    protected PanelSet buildPanelSet(InfoNodeElement panelSetNode) throws ContentException {
+      PanelSet result = new PanelSet(panelSetNode.getName());
+
+      if ("error".equals(panelSetNode.getName())) {
+        result.addPanel(new ErrorHtmlPanel("error", "Error", "Refresh is in progress..."));
+      } else {
+        result.addPanel(new HtmlPanel(panelSetNode.getName(), "Title", null, null, false, null, null, panelSetNode.getText()));
+      }
+
+      return result;
+    }
+
+    @Override
+    protected PanelGrid buildGridRow(InfoNodeElement panelGridNode) throws ContentException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected MenuBar buildMenuBar(InfoNodeElement menuBarNode) throws ContentException {
+      MenuBar result = new MenuBar();
+
+      result.addMenu(menuBarNode.getName(), new MenuNode(result, menuBarNode.getName(), menuBarNode.getText(), null, null));
+
+      return result;
+    }
+  }
+
+  // ============================================================================
+  // SharedRootNodeCacheTest
+  // ============================================================================
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    ServiceLocator.getRegistry().registerInterface(InfoNodeService.class, GenericInfoNodeService.class);
+    SharedRootNodeCache.getInstance().clear();
+
+    dataStoreInfo.setDataStoreContext("jsf");
+    ServiceLocator.locate(InfoNodeService.class).saveOrUpdateRawData(ENTITY_PATH, "<page><ok>version 1</ok><error/></page>");
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    SharedRootNodeCache.getInstance().clear();
+
+    super.tearDown();
+  }
+
+  @Test
+  public void testSaveEvictsSharedEntry() {
+    SharedRootNodeCache cache = SharedRootNodeCache.getInstance();
+    CountingBuilder builder = new CountingBuilder();
+
+    RootNodeCache rootNodeCache = cache.getRootNodeCache(ENTITY_PATH, dataStoreInfo, builder);
+    assertNotNull(rootNodeCache);
+    assertSame(rootNodeCache, cache.getRootNodeCache(ENTITY_PATH, dataStoreInfo, builder));
+    assertEquals(1, builder.buildCount.get());
+
+    ServiceLocator.locate(InfoNodeService.class).saveOrUpdateRawData(ENTITY_PATH, "<page><ok>version 2</ok><error/></page>");
+    assertEquals(0, cache.getCache().size());
+
+    RootNodeCache updatedRootNodeCache = cache.getRootNodeCache(ENTITY_PATH, dataStoreInfo, builder);
+    assertNotSame(rootNodeCache, updatedRootNodeCache);
+    assertEquals(2, builder.buildCount.get());
+    assertEquals("version 2", updatedRootNodeCache.getContentNode("/page/ok").getText());
+  }
+
+  @Test
+  public void testOverlappingInvalidationIsNotCached() {
+    final SharedRootNodeCache cache = SharedRootNodeCache.getInstance();
+    CountingBuilder builder = new CountingBuilder() {
+      @Override
+      public RootNodeCache createRootNodeCache(EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+        RootNodeCache result = super.createRootNodeCache(entityPath, dataStoreInfo);
+
+        cache.infoNodeChanged(entityPath); // a save completes while the root node is being built
+
+        return result;
+      }
+    };
+
+    assertNotNull(cache.getRootNodeCache(ENTITY_PATH, dataStoreInfo, builder));
+    assertEquals(0, cache.getCache().size());
+  }
+
+  @Test
+  public void testErrorPanelSetIsNotShared() {
+    RootNodeCache rootNodeCache = SharedRootNodeCache.getInstance().getRootNodeCache(ENTITY_PATH, dataStoreInfo, new CountingBuilder());
+
+    PanelSet panelSet = rootNodeCache.getPanelSet("/page/ok");
+    assertSame(panelSet, rootNodeCache.getPanelSet("/page/ok"));
+
+    PanelSet errorPanelSet = rootNodeCache.getPanelSet("/page/error");
+    assertNotNull(errorPanelSet);
+    assertNotSame(errorPanelSet, rootNodeCache.getPanelSet("/page/error"));
+    assertEquals(2, rootNodeCache.getPanelSetList("/page").size());
+    assertNotSame(rootNodeCache.getPanelSetList("/page"), rootNodeCache.getPanelSetList("/page"));
+  }
+
+  @Test
+  public void testSharedModelsAreFrozen() {
+    RootNodeCache rootNodeCache = SharedRootNodeCache.getInstance().getRootNodeCache(ENTITY_PATH, dataStoreInfo, new CountingBuilder());
+
+    PanelSet panelSet = rootNodeCache.getPanelSet("/page/ok");
+    assertTrue(panelSet.isFrozen());
+    assertTrue(panelSet.getPanel("ok").isFrozen());
+    try {
+      panelSet.addPanel(new HtmlPanel("other", "Title", null, null, false, null, null, "other"));
+      fail("A shared PanelSet must not be modifiable.");
+    } catch (UnsupportedOperationException expected) {
+      // expected
+    }
+    assertEquals(1, panelSet.getNumberOfPanels());
+
+    // transient models aren't shared, so they aren't frozen either
+    assertFalse(rootNodeCache.getPanelSet("/page/error").isFrozen());
+
+    MenuBar menuBar = rootNodeCache.getMenuBar("/page/ok");
+    assertTrue(menuBar.isFrozen());
+    assertTrue(menuBar.getMenu("ok").isFrozen());
+    try {
+      menuBar.getMenu("ok").addChild(new MenuNode(menuBar.getMenu("ok"), "child", "Child", null, null));
+      fail("A shared MenuNode must not be modifiable.");
+    } catch (UnsupportedOperationException expected) {
+      // expected
+    }
+    assertTrue(menuBar.getMenu("ok").isEmptyChildren());
+  }
+}
@@ -30,9 +30,12 @@ import org.apache.log4j.Logger;
 import com.thruzero.common.core.bookmarks.ConfigBookmark;
 import com.thruzero.common.core.bookmarks.ConfigKeysBookmark;
 import com.thruzero.common.core.locator.ConfigLocator;
+import com.thruzero.common.web.model.container.builder.xml.PanelBuilderExecutor;
+import com.thruzero.domain.locator.LocatorWarmUp;
 
 /**
- * Init filter that prepares the Config implementation to read from the config file.
+ * Init filter that prepares the Config implementation to read from the config file and, optionally, warms up all of the
+ * registered locator bindings (see {@link com.thruzero.domain.locator.LocatorWarmUp LocatorWarmUp}).
  *
  * @author George Norman
  */
@@ -67,6 +70,18 @@ public class InitFilter implements Filter {
 
     /** path to the config file (e.g., "/home/foo/bar/config.xml", or "${pftest18_config_dir_path_env}", or "${pftest18_config_dir_path_env}/config.xml") */
     String CONFIG_FILE_PATH_INIT_PARAM = "config-file-path";
+
+    /**
+     * if "true", then every registered Service, DAO, Provider and TransactionMgr is created and initialized when the filter is initialized,
+     * instead of on first use (the warm-up can also be enabled via config - see LocatorWarmUpConfigKeys). Example:
+     * <xmp>
+     *   <init-param>
+     *     <param-name>warm-up-locators</param-name>
+     *     <param-value>true</param-value>
+     *   </init-param>
+     * </xmp>
+     */
+    String WARM_UP_LOCATORS_INIT_PARAM = "warm-up-locators";
   }
 
   // =============================================================
@@ -92,10 +107,16 @@ public class InitFilter implements Filter {
 
     // init config
     ConfigLocator.setup(configFilePath, null); // TODO-p1(george) add config implementation name as an option to web.xml
+
+    // optionally, pay the cost of creating the locator bindings now, rather than on the first request
+    if (Boolean.parseBoolean(config.getInitParameter(InitFilterInitParameterWebXmlKeys.WARM_UP_LOCATORS_INIT_PARAM)) || LocatorWarmUp.isEnabled()) {
+      LocatorWarmUp.warmUp();
+    }
   }
 
   @Override
   public void destroy() {
+    PanelBuilderExecutor.shutdownInstance();
   }
 
   @Override
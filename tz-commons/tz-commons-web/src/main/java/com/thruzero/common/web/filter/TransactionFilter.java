@@ -25,12 +25,17 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 
 import com.thruzero.common.core.locator.TransactionMgrLocator;
+import com.thruzero.common.core.transaction.DatabaseTransactionMgr;
 import com.thruzero.common.core.transaction.TransactionMgr;
 
 /**
  * A simple implementation of the lazy transaction-per-request pattern - actual creation of a transaction is deferred
  * until (or if) requested by the Domain layer. It will be committed or rolled back only if it is active (i.e., if no
  * transaction is requested by the Domain layer, then there is nothing to commit or roll back).
+ * <p>
+ * A TransactionMgr that isn't a {@link DatabaseTransactionMgr} has no way to begin a transaction on demand (e.g., the
+ * DscTransactionMgr, whose DAOs write directly to the data store unless a transaction was begun), so its transaction is
+ * begun at the start of each request (beginning one is cheap - the writes are buffered until commit).
  *
  * @author George Norman
  */
@@ -48,7 +53,10 @@ public class TransactionFilter implements Filter {
     }
 
     try {
-      // transaction is automatically created on first request of TransactionService.getCurrentSession()
+      // a database transaction is automatically created on first request of getCurrentPersistenceManager(); others are begun here
+      if (!(transactionMgr instanceof DatabaseTransactionMgr)) {
+        transactionMgr.beginTransaction();
+      }
       chain.doFilter(request, response);
 
       // transaction is committed, if active and requested (otherwise, rollback)
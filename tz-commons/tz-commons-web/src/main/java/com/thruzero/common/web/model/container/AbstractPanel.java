@@ -39,6 +39,7 @@ public abstract class AbstractPanel {
   private final boolean useWhiteChevron;
   private final StyleClass headerStyleClass;
   private final List<InfoNodeElement> toolbar = new ArrayList<InfoNodeElement>();
+  private volatile boolean frozen;
 
 
   public AbstractPanel(String id, String title, String titleLink, String collapseDirection, boolean useWhiteChevron, StyleClass headerStyleClass, List<InfoNodeElement> toolbar) {
@@ -54,6 +55,27 @@ public abstract class AbstractPanel {
     }
   }
 
+  /**
+   * Makes this panel read-only, so it can be safely shared by concurrent requests (e.g., once it's cached).
+   * Subsequent attempts to modify it throw an UnsupportedOperationException.
+   */
+  public void freeze() {
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Throws an UnsupportedOperationException if this panel has been frozen; called by the mutators of subclasses.
+   */
+  protected void assertNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException("ERROR: Panel '" + id + "' is frozen and can't be modified (it's shared by concurrent requests).");
+    }
+  }
+
   /**
    * Returns the ID of this panel.
    */
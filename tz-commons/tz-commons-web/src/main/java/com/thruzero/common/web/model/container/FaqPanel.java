@@ -74,6 +74,7 @@ public class FaqPanel extends AbstractPanel {
   }
 
   public void addItem(InfoNodeElement panelItem) {
+    assertNotFrozen();
     items.add(panelItem);
   }
 
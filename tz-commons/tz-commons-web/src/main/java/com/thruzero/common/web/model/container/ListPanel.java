@@ -85,6 +85,7 @@ public class ListPanel extends AbstractPanel {
   }
 
   public void addItem(InfoNodeElement panelItem) {
+    assertNotFrozen();
     items.add(panelItem);
   }
 
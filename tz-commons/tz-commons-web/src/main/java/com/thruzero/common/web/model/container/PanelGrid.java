@@ -51,6 +51,7 @@ public class PanelGrid {
   private final String layout; // horizontal or vertical
   
   private final Map<String, PanelSet> panelSets = new LinkedHashMap<String, PanelSet>();
+  private volatile boolean frozen;
   
   public interface Layout {
     String HORIZONTAL = "horizontal";
@@ -76,9 +77,27 @@ public class PanelGrid {
   }
 
   public void addPanelSet(PanelSet panelSet) {
+    if (frozen) {
+      throw new UnsupportedOperationException("ERROR: PanelGrid '" + id + "' is frozen and can't be modified (it's shared by concurrent requests).");
+    }
     panelSets.put(panelSet.getId(), panelSet);
   }
 
+  /**
+   * Makes this PanelGrid, its PanelSets and their panels read-only, so it can be safely shared by concurrent
+   * requests (e.g., once it's cached). Subsequent attempts to modify it throw an UnsupportedOperationException.
+   */
+  public void freeze() {
+    for (PanelSet panelSet : panelSets.values()) {
+      panelSet.freeze();
+    }
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   public PanelSet getPanelSet(String panelSetId) {
     return panelSets.get(panelSetId);
   }
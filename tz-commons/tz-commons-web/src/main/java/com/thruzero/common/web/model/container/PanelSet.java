@@ -41,6 +41,7 @@ import com.thruzero.common.core.utils.UiUtils;
 public class PanelSet {
   private final String id;
   private final Map<String, AbstractPanel> panels = new LinkedHashMap<String, AbstractPanel>();
+  private volatile boolean frozen;
 
   public PanelSet(String columnId) {
     this.id = columnId;
@@ -51,9 +52,27 @@ public class PanelSet {
   }
 
   public void addPanel(AbstractPanel panel) {
+    if (frozen) {
+      throw new UnsupportedOperationException("ERROR: PanelSet '" + id + "' is frozen and can't be modified (it's shared by concurrent requests).");
+    }
     panels.put(panel.getId(), panel);
   }
 
+  /**
+   * Makes this PanelSet and all of its panels read-only, so it can be safely shared by concurrent requests
+   * (e.g., once it's cached). Subsequent attempts to modify it throw an UnsupportedOperationException.
+   */
+  public void freeze() {
+    for (AbstractPanel panel : panels.values()) {
+      panel.freeze();
+    }
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   public AbstractPanel getPanel(String panelId) {
     return panels.get(panelId);
   }
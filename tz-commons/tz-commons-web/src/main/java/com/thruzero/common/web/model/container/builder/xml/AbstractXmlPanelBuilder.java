@@ -104,9 +104,9 @@ public abstract class AbstractXmlPanelBuilder implements PanelBuilder {
     this.panelNode = panelNode;
   }
 
-  /** Returns the default error panel with the given title and errorMessage (ErrorHtmlPanel). */
+  /** Returns the default error panel with the given id (or "error", if empty), title and errorMessage (ErrorHtmlPanel). */
   public AbstractPanel buildErrorPanel(String id, String title, String errorMessage) {
-    AbstractPanel result = new ErrorHtmlPanel("error", "Panel ERROR", getPanelInfoForError() + " - " + errorMessage);
+    AbstractPanel result = new ErrorHtmlPanel(StringUtils.defaultIfEmpty(id, "error"), "Panel ERROR", getPanelInfoForError() + " - " + errorMessage);
     
     return result;
   }
@@ -0,0 +1,228 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.web.model.container.builder.xml;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.ConfigKeysBookmark;
+import com.thruzero.common.core.config.Config;
+import com.thruzero.common.core.config.Config.ConfigKeys;
+import com.thruzero.common.core.locator.ConfigLocator;
+
+/**
+ * The shared executor used to build panels concurrently (see {@code XmlPanelSetBuilder}). It's a bounded thread pool
+ * with a bounded queue, so a burst of requests can't create an unbounded number of threads; when the queue is full,
+ * new tasks are rejected (and the panel is rendered as an error panel). On runtimes that support virtual threads, a
+ * virtual-thread-per-task executor can be used instead. Configured via the section named by
+ * {@code PanelBuilderExecutorConfigKeys.CONFIG_SECTION}:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.common.web.model.container.builder.xml.PanelBuilderExecutor">
+ *     <entry key="maxThreads" value="32" />
+ *     <entry key="queueCapacity" value="256" />
+ *     <entry key="useVirtualThreads" value="false" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * @author George Norman
+ */
+public class PanelBuilderExecutor {
+  private static final Logger logger = Logger.getLogger(PanelBuilderExecutor.class);
+
+  public static final int DEFAULT_MAX_THREADS = 32;
+  public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+  private static PanelBuilderExecutor instance;
+
+  private final ExecutorService executorService;
+  private final ThreadPoolExecutor threadPoolExecutor; // null if virtual threads are used
+  private final AtomicLong submittedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong timedOutCount = new AtomicLong();
+
+  // ------------------------------------------------
+  // PanelBuilderExecutorConfigKeys
+  // ------------------------------------------------
+
+  /**
+   * Config keys defined for PanelBuilderExecutor and are defined inside of the config file section named by
+   * CONFIG_SECTION: "com.thruzero.common.web.model.container.builder.xml.PanelBuilderExecutor".
+   */
+  @ConfigKeysBookmark
+  public interface PanelBuilderExecutorConfigKeys extends ConfigKeys {
+    /** The config section to use */
+    String CONFIG_SECTION = PanelBuilderExecutor.class.getName();
+
+    /** The config key that defines the maximum number of panel builder threads: "maxThreads" (default is 32). */
+    String MAX_THREADS = "maxThreads";
+
+    /** The config key that defines the number of tasks that can wait for a thread, before tasks are rejected: "queueCapacity" (default is 256). */
+    String QUEUE_CAPACITY = "queueCapacity";
+
+    /** The config key that enables virtual threads, if the runtime supports them: "useVirtualThreads" (default is false). */
+    String USE_VIRTUAL_THREADS = "useVirtualThreads";
+  }
+
+  // ------------------------------------------------
+  // PanelBuilderThreadFactory
+  // ------------------------------------------------
+
+  private static final class PanelBuilderThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread result = new Thread(runnable, "panel-builder-" + threadCount.incrementAndGet());
+
+      result.setDaemon(true);
+
+      return result;
+    }
+  }
+
+  // ============================================================================
+  // PanelBuilderExecutor
+  // ============================================================================
+
+  /**
+   * Create an executor backed by a pool of up to maxThreads threads (idle threads time out) and a queue of the given
+   * capacity. If useVirtualThreads is true and the runtime supports virtual threads, then a virtual thread is used for
+   * each task instead (and maxThreads and queueCapacity are ignored).
+   */
+  public PanelBuilderExecutor(final int maxThreads, final int queueCapacity, final boolean useVirtualThreads) {
+    ExecutorService virtualThreadExecutor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+
+    if (virtualThreadExecutor == null) {
+      threadPoolExecutor = new ThreadPoolExecutor(Math.max(1, maxThreads), Math.max(1, maxThreads), 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+          new PanelBuilderThreadFactory());
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      executorService = threadPoolExecutor;
+    } else {
+      threadPoolExecutor = null;
+      executorService = virtualThreadExecutor;
+    }
+  }
+
+  /** Return the shared instance, created from config when first requested. */
+  public static synchronized PanelBuilderExecutor getInstance() {
+    if (instance == null) {
+      Config config = ConfigLocator.locate();
+
+      instance = new PanelBuilderExecutor(config.getIntegerValue(PanelBuilderExecutorConfigKeys.CONFIG_SECTION, PanelBuilderExecutorConfigKeys.MAX_THREADS, DEFAULT_MAX_THREADS),
+          config.getIntegerValue(PanelBuilderExecutorConfigKeys.CONFIG_SECTION, PanelBuilderExecutorConfigKeys.QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY),
+          config.getBooleanValue(PanelBuilderExecutorConfigKeys.CONFIG_SECTION, PanelBuilderExecutorConfigKeys.USE_VIRTUAL_THREADS, false));
+      logger.info("Created shared " + instance);
+    }
+
+    return instance;
+  }
+
+  /** Shut down the shared instance (e.g., when the application is stopped); a new one is created if it's requested again. */
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  /**
+   * Submit the given task for execution.
+   *
+   * @throws RejectedExecutionException if the queue is full (the task was not submitted).
+   */
+  public <T> Future<T> submit(final Callable<T> task) {
+    try {
+      Future<T> result = executorService.submit(task);
+
+      submittedCount.incrementAndGet();
+
+      return result;
+    } catch (RejectedExecutionException e) {
+      rejectedCount.incrementAndGet();
+      throw e;
+    }
+  }
+
+  /** Called by clients when a submitted task didn't complete before its deadline. */
+  public void recordTimeout() {
+    timedOutCount.incrementAndGet();
+  }
+
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  public boolean isVirtualThreadExecutor() {
+    return threadPoolExecutor == null;
+  }
+
+  /** Return the number of tasks waiting for a thread (always 0 for virtual threads). */
+  public int getQueueDepth() {
+    return threadPoolExecutor == null ? 0 : threadPoolExecutor.getQueue().size();
+  }
+
+  /** Return the approximate number of threads that are building panels (-1 for virtual threads). */
+  public int getActiveCount() {
+    return threadPoolExecutor == null ? -1 : threadPoolExecutor.getActiveCount();
+  }
+
+  public long getSubmittedCount() {
+    return submittedCount.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  public long getTimedOutCount() {
+    return timedOutCount.get();
+  }
+
+  @Override
+  public String toString() {
+    String pool = threadPoolExecutor == null ? "virtual threads" : "maxThreads=" + threadPoolExecutor.getMaximumPoolSize() + ", poolSize=" + threadPoolExecutor.getPoolSize()
+        + ", active=" + getActiveCount() + ", queueDepth=" + getQueueDepth() + ", queueCapacity=" + (getQueueDepth() + threadPoolExecutor.getQueue().remainingCapacity());
+
+    return "PanelBuilderExecutor[" + pool + ", submitted=" + getSubmittedCount() + ", rejected=" + getRejectedCount() + ", timedOut=" + getTimedOutCount() + "]";
+  }
+
+  /** Return a virtual-thread-per-task executor (Java 21+), or null if the runtime doesn't support virtual threads. */
+  private static ExecutorService createVirtualThreadExecutor() {
+    ExecutorService result = null;
+
+    try {
+      result = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      logger.info("Virtual threads are not supported by this runtime (" + System.getProperty("java.version") + "); using a thread pool.");
+    }
+
+    return result;
+  }
+}
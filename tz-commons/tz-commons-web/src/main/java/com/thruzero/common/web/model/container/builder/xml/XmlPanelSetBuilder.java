@@ -16,12 +16,16 @@
 
 package com.thruzero.common.web.model.container.builder.xml;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.math.NumberUtils;
 
@@ -68,6 +72,10 @@ import com.thruzero.common.web.model.container.builder.xml.AbstractXmlPanelBuild
  * }
  * </pre>
  *
+ * If the panel set defines a time-out (e.g., timeOutInSeconds="5") and has more than one panel, the panels are built
+ * concurrently, using the shared {@link PanelBuilderExecutor}. The time-out is a deadline for the whole panel set; each
+ * panel that isn't built by the deadline (or can't be queued) is replaced by an error panel.
+ *
  * @author George Norman
  */
 public class XmlPanelSetBuilder implements PanelSetBuilder {
@@ -215,42 +223,14 @@ public class XmlPanelSetBuilder implements PanelSetBuilder {
       this.paranoidLogging = paranoidLogging;
     }
     
-    public void logExecutorServiceCreated(String panelSetId) {
-      if (paranoidLogging && getLogger().isDebugEnabled()) {
-        getLogger().debug("* ExecutorService created for: " + panelSetId);
-      }
-    }
-    
-    public void logExecutorServiceShutdown(String panelSetId) {
-      if (paranoidLogging && getLogger().isDebugEnabled()) {
-        logHelper.getLogger().debug("* ExecutorService shutdown for: " + panelSetId);
-      }
-    }
-    
-    public void logExecutorServiceInterrupted(String panelSetId) {
+    public void logPanelTimedOut(String panelSetId, String panelInfo) {
       if (getLogger().isDebugEnabled()) {
-        logHelper.getLogger().debug("* ExecutorService termination was interrupted for: " + panelSetId);
-      }
-    }
-
-    public void logExecutorServiceIsTerminated(String panelSetId) {
-      if (paranoidLogging && getLogger().isDebugEnabled()) {
-        getLogger().debug("* ExecutorService is terminated for: " + panelSetId);
+        getLogger().debug("* Panel timed out for: " + panelSetId + " - " + panelInfo);
       }
     }
 
-    public void logExecutorServiceIsNotTerminated(ExecutorService executorService, List<Runnable> straglers, String panelSetId) {
-      if (getLogger().isDebugEnabled()) {
-        for (Runnable runnable : straglers) {
-          getLogger().debug("  * " + runnable);
-        }
-        
-        if (executorService.isTerminated()) {
-          logExecutorServiceIsTerminated(panelSetId);
-        } else {
-          getLogger().debug("******* ExecutorService is NOT terminated for: " + panelSetId + ". ActiveThreadCount: " + Thread.activeCount());
-        }
-      }
+    public void logPanelRejected(String panelSetId, String panelInfo) {
+      getLogger().warn("* Panel rejected (PanelBuilderExecutor queue is full) for: " + panelSetId + " - " + panelInfo + ". " + PanelBuilderExecutor.getInstance());
     }
 
     public void logPanelSetCompleted(String panelSetId) {
@@ -301,65 +281,53 @@ public class XmlPanelSetBuilder implements PanelSetBuilder {
     PanelSet result = new PanelSet(panelSetId);
 
     if (!panelNodes.isEmpty()) {
-      // Build the panels in parallel (e.g., RSS Feed panels should be created in parallel).
-      ExecutorService executorService = Executors.newFixedThreadPool(panelNodes.size());
-      logHelper.logExecutorServiceCreated(panelSetId);
-      
-      final Map<String,AbstractPanel> panels = new HashMap<String,AbstractPanel>();
+      // Build the panels in parallel (e.g., RSS Feed panels should be created in parallel), all sharing the same deadline.
+      PanelBuilderExecutor executor = PanelBuilderExecutor.getInstance();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutInSeconds);
+      List<AbstractXmlPanelBuilder> panelBuilders = new ArrayList<AbstractXmlPanelBuilder>(panelNodes.size());
+      List<Future<AbstractPanel>> futures = new ArrayList<Future<AbstractPanel>>(panelNodes.size());
+
       for (final InfoNodeElement panelNode : panelNodes) {
         final AbstractXmlPanelBuilder panelBuilder = panelBuilderTypeRegistry.createBuilder(panelNode.getName(), panelNode);
-        final String panelKey = Integer.toHexString(panelNode.hashCode());
-  
-        if (panelBuilder == null) {
-          panels.put(panelKey, new ErrorHtmlPanel("error", "Panel ERROR", "PanelBuilder not found for panel type " + panelNode.getName()));
-        } else {
-          //logger.debug("  - prepare to build: " + panelNode.getName());
-          executorService.execute(new Runnable() {
-            @Override
-            public void run() {
-              try {
-                AbstractPanel panel = panelBuilder.build();
-                panels.put(panelKey, panel);
-              } catch (Exception e) {
-                panels.put(panelKey, panelBuilder.buildErrorPanel(panelBuilder.getPanelId(), "Panel ERROR", "PanelBuilder encountered an Exception: " + e.getClass().getSimpleName()));
+        Future<AbstractPanel> future = null;
+
+        if (panelBuilder != null) {
+          try {
+            future = executor.submit(new Callable<AbstractPanel>() {
+              @Override
+              public AbstractPanel call() {
+                try {
+                  return panelBuilder.build();
+                } catch (Exception e) {
+                  return panelBuilder.buildErrorPanel(panelBuilder.getPanelId(), "Panel ERROR", "PanelBuilder encountered an Exception: " + e.getClass().getSimpleName());
+                }
               }
-            }
-            
-            @Override
-            public String toString() {
-              return panelBuilder.getPanelInfoForError();
-            }
-          });
-        }
-      }
 
-      // Wait for all panels to be built
-      executorService.shutdown();
-      logHelper.logExecutorServiceShutdown(panelSetId);
-      try {
-        executorService.awaitTermination(timeoutInSeconds, TimeUnit.SECONDS);
-      } catch (InterruptedException e) {
-        // ignore (handled below)
-        logHelper.logExecutorServiceInterrupted(panelSetId);
-      }
-      
-      if (executorService.isTerminated()) {
-        logHelper.logExecutorServiceIsTerminated(panelSetId);
-      } else {
-        logHelper.logExecutorServiceIsNotTerminated(executorService, executorService.shutdownNow(), panelSetId);
+              @Override
+              public String toString() {
+                return panelBuilder.getPanelInfoForError();
+              }
+            });
+          } catch (RejectedExecutionException e) {
+            logHelper.logPanelRejected(panelSetId, panelBuilder.getPanelInfoForError());
+          }
+        }
+        panelBuilders.add(panelBuilder);
+        futures.add(future);
       }
 
       // add panels in the same order as defined
-      for (InfoNodeElement panelNode : panelNodes) {
-        String panelKey = Integer.toHexString(panelNode.hashCode());
-        AbstractPanel panel = panels.get(panelKey);
-        if (panel == null) {
-          // if it wasn't added to the panelNodes map, then there must have been a timeout error
-          AbstractXmlPanelBuilder panelBuilder = panelBuilderTypeRegistry.createBuilder(panelNode.getName(), panelNode);
-          
-          result.addPanel(panelBuilder.buildErrorPanel(panelKey, "Panel ERROR", "PanelBuilder encountered a timeout error: " + panelNode.getName()));
+      for (int i = 0; i < panelNodes.size(); i++) {
+        InfoNodeElement panelNode = panelNodes.get(i);
+        AbstractXmlPanelBuilder panelBuilder = panelBuilders.get(i);
+        Future<AbstractPanel> future = futures.get(i);
+
+        if (panelBuilder == null) {
+          result.addPanel(new ErrorHtmlPanel("error", "Panel ERROR", "PanelBuilder not found for panel type " + panelNode.getName()));
+        } else if (future == null) {
+          result.addPanel(panelBuilder.buildErrorPanel(panelBuilder.getPanelId(), "Panel ERROR", "PanelBuilder was rejected (server busy): " + panelNode.getName()));
         } else {
-          result.addPanel(panel);
+          result.addPanel(getPanel(future, deadline, panelNode, panelBuilder, executor));
         }
       }
     }
@@ -368,6 +336,32 @@ public class XmlPanelSetBuilder implements PanelSetBuilder {
     return result;
   }
 
+  /** Wait (until the deadline) for the given panel to be built; if it's not built by then, cancel it and return a timeout error panel. */
+  protected AbstractPanel getPanel(Future<AbstractPanel> future, long deadline, InfoNodeElement panelNode, AbstractXmlPanelBuilder panelBuilder, PanelBuilderExecutor executor) {
+    AbstractPanel result = null;
+    boolean timedOut = false;
+
+    try {
+      result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      timedOut = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      timedOut = true;
+    } catch (ExecutionException e) {
+      result = panelBuilder.buildErrorPanel(panelBuilder.getPanelId(), "Panel ERROR", "PanelBuilder encountered an Exception: " + e.getCause().getClass().getSimpleName());
+    }
+
+    if (timedOut) {
+      future.cancel(true);
+      executor.recordTimeout();
+      logHelper.logPanelTimedOut(panelSetId, panelBuilder.getPanelInfoForError());
+      result = panelBuilder.buildErrorPanel(Integer.toHexString(panelNode.hashCode()), "Panel ERROR", "PanelBuilder encountered a timeout error: " + panelNode.getName());
+    }
+
+    return result;
+  }
+
   protected PanelSet buildSequentially() throws Exception {
     PanelSet result = new PanelSet(panelSetId);
 
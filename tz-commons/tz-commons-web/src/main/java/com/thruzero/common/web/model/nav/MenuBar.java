@@ -39,12 +39,16 @@ public class MenuBar implements MenuStateHolder {
   /** set of menus associated with this menubar. */
   private Map<String, MenuNode> menus = new LinkedHashMap<String, MenuNode>();
 
+  /** If true, this menubar (and its menus) are shared by concurrent requests and can't be modified. */
+  private volatile boolean frozen;
+
   /** Return the optional MenuBar title. */
   public String getTitle() {
     return title;
   }
 
   public void setTitle(String title) {
+    assertNotFrozen();
     this.title = title;
   }
 
@@ -59,9 +63,32 @@ public class MenuBar implements MenuStateHolder {
 
   /** Adds the given menu to the end of the menu list and associates it with the given id. */
   public void addMenu(String id, MenuNode menu) {
+    assertNotFrozen();
     menus.put(id, menu);
   }
 
+  /**
+   * Makes this menubar and all of its menus read-only, so it can be safely shared by concurrent requests (e.g., once
+   * it's cached). Subsequent attempts to modify it (including setting the active menu path, which is per-request
+   * state) throw an UnsupportedOperationException.
+   */
+  public void freeze() {
+    for (MenuNode menu : menus.values()) {
+      menu.freeze();
+    }
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void assertNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException("ERROR: MenuBar '" + title + "' is frozen and can't be modified (it's shared by concurrent requests).");
+    }
+  }
+
   /**
    * Return the currently active, top-level Menu (from which sub items and sub menus can be retrieved).
    */
@@ -107,6 +134,7 @@ public class MenuBar implements MenuStateHolder {
   }
 
   public void setActiveMenuPath(MenuNodePath activeMenuPath) {
+    assertNotFrozen();
     this.activeMenuPath = activeMenuPath;
   }
 
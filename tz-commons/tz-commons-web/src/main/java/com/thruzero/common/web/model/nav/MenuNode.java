@@ -62,6 +62,9 @@ public class MenuNode implements MenuStateHolder {
   /** Child menu elements. */
   private Map<String, MenuNode> childNodes;
 
+  /** If true, this node (and its children) are shared by concurrent requests and can't be modified. */
+  private volatile boolean frozen;
+
   // ------------------------------------------------------
   // MenuNodePath
   // ------------------------------------------------------
@@ -220,6 +223,7 @@ public class MenuNode implements MenuStateHolder {
   }
 
   public void setDescription(String description) {
+    assertNotFrozen();
     this.description = description;
   }
 
@@ -252,9 +256,31 @@ public class MenuNode implements MenuStateHolder {
 
   /** Add a new child for this instance (positioned at the end of the child list). */
   public void addChild(MenuNode child) {
+    assertNotFrozen();
     childNodes.put(child.getId(), child);
   }
 
+  /**
+   * Makes this node and all of its descendants read-only, so they can be safely shared by concurrent requests.
+   * Subsequent attempts to modify them throw an UnsupportedOperationException.
+   */
+  public void freeze() {
+    for (MenuNode child : childNodes.values()) {
+      child.freeze();
+    }
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void assertNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException("ERROR: MenuNode '" + path + "' is frozen and can't be modified (it's shared by concurrent requests).");
+    }
+  }
+
   public boolean isEmptyChildren() {
     return childNodes == null ? true : childNodes.isEmpty();
   }
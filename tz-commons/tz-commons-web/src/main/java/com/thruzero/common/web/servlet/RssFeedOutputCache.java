@@ -0,0 +1,320 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.web.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.thruzero.common.core.bookmarks.ConfigKeysBookmark;
+import com.thruzero.common.core.config.Config;
+import com.thruzero.common.core.config.Config.ConfigKeys;
+import com.thruzero.common.core.locator.ConfigLocator;
+import com.thruzero.common.core.map.ExpiringLruCache;
+import com.thruzero.common.core.map.ExpiringLruCache.EntryFilter;
+import com.thruzero.common.core.security.MessageDigestHelper;
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.domain.model.DataStoreInfo;
+import com.thruzero.domain.service.InfoNodeService;
+import com.thruzero.domain.service.InfoNodeService.InfoNodeServiceListener;
+
+/**
+ * An application-wide cache of the RSS feeds rendered by the {@link RssFeedPublisherServlet}, keyed by feed id. Each entry holds the rendered bytes,
+ * a gzipped copy and the validators (ETag and Last-Modified) used to answer conditional requests. The cache is bounded by size (least-recently-used
+ * entries are evicted first) and each entry expires after a configurable time-to-live. Entries are also invalidated as soon as the
+ * {@code InfoNodeService} saves, updates or deletes the entity the feed was rendered from.
+ * <p>
+ * The cache is configured via the config section named by {@code RssFeedOutputCacheConfigKeys.CONFIG_SECTION}:
+ *
+ * <pre>
+ * {@code
+ *   <section name="com.thruzero.common.web.servlet.RssFeedOutputCache">
+ *     <entry key="maxSize" value="200" />
+ *     <entry key="timeToLiveInMinutes" value="60" />
+ *   </section>
+ * }
+ * </pre>
+ *
+ * @author George Norman
+ */
+public final class RssFeedOutputCache implements InfoNodeServiceListener {
+  private static final Logger logger = Logger.getLogger(RssFeedOutputCache.class);
+
+  private static final int DEFAULT_MAX_SIZE = 200;
+  private static final int DEFAULT_TIME_TO_LIVE_IN_MINUTES = 60;
+
+  /** Appended to the ETag of the gzipped content (inside the quotes). */
+  private static final String GZIP_ENTITY_TAG_SUFFIX = "-gz";
+
+  private final ExpiringLruCache<String, RenderedRssFeed> cache;
+  private volatile InfoNodeService observedInfoNodeService;
+
+  private final Object invalidationLock = new Object();
+  private long invalidationCount; // guarded by invalidationLock
+
+  // ------------------------------------------------
+  // RssFeedOutputCacheConfigKeys
+  // ------------------------------------------------
+
+  /**
+   * Config keys defined for RssFeedOutputCache and are defined inside of the config file section named by CONFIG_SECTION:
+   * "com.thruzero.common.web.servlet.RssFeedOutputCache".
+   */
+  @ConfigKeysBookmark
+  public interface RssFeedOutputCacheConfigKeys extends ConfigKeys {
+    /** The config section to use */
+    String CONFIG_SECTION = RssFeedOutputCache.class.getName();
+
+    /** The config key that defines the maximum number of rendered feeds held by the cache: "maxSize". */
+    String MAX_SIZE = "maxSize";
+
+    /** The config key that defines how long a rendered feed remains valid: "timeToLiveInMinutes". */
+    String TIME_TO_LIVE_IN_MINUTES = "timeToLiveInMinutes";
+  }
+
+  // ------------------------------------------------
+  // RenderedRssFeed
+  // ------------------------------------------------
+
+  /**
+   * A rendered feed (as UTF-8 bytes), its gzipped copy and its validators, plus the path of the entity it was rendered from (as requested and as
+   * resolved against the private root data store of the feed's owner).
+   */
+  public static final class RenderedRssFeed {
+    private final byte[] content;
+    private final byte[] gzippedContent;
+    private final String entityTag;
+    private final String gzippedEntityTag;
+    private final long lastModified;
+    private final EntityPath entityPath;
+    private final EntityPath resolvedEntityPath;
+
+    public RenderedRssFeed(byte[] content, EntityPath entityPath, DataStoreInfo dataStoreInfo) {
+      this.content = content;
+      this.gzippedContent = gzip(content);
+      String contentHash = MessageDigestHelper.getInstance().encodeAsMd5Hex(content);
+      this.entityTag = "\"" + contentHash + "\"";
+      this.gzippedEntityTag = "\"" + contentHash + GZIP_ENTITY_TAG_SUFFIX + "\"";
+      this.lastModified = System.currentTimeMillis() / 1000 * 1000; // HTTP dates have a resolution of one second
+      this.entityPath = entityPath;
+
+      // same resolution as used by InfoNodeService.getInfoNode(EntityPath, DataStoreInfo)
+      if (dataStoreInfo == null || StringUtils.isEmpty(dataStoreInfo.getPrivateRootDataStorePath())) {
+        resolvedEntityPath = entityPath;
+      } else {
+        resolvedEntityPath = new EntityPath(dataStoreInfo.getPrivateRootDataStorePath(), entityPath.getContainerPath(), entityPath.getEntityName());
+      }
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    public byte[] getGzippedContent() {
+      return gzippedContent;
+    }
+
+    /** Return the (strong) ETag, which is the quoted MD5 hash of the content. */
+    public String getEntityTag() {
+      return entityTag;
+    }
+
+    /**
+     * Return the (strong) ETag of the gzipped content, which is the quoted MD5 hash of the content plus a "-gz" suffix. The
+     * gzipped bytes differ from the identity bytes, so they must not share a strong ETag.
+     */
+    public String getGzippedEntityTag() {
+      return gzippedEntityTag;
+    }
+
+    /** Return the time the feed was rendered, used as the Last-Modified date. */
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /** Return true if this feed was rendered from the entity at the given path. */
+    public boolean isRenderedFrom(EntityPath changedEntityPath) {
+      return entityPath.equals(changedEntityPath) || resolvedEntityPath.equals(changedEntityPath);
+    }
+
+    /**
+     * Return true if a client that sent the given If-None-Match and If-Modified-Since headers already has this feed. If-None-Match takes precedence;
+     * If-Modified-Since is used only if If-None-Match is absent. Either ETag (identity or gzip) matches, since both identify the same rendering.
+     *
+     * @param ifNoneMatch the If-None-Match header (may be null).
+     * @param ifModifiedSince the If-Modified-Since header, as a date (-1 if absent).
+     */
+    public boolean isNotModified(String ifNoneMatch, long ifModifiedSince) {
+      if (ifNoneMatch != null) {
+        for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+          tag = StringUtils.removeStart(tag.trim(), "W/");
+          if ("*".equals(tag) || entityTag.equals(tag) || gzippedEntityTag.equals(tag)) {
+            return true;
+          }
+        }
+
+        return false;
+      }
+
+      return ifModifiedSince >= lastModified;
+    }
+
+    private static byte[] gzip(byte[] content) {
+      try {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(content.length / 4 + 64);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(result);
+
+        gzipStream.write(content);
+        gzipStream.close();
+
+        return result.toByteArray();
+      } catch (IOException e) {
+        throw new RuntimeException("Error - failed to gzip the rendered feed.", e);
+      }
+    }
+  }
+
+  // ------------------------------------------------
+  // RenderedRssFeedBuilder
+  // ------------------------------------------------
+
+  /** Renders the feed for a given feed id, on a cache miss. */
+  public interface RenderedRssFeedBuilder {
+    /** Return the rendered feed, or null if it doesn't exist. */
+    RenderedRssFeed createRenderedRssFeed(String feedId) throws IOException;
+  }
+
+  // ------------------------------------------------
+  // InstanceHolder
+  // ------------------------------------------------
+
+  /** Lazily creates the shared instance on first use (after the InitFilter has configured the ConfigLocator). */
+  private static final class InstanceHolder {
+    private static final RssFeedOutputCache instance = createFromConfig();
+
+    private static RssFeedOutputCache createFromConfig() {
+      Config config = ConfigLocator.locate();
+      int maxSize = config.getIntegerValue(RssFeedOutputCacheConfigKeys.CONFIG_SECTION, RssFeedOutputCacheConfigKeys.MAX_SIZE, DEFAULT_MAX_SIZE);
+      int timeToLiveInMinutes = config.getIntegerValue(RssFeedOutputCacheConfigKeys.CONFIG_SECTION, RssFeedOutputCacheConfigKeys.TIME_TO_LIVE_IN_MINUTES,
+          DEFAULT_TIME_TO_LIVE_IN_MINUTES);
+
+      return new RssFeedOutputCache(maxSize, TimeUnit.MINUTES.toMillis(timeToLiveInMinutes));
+    }
+  }
+
+  // ============================================================================
+  // RssFeedOutputCache
+  // ============================================================================
+
+  public RssFeedOutputCache(int maxSize, long timeToLiveMillis) {
+    cache = new ExpiringLruCache<String, RenderedRssFeed>(maxSize, timeToLiveMillis);
+  }
+
+  public static RssFeedOutputCache getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Return the cached rendered feed for the given feedId. If absent (or expired), then use the given builder to render it and cache it for all future
+   * requests. Returns null if the builder returns null (e.g., the feed does not exist). A feed rendered while an invalidation happened is returned,
+   * but not cached (it may have been rendered from the entity before it changed).
+   */
+  public RenderedRssFeed getRenderedFeed(String feedId, RenderedRssFeedBuilder builder) throws IOException {
+    RenderedRssFeed result = cache.get(feedId);
+
+    if (result == null) {
+      long expectedInvalidationCount = getInvalidationCount();
+
+      result = builder.createRenderedRssFeed(feedId);
+
+      if (result != null) {
+        putIfNotInvalidated(feedId, result, expectedInvalidationCount);
+      }
+    }
+
+    return result;
+  }
+
+  /** Remove every rendered feed that was rendered from the given entityPath. */
+  public void invalidate(final EntityPath entityPath) {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+
+      cache.removeIf(new EntryFilter<String, RenderedRssFeed>() {
+        @Override
+        public boolean accept(String feedId, RenderedRssFeed renderedFeed) {
+          return renderedFeed.isRenderedFrom(entityPath);
+        }
+      });
+    }
+  }
+
+  public void clear() {
+    synchronized (invalidationLock) {
+      invalidationCount++;
+      cache.clear();
+    }
+  }
+
+  /** Return the underlying cache, for diagnostics (e.g., size and hit ratio). */
+  public ExpiringLruCache<String, RenderedRssFeed> getCache() {
+    return cache;
+  }
+
+  @Override
+  public void infoNodeChanged(EntityPath entityPath) {
+    logger.debug("Invalidating rendered RSS feeds for: " + entityPath);
+    invalidate(entityPath);
+  }
+
+  /**
+   * Register this cache as a listener of the given InfoNodeService (the service feeds are rendered from). Called on each request, since the locator
+   * may be reset (e.g., by tests), creating a new service instance.
+   */
+  public void observe(InfoNodeService infoNodeService) {
+    if (infoNodeService != observedInfoNodeService) {
+      synchronized (this) {
+        if (infoNodeService != observedInfoNodeService) {
+          infoNodeService.addInfoNodeServiceListener(this);
+          observedInfoNodeService = infoNodeService;
+
+          // feeds rendered from the previous service can no longer be invalidated, so discard them
+          clear();
+        }
+      }
+    }
+  }
+
+  /** Return the number of invalidations so far; read it before rendering a feed, to detect a concurrent write. */
+  private long getInvalidationCount() {
+    synchronized (invalidationLock) {
+      return invalidationCount;
+    }
+  }
+
+  /** Cache the given rendered feed, unless an invalidation happened while it was being rendered (it may be stale). */
+  private void putIfNotInvalidated(String feedId, RenderedRssFeed renderedFeed, long expectedInvalidationCount) {
+    synchronized (invalidationLock) {
+      if (invalidationCount == expectedInvalidationCount) {
+        cache.put(feedId, renderedFeed);
+      }
+    }
+  }
+}
@@ -16,8 +16,11 @@
 
 package com.thruzero.common.web.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +29,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.StringUtils;
 
 import com.thruzero.common.core.infonode.InfoNodeElement;
@@ -33,6 +37,8 @@ import com.thruzero.common.core.locator.ProviderLocator;
 import com.thruzero.common.core.locator.ServiceLocator;
 import com.thruzero.common.core.support.ContainerPath;
 import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.web.servlet.RssFeedOutputCache.RenderedRssFeed;
+import com.thruzero.common.web.servlet.RssFeedOutputCache.RenderedRssFeedBuilder;
 import com.thruzero.domain.model.DataStoreInfo;
 import com.thruzero.domain.provider.DataStoreInfoProvider;
 import com.thruzero.domain.service.InfoNodeService;
@@ -43,6 +49,11 @@ import com.thruzero.domain.service.RssFeedService;
  * with the following format: {@code <username>.<feedName>}
  * <p>
  * Example feed link: http://www.thruzero.com/jcat3/rss?id=dilbert.test1
+ * <p>
+ * Rendered feeds are cached by the {@link RssFeedOutputCache} (until the feed's InfoNode is saved), so most requests are
+ * served from memory. Each response includes an ETag and a Last-Modified header, so a feed reader that polls with
+ * If-None-Match or If-Modified-Since receives a 304 (Not Modified) response if the feed hasn't changed. The gzipped copy
+ * is sent to clients that accept gzip encoding (with a q-value above zero), under its own ETag.
  *
  * @author George Norman
  */
@@ -63,23 +74,66 @@ public class RssFeedPublisherServlet extends HttpServlet {
     }
 
     // get and validate userName
-    String userName = feedInfo[0];
+    final String userName = feedInfo[0];
     Matcher userNameMatcher = namePattern.matcher(userName);
     if (!userNameMatcher.matches()) {
       throw new IllegalArgumentException("Invalid Feed ID");
     }
 
     // get and validate entityName
-    String entityName = feedInfo[1];
+    final String entityName = feedInfo[1];
     Matcher entityNameMatcher = namePattern.matcher(entityName);
     if (!entityNameMatcher.matches()) {
       throw new IllegalArgumentException("Invalid Feed ID");
     }
 
+    // get the rendered feed from the cache (rendering it, if necessary)
+    RssFeedOutputCache outputCache = RssFeedOutputCache.getInstance();
+    outputCache.observe(ServiceLocator.locate(InfoNodeService.class));
+    RenderedRssFeed renderedFeed = outputCache.getRenderedFeed(feedId, new RenderedRssFeedBuilder() {
+      @Override
+      public RenderedRssFeed createRenderedRssFeed(String feedId) throws IOException {
+        return renderFeed(userName, entityName);
+      }
+    });
+
+    if (renderedFeed == null) {
+      throw new IllegalArgumentException("Feed Not Found");
+    }
+
+    // publish the feed (or tell the client its copy is current)
+    boolean gzip = isGzipAccepted(request.getHeader("Accept-Encoding"));
+
+    response.setHeader("ETag", gzip ? renderedFeed.getGzippedEntityTag() : renderedFeed.getEntityTag());
+    response.setDateHeader("Last-Modified", renderedFeed.getLastModified());
+    response.setHeader("Vary", "Accept-Encoding");
+
+    if (renderedFeed.isNotModified(request.getHeader("If-None-Match"), getIfModifiedSince(request))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    } else {
+      byte[] content;
+
+      if (gzip) {
+        response.setHeader("Content-Encoding", "gzip");
+        content = renderedFeed.getGzippedContent();
+      } else {
+        content = renderedFeed.getContent();
+      }
+      response.setContentType("application/xml; charset=UTF-8");
+      response.setContentLength(content.length);
+
+      OutputStream out = response.getOutputStream();
+      out.write(content);
+      out.flush();
+    }
+  }
+
+  /** Load the feed's InfoNode from the datastore of the given user and render it; return null if the user or the feed doesn't exist. */
+  protected RenderedRssFeed renderFeed(String userName, String entityName) throws IOException {
     // load the user that has published the requested feed
     DataStoreInfo dataStoreInfo = ProviderLocator.locate(DataStoreInfoProvider.class).getDataStoreInfo(userName);
     if (dataStoreInfo == null) {
-      throw new IllegalArgumentException("Feed Not Found");
+      return null;
     }
 
     // load the InfoNode from the user's datastore for the requested feed
@@ -88,15 +142,67 @@ public class RssFeedPublisherServlet extends HttpServlet {
     InfoNodeElement rssFeedNode = infoNodeService.getInfoNode(entityPath, dataStoreInfo);
 
     if (rssFeedNode == null) {
-      throw new IllegalArgumentException("Feed Not Found");
+      return null;
     } else {
       rssFeedNode.enableRootNode();
     }
 
-    // publish the feed
+    // render the feed
     RssFeedService rssFeedService = ServiceLocator.locate(RssFeedService.class);
-    Writer writer = response.getWriter();
-    response.setContentType("application/xml; charset=UTF-8");
-    rssFeedService.writeRssFeed(rssFeedNode, writer);
+    ByteArrayOutputStream content = new ByteArrayOutputStream(8192);
+    rssFeedService.writeRssFeed(rssFeedNode, new OutputStreamWriter(content, CharEncoding.UTF_8));
+
+    return new RenderedRssFeed(content.toByteArray(), entityPath, dataStoreInfo);
+  }
+
+  /**
+   * Return true if the given Accept-Encoding header accepts gzip: "gzip" (or "x-gzip") is listed with a q-value above zero or,
+   * if it's not listed, "*" is. A coding with a malformed q-value is ignored.
+   */
+  static boolean isGzipAccepted(String acceptEncoding) {
+    Boolean gzipAccepted = null;
+    boolean wildcardAccepted = false;
+
+    if (acceptEncoding != null) {
+      for (String coding : StringUtils.split(acceptEncoding, ',')) {
+        String[] params = StringUtils.split(coding, ';');
+
+        if (params.length == 0) {
+          continue;
+        }
+
+        String name = params[0].trim().toLowerCase(Locale.ENGLISH);
+        float quality = 1;
+
+        try {
+          for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+              quality = Float.parseFloat(param.substring(2).trim());
+            }
+          }
+        } catch (NumberFormatException e) {
+          continue;
+        }
+
+        if ("gzip".equals(name) || "x-gzip".equals(name)) {
+          gzipAccepted = (gzipAccepted != null && gzipAccepted) || quality > 0;
+        } else if ("*".equals(name)) {
+          wildcardAccepted = quality > 0;
+        }
+      }
+    }
+
+    return gzipAccepted == null ? wildcardAccepted : gzipAccepted;
+  }
+
+  /** Return the If-Modified-Since header as a date, or -1 if it's absent or malformed. */
+  private long getIfModifiedSince(HttpServletRequest request) {
+    try {
+      return request.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
   }
 }
@@ -0,0 +1,178 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.web.model.container.builder.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.thruzero.common.core.infonode.InfoNodeElement;
+import com.thruzero.common.core.infonode.builder.SaxInfoNodeBuilder;
+import com.thruzero.common.web.model.container.AbstractPanel;
+import com.thruzero.common.web.model.container.DividerPanel;
+import com.thruzero.common.web.model.container.ErrorHtmlPanel;
+import com.thruzero.common.web.model.container.PanelSet;
+import com.thruzero.common.web.model.container.builder.xml.AbstractXmlPanelBuilder.XmlPanelBuilderAnnotation;
+import com.thruzero.common.web.model.container.builder.xml.XmlPanelSetBuilder.StandardXmlPanelBuilderTypeRegistry;
+import com.thruzero.common.web.test.support.AbstractWebTestCase;
+
+/**
+ * Unit test for XmlPanelSetBuilder (concurrent builds) and PanelBuilderExecutor.
+ *
+ * @author George Norman
+ */
+public class XmlPanelSetBuilderTest extends AbstractWebTestCase {
+
+  // ------------------------------------------------
+  // SleepyPanelBuilder
+  // ------------------------------------------------
+
+  /** Builds a divider panel, after sleeping for the number of milliseconds given by the "sleepMillis" attribute. */
+  @XmlPanelBuilderAnnotation(panelTypeName = "sleepyPanel")
+  public static class SleepyPanelBuilder extends XmlDividerPanelBuilder {
+    public SleepyPanelBuilder(InfoNodeElement panelNode) {
+      super(panelNode);
+    }
+
+    @Override
+    public AbstractPanel build() throws Exception {
+      Thread.sleep(NumberUtils.toLong(getPanelNode().getAttributeValue("sleepMillis")));
+
+      return super.build();
+    }
+  }
+
+  // ============================================================================
+  // XmlPanelSetBuilderTest
+  // ============================================================================
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    PanelBuilderExecutor.shutdownInstance();
+
+    super.tearDown();
+  }
+
+  @Test
+  public void testBuildConcurrently() throws Exception {
+    PanelSet panelSet = buildPanelSet("<panelSet id=\"col1\" timeOutInSeconds=\"5\">" +
+        "<sleepyPanel id=\"p1\" title=\"P1\" sleepMillis=\"200\"/>" +
+        "<sleepyPanel id=\"p2\" title=\"P2\" sleepMillis=\"0\"/>" +
+        "<unknownPanel id=\"p3\"/>" +
+        "<sleepyPanel id=\"p4\" title=\"P4\" sleepMillis=\"100\"/>" +
+        "</panelSet>");
+
+    List<AbstractPanel> panels = new ArrayList<AbstractPanel>(panelSet.getPanels());
+    assertEquals(4, panels.size());
+    assertEquals("p1", panels.get(0).getId());
+    assertEquals("p2", panels.get(1).getId());
+    assertTrue(panels.get(2) instanceof ErrorHtmlPanel);
+    assertEquals("p4", panels.get(3).getId());
+    assertTrue(panels.get(3) instanceof DividerPanel);
+    assertEquals(3, PanelBuilderExecutor.getInstance().getSubmittedCount());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    long start = System.currentTimeMillis();
+    PanelSet panelSet = buildPanelSet("<panelSet id=\"col1\" timeOutInSeconds=\"1\">" +
+        "<sleepyPanel id=\"p1\" title=\"P1\" sleepMillis=\"0\"/>" +
+        "<sleepyPanel id=\"p2\" title=\"P2\" sleepMillis=\"10000\"/>" +
+        "<sleepyPanel id=\"p3\" title=\"P3\" sleepMillis=\"10000\"/>" +
+        "</panelSet>");
+    long elapsed = System.currentTimeMillis() - start;
+
+    List<AbstractPanel> panels = new ArrayList<AbstractPanel>(panelSet.getPanels());
+    assertEquals("p1", panels.get(0).getId());
+    assertTrue(panels.get(1) instanceof ErrorHtmlPanel);
+    assertTrue(panels.get(2) instanceof ErrorHtmlPanel);
+    assertTrue("The deadline is for the whole panel set: " + elapsed + "ms", elapsed < 3000);
+    assertEquals(2, PanelBuilderExecutor.getInstance().getTimedOutCount());
+  }
+
+  @Test
+  public void testRejection() throws Exception {
+    PanelBuilderExecutor executor = new PanelBuilderExecutor(1, 1, false);
+    final CountDownLatch latch = new CountDownLatch(1);
+    Callable<String> blockedTask = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        latch.await();
+        return "done";
+      }
+    };
+
+    try {
+      executor.submit(blockedTask); // running
+      executor.submit(blockedTask); // queued
+      try {
+        executor.submit(blockedTask);
+        fail("Expected the task to be rejected");
+      } catch (RejectedExecutionException e) {
+        // expected
+      }
+      assertEquals(1, executor.getQueueDepth());
+      assertEquals(2, executor.getSubmittedCount());
+      assertEquals(1, executor.getRejectedCount());
+    } finally {
+      latch.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testVirtualThreadsOption() throws Exception {
+    PanelBuilderExecutor executor = new PanelBuilderExecutor(1, 1, true);
+
+    try {
+      boolean virtualThreadsSupported = false;
+      try {
+        Thread.class.getMethod("ofVirtual");
+        virtualThreadsSupported = true;
+      } catch (NoSuchMethodException e) {
+        // older runtime
+      }
+      assertEquals(virtualThreadsSupported, executor.isVirtualThreadExecutor());
+      assertEquals("done", executor.submit(new Callable<String>() {
+        @Override
+        public String call() {
+          return "done";
+        }
+      }).get());
+    } finally {
+      executor.shutdown();
+    }
+    assertFalse(new PanelBuilderExecutor(1, 1, false).isVirtualThreadExecutor());
+  }
+
+  private PanelSet buildPanelSet(String xml) throws Exception {
+    InfoNodeElement panelSetNode = SaxInfoNodeBuilder.DEFAULT.buildInfoNode(xml, null);
+
+    return new XmlPanelSetBuilder(panelSetNode, new StandardXmlPanelBuilderTypeRegistry(SleepyPanelBuilder.class)).build();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ *   Copyright 2013 George Norman
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.thruzero.common.web.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.CharEncoding;
+import org.junit.Test;
+
+import com.thruzero.common.core.support.EntityPath;
+import com.thruzero.common.web.servlet.RssFeedOutputCache.RenderedRssFeed;
+import com.thruzero.common.web.servlet.RssFeedOutputCache.RenderedRssFeedBuilder;
+import com.thruzero.common.web.test.support.AbstractWebTestCase;
+import com.thruzero.domain.model.DataStoreInfo;
+
+/**
+ * Unit test for RssFeedOutputCache.
+ *
+ * @author George Norman
+ */
+public class RssFeedOutputCacheTest extends AbstractWebTestCase {
+  private static final String FEED_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><rss version=\"2.0\"><channel><title>Test</title></channel></rss>";
+
+  // ------------------------------------------------
+  // CountingBuilder
+  // ------------------------------------------------
+
+  /** Renders FEED_XML for the feed at /<user>/rss/<entity>.xml and counts the number of renders. */
+  private static class CountingBuilder implements RenderedRssFeedBuilder {
+    private final AtomicInteger renderCount = new AtomicInteger();
+    private final DataStoreInfo dataStoreInfo;
+
+    public CountingBuilder(DataStoreInfo dataStoreInfo) {
+      this.dataStoreInfo = dataStoreInfo;
+    }
+
+    @Override
+    public RenderedRssFeed createRenderedRssFeed(String feedId) throws IOException {
+      renderCount.incrementAndGet();
+      if (feedId.startsWith("missing")) {
+        return null;
+      }
+
+      String[] feedInfo = feedId.split("\\.");
+
+      return new RenderedRssFeed(FEED_XML.getBytes(CharEncoding.UTF_8), new EntityPath("/" + feedInfo[0] + "/rss/" + feedInfo[1] + ".xml"), dataStoreInfo);
+    }
+  }
+
+  // ============================================================================
+  // RssFeedOutputCacheTest
+  // ============================================================================
+
+  @Test
+  public void testCachedUntilSaved() throws Exception {
+    RssFeedOutputCache cache = new RssFeedOutputCache(10, TimeUnit.MINUTES.toMillis(10));
+    CountingBuilder builder = new CountingBuilder(null);
+
+    RenderedRssFeed feed = cache.getRenderedFeed("dilbert.test1", builder);
+    assertSame(feed, cache.getRenderedFeed("dilbert.test1", builder));
+    cache.getRenderedFeed("dilbert.test2", builder);
+    assertEquals(2, builder.renderCount.get());
+
+    // saving a different entity doesn't invalidate the feed
+    cache.infoNodeChanged(new EntityPath("/dilbert/rss/other.xml"));
+    assertSame(feed, cache.getRenderedFeed("dilbert.test1", builder));
+
+    cache.infoNodeChanged(new EntityPath("/dilbert/rss/test1.xml"));
+    assertEquals(1, cache.getCache().size());
+    cache.getRenderedFeed("dilbert.test1", builder);
+    assertEquals(3, builder.renderCount.get());
+
+    // missing feeds aren't cached
+    assertNull(cache.getRenderedFeed("missing.feed", builder));
+    assertEquals(2, cache.getCache().size());
+  }
+
+  @Test
+  public void testInvalidateDoesNotCountLookups() throws Exception {
+    RssFeedOutputCache cache = new RssFeedOutputCache(10, TimeUnit.MINUTES.toMillis(10));
+    CountingBuilder builder = new CountingBuilder(null);
+
+    cache.getRenderedFeed("dilbert.test1", builder);
+    cache.getRenderedFeed("dilbert.test2", builder);
+    cache.infoNodeChanged(new EntityPath("/dilbert/rss/test2.xml"));
+
+    assertEquals(1, cache.getCache().size());
+    assertEquals(0, cache.getCache().getHitCount());
+    assertEquals(2, cache.getCache().getMissCount());
+  }
+
+  @Test
+  public void testFeedRenderedDuringInvalidationIsNotCached() throws Exception {
+    final RssFeedOutputCache cache = new RssFeedOutputCache(10, TimeUnit.MINUTES.toMillis(10));
+    CountingBuilder builder = new CountingBuilder(null) {
+      @Override
+      public RenderedRssFeed createRenderedRssFeed(String feedId) throws IOException {
+        RenderedRssFeed result = super.createRenderedRssFeed(feedId);
+
+        // simulate a concurrent save of the entity, while the (now stale) feed is being rendered
+        cache.infoNodeChanged(new EntityPath("/dilbert/rss/test1.xml"));
+
+        return result;
+      }
+    };
+
+    assertNotNull(cache.getRenderedFeed("dilbert.test1", builder));
+    assertEquals(0, cache.getCache().size());
+    cache.getRenderedFeed("dilbert.test1", builder);
+    assertEquals(2, builder.renderCount.get());
+  }
+
+  @Test
+  public void testInvalidateResolvedEntityPath() throws Exception {
+    RssFeedOutputCache cache = new RssFeedOutputCache(10, TimeUnit.MINUTES.toMillis(10));
+    DataStoreInfo dataStoreInfo = new DataStoreInfo();
+    dataStoreInfo.setPrivateRootDataStorePath("/private/dilbert");
+    CountingBuilder builder = new CountingBuilder(dataStoreInfo);
+    RenderedRssFeed feed = cache.getRenderedFeed("dilbert.test1", builder);
+
+    assertTrue(feed.isRenderedFrom(new EntityPath("/dilbert/rss/test1.xml")));
+    cache.infoNodeChanged(new EntityPath("/private/dilbert", new EntityPath("/dilbert/rss/test1.xml").getContainerPath(), "test1.xml"));
+    assertEquals(0, cache.getCache().size());
+  }
+
+  @Test
+  public void testContentAndValidators() throws Exception {
+    RenderedRssFeed feed = new CountingBuilder(null).createRenderedRssFeed("dilbert.test1");
+    byte[] content = FEED_XML.getBytes(CharEncoding.UTF_8);
+
+    assertArrayEquals(content, feed.getContent());
+    assertArrayEquals(content, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(feed.getGzippedContent()))));
+    assertTrue(feed.getEntityTag().startsWith("\"") && feed.getEntityTag().endsWith("\""));
+    assertEquals(feed.getEntityTag(), new CountingBuilder(null).createRenderedRssFeed("dilbert.test1").getEntityTag());
+    assertEquals(0, feed.getLastModified() % 1000);
+  }
+
+  @Test
+  public void testIsNotModified() throws Exception {
+    RenderedRssFeed feed = new CountingBuilder(null).createRenderedRssFeed("dilbert.test1");
+    String etag = feed.getEntityTag();
+
+    assertFalse(feed.isNotModified(null, -1));
+    assertTrue(feed.isNotModified(etag, -1));
+    assertTrue(feed.isNotModified("\"abc\", W/" + etag, -1));
+    assertTrue(feed.isNotModified("*", -1));
+    assertFalse(feed.isNotModified("\"abc\"", -1));
+
+    // If-Modified-Since is used only without If-None-Match
+    assertTrue(feed.isNotModified(null, feed.getLastModified()));
+    assertFalse(feed.isNotModified(null, feed.getLastModified() - 1000));
+    assertFalse(feed.isNotModified("\"abc\"", feed.getLastModified()));
+  }
+
+  @Test
+  public void testGzippedEntityTag() throws Exception {
+    RenderedRssFeed feed = new CountingBuilder(null).createRenderedRssFeed("dilbert.test1");
+    String etag = feed.getEntityTag();
+    String gzippedEtag = feed.getGzippedEntityTag();
+
+    // the gzip and identity bodies differ, so they must have different strong ETags
+    assertFalse(etag.equals(gzippedEtag));
+    assertEquals(etag.substring(0, etag.length() - 1) + "-gz\"", gzippedEtag);
+
+    // either ETag identifies the current rendering
+    assertTrue(feed.isNotModified(gzippedEtag, -1));
+    assertTrue(feed.isNotModified("\"abc\", " + gzippedEtag, -1));
+  }
+
+  @Test
+  public void testIsGzipAccepted() {
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted(null));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted(""));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("identity"));
+    assertTrue(RssFeedPublisherServlet.isGzipAccepted("gzip"));
+    assertTrue(RssFeedPublisherServlet.isGzipAccepted("deflate, GZIP;q=0.5"));
+    assertTrue(RssFeedPublisherServlet.isGzipAccepted("x-gzip"));
+    assertTrue(RssFeedPublisherServlet.isGzipAccepted("*"));
+
+    // q=0 means "not acceptable"
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("gzip;q=0"));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("gzip; q=0.0, identity"));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("*;q=1, gzip;q=0"));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("*;q=0"));
+    assertFalse(RssFeedPublisherServlet.isGzipAccepted("gzip;q=abc"));
+  }
+}